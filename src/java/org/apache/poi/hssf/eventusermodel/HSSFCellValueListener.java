@@ -0,0 +1,55 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.hssf.eventusermodel;
+
+/**
+ * Interface for use with the HSSFRequest and HSSFEventFactory, which receives the values of
+ * the number and string cells without creating record objects for them.<p>
+ *
+ * The values of {@link org.apache.poi.hssf.record.NumberRecord},
+ * {@link org.apache.poi.hssf.record.RKRecord} and {@link org.apache.poi.hssf.record.MulRKRecord}
+ * are passed as numbers and the values of {@link org.apache.poi.hssf.record.LabelSSTRecord}
+ * as indexes into the shared string table. Records, which have an {@link HSSFListener}
+ * registered - {@link org.apache.poi.hssf.record.NumberRecord#sid} for the number
+ * records - are passed to that listener instead.
+ *
+ * @see org.apache.poi.hssf.eventusermodel.HSSFRequest#addCellValueListener(HSSFCellValueListener)
+ * @since POI 4.1.1
+ */
+public interface HSSFCellValueListener {
+
+    /**
+     * Processes a number cell
+     *
+     * @param row the zero based row index
+     * @param column the zero based column index
+     * @param xfIndex the index of the cell style
+     * @param value the value of the cell
+     */
+    void processNumberCell(int row, int column, int xfIndex, double value);
+
+    /**
+     * Processes a string cell, which refers to the shared string table
+     *
+     * @param row the zero based row index
+     * @param column the zero based column index
+     * @param xfIndex the index of the cell style
+     * @param sstIndex the index of the string in the {@link org.apache.poi.hssf.record.SSTRecord}
+     */
+    void processStringCell(int row, int column, int xfIndex, int sstIndex);
+}
@@ -33,7 +33,9 @@ import static org.apache.poi.hssf.model.InternalWorkbook.WORKBOOK_DIR_ENTRY_NAME
  *
  * This will cause your file to be processed a record at a time.  Each record with
  * a static id matching one that you have registered in your HSSFRequest will be passed
- * to your associated HSSFListener.
+ * to your associated HSSFListener. The other records are only passed as raw data
+ * to the {@link HSSFRawRecordListener}s and {@link HSSFCellValueListener}s, without creating
+ * record objects for them.
  */
 public class HSSFEventFactory {
 	/** Creates a new instance of HSSFEventFactory */
@@ -168,6 +170,8 @@ public class HSSFEventFactory {
 
 		// Create a new RecordStream and use that
 		RecordFactoryInputStream recordStream = new RecordFactoryInputStream(in, false);
+		// only create the records, which are listened for
+		recordStream.setRawRecordFilter(req.getRawRecordFilter());
 
 		// Process each record as they come in
 		while(true) {
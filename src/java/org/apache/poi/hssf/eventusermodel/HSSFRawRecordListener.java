@@ -0,0 +1,42 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.hssf.eventusermodel;
+
+import org.apache.poi.util.LittleEndianInput;
+
+/**
+ * Interface for use with the HSSFRequest and HSSFEventFactory, which receives the raw data
+ * of records without creating record objects for them. Records, which have an
+ * {@link HSSFListener} registered, are passed to that listener instead.
+ *
+ * @see org.apache.poi.hssf.eventusermodel.HSSFRequest#addRawListener(HSSFRawRecordListener, short)
+ * @since POI 4.1.1
+ */
+public interface HSSFRawRecordListener {
+
+    /**
+     * Processes the data of a record. The {@link org.apache.poi.hssf.record.ContinueRecord}s
+     * following the record are passed as separate records, if a listener is registered for them.
+     *
+     * @param sid the id of the record
+     * @param dataSize the size of the record data
+     * @param data the record data - the input is reused for all records, so it's only valid
+     *  during this call
+     */
+    void processRawRecord(short sid, int dataSize, LittleEndianInput data);
+}
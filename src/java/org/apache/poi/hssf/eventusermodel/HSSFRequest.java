@@ -22,8 +22,15 @@ import java.util.List;
 import java.util.ArrayList;
 import java.util.Map;
 
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.MulRKRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.RKRecord;
 import org.apache.poi.hssf.record.Record;
 import org.apache.poi.hssf.record.RecordFactory;
+import org.apache.poi.hssf.record.RecordFactoryInputStream.RawRecordFilter;
+import org.apache.poi.hssf.util.RKUtil;
+import org.apache.poi.util.LittleEndianByteArrayInputStream;
 
 /**
  * An HSSFRequest object should be constructed registering an instance or multiple
@@ -35,10 +42,14 @@ import org.apache.poi.hssf.record.RecordFactory;
  */
 public class HSSFRequest {
 	private final Map<Short, List<HSSFListener>> _records;
+	private final Map<Short, List<HSSFRawRecordListener>> _rawRecords;
+	private final List<HSSFCellValueListener> _cellValueListeners;
 
 	/** Creates a new instance of HSSFRequest */
 	public HSSFRequest() {
 		_records = new HashMap<>(50); // most folks won't listen for too many of these
+		_rawRecords = new HashMap<>();
+		_cellValueListeners = new ArrayList<>(1);
 	}
 
 	/**
@@ -82,6 +93,118 @@ public class HSSFRequest {
 		}
 	}
 
+	/**
+	 * add a listener for the raw data of a particular record type. The record is only passed
+	 * as raw data, if no {@link HSSFListener} is registered for the same record type.
+	 *
+	 * @param lsnr for the event
+	 * @param sid identifier for the record type
+	 *
+	 * @since POI 4.1.1
+	 */
+	public void addRawListener(HSSFRawRecordListener lsnr, short sid) {
+		_rawRecords.computeIfAbsent(sid, k -> new ArrayList<>(1)).add(lsnr);
+	}
+
+	/**
+	 * add a listener for the values of the number and string cells, which is called without
+	 * creating record objects for the cells. Cells, whose records have an {@link HSSFListener}
+	 * registered, are passed to that listener instead.
+	 *
+	 * @param lsnr for the cell values
+	 *
+	 * @since POI 4.1.1
+	 */
+	public void addCellValueListener(HSSFCellValueListener lsnr) {
+		_cellValueListeners.add(lsnr);
+	}
+
+	/**
+	 * @return a filter, which only creates the records with registered {@link HSSFListener}s
+	 *  and passes the other records to the raw and cell value listeners
+	 */
+	/* package */ RawRecordFilter getRawRecordFilter() {
+		return new RawRecordFilter() {
+			@Override
+			public boolean isCreated(short sid) {
+				// RK and MulRK records are passed as NumberRecords
+				short requestedSid = (sid == RKRecord.sid || sid == MulRKRecord.sid) ? NumberRecord.sid : sid;
+				return _records.containsKey(requestedSid);
+			}
+
+			@Override
+			public void processRawRecord(short sid, int dataSize, LittleEndianByteArrayInputStream data) {
+				HSSFRequest.this.processRawRecord(sid, dataSize, data);
+			}
+		};
+	}
+
+	private void processRawRecord(short sid, int dataSize, LittleEndianByteArrayInputStream data) {
+		if (!_cellValueListeners.isEmpty()) {
+			switch (sid) {
+				case NumberRecord.sid:
+				case RKRecord.sid:
+				case MulRKRecord.sid:
+				case LabelSSTRecord.sid:
+					processCellValues(sid, dataSize, data);
+					data.reset();
+					break;
+				default:
+					break;
+			}
+		}
+		List<HSSFRawRecordListener> listeners = _rawRecords.get(sid);
+		if (listeners != null) {
+			for (HSSFRawRecordListener listener : listeners) {
+				listener.processRawRecord(sid, dataSize, data);
+				data.reset();
+			}
+		}
+	}
+
+	private void processCellValues(short sid, int dataSize, LittleEndianByteArrayInputStream data) {
+		int row = data.readUShort();
+		int column = data.readUShort();
+		switch (sid) {
+			case NumberRecord.sid: {
+				int xfIndex = data.readUShort();
+				double value = data.readDouble();
+				for (HSSFCellValueListener listener : _cellValueListeners) {
+					listener.processNumberCell(row, column, xfIndex, value);
+				}
+				break;
+			}
+			case RKRecord.sid: {
+				int xfIndex = data.readUShort();
+				double value = RKUtil.decodeNumber(data.readInt());
+				for (HSSFCellValueListener listener : _cellValueListeners) {
+					listener.processNumberCell(row, column, xfIndex, value);
+				}
+				break;
+			}
+			case MulRKRecord.sid: {
+				// first row and column, (xf index, rk number) per cell and the last column
+				int cellCount = (dataSize - 6) / 6;
+				for (int i = 0; i < cellCount; i++) {
+					int xfIndex = data.readUShort();
+					double value = RKUtil.decodeNumber(data.readInt());
+					for (HSSFCellValueListener listener : _cellValueListeners) {
+						listener.processNumberCell(row, column + i, xfIndex, value);
+					}
+				}
+				break;
+			}
+			default: {
+				int xfIndex = data.readUShort();
+				int sstIndex = data.readInt();
+				for (HSSFCellValueListener listener : _cellValueListeners) {
+					listener.processStringCell(row, column, xfIndex, sstIndex);
+				}
+				break;
+			}
+		}
+	}
+
 	/**
 	 * Called by HSSFEventFactory, passes the Record to each listener associated with
 	 * a record.sid.
@@ -0,0 +1,302 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.hssf.record;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.poi.hssf.record.common.UnicodeString;
+import org.apache.poi.util.LittleEndian;
+import org.apache.poi.util.POILogFactory;
+import org.apache.poi.util.POILogger;
+import org.apache.poi.util.RecordFormatException;
+
+/**
+ * The strings of a {@link SSTRecord}, which are kept as raw data and decoded on first access.<p>
+ *
+ * The data of the SST record and its {@link ContinueRecord}s is copied, each record preceded
+ * by its header, and the start of each string along with the end of the record containing it
+ * is noted. A string is decoded by reading from its start as if it was the start of a record,
+ * so strings spanning several continue records are handled by {@link RecordInputStream}.
+ * The decoded strings are kept in a bounded cache, so {@link #get(int)} is synchronized,
+ * as even lookups change the access order of the cache.
+ */
+final class LazySSTStrings {
+    private static final POILogger logger = POILogFactory.getLogger(LazySSTStrings.class);
+
+    private static final int HEADER_SIZE = 4;
+
+    /** the data of the SST and continue records, each preceded by its header */
+    private final byte[] _data;
+    /** the start of each string in the data or -1 for the strings missing in the data */
+    private final int[] _offsets;
+    /** the end of the record, which contains the start of each string */
+    private final int[] _recordEnds;
+    private final Map<Integer, UnicodeString> _cache;
+
+    // the scan position
+    private int _pos;
+    private int _recordEnd;
+
+    LazySSTStrings(int stringCount, RecordInputStream in, final int cacheSize) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        appendRecord(bos, in.readRemainder());
+        while (in.hasNextRecord() && in.getNextSid() == ContinueRecord.sid) {
+            in.nextRecord();
+            appendRecord(bos, in.readRemainder());
+        }
+        _data = bos.toByteArray();
+        _offsets = new int[stringCount];
+        _recordEnds = new int[stringCount];
+        _cache = new LinkedHashMap<Integer, UnicodeString>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, UnicodeString> eldest) {
+                return size() > cacheSize;
+            }
+        };
+
+        _pos = HEADER_SIZE;
+        _recordEnd = HEADER_SIZE + LittleEndian.getUShort(_data, 2);
+        for (int i = 0; i < stringCount; i++) {
+            if (_pos == _recordEnd && _pos == _data.length) {
+                logger.log( POILogger.ERROR, "Ran out of data before creating all the strings! String at index " + i + "");
+                _offsets[i] = -1;
+                continue;
+            }
+            nextRecordIfRequired(1);
+            _offsets[i] = _pos;
+            _recordEnds[i] = _recordEnd;
+            skipString();
+        }
+    }
+
+    private static void appendRecord(ByteArrayOutputStream bos, byte[] data) {
+        byte[] header = new byte[HEADER_SIZE];
+        LittleEndian.putShort(header, 0, ContinueRecord.sid);
+        LittleEndian.putUShort(header, 2, data.length);
+        bos.write(header, 0, HEADER_SIZE);
+        bos.write(data, 0, data.length);
+    }
+
+    /**
+     * @return the number of strings
+     */
+    int size() {
+        return _offsets.length;
+    }
+
+    /**
+     * @return the string with the given index, which is decoded if it's not cached
+     */
+    synchronized UnicodeString get(int index) {
+        if (index < 0 || index >= _offsets.length) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + _offsets.length);
+        }
+        UnicodeString str = _cache.get(index);
+        if (str == null) {
+            str = decode(index);
+            _cache.put(index, str);
+        }
+        return str;
+    }
+
+    private UnicodeString decode(int index) {
+        int offset = _offsets[index];
+        if (offset == -1) {
+            return new UnicodeString("");
+        }
+        RecordInputStream in = new RecordInputStream(new StringInputStream(_data, offset, _recordEnds[index] - offset));
+        in.nextRecord();
+        return new UnicodeString(in);
+    }
+
+    /**
+     * Skips a string the same way as {@link UnicodeString#UnicodeString(RecordInputStream)} reads it
+     */
+    private void skipString() {
+        int charCount = readUShort();
+        byte optionFlags = readByte();
+        boolean isRichText = (optionFlags & 0x8) != 0;
+        boolean isExtendedText = (optionFlags & 0x4) != 0;
+        int runCount = isRichText ? readUShort() : 0;
+        int extensionLength = isExtendedText ? readInt() : 0;
+
+        if (isExtendedText && extensionLength > 0) {
+            // the extended data isn't always sized as announced, so the string is parsed to find its end
+            int start = _pos - (isRichText ? 9 : 7);
+            StringInputStream sis = new StringInputStream(_data, start, _recordEnd - start);
+            RecordInputStream in = new RecordInputStream(sis);
+            in.nextRecord();
+            new UnicodeString(in);
+            int end = sis.getPosition();
+            // follow the record headers up to the end of the string
+            while (_recordEnd < end) {
+                _pos = _recordEnd;
+                nextRecordIfRequired(1);
+            }
+            _pos = end;
+            return;
+        }
+
+        skipChars(charCount, (optionFlags & 1) == 0);
+        for (int i = 0; i < runCount; i++) {
+            // character position and font index
+            readUShort();
+            readUShort();
+        }
+    }
+
+    private void skipChars(int charCount, boolean isCompressed) {
+        boolean compressed = isCompressed;
+        int todo = charCount;
+        while (true) {
+            int available = (_recordEnd - _pos) / (compressed ? 1 : 2);
+            if (todo <= available) {
+                _pos += todo * (compressed ? 1 : 2);
+                return;
+            }
+            _pos += available * (compressed ? 1 : 2);
+            todo -= available;
+            if (_pos != _recordEnd) {
+                throw new RecordFormatException("Odd number of bytes(" + (_recordEnd - _pos) + ") left behind");
+            }
+            if (_pos == _data.length) {
+                throw new RecordFormatException("Expected to find a ContinueRecord in order to read remaining "
+                        + todo + " of " + charCount + " chars");
+            }
+            nextRecordIfRequired(1);
+            // the compressed flag may change on the fly
+            compressed = (readByte() == 0);
+        }
+    }
+
+    private void nextRecordIfRequired(int requiredByteCount) {
+        int available = _recordEnd - _pos;
+        if (available >= requiredByteCount) {
+            return;
+        }
+        if (available == 0 && _pos + HEADER_SIZE <= _data.length) {
+            _recordEnd = _pos + HEADER_SIZE + LittleEndian.getUShort(_data, _pos + 2);
+            _pos += HEADER_SIZE;
+            if (_recordEnd - _pos >= requiredByteCount) {
+                return;
+            }
+            available = _recordEnd - _pos;
+        }
+        throw new RecordFormatException("Not enough data (" + available
+                + ") to read requested (" + requiredByteCount + ") bytes");
+    }
+
+    private byte readByte() {
+        nextRecordIfRequired(1);
+        return _data[_pos++];
+    }
+
+    private int readUShort() {
+        nextRecordIfRequired(2);
+        int result = LittleEndian.getUShort(_data, _pos);
+        _pos += 2;
+        return result;
+    }
+
+    private int readInt() {
+        nextRecordIfRequired(4);
+        int result = LittleEndian.getInt(_data, _pos);
+        _pos += 4;
+        return result;
+    }
+
+    /**
+     * Reads the data from the start of a string, preceded by a record header for the rest of its record
+     */
+    private static final class StringInputStream extends InputStream {
+        private final byte[] _header = new byte[HEADER_SIZE];
+        private final byte[] _data;
+        private int _headerPos;
+        private int _pos;
+        private int _markHeaderPos;
+        private int _markPos;
+
+        StringInputStream(byte[] data, int offset, int recordRemaining) {
+            LittleEndian.putShort(_header, 0, ContinueRecord.sid);
+            LittleEndian.putUShort(_header, 2, recordRemaining);
+            _data = data;
+            _pos = offset;
+        }
+
+        int getPosition() {
+            return _pos;
+        }
+
+        @Override
+        public int read() {
+            if (_headerPos < HEADER_SIZE) {
+                return _header[_headerPos++] & 0xFF;
+            }
+            return (_pos < _data.length) ? _data[_pos++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (_headerPos < HEADER_SIZE) {
+                int count = Math.min(len, HEADER_SIZE - _headerPos);
+                System.arraycopy(_header, _headerPos, b, off, count);
+                _headerPos += count;
+                return count;
+            }
+            if (_pos >= _data.length) {
+                return -1;
+            }
+            int count = Math.min(len, _data.length - _pos);
+            System.arraycopy(_data, _pos, b, off, count);
+            _pos += count;
+            return count;
+        }
+
+        /**
+         * Marking is supported, so the stream isn't buffered by {@link RecordInputStream}
+         * and its position stays at the end of the data read
+         */
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+
+        @Override
+        public void mark(int readlimit) {
+            _markHeaderPos = _headerPos;
+            _markPos = _pos;
+        }
+
+        @Override
+        public void reset() {
+            _headerPos = _markHeaderPos;
+            _pos = _markPos;
+        }
+
+        @Override
+        public int available() {
+            return HEADER_SIZE - _headerPos + _data.length - _pos;
+        }
+    }
+}
@@ -479,10 +479,29 @@ public final class RecordFactory {
      * @exception org.apache.poi.util.RecordFormatException on error processing the InputStream
      */
     public static List<Record> createRecords(InputStream in) throws org.apache.poi.util.RecordFormatException {
+        return createRecords(in, 0);
+    }
+
+    /**
+     * Create an array of records from an input stream
+     *
+     * @param in the InputStream from which the records will be obtained
+     * @param lazySSTCacheSize the maximum number of decoded shared strings, which are cached
+     *  to decode them on demand, or 0 to decode all shared strings right away
+     *
+     * @return an array of Records created from the InputStream
+     *
+     * @exception org.apache.poi.util.RecordFormatException on error processing the InputStream
+     *
+     * @see RecordFactoryInputStream#setLazySSTCacheSize(int)
+     * @since POI 4.1.1
+     */
+    public static List<Record> createRecords(InputStream in, int lazySSTCacheSize) throws org.apache.poi.util.RecordFormatException {
 
         List<Record> records = new ArrayList<>(NUM_RECORDS);
 
         RecordFactoryInputStream recStream = new RecordFactoryInputStream(in, true);
+        recStream.setLazySSTCacheSize(lazySSTCacheSize);
 
         Record record;
         while ((record = recStream.nextRecord())!=null) {
@@ -27,6 +27,7 @@ import org.apache.poi.hssf.eventusermodel.HSSFListener;
 import org.apache.poi.hssf.record.crypto.Biff8EncryptionKey;
 import org.apache.poi.poifs.crypt.Decryptor;
 import org.apache.poi.poifs.crypt.EncryptionInfo;
+import org.apache.poi.util.LittleEndianByteArrayInputStream;
 import org.apache.poi.util.RecordFormatException;
 
 /**
@@ -41,6 +42,49 @@ import org.apache.poi.util.RecordFormatException;
  */
 public final class RecordFactoryInputStream {
 
+	/**
+	 * Selects the records, which are created by {@link RecordFactoryInputStream#nextRecord()}.
+	 * The data of the other records is passed as is, without creating a record object.
+	 *
+	 * @since POI 4.1.1
+	 */
+	public interface RawRecordFilter {
+		/**
+		 * @param sid the id of the next record
+		 * @return <code>true</code> if the record is created and returned by
+		 *  {@link RecordFactoryInputStream#nextRecord()}
+		 */
+		boolean isCreated(short sid);
+
+		/**
+		 * Processes the data of a record, which isn't created. The {@link ContinueRecord}s
+		 * following such a record are passed here as well.
+		 *
+		 * @param sid the id of the record
+		 * @param dataSize the size of the record data
+		 * @param data the record data - the stream is reused for all records, so it's only valid
+		 *  during this call and it's reset to the start of the data before the call
+		 */
+		void processRawRecord(short sid, int dataSize, LittleEndianByteArrayInputStream data);
+	}
+
+	/**
+	 * A reusable view of the data of the current raw record
+	 */
+	private static final class RawRecordData extends LittleEndianByteArrayInputStream {
+		RawRecordData() {
+			super(new byte[RecordInputStream.MAX_RECORD_DATA_SIZE], 0, 0);
+		}
+
+		void read(RecordInputStream in) {
+			int size = in.remaining();
+			in.readFully(buf, 0, size);
+			pos = 0;
+			mark = 0;
+			count = size;
+		}
+	}
+
 	/**
 	 * Keeps track of the sizes of the initial records up to and including {@link FilePassRecord}
 	 * Needed for protected files because each byte is encrypted with respect to its absolute
@@ -160,7 +204,8 @@ public final class RecordFactoryInputStream {
 	private int _unreadRecordIndex = -1;
 
 	/**
-	 * The most recent record that we gave to the user
+	 * The most recent record that we gave to the user,
+	 * <code>null</code> if it was passed to the raw record filter
 	 */
 	private Record _lastRecord;
 	/**
@@ -172,6 +217,13 @@ public final class RecordFactoryInputStream {
 
 	private boolean _lastRecordWasEOFLevelZero;
 
+	private RawRecordFilter _rawRecordFilter;
+	private RawRecordData _rawRecordData;
+	/** the most recent record wasn't created, so its continue records aren't created either */
+	private boolean _lastRecordWasRaw;
+
+	private int _lazySSTCacheSize;
+
 
 	/**
 	 * @param in the InputStream to read from
@@ -220,6 +272,38 @@ public final class RecordFactoryInputStream {
 		_lastRecordWasEOFLevelZero = false;
 	}
 
+	/**
+	 * Sets a filter, which decides, which of the following records are created.
+	 * The BOF and EOF records are used for finding the end of the workbook stream, so they're
+	 * tracked even if they aren't created.
+	 *
+	 * @param filter the filter or <code>null</code> to create all records
+	 *
+	 * @since POI 4.1.1
+	 */
+	public void setRawRecordFilter(RawRecordFilter filter) {
+		_rawRecordFilter = filter;
+		if (filter != null && _rawRecordData == null) {
+			_rawRecordData = new RawRecordData();
+		}
+	}
+
+	/**
+	 * Defers decoding the strings of the following {@link SSTRecord}s until they're requested.
+	 *
+	 * @param cacheSize the maximum number of decoded strings cached per record,
+	 *  or 0 to decode all strings, when the record is read
+	 *
+	 * @see SSTRecord#SSTRecord(RecordInputStream, int)
+	 * @since POI 4.1.1
+	 */
+	public void setLazySSTCacheSize(int cacheSize) {
+		if (cacheSize < 0) {
+			throw new IllegalArgumentException("The cache size must not be negative, but was " + cacheSize);
+		}
+		_lazySSTCacheSize = cacheSize;
+	}
+
 	/**
 	 * @return the next (complete) record from the stream, or null if there are no more.
 	 */
@@ -251,6 +335,10 @@ public final class RecordFactoryInputStream {
             // step underlying RecordInputStream to the next record
             _recStream.nextRecord();
 
+			if (_rawRecordFilter != null && processRawRecord()) {
+				continue;
+			}
+
 			r = readNextRecord();
 			if (r == null) {
 				// some record types may get skipped (e.g. DBCellRecord and ContinueRecord)
@@ -260,6 +348,39 @@ public final class RecordFactoryInputStream {
 		}
 	}
 
+	/**
+	 * Passes the current record to the raw record filter, if it's not created
+	 *
+	 * @return <code>true</code> if the record was processed as raw record
+	 */
+	private boolean processRawRecord() {
+		short sid = _recStream.getSid();
+		if (sid == ContinueRecord.sid) {
+			// the continue records belong to the previous record
+			if (!_lastRecordWasRaw) {
+				return false;
+			}
+		} else {
+			_lastRecordWasRaw = !_rawRecordFilter.isCreated(sid);
+			if (!_lastRecordWasRaw) {
+				return false;
+			}
+			_lastRecord = null;
+		}
+		_lastRecordWasEOFLevelZero = false;
+		if (sid == BOFRecord.sid) {
+			_bofDepth++;
+		} else if (sid == EOFRecord.sid) {
+			_bofDepth--;
+			if (_bofDepth < 1) {
+				_lastRecordWasEOFLevelZero = true;
+			}
+		}
+		_rawRecordData.read(_recStream);
+		_rawRecordFilter.processRawRecord(sid, _rawRecordData.available(), _rawRecordData);
+		return true;
+	}
+
 	/**
 	 * @return the next {@link Record} from the multiple record group as expanded from
 	 * a recently read {@link MulRKRecord}. <code>null</code> if not present.
@@ -285,7 +406,9 @@ public final class RecordFactoryInputStream {
 	 */
 	private Record readNextRecord() {
 
-		Record record = RecordFactory.createSingleRecord(_recStream);
+		Record record = (_lazySSTCacheSize > 0 && _recStream.getSid() == SSTRecord.sid)
+				? new SSTRecord(_recStream, _lazySSTCacheSize)
+				: RecordFactory.createSingleRecord(_recStream);
 		_lastRecordWasEOFLevelZero = false;
 
 		if (record instanceof BOFRecord) {
@@ -347,9 +470,10 @@ public final class RecordFactoryInputStream {
 //				((DrawingRecord) _lastRecord).appendContinueRecord(contRec.getData());
 				return contRec;
 			}
-			if (_lastRecord instanceof UnknownRecord) {
+			if (_lastRecord == null || _lastRecord instanceof UnknownRecord) {
 				//Gracefully handle records that we don't know about,
-				//that happen to be continued
+				//that happen to be continued, and records which
+				//were passed to the raw record filter
 				return record;
 			}
 			if (_lastRecord instanceof EOFRecord) {
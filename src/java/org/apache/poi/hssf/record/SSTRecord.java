@@ -50,6 +50,14 @@ public final class SSTRecord extends ContinuableRecord {
     /** how much data can we stuff into an SST record? That would be _max minus the standard SST record overhead */
     static final int MAX_DATA_SPACE = RecordInputStream.MAX_RECORD_DATA_SIZE - 8;
 
+    /**
+     * The default maximum number of decoded strings, which are cached in lazy mode
+     *
+     * @see #SSTRecord(RecordInputStream, int)
+     * @since POI 4.1.1
+     */
+    public static final int DEFAULT_LAZY_CACHE_SIZE = 10000;
+
     /** union of strings in the SST and EXTSST */
     private int field_1_num_strings;
 
@@ -59,6 +67,9 @@ public final class SSTRecord extends ContinuableRecord {
 
     private SSTDeserializer deserializer;
 
+    /** the undecoded strings read in lazy mode, which are materialized on the first change */
+    private LazySSTStrings lazyStrings;
+
     /** Offsets from the beginning of the SST record (even across continuations) */
     int[] bucketAbsoluteOffsets;
     /** Offsets relative the start of the current SST or continue record */
@@ -81,6 +92,7 @@ public final class SSTRecord extends ContinuableRecord {
      */
     public int addString(UnicodeString string)
     {
+        materializeStrings();
         field_1_num_strings++;
         UnicodeString ucs = ( string == null ) ? EMPTY_STRING
                 : string;
@@ -125,7 +137,20 @@ public final class SSTRecord extends ContinuableRecord {
      */
     public UnicodeString getString(int id )
     {
-        return field_3_strings.get( id );
+        return (lazyStrings != null) ? lazyStrings.get( id ) : field_3_strings.get( id );
+    }
+
+    /**
+     * Decodes all strings read in lazy mode
+     */
+    private void materializeStrings() {
+        if (lazyStrings == null) {
+            return;
+        }
+        for (int i = 0; i < lazyStrings.size(); i++) {
+            SSTDeserializer.addToStringTable( field_3_strings, lazyStrings.get( i ) );
+        }
+        lazyStrings = null;
     }
 
 
@@ -135,6 +160,7 @@ public final class SSTRecord extends ContinuableRecord {
      * @return string representation
      */
     public String toString() {
+        materializeStrings();
         StringBuilder buffer = new StringBuilder();
 
         buffer.append( "[SST]\n" );
@@ -236,6 +262,27 @@ public final class SSTRecord extends ContinuableRecord {
      * @param in the RecordInputStream to read the record from
      */
     public SSTRecord(RecordInputStream in) {
+        this(in, 0);
+    }
+
+    /**
+     * Reads the record and optionally defers decoding its strings.<p>
+     *
+     * In lazy mode only the offsets of the strings are noted, when the record is read, and
+     * a string is decoded, when it's first requested. Up to <code>lazyCacheSize</code>
+     * decoded strings are cached. All strings are decoded, when the record is changed or written.
+     *
+     * @param in the RecordInputStream to read the record from
+     * @param lazyCacheSize the maximum number of cached strings to decode the strings on demand,
+     *  or 0 to decode all strings right away
+     *
+     * @see #DEFAULT_LAZY_CACHE_SIZE
+     * @since POI 4.1.1
+     */
+    public SSTRecord(RecordInputStream in, int lazyCacheSize) {
+        if (lazyCacheSize < 0) {
+            throw new IllegalArgumentException("The cache size must not be negative, but was " + lazyCacheSize);
+        }
         // this method is ALWAYS called after construction -- using
         // the nontrivial constructor, of course -- so this is where
         // we initialize our fields
@@ -250,7 +297,11 @@ public final class SSTRecord extends ContinuableRecord {
             field_2_num_unique_strings = 0;
             return;
         }
-        deserializer.manufactureStrings( field_2_num_unique_strings, in );
+        if (lazyCacheSize > 0) {
+            lazyStrings = new LazySSTStrings( field_2_num_unique_strings, in, lazyCacheSize );
+        } else {
+            deserializer.manufactureStrings( field_2_num_unique_strings, in );
+        }
     }
 
 
@@ -260,6 +311,7 @@ public final class SSTRecord extends ContinuableRecord {
      */
     Iterator<UnicodeString> getStrings()
     {
+        materializeStrings();
         return field_3_strings.iterator();
     }
 
@@ -267,10 +319,11 @@ public final class SSTRecord extends ContinuableRecord {
      * @return count of the strings we hold.
      */
     int countStrings() {
-        return field_3_strings.size();
+        return (lazyStrings != null) ? lazyStrings.size() : field_3_strings.size();
     }
 
     protected void serialize(ContinuableRecordOutput out) {
+        materializeStrings();
         SSTSerializer serializer = new SSTSerializer(field_3_strings, getNumStrings(), getNumUniqueStrings() );
         serializer.serialize(out);
         bucketAbsoluteOffsets = serializer.getBucketAbsoluteOffsets();
@@ -317,6 +370,6 @@ public final class SSTRecord extends ContinuableRecord {
      * @return  The size of the ExtSST record in bytes.
      */
     public int calcExtSSTRecordSize() {
-      return ExtSSTRecord.getRecordSizeForStrings(field_3_strings.size());
+      return ExtSSTRecord.getRecordSizeForStrings(countStrings());
     }
 }
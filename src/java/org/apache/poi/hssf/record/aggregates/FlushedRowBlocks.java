@@ -0,0 +1,146 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.hssf.record.aggregates;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.poi.hssf.record.DBCellRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.aggregates.RecordAggregate.RecordVisitor;
+import org.apache.poi.util.IOUtils;
+import org.apache.poi.util.IntList;
+import org.apache.poi.util.Internal;
+import org.apache.poi.util.RecordFormatException;
+import org.apache.poi.util.TempFile;
+
+/**
+ * The serialized row blocks (ROW, cell value and DBCELL records) of a sheet, whose rows
+ * were flushed from memory to a temp file.<p>
+ *
+ * This isn't a BIFF record of its own - it's visited in place of the flushed rows,
+ * so the data is written to the workbook stream unchanged.
+ *
+ * @see RowRecordsAggregate#flushRowBlocks(int)
+ * @since POI 4.1.1
+ */
+@Internal
+public final class FlushedRowBlocks extends Record implements RecordVisitor {
+    private final File _file;
+    private final OutputStream _out;
+    /** the offsets of the DBCELL records relative to the start of the data */
+    private final IntList _dbcellOffsets = new IntList();
+    private int _size;
+
+    FlushedRowBlocks() throws IOException {
+        _file = TempFile.createTempFile("poi-hssf-rows", ".tmp");
+        _out = new BufferedOutputStream(new FileOutputStream(_file));
+    }
+
+    @Override
+    public void visitRecord(Record r) {
+        if (r instanceof DBCellRecord) {
+            _dbcellOffsets.add(_size);
+        }
+        byte[] data = r.serialize();
+        try {
+            _out.write(data);
+        } catch (IOException e) {
+            throw new RecordFormatException("Can't write the flushed rows", e);
+        }
+        _size += data.length;
+    }
+
+    /**
+     * @return the number of flushed row blocks
+     */
+    public int getBlockCount() {
+        return _dbcellOffsets.size();
+    }
+
+    /**
+     * @return the offset of the DBCELL record of the given block relative to the start of the data
+     */
+    public int getDbcellOffset(int block) {
+        return _dbcellOffsets.get(block);
+    }
+
+    /**
+     * Copies the flushed data to the given stream
+     */
+    public void copyTo(OutputStream out) throws IOException {
+        _out.flush();
+        try (InputStream is = new FileInputStream(_file)) {
+            long copied = IOUtils.copy(is, out);
+            if (copied != _size) {
+                throw new IOException("Expected " + _size + " bytes of flushed rows, but found " + copied);
+            }
+        }
+    }
+
+    /**
+     * Closes and deletes the temp file
+     */
+    public void dispose() throws IOException {
+        try {
+            _out.close();
+        } finally {
+            if (_file.exists() && !_file.delete()) {
+                throw new IOException("Could not delete temporary file " + _file);
+            }
+        }
+    }
+
+    @Override
+    public int serialize(int offset, byte[] data) {
+        try {
+            _out.flush();
+            try (InputStream is = new FileInputStream(_file)) {
+                if (IOUtils.readFully(is, data, offset, _size) != _size) {
+                    throw new IOException("Unexpected end of the flushed rows");
+                }
+            }
+        } catch (IOException e) {
+            throw new RecordFormatException("Can't read the flushed rows", e);
+        }
+        return _size;
+    }
+
+    @Override
+    public int getRecordSize() {
+        return _size;
+    }
+
+    /**
+     * @return 0 - the flushed rows don't have a record id of their own
+     */
+    @Override
+    public short getSid() {
+        return 0;
+    }
+
+    @Override
+    public String toString() {
+        return "[FLUSHED ROW BLOCKS]\n    .blocks = " + getBlockCount() + "\n    .size   = " + _size + "\n[/FLUSHED ROW BLOCKS]\n";
+    }
+}
@@ -17,6 +17,7 @@
 
 package org.apache.poi.hssf.record.aggregates;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -45,6 +46,11 @@ public final class RowRecordsAggregate extends RecordAggregate {
     // getStartRowNumberForBlock / getEndRowNumberForBlock, see Bugzilla 47405
     private RowRecord[] _rowRecordValues;
 
+    /** the rows flushed to a temp file, if any */
+    private FlushedRowBlocks _flushedBlocks;
+    private int _lastFlushedRow = -1;
+    private int _flushedRowCount;
+
     /** Creates a new instance of ValueRecordsAggregate */
     public RowRecordsAggregate() {
         this(SharedValueManager.createEmpty());
@@ -246,37 +252,15 @@ public final class RowRecordsAggregate extends RecordAggregate {
 
     @Override
     public void visitContainedRecords(RecordVisitor rv) {
-
+        if (_flushedBlocks != null) {
+            // the flushed rows precede the rows in memory
+            rv.visitRecord(_flushedBlocks);
+        }
         PositionTrackingVisitor stv = new PositionTrackingVisitor(rv, 0);
         //DBCells are serialized before row records.
         final int blockCount = getRowBlockCount();
         for (int blockIndex = 0; blockIndex < blockCount; blockIndex++) {
-            // Serialize a block of rows.
-            // Hold onto the position of the first row in the block
-            int pos=0;
-            // Hold onto the size of this block that was serialized
-            final int rowBlockSize = visitRowRecordsForBlock(blockIndex, rv);
-            pos += rowBlockSize;
-            // Serialize a block of cells for those rows
-            final int startRowNumber = getStartRowNumberForBlock(blockIndex);
-            final int endRowNumber = getEndRowNumberForBlock(blockIndex);
-            DBCellRecord.Builder dbcrBuilder = new DBCellRecord.Builder();
-            // Note: Cell references start from the second row...
-            int cellRefOffset = (rowBlockSize - RowRecord.ENCODED_SIZE);
-            for (int row = startRowNumber; row <= endRowNumber; row++) {
-                if (_valuesAgg.rowHasCells(row)) {
-                    stv.setPosition(0);
-                    _valuesAgg.visitCellsForRow(row, stv);
-                    int rowCellSize = stv.getPosition();
-                    pos += rowCellSize;
-                    // Add the offset to the first cell for the row into the
-                    // DBCellRecord.
-                    dbcrBuilder.addCellOffset(cellRefOffset);
-                    cellRefOffset = rowCellSize;
-                }
-            }
-            // Calculate Offset from the start of a DBCellRecord to the first Row
-            rv.visitRecord(dbcrBuilder.build(pos));
+            visitRowBlock(blockIndex, rv, stv);
         }
         for (Record _unknownRecord : _unknownRecords) {
             // Potentially breaking the file here since we don't know exactly where to write these records
@@ -284,6 +268,105 @@ public final class RowRecordsAggregate extends RecordAggregate {
         }
     }
 
+    private void visitRowBlock(int blockIndex, RecordVisitor rv, PositionTrackingVisitor stv) {
+        // Serialize a block of rows.
+        // Hold onto the position of the first row in the block
+        int pos=0;
+        // Hold onto the size of this block that was serialized
+        final int rowBlockSize = visitRowRecordsForBlock(blockIndex, rv);
+        pos += rowBlockSize;
+        // Serialize a block of cells for those rows
+        final int startRowNumber = getStartRowNumberForBlock(blockIndex);
+        final int endRowNumber = getEndRowNumberForBlock(blockIndex);
+        DBCellRecord.Builder dbcrBuilder = new DBCellRecord.Builder();
+        // Note: Cell references start from the second row...
+        int cellRefOffset = (rowBlockSize - RowRecord.ENCODED_SIZE);
+        for (int row = startRowNumber; row <= endRowNumber; row++) {
+            if (_valuesAgg.rowHasCells(row)) {
+                stv.setPosition(0);
+                _valuesAgg.visitCellsForRow(row, stv);
+                int rowCellSize = stv.getPosition();
+                pos += rowCellSize;
+                // Add the offset to the first cell for the row into the
+                // DBCellRecord.
+                dbcrBuilder.addCellOffset(cellRefOffset);
+                cellRefOffset = rowCellSize;
+            }
+        }
+        // Calculate Offset from the start of a DBCellRecord to the first Row
+        rv.visitRecord(dbcrBuilder.build(pos));
+    }
+
+    /**
+     * Serializes the first row blocks to a temp file and removes their rows and cells
+     * from memory. The flushed rows are written before the remaining rows, so rows
+     * added later on must have a greater row number than the flushed rows.
+     *
+     * @param blockCount the number of blocks of {@link DBCellRecord#BLOCK_SIZE} rows to flush
+     * @return the row number of the last flushed row or -1 if no rows were flushed
+     * @throws IOException if the temp file can't be written
+     *
+     * @since POI 4.1.1
+     */
+    public int flushRowBlocks(int blockCount) throws IOException {
+        int count = Math.min(blockCount, getRowBlockCount());
+        if (count <= 0) {
+            return -1;
+        }
+        if (_flushedBlocks == null) {
+            _flushedBlocks = new FlushedRowBlocks();
+        }
+        PositionTrackingVisitor stv = new PositionTrackingVisitor(_flushedBlocks, 0);
+        for (int blockIndex = 0; blockIndex < count; blockIndex++) {
+            visitRowBlock(blockIndex, _flushedBlocks, stv);
+        }
+        int lastFlushedRow = getEndRowNumberForBlock(count - 1);
+        _lastFlushedRow = lastFlushedRow;
+
+        Iterator<RowRecord> iter = _rowRecords.values().iterator();
+        while (iter.hasNext()) {
+            int rowIndex = iter.next().getRowNumber();
+            if (rowIndex > lastFlushedRow) {
+                break;
+            }
+            _valuesAgg.removeAllCellsValuesForRow(rowIndex);
+            iter.remove();
+            _flushedRowCount++;
+        }
+        // Clear the cached values
+        _rowRecordValues = null;
+        return lastFlushedRow;
+    }
+
+    /**
+     * @return the row number of the last flushed row or -1 if no rows were flushed
+     *
+     * @since POI 4.1.1
+     */
+    public int getLastFlushedRowNum() {
+        return _lastFlushedRow;
+    }
+
+    /**
+     * @return the number of rows, which were flushed to the temp file
+     *
+     * @since POI 4.1.1
+     */
+    public int getNumberOfFlushedRows() {
+        return _flushedRowCount;
+    }
+
+    /**
+     * Deletes the temp file of the flushed rows, if any
+     *
+     * @since POI 4.1.1
+     */
+    public void dispose() throws IOException {
+        if (_flushedBlocks != null) {
+            _flushedBlocks.dispose();
+        }
+    }
+
     public Iterator<RowRecord> getIterator() {
         return _rowRecords.values().iterator();
     }
@@ -454,11 +537,20 @@ public final class RowRecordsAggregate extends RecordAggregate {
         // 0 for now.....
 
         int blockCount = getRowBlockCount();
+        int flushedBlockCount = (_flushedBlocks == null) ? 0 : _flushedBlocks.getBlockCount();
         // Calculate the size of this IndexRecord
-        int indexRecSize = IndexRecord.getRecordSizeForBlockCount(blockCount);
+        int indexRecSize = IndexRecord.getRecordSizeForBlockCount(flushedBlockCount + blockCount);
 
         int currentOffset = indexRecordOffset + indexRecSize + sizeOfInitialSheetRecords;
 
+        if (_flushedBlocks != null) {
+            // the flushed blocks precede the blocks in memory
+            for (int block = 0; block < flushedBlockCount; block++) {
+                result.addDbcell(currentOffset + _flushedBlocks.getDbcellOffset(block));
+            }
+            currentOffset += _flushedBlocks.getRecordSize();
+        }
+
         for (int block = 0; block < blockCount; block++) {
             // each row-block has a DBCELL record.
             // The offset of each DBCELL record needs to be updated in the INDEX record
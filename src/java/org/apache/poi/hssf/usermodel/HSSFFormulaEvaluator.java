@@ -21,6 +21,7 @@ import java.util.Map;
 
 import org.apache.poi.ss.formula.BaseFormulaEvaluator;
 import org.apache.poi.ss.formula.CollaboratingWorkbooksEnvironment;
+import org.apache.poi.ss.formula.EvaluationCell;
 import org.apache.poi.ss.formula.IStabilityClassifier;
 import org.apache.poi.ss.formula.WorkbookEvaluator;
 import org.apache.poi.ss.formula.eval.BoolEval;
@@ -192,6 +193,11 @@ public class HSSFFormulaEvaluator extends BaseFormulaEvaluator {
         evaluateAllFormulaCells(_book, this);
     }
 
+    @Override
+    protected Cell toCell(EvaluationCell evalCell) {
+        return ((HSSFEvaluationCell)evalCell).getHSSFCell();
+    }
+
     /**
      * Returns a CellValue wrapper around the supplied ValueEval instance.
      * @param cell The cell with the formula
@@ -88,8 +88,8 @@ public final class HSSFRichTextString implements Comparable<HSSFRichTextString>,
 
     HSSFRichTextString(InternalWorkbook book, LabelSSTRecord record) {
       setWorkbookReferences(book, record);
-
-      _string = book.getSSTString(record.getSSTIndex());
+      // the string is looked up on first access, so the shared strings of cells,
+      // which are never read, don't need to be decoded
     }
 
     /** This must be called to setup the internal work book references whenever
@@ -106,8 +106,8 @@ public final class HSSFRichTextString implements Comparable<HSSFRichTextString>,
      */
     private UnicodeString cloneStringIfRequired() {
       if (_book == null)
-        return _string;
-        return (UnicodeString)_string.clone();
+        return getRawUnicodeString();
+        return (UnicodeString)getRawUnicodeString().clone();
     }
 
     private void addToSSTIfRequired() {
@@ -145,7 +145,7 @@ public final class HSSFRichTextString implements Comparable<HSSFRichTextString>,
 
         //Need to clear the current formatting between the startIndex and endIndex
         _string = cloneStringIfRequired();
-        Iterator<FormatRun> formatting = _string.formatIterator();
+        Iterator<FormatRun> formatting = getRawUnicodeString().formatIterator();
         if (formatting != null) {
           while (formatting.hasNext()) {
             UnicodeString.FormatRun r = formatting.next();
@@ -178,7 +178,7 @@ public final class HSSFRichTextString implements Comparable<HSSFRichTextString>,
      * @param font          The font to use.
      */
     public void applyFont(Font font) {
-        applyFont(0, _string.getCharCount(), font);
+        applyFont(0, getRawUnicodeString().getCharCount(), font);
     }
 
     /**
@@ -194,7 +194,7 @@ public final class HSSFRichTextString implements Comparable<HSSFRichTextString>,
      * Returns the plain string representation.
      */
     public String getString() {
-        return _string.getString();
+        return getRawUnicodeString().getString();
     }
 
     /**
@@ -214,7 +214,10 @@ public final class HSSFRichTextString implements Comparable<HSSFRichTextString>,
      *  other RichTextStrings too!
      */
     UnicodeString getRawUnicodeString() {
-    	return _string;
+        if (_string == null) {
+            _string = _book.getSSTString(_record.getSSTIndex());
+        }
+        return _string;
     }
 
     /** Used internally by the HSSFCell to set the internal string value*/
@@ -227,7 +230,7 @@ public final class HSSFRichTextString implements Comparable<HSSFRichTextString>,
      * @return  the number of characters in the text.
      */
     public int length() {
-        return _string.getCharCount();
+        return getRawUnicodeString().getCharCount();
     }
 
     /**
@@ -239,10 +242,10 @@ public final class HSSFRichTextString implements Comparable<HSSFRichTextString>,
      *                      index is out of range.
      */
     public short getFontAtIndex( int index ) {
-      int size = _string.getFormatRunCount();
+      int size = getRawUnicodeString().getFormatRunCount();
       UnicodeString.FormatRun currentRun = null;
       for (int i=0;i<size;i++) {
-        UnicodeString.FormatRun r = _string.getFormatRun(i);
+        UnicodeString.FormatRun r = getRawUnicodeString().getFormatRun(i);
         if (r.getCharacterPos() > index) {
             break;
         }
@@ -261,7 +264,7 @@ public final class HSSFRichTextString implements Comparable<HSSFRichTextString>,
      * @see #NO_FONT
      */
     public int numFormattingRuns() {
-        return _string.getFormatRunCount();
+        return getRawUnicodeString().getFormatRunCount();
     }
 
     /**
@@ -270,7 +273,7 @@ public final class HSSFRichTextString implements Comparable<HSSFRichTextString>,
      * @return  the index within the string.
      */
     public int getIndexOfFormattingRun(int index) {
-        UnicodeString.FormatRun r = _string.getFormatRun(index);
+        UnicodeString.FormatRun r = getRawUnicodeString().getFormatRun(index);
         return r.getCharacterPos();
     }
 
@@ -281,7 +284,7 @@ public final class HSSFRichTextString implements Comparable<HSSFRichTextString>,
      * @return  the font number used.
      */
     public short getFontOfFormattingRun(int index) {
-      UnicodeString.FormatRun r = _string.getFormatRun(index);
+      UnicodeString.FormatRun r = getRawUnicodeString().getFormatRun(index);
       return r.getFontIndex();
     }
 
@@ -289,13 +292,13 @@ public final class HSSFRichTextString implements Comparable<HSSFRichTextString>,
      * Compares one rich text string to another.
      */
     public int compareTo(HSSFRichTextString r) {
-       return _string.compareTo(r._string);
+       return getRawUnicodeString().compareTo(r.getRawUnicodeString());
     }
 
     @Override
     public boolean equals(Object o) {
       if (o instanceof HSSFRichTextString) {
-        return _string.equals(((HSSFRichTextString)o)._string);
+        return getRawUnicodeString().equals(((HSSFRichTextString)o).getRawUnicodeString());
       }
       return false;
 
@@ -312,7 +315,7 @@ public final class HSSFRichTextString implements Comparable<HSSFRichTextString>,
      * @return  the plain text representation of this string.
      */
     public String toString() {
-        return _string.toString();
+        return getRawUnicodeString().toString();
     }
 
     /**
@@ -321,6 +324,6 @@ public final class HSSFRichTextString implements Comparable<HSSFRichTextString>,
      * @param fontIndex  the font to apply.
      */
     public void applyFont( short fontIndex ) {
-        applyFont(0, _string.getCharCount(), fontIndex);
+        applyFont(0, getRawUnicodeString().getCharCount(), fontIndex);
     }
 }
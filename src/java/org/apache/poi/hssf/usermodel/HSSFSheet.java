@@ -17,6 +17,7 @@
 
 package org.apache.poi.hssf.usermodel;
 
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -33,6 +34,7 @@ import org.apache.poi.hssf.model.InternalSheet;
 import org.apache.poi.hssf.model.InternalWorkbook;
 import org.apache.poi.hssf.record.AutoFilterInfoRecord;
 import org.apache.poi.hssf.record.CellValueRecordInterface;
+import org.apache.poi.hssf.record.DBCellRecord;
 import org.apache.poi.hssf.record.DVRecord;
 import org.apache.poi.hssf.record.DimensionsRecord;
 import org.apache.poi.hssf.record.DrawingRecord;
@@ -260,15 +262,53 @@ public final class HSSFSheet implements org.apache.poi.ss.usermodel.Sheet {
      */
     @Override
     public HSSFRow createRow(int rownum) {
+        int lastFlushedRow = _sheet.getRowsAggregate().getLastFlushedRowNum();
+        if (lastFlushedRow >= 0 && rownum <= lastFlushedRow) {
+            throw new IllegalArgumentException(
+                    "Attempting to write a row["+rownum+"] " +
+                            "in the range [0," + lastFlushedRow + "] that is already written to disk.");
+        }
         HSSFRow row = new HSSFRow(_workbook, this, rownum);
         // new rows inherit default height from the sheet
         row.setHeight(getDefaultRowHeight());
         row.getRowRecord().setBadFontHeight(false);
 
         addRow(row, true);
+
+        int windowSize = _workbook.getRowAccessWindowSize();
+        if (windowSize >= 0 && _rows.size() > windowSize + DBCellRecord.BLOCK_SIZE) {
+            try {
+                flushRows(windowSize);
+            } catch (IOException ioe) {
+                throw new RuntimeException(ioe);
+            }
+        }
         return row;
     }
 
+    /**
+     * Writes the rows of this sheet to a temp file, except for the last {@code remaining} rows,
+     * and removes them from memory. The flushed rows can't be accessed any more and new rows
+     * must be created below them.<p>
+     *
+     * The rows are flushed in blocks of 32 rows, which are stored along with an index in
+     * the file. So the number of flushed rows is rounded down to whole blocks and a few more rows
+     * than {@code remaining} may stay in memory.
+     *
+     * @param remaining the number of the last rows, which are kept in memory
+     * @throws IOException if the temp file can't be written
+     * @see HSSFWorkbook#setRowAccessWindowSize(int)
+     * @since POI 4.1.1
+     */
+    public void flushRows(int remaining) throws IOException {
+        int blockCount = (_rows.size() - remaining) / DBCellRecord.BLOCK_SIZE;
+        if (blockCount <= 0) {
+            return;
+        }
+        int lastFlushedRow = _sheet.getRowsAggregate().flushRowBlocks(blockCount);
+        _rows.headMap(lastFlushedRow, true).clear();
+    }
+
     /**
      * Used internally to create a high level Row object from a low level row object.
      * USed when reading an existing file
@@ -368,7 +408,7 @@ public final class HSSFSheet implements org.apache.poi.ss.usermodel.Sheet {
         if (addLow) {
             _sheet.addRow(row.getRowRecord());
         }
-        boolean firstRow = _rows.size() == 1;
+        boolean firstRow = _rows.size() == 1 && _sheet.getRowsAggregate().getLastFlushedRowNum() < 0;
         if (row.getRowNum() > getLastRowNum() || firstRow) {
             _lastrow = row.getRowNum();
         }
@@ -390,11 +430,12 @@ public final class HSSFSheet implements org.apache.poi.ss.usermodel.Sheet {
     }
 
     /**
-     * Returns the number of physically defined rows (NOT the number of rows in the sheet)
+     * Returns the number of physically defined rows (NOT the number of rows in the sheet).
+     * This includes the rows, which were flushed to disk, see {@link #flushRows(int)}.
      */
     @Override
     public int getPhysicalNumberOfRows() {
-        return _rows.size();
+        return _rows.size() + _sheet.getRowsAggregate().getNumberOfFlushedRows();
     }
 
     /**
@@ -23,6 +23,7 @@ import static org.apache.poi.hssf.model.InternalWorkbook.WORKBOOK_DIR_ENTRY_NAME
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
@@ -79,6 +80,7 @@ import org.apache.poi.hssf.record.Record;
 import org.apache.poi.hssf.record.RecordFactory;
 import org.apache.poi.hssf.record.SSTRecord;
 import org.apache.poi.hssf.record.UnknownRecord;
+import org.apache.poi.hssf.record.aggregates.FlushedRowBlocks;
 import org.apache.poi.hssf.record.aggregates.RecordAggregate.RecordVisitor;
 import org.apache.poi.hssf.record.common.UnicodeString;
 import org.apache.poi.hssf.record.crypto.Biff8DecryptingStream;
@@ -92,6 +94,7 @@ import org.apache.poi.poifs.crypt.Encryptor;
 import org.apache.poi.poifs.filesystem.DirectoryEntry;
 import org.apache.poi.poifs.filesystem.DirectoryNode;
 import org.apache.poi.poifs.filesystem.DocumentNode;
+import org.apache.poi.poifs.filesystem.DocumentOutputStream;
 import org.apache.poi.poifs.filesystem.EntryUtils;
 import org.apache.poi.poifs.filesystem.FilteringDirectoryNode;
 import org.apache.poi.poifs.filesystem.POIFSDocument;
@@ -104,11 +107,13 @@ import org.apache.poi.ss.formula.SheetNameFormatter;
 import org.apache.poi.ss.formula.udf.AggregatingUDFFinder;
 import org.apache.poi.ss.formula.udf.IndexedUDFFinder;
 import org.apache.poi.ss.formula.udf.UDFFinder;
+import org.apache.poi.ss.usermodel.CellStyleCacheSupport;
 import org.apache.poi.ss.usermodel.Name;
 import org.apache.poi.ss.usermodel.Row.MissingCellPolicy;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.SheetVisibility;
 import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.util.CellStyleCache;
 import org.apache.poi.ss.util.CellReference;
 import org.apache.poi.util.Configurator;
 import org.apache.poi.util.HexDump;
@@ -119,6 +124,7 @@ import org.apache.poi.util.LittleEndianByteArrayInputStream;
 import org.apache.poi.util.LittleEndianByteArrayOutputStream;
 import org.apache.poi.util.POILogFactory;
 import org.apache.poi.util.POILogger;
+import org.apache.poi.util.TempFile;
 
 /**
  * High level representation of a workbook.  This is the first object most users
@@ -129,7 +135,7 @@ import org.apache.poi.util.POILogger;
  * @see org.apache.poi.hssf.usermodel.HSSFSheet
  */
 @SuppressWarnings("WeakerAccess")
-public final class HSSFWorkbook extends POIDocument implements org.apache.poi.ss.usermodel.Workbook {
+public final class HSSFWorkbook extends POIDocument implements org.apache.poi.ss.usermodel.Workbook, CellStyleCacheSupport {
 
     //arbitrarily selected; may need to increase
     private static final int MAX_RECORD_LENGTH = 100_000;
@@ -201,6 +207,12 @@ public final class HSSFWorkbook extends POIDocument implements org.apache.poi.ss
      */
     private MissingCellPolicy missingCellPolicy = MissingCellPolicy.RETURN_NULL_AND_BLANK;
 
+    /**
+     * The number of rows per sheet, which are kept in memory - -1 keeps all rows.
+     * See {@link #setRowAccessWindowSize(int)}
+     */
+    private int rowAccessWindowSize = -1;
+
     private static final POILogger log = POILogFactory.getLogger(HSSFWorkbook.class);
 
     /**
@@ -209,6 +221,8 @@ public final class HSSFWorkbook extends POIDocument implements org.apache.poi.ss
      */
     private UDFFinder _udfFinder = new IndexedUDFFinder(AggregatingUDFFinder.DEFAULT);
 
+    private final CellStyleCache cellStyleCache = new CellStyleCache();
+
     public static HSSFWorkbook create(InternalWorkbook book) {
     	return new HSSFWorkbook(book);
     }
@@ -321,6 +335,29 @@ public final class HSSFWorkbook extends POIDocument implements org.apache.poi.ss
      */
     public HSSFWorkbook(DirectoryNode directory, boolean preserveNodes)
             throws IOException
+    {
+        this(directory, preserveNodes, 0);
+    }
+
+    /**
+     * given a POI POIFSFileSystem object, and a specific directory
+     *  within it, read in its Workbook and populate the high and
+     *  low level models, optionally decoding the shared strings on demand.
+     *
+     * @param directory the POI filesystem directory to process from
+     * @param preserveNodes whether to preserve other nodes, such as
+     *        macros.  This takes more memory, so only say yes if you
+     *        need to. If set, will store all of the POIFSFileSystem
+     *        in memory
+     * @param lazySSTCacheSize the maximum number of decoded shared strings kept in memory,
+     *        to decode the shared strings when they're first requested, e.g.
+     *        {@link SSTRecord#DEFAULT_LAZY_CACHE_SIZE}, or 0 to decode all of them right away
+     * @see org.apache.poi.poifs.filesystem.POIFSFileSystem
+     * @exception IOException if the stream cannot be read
+     * @since POI 4.1.1
+     */
+    public HSSFWorkbook(DirectoryNode directory, boolean preserveNodes, int lazySSTCacheSize)
+            throws IOException
     {
         super(directory);
         String workbookName = getWorkbookDirEntryName(directory);
@@ -340,7 +377,7 @@ public final class HSSFWorkbook extends POIDocument implements org.apache.poi.ss
         //  it happens to be spelled.
         InputStream stream = directory.createDocumentInputStream(workbookName);
 
-        List<Record> records = RecordFactory.createRecords(stream);
+        List<Record> records = RecordFactory.createRecords(stream, lazySSTCacheSize);
 
         workbook = InternalWorkbook.createWorkbook(records);
         setPropertiesFromWorkbook(workbook);
@@ -458,6 +495,37 @@ public final class HSSFWorkbook extends POIDocument implements org.apache.poi.ss
         }
      }
 
+    /**
+     * Sets the number of rows per sheet, which are kept in memory while creating rows.
+     * When a sheet exceeds this window, its oldest rows are written to a temp file
+     * and can't be accessed any more - similar to the row access window of
+     * {@code SXSSFWorkbook}. This allows writing large workbooks with a small
+     * memory footprint, as long as the rows are created in ascending order.<p>
+     *
+     * The temp files are deleted when the workbook is closed. Sheets with flushed rows
+     * can't be cloned and encrypted workbooks are still serialized in memory.
+     *
+     * @param rowAccessWindowSize the number of rows per sheet, which are kept in memory,
+     *  or -1 to keep all rows (the default)
+     * @see HSSFSheet#flushRows(int)
+     * @since POI 4.1.1
+     */
+    public void setRowAccessWindowSize(int rowAccessWindowSize) {
+        if (rowAccessWindowSize < -1) {
+            throw new IllegalArgumentException("rowAccessWindowSize must be -1 or greater, but was " + rowAccessWindowSize);
+        }
+        this.rowAccessWindowSize = rowAccessWindowSize;
+    }
+
+    /**
+     * @return the number of rows per sheet, which are kept in memory, or -1 if all rows are kept
+     * @see #setRowAccessWindowSize(int)
+     * @since POI 4.1.1
+     */
+    public int getRowAccessWindowSize() {
+        return rowAccessWindowSize;
+    }
+
     /**
      * Retrieves the current policy on what to do when
      *  getting missing or blank cells from a row.
@@ -1044,11 +1112,19 @@ public final class HSSFWorkbook extends POIDocument implements org.apache.poi.ss
     @Override
     public void removeSheetAt(int index) {
         validateSheetIndex(index);
-        boolean wasSelected = getSheetAt(index).isSelected();
+        HSSFSheet sheet = getSheetAt(index);
+        boolean wasSelected = sheet.isSelected();
 
         _sheets.remove(index);
         workbook.removeSheet(index);
 
+        // delete the temp file of the flushed rows
+        try {
+            sheet.getSheet().getRowsAggregate().dispose();
+        } catch (IOException e) {
+            log.log(POILogger.WARN, e);
+        }
+
         // set the remaining active/selected sheet
         int nSheets = _sheets.size();
         if (nSheets < 1) {
@@ -1267,6 +1343,15 @@ public final class HSSFWorkbook extends POIDocument implements org.apache.poi.ss
         return new HSSFCellStyle(index, xfr, this);
     }
 
+    /**
+     * @return the cell style lookups of {@link org.apache.poi.ss.util.CellUtil}
+     */
+    @Internal
+    @Override
+    public CellStyleCache getCellStyleCache() {
+        return cellStyleCache;
+    }
+
     /**
      * get the number of styles the workbook contains
      * @return count of cell styles
@@ -1299,7 +1384,28 @@ public final class HSSFWorkbook extends POIDocument implements org.apache.poi.ss
      */
     @Override
     public void close() throws IOException {
-        super.close();
+        IOException failure = null;
+        try {
+            super.close();
+        } catch (IOException e) {
+            failure = e;
+        } finally {
+            // delete the temp files of the flushed rows - of all sheets, even if one fails
+            for (HSSFSheet sheet : _sheets) {
+                try {
+                    sheet.getSheet().getRowsAggregate().dispose();
+                } catch (IOException e) {
+                    if (failure == null) {
+                        failure = e;
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
     }
 
     /**
@@ -1370,10 +1476,38 @@ public final class HSSFWorkbook extends POIDocument implements org.apache.poi.ss
      */
     @Override
 	public void write(OutputStream stream) throws IOException {
-        try (POIFSFileSystem fs = new POIFSFileSystem()) {
-            write(fs);
-            fs.writeFilesystem(stream);
+        if (!hasFlushedRows()) {
+            try (POIFSFileSystem fs = new POIFSFileSystem()) {
+                write(fs);
+                fs.writeFilesystem(stream);
+            }
+            return;
         }
+
+        // the flushed rows might not fit into memory, so the file system is built in a temp file
+        File tmpFile = TempFile.createTempFile("poi-hssf-", ".xls");
+        try {
+            try (POIFSFileSystem fs = POIFSFileSystem.create(tmpFile)) {
+                write(fs);
+                fs.writeFilesystem();
+            }
+            try (InputStream is = new FileInputStream(tmpFile)) {
+                IOUtils.copy(is, stream);
+            }
+        } finally {
+            if (tmpFile.exists() && !tmpFile.delete()) {
+                log.log(POILogger.WARN, "Could not delete temporary file " + tmpFile);
+            }
+        }
+    }
+
+    private boolean hasFlushedRows() {
+        for (HSSFSheet sheet : _sheets) {
+            if (sheet.getSheet().getRowsAggregate().getLastFlushedRowNum() >= 0) {
+                return true;
+            }
+        }
+        return false;
     }
     
     /** Writes the workbook out to a brand new, empty POIFS */
@@ -1383,7 +1517,32 @@ public final class HSSFWorkbook extends POIDocument implements org.apache.poi.ss
         List<String> excepts = new ArrayList<>(1);
 
         // Write out the Workbook stream
-        fs.createDocument(new ByteArrayInputStream(getBytes()), "Workbook");
+        SheetRecordCollector[] srCollectors = new SheetRecordCollector[getNumberOfSheets()];
+        int totalsize = collectSheetRecords(srCollectors);
+        if (getEncryptionInfo() != null) {
+            // the records are encrypted as a whole
+            byte[] bytes = serializeSheetRecords(srCollectors, totalsize);
+            encryptBytes(bytes);
+            fs.createDocument(new ByteArrayInputStream(bytes), "Workbook");
+        } else {
+            // the records are streamed, so the flushed rows are copied without loading them
+            try (DocumentOutputStream os = new DocumentOutputStream(fs.getRoot(), "Workbook")) {
+                int globalsSize = totalsize;
+                for (SheetRecordCollector src : srCollectors) {
+                    globalsSize -= src.getTotalSize();
+                }
+                byte[] globals = new byte[globalsSize];
+                workbook.serialize(0, globals);
+                os.write(globals);
+                for (SheetRecordCollector src : srCollectors) {
+                    src.serialize(os);
+                }
+                if (os.size() != totalsize) {
+                    throw new IllegalStateException("Actual serialized workbook size (" + os.size()
+                            + ") differs from pre-calculated size (" + totalsize + ")");
+                }
+            }
+        }
 
         // Write out our HPFS properties, if we have them
         writeProperties(fs, excepts);
@@ -1442,6 +1601,15 @@ public final class HSSFWorkbook extends POIDocument implements org.apache.poi.ss
             }
             return result;
         }
+        public void serialize(OutputStream os) throws IOException {
+            for (Record rec : _list) {
+                if (rec instanceof FlushedRowBlocks) {
+                    ((FlushedRowBlocks)rec).copyTo(os);
+                } else {
+                    os.write(rec.serialize());
+                }
+            }
+        }
     }
 
 
@@ -1458,6 +1626,21 @@ public final class HSSFWorkbook extends POIDocument implements org.apache.poi.ss
             log.log(DEBUG, "HSSFWorkbook.getBytes()");
         }
         
+        SheetRecordCollector[] srCollectors = new SheetRecordCollector[getNumberOfSheets()];
+        int totalsize = collectSheetRecords(srCollectors);
+        byte[] retval = serializeSheetRecords(srCollectors, totalsize);
+
+        encryptBytes(retval);
+        
+        return retval;
+    }
+
+    /**
+     * Prepares the sheets for serialization and collects their records
+     *
+     * @return the total size of the workbook stream
+     */
+    private int collectSheetRecords(SheetRecordCollector[] srCollectors) {
         HSSFSheet[] sheets = getSheets();
         int nSheets = sheets.length;
 
@@ -1474,7 +1657,6 @@ public final class HSSFWorkbook extends POIDocument implements org.apache.poi.ss
         int totalsize = workbook.getSize();
 
         // pre-calculate all the sheet sizes and set BOF indexes
-        SheetRecordCollector[] srCollectors = new SheetRecordCollector[nSheets];
         for (int k = 0; k < nSheets; k++) {
             workbook.setSheetBof(k, totalsize);
             SheetRecordCollector src = new SheetRecordCollector();
@@ -1482,11 +1664,14 @@ public final class HSSFWorkbook extends POIDocument implements org.apache.poi.ss
             totalsize += src.getTotalSize();
             srCollectors[k] = src;
         }
+        return totalsize;
+    }
 
+    private byte[] serializeSheetRecords(SheetRecordCollector[] srCollectors, int totalsize) {
         byte[] retval = new byte[totalsize];
         int pos = workbook.serialize(0, retval);
 
-        for (int k = 0; k < nSheets; k++) {
+        for (int k = 0; k < srCollectors.length; k++) {
             SheetRecordCollector src = srCollectors[k];
             int serializedSize = src.serialize(pos, retval);
             if (serializedSize != src.getTotalSize()) {
@@ -1500,9 +1685,6 @@ public final class HSSFWorkbook extends POIDocument implements org.apache.poi.ss
             }
             pos += serializedSize;
         }
-
-        encryptBytes(retval);
-        
         return retval;
     }
 
@@ -167,7 +167,26 @@ public class POIFSFileSystem extends BlockStore
      */
     public POIFSFileSystem(File file, boolean readOnly)
             throws IOException {
-        this(null, file, readOnly, true);
+        this(null, file, readOnly, true, false);
+    }
+
+    /**
+     * <p>Creates a POIFSFileSystem from a <tt>File</tt>, which is optionally mapped into memory.</p>
+     *
+     * <p>The blocks of a mapped file are read without copying, but they must not be accessed
+     * after the file system has been closed. As the blocks are read-only, the file system of
+     * a mapped file can't be modified in memory, e.g. for writing it to another stream.</p>
+     *
+     * @param file     the File from which to read or read/write the data
+     * @param readOnly whether the POIFileSystem will only be used in read-only mode
+     * @param mapped   whether a read-only file is mapped into memory - ignored for read/write files
+     * @throws IOException on errors reading, or on invalid data
+     *
+     * @since POI 4.1.1
+     */
+    public POIFSFileSystem(File file, boolean readOnly, boolean mapped)
+            throws IOException {
+        this(null, file, readOnly, true, mapped);
     }
 
     /**
@@ -201,10 +220,10 @@ public class POIFSFileSystem extends BlockStore
      */
     public POIFSFileSystem(FileChannel channel, boolean readOnly)
             throws IOException {
-        this(channel, null, readOnly, false);
+        this(channel, null, readOnly, false, false);
     }
 
-    private POIFSFileSystem(FileChannel channel, File srcFile, boolean readOnly, boolean closeChannelOnError)
+    private POIFSFileSystem(FileChannel channel, File srcFile, boolean readOnly, boolean closeChannelOnError, boolean mapped)
             throws IOException {
         this(false);
 
@@ -214,7 +233,7 @@ public class POIFSFileSystem extends BlockStore
                 if (srcFile.length() == 0)
                     throw new EmptyFileException();
 
-                FileBackedDataSource d = new FileBackedDataSource(srcFile, readOnly);
+                FileBackedDataSource d = new FileBackedDataSource(srcFile, readOnly, mapped);
                 channel = d.getChannel();
                 _data = d;
             } else {
@@ -21,7 +21,7 @@ package org.apache.poi.poifs.filesystem;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.Iterator;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.poi.poifs.common.POIFSConstants;
@@ -38,6 +38,8 @@ public class POIFSMiniStore extends BlockStore
 {
     private POIFSFileSystem _filesystem;
     private POIFSStream _mini_stream;
+    /** the big blocks of the mini stream - cached, so the chain isn't followed for each small block */
+    private List<Integer> _mini_stream_blocks;
     private List<BATBlock>   _sbat_blocks;
     private HeaderBlock      _header;
     private RootProperty     _root;
@@ -63,14 +65,16 @@ public class POIFSMiniStore extends BlockStore
        int bigBlockOffset = byteOffset % _filesystem.getBigBlockSize();
        
        // Now locate the data block for it
-       Iterator<ByteBuffer> it = _mini_stream.getBlockIterator();
-       for(int i=0; i<bigBlockNumber; i++) {
-          it.next();
-       }
-       ByteBuffer dataBlock = it.next();
-       if(dataBlock == null) {
+       List<Integer> miniStreamBlocks = getMiniStreamBlocks();
+       if(bigBlockNumber >= miniStreamBlocks.size()) {
           throw new IndexOutOfBoundsException("Big block " + bigBlockNumber + " outside stream");
        }
+       ByteBuffer dataBlock;
+       try {
+          dataBlock = _filesystem.getBlockAt(miniStreamBlocks.get(bigBlockNumber));
+       } catch (IOException e) {
+          throw new RuntimeException(e);
+       }
 
        // Position ourselves, and take a slice 
        dataBlock.position(
@@ -81,6 +85,33 @@ public class POIFSMiniStore extends BlockStore
        return miniBuffer;
     }
     
+    /**
+     * Returns the big blocks of the mini stream, following the chain on first access
+     */
+    private List<Integer> getMiniStreamBlocks() {
+       if (_mini_stream_blocks == null) {
+          int block = _mini_stream.getStartBlock();
+          if (block == POIFSConstants.END_OF_CHAIN) {
+             throw new IllegalStateException(
+                   "Can't read from a new stream before it has been written to"
+             );
+          }
+          List<Integer> blocks = new ArrayList<>();
+          try {
+             ChainLoopDetector loopDetector = _filesystem.getChainLoopDetector();
+             while (block != POIFSConstants.END_OF_CHAIN) {
+                loopDetector.claim(block);
+                blocks.add(block);
+                block = _filesystem.getNextBlock(block);
+             }
+          } catch (IOException e) {
+             throw new RuntimeException(e);
+          }
+          _mini_stream_blocks = blocks;
+       }
+       return _mini_stream_blocks;
+    }
+
     /**
      * Load the block, extending the underlying stream if needed
      */
@@ -126,6 +157,7 @@ public class POIFSMiniStore extends BlockStore
        
        // This is now the new end
        _filesystem.setNextBlock(newBigBlock, POIFSConstants.END_OF_CHAIN);
+       _mini_stream_blocks = null;
 
        // Now try again, to get the real small block
        return createBlockIfNeeded(offset);
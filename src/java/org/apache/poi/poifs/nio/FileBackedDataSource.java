@@ -34,13 +34,25 @@ import java.util.ArrayList;
 import java.util.List;
 
 /**
- * A POIFS {@link DataSource} backed by a File
+ * A POIFS {@link DataSource} backed by a File.<p>
+ *
+ * Read-only files are either read into heap buffers or mapped into memory. When mapped, the file is mapped
+ * once in chunks of 1 GB and the blocks are returned as read-only slices of the mapping, i.e. without copying.
+ * The mapping is released on {@link #close()}, so the returned buffers must not be used afterwards.
  */
 public class FileBackedDataSource extends DataSource {
    private final static POILogger logger = POILogFactory.getLogger( FileBackedDataSource.class );
-   
+
+   /** the size of the mapped chunks - a multiple of the block sizes, so aligned blocks don't span chunks */
+   private static final int MAPPED_CHUNK_SIZE = 1 << 30;
+
    private FileChannel channel;
    private boolean writable;
+   private final boolean mapped;
+   // the size of a read-only file, which is looked up on first access
+   private long readOnlySize = -1;
+   // the mapped chunks of a read-only file, which are mapped on first access
+   private ByteBuffer[] mappedChunks;
    // remember file base, which needs to be closed too
    private RandomAccessFile srcFile;
    
@@ -60,14 +72,50 @@ public class FileBackedDataSource extends DataSource {
        this(newSrcFile(file, readOnly ? "r" : "rw"), readOnly);
    }
 
+   /**
+    * @param file the file
+    * @param readOnly whether the file is opened read-only
+    * @param mapped whether a read-only file is mapped into memory instead of reading the blocks into heap buffers
+    *
+    * @since POI 4.1.1
+    */
+   public FileBackedDataSource(File file, boolean readOnly, boolean mapped) throws FileNotFoundException {
+       this(newSrcFile(file, readOnly ? "r" : "rw"), readOnly, mapped);
+   }
+
    public FileBackedDataSource(RandomAccessFile srcFile, boolean readOnly) {
-       this(srcFile.getChannel(), readOnly);
+       this(srcFile, readOnly, false);
+   }
+
+   private FileBackedDataSource(RandomAccessFile srcFile, boolean readOnly, boolean mapped) {
+       this(srcFile.getChannel(), readOnly, mapped);
        this.srcFile = srcFile;
-   }   
-   
+   }
+
    public FileBackedDataSource(FileChannel channel, boolean readOnly) {
+      this(channel, readOnly, false);
+   }
+
+   /**
+    * @param channel the channel of the file
+    * @param readOnly whether the file is opened read-only
+    * @param mapped whether a read-only file is mapped into memory instead of reading the blocks into heap buffers
+    *
+    * @since POI 4.1.1
+    */
+   public FileBackedDataSource(FileChannel channel, boolean readOnly, boolean mapped) {
       this.channel = channel;
       this.writable = !readOnly;
+      this.mapped = readOnly && mapped;
+   }
+
+   /**
+    * @return whether the read-only file is mapped into memory
+    *
+    * @since POI 4.1.1
+    */
+   public boolean isMapped() {
+      return mapped;
    }
    
    public boolean isWriteable() {
@@ -89,6 +137,14 @@ public class FileBackedDataSource extends DataSource {
       // Or should we have 3 modes instead of the current boolean - 
       //  read-write, read-only, read-to-write-elsewhere? 
       
+      // Is the read-only file mapped into memory?
+      if (mapped) {
+          ByteBuffer slice = readMapped(length, position);
+          if (slice != null) {
+              return slice;
+          }
+      }
+
       // Do we read or map (for read/write)?
       ByteBuffer dst;
       if (writable) {
@@ -115,6 +171,37 @@ public class FileBackedDataSource extends DataSource {
       return dst;
    }
 
+   /**
+    * @return a slice of the mapped file or {@code null}, if the block isn't contained in a single chunk
+    */
+   private ByteBuffer readMapped(int length, long position) throws IOException {
+      long size = size();
+      int chunkIndex = (int)(position / MAPPED_CHUNK_SIZE);
+      int offset = (int)(position % MAPPED_CHUNK_SIZE);
+      if (position + length > size || offset + (long)length > MAPPED_CHUNK_SIZE) {
+         // short reads at the end of the file and reads spanning chunks are copied
+         return null;
+      }
+
+      if (mappedChunks == null) {
+         mappedChunks = new ByteBuffer[(int)((size + MAPPED_CHUNK_SIZE - 1) / MAPPED_CHUNK_SIZE)];
+      }
+      ByteBuffer chunk = mappedChunks[chunkIndex];
+      if (chunk == null) {
+         long chunkStart = (long)chunkIndex * MAPPED_CHUNK_SIZE;
+         chunk = channel.map(FileChannel.MapMode.READ_ONLY, chunkStart, Math.min(MAPPED_CHUNK_SIZE, size - chunkStart));
+         mappedChunks[chunkIndex] = chunk;
+
+         // remember this buffer for cleanup
+         buffersToClean.add(chunk);
+      }
+
+      ByteBuffer dst = chunk.duplicate();
+      dst.position(offset);
+      dst.limit(offset + length);
+      return dst.slice();
+   }
+
    @Override
    public void write(ByteBuffer src, long position) throws IOException {
       channel.write(src, position);
@@ -131,7 +218,14 @@ public class FileBackedDataSource extends DataSource {
 
    @Override
    public long size() throws IOException {
-      return channel.size();
+      if (writable) {
+         return channel.size();
+      }
+      // read-only files don't change, so the size is only queried once
+      if (readOnlySize == -1) {
+         readOnlySize = channel.size();
+      }
+      return readOnlySize;
    }
 
    @Override
@@ -142,6 +236,7 @@ public class FileBackedDataSource extends DataSource {
            unmap(buffer);
        }
        buffersToClean.clear();
+       mappedChunks = null;
 
        if (srcFile != null) {
           // see http://bugs.java.com/bugdatabase/view_bug.do?bug_id=4796385
@@ -17,7 +17,12 @@
 
 package org.apache.poi.ss.formula;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellType;
@@ -158,6 +163,18 @@ public abstract class BaseFormulaEvaluator implements FormulaEvaluator, Workbook
 
     protected abstract CellValue evaluateFormulaCellValue(Cell cell);
 
+    /**
+     * Turns an evaluation cell back into the cell of the workbook.
+     * This implementation returns null, so {@link #evaluateDirtyFormulaCells()}
+     * falls back to {@link #evaluateAll()}.
+     *
+     * @return the cell or null, if the evaluation cell can't be mapped
+     * @since POI 4.1.1
+     */
+    protected Cell toCell(EvaluationCell evalCell) {
+        return null;
+    }
+
     /**
      * If cell contains formula, it evaluates the formula,
      *  and saves the result of the formula. The cell
@@ -306,6 +323,141 @@ public abstract class BaseFormulaEvaluator implements FormulaEvaluator, Workbook
         }
     }
 
+    /**
+     * Re-evaluates the formula cells, whose results are affected by the cells changed since
+     * the last call, and saves the results. The cells are evaluated in dependency order,
+     * i.e. each formula is evaluated after the formulas it refers to.<p>
+     *
+     * The dependencies between the cells are recorded when the formulas are evaluated, e.g. by
+     * {@link #evaluateAll()}, and changes need to be announced via {@link #notifyUpdateCell(Cell)},
+     * {@link #notifySetFormula(Cell)} or {@link #notifyDeleteCell(Cell)}. So instead of
+     * re-evaluating a large workbook after a few input cells were changed, only the formulas
+     * depending on the changed cells are re-evaluated:
+     * <pre>
+     * evaluator.evaluateAll();
+     * cell.setCellValue(42);
+     * evaluator.notifyUpdateCell(cell);
+     * evaluator.evaluateDirtyFormulaCells();
+     * </pre>
+     *
+     * If the evaluator can't map the dirty cells back to the cells of the workbook,
+     * see {@link #toCell(EvaluationCell)}, all formula cells are re-evaluated.
+     *
+     * @return the number of re-evaluated formula cells
+     * @since POI 4.1.1
+     */
+    public int evaluateDirtyFormulaCells() {
+        List<EvaluationCell> dirtyCells = _bookEvaluator.pollDirtyFormulaCells();
+        if (!dirtyCells.isEmpty() && toCell(dirtyCells.get(0)) == null) {
+            evaluateAll();
+            return dirtyCells.size();
+        }
+        int count = 0;
+        for (EvaluationCell evalCell : dirtyCells) {
+            if (evaluateFormulaCell(toCell(evalCell)) != CellType._NONE) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Evaluates all formula cells of the supplied workbook concurrently and saves the results.
+     * These cells remain as formula cells.<p>
+     *
+     * The formula cells are split into groups, which don't refer to each other, and the groups
+     * are evaluated by separate evaluators on the given executor, e.g. a
+     * {@link java.util.concurrent.ForkJoinPool}. The cells are only read concurrently -
+     * the results are saved by the calling thread, after all groups were evaluated.
+     * So the workbook must not be modified, while this method is running.<p>
+     *
+     * As each group is evaluated with its own cache, this works best for workbooks with many
+     * independent formulas, e.g. one formula per row referring only to cells of that row.
+     * A group is never split, so the formula cells of one large group of dependent formulas,
+     * e.g. a running total over all rows, are evaluated by a single task on one thread.
+     * Formulas, which depend on each other via references only known at evaluation time,
+     * e.g. via INDIRECT, may be evaluated more than once.
+     *
+     * @param wb the workbook to evaluate
+     * @param executor the executor to run the evaluations on
+     * @since POI 4.1.1
+     */
+    public static void evaluateAllFormulaCells(Workbook wb, ExecutorService executor) {
+        BaseFormulaEvaluator evaluator = (BaseFormulaEvaluator)wb.getCreationHelper().createFormulaEvaluator();
+        FormulaCellPartition partition = new FormulaCellPartition(evaluator.getEvaluationWorkbook());
+        for(int i=0; i<wb.getNumberOfSheets(); i++) {
+            Sheet sheet = wb.getSheetAt(i);
+
+            for(Row r : sheet) {
+                for (Cell c : r) {
+                    if (c.getCellType() == CellType.FORMULA) {
+                        partition.add(i, c);
+                    }
+                }
+            }
+        }
+        if (partition.size() == 0) {
+            return;
+        }
+
+        // merge small groups into tasks of a reasonable size
+        int taskSize = Math.max(64, partition.size() / (4 * Runtime.getRuntime().availableProcessors()));
+        List<List<Cell>> tasks = new ArrayList<>();
+        List<Cell> task = new ArrayList<>();
+        for (List<Cell> group : partition.getGroups()) {
+            task.addAll(group);
+            if (task.size() >= taskSize) {
+                tasks.add(task);
+                task = new ArrayList<>();
+            }
+        }
+        if (!task.isEmpty()) {
+            tasks.add(task);
+        }
+
+        List<Future<CellValue[]>> futures = new ArrayList<>(tasks.size());
+        try {
+            for (List<Cell> cells : tasks) {
+                // the evaluators and their caches aren't thread-safe, so each task gets its own
+                final FormulaEvaluator taskEvaluator = wb.getCreationHelper().createFormulaEvaluator();
+                futures.add(executor.submit(() -> {
+                    CellValue[] values = new CellValue[cells.size()];
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = taskEvaluator.evaluate(cells.get(i));
+                    }
+                    return values;
+                }));
+            }
+
+            List<CellValue[]> results = new ArrayList<>(tasks.size());
+            for (Future<CellValue[]> future : futures) {
+                results.add(future.get());
+            }
+            for (int i = 0; i < tasks.size(); i++) {
+                List<Cell> cells = tasks.get(i);
+                CellValue[] values = results.get(i);
+                for (int j = 0; j < values.length; j++) {
+                    evaluator.setCellValue(cells.get(j), values[j]);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while evaluating the formula cells", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            } else if (cause instanceof Error) {
+                throw (Error)cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            for (Future<CellValue[]> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
     /** {@inheritDoc} */
     @Override
     public void setIgnoreMissingWorkbooks(boolean ignore){
@@ -106,7 +106,7 @@ abstract class CellCacheEntry implements ICacheEntry {
 	/**
 	 * Calls formulaCell.setFormulaResult(null, null) recursively all the way up the tree of
 	 * dependencies. Calls usedCell.clearConsumingCell(fc) for each child of a cell that is
-	 * cleared along the way.
+	 * cleared along the way. The cleared cells are marked dirty, so they can be recalculated.
 	 * @param formulaCells
 	 */
 	protected final void recurseClearCachedFormulaResults() {
@@ -116,6 +116,7 @@ abstract class CellCacheEntry implements ICacheEntry {
 			FormulaCellCacheEntry fc = formulaCells[i];
 			fc.clearFormulaEntry();
 			fc.recurseClearCachedFormulaResults();
+			fc.markDirty();
 		}
 	}
 
@@ -131,6 +132,7 @@ abstract class CellCacheEntry implements ICacheEntry {
 			listener.onClearDependentCachedValue(fc, depth);
 			fc.clearFormulaEntry();
 			fc.recurseClearCachedFormulaResults(listener, depth+1);
+			fc.markDirty();
 		}
 	}
 }
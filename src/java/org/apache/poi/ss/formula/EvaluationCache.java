@@ -17,6 +17,17 @@
 
 package org.apache.poi.ss.formula;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 import org.apache.poi.ss.formula.FormulaCellCache.IEntryOperation;
 import org.apache.poi.ss.formula.FormulaUsedBlankCellSet.BookSheetKey;
 import org.apache.poi.ss.formula.PlainCellCache.Loc;
@@ -39,6 +50,16 @@ final class EvaluationCache {
 
 	private final PlainCellCache _plainCellCache;
 	private final FormulaCellCache _formulaCellCache;
+	/**
+	 * formula cells, whose cached results were cleared since the last call of
+	 * {@link #pollDirtyFormulaCells(int)} - an entry is listed again, if it's cleared again
+	 */
+	private final Deque<FormulaCellCacheEntry> _dirtyEntries;
+	/**
+	 * data derived from areas, e.g. lookup indexes, see {@link TwoDEval#getCachedData} -
+	 * the entries are listed for each sheet of their areas
+	 */
+	private final Map<BookSheetKey, Map<Object, AreaDataEntry>> _areaData;
 	/** only used for testing. <code>null</code> otherwise */
 	final IEvaluationListener _evaluationListener;
 
@@ -46,6 +67,8 @@ final class EvaluationCache {
 		_evaluationListener = evaluationListener;
 		_plainCellCache = new PlainCellCache();
 		_formulaCellCache = new FormulaCellCache();
+		_dirtyEntries = new ArrayDeque<>();
+		_areaData = new HashMap<>();
 	}
 
 	public void notifyUpdateCell(int bookIndex, int sheetIndex, EvaluationCell cell) {
@@ -58,7 +81,7 @@ final class EvaluationCache {
 
 		if (cell.getCellType() == CellType.FORMULA) {
 			if (fcce == null) {
-				fcce = new FormulaCellCacheEntry();
+				fcce = new FormulaCellCacheEntry(this, cell, bookIndex);
 				if (pcce == null) {
 					if (_evaluationListener != null) {
 						_evaluationListener.onChangeFromBlankValue(sheetIndex, rowIndex,
@@ -79,6 +102,7 @@ final class EvaluationCache {
 				pcce.recurseClearCachedFormulaResults(_evaluationListener);
 				_plainCellCache.remove(loc);
 			}
+			fcce.markDirty();
 		} else {
 			ValueEval value = WorkbookEvaluator.getValueFromNonFormulaCell(cell);
 			if (pcce == null) {
@@ -124,6 +148,19 @@ final class EvaluationCache {
 				entry.notifyUpdatedBlankCell(bsk, rowIndex, columnIndex, _evaluationListener);
 			}
 		});
+		Map<Object, AreaDataEntry> areaData = _areaData.get(bsk);
+		if (areaData != null) {
+			Iterator<AreaDataEntry> it = areaData.values().iterator();
+			while (it.hasNext()) {
+				AreaDataEntry entry = it.next();
+				if (entry.getData() == null) {
+					// the data was cleared and is built again on demand
+					it.remove();
+				} else {
+					entry.getCacheEntry().notifyUpdatedBlankCell(bsk, rowIndex, columnIndex, _evaluationListener);
+				}
+			}
+		}
 	}
 
 	public PlainValueCellCacheEntry getPlainValueEntry(int bookIndex, int sheetIndex,
@@ -175,16 +212,44 @@ final class EvaluationCache {
 		throw new IllegalStateException("Unexpected value class (" + cls.getName() + ")");
 	}
 
-	public FormulaCellCacheEntry getOrCreateFormulaCellEntry(EvaluationCell cell) {
+	public FormulaCellCacheEntry getOrCreateFormulaCellEntry(int bookIndex, EvaluationCell cell) {
 		FormulaCellCacheEntry result = _formulaCellCache.get(cell);
 		if (result == null) {
 
-			result = new FormulaCellCacheEntry();
+			result = new FormulaCellCacheEntry(this, cell, bookIndex);
 			_formulaCellCache.put(cell, result);
 		}
 		return result;
 	}
 
+	/**
+	 * Returns the entry of data derived from areas of a workbook. The data is <code>null</code>
+	 * when the entry is created or its inputs have changed, i.e. the value of its cache entry is
+	 * <code>null</code>. The entries of a sheet, whose data was cleared, are dropped, when the
+	 * number of entries of the sheet reaches a power of two.
+	 *
+	 * @param key identifies the data and its areas, including the sheets
+	 * @param sheetIndexes the sheets of the areas, the first one is the sheet of the key
+	 */
+	public AreaDataEntry getOrCreateAreaDataEntry(int bookIndex, int[] sheetIndexes, Object key) {
+		Map<Object, AreaDataEntry> areaData = _areaData.computeIfAbsent(
+				new BookSheetKey(bookIndex, sheetIndexes[0]), k -> new HashMap<>());
+		AreaDataEntry entry = areaData.get(key);
+		if (entry == null) {
+			entry = new AreaDataEntry(bookIndex);
+			for (int sheetIndex : sheetIndexes) {
+				Map<Object, AreaDataEntry> sheetData = _areaData.computeIfAbsent(
+						new BookSheetKey(bookIndex, sheetIndex), k -> new HashMap<>());
+				int size = sheetData.size();
+				if (size >= 16 && (size & (size - 1)) == 0) {
+					sheetData.values().removeIf(e -> e.getData() == null);
+				}
+				sheetData.put(key, entry);
+			}
+		}
+		return entry;
+	}
+
 	/**
 	 * Should be called whenever there are changes to input cells in the evaluated workbook.
 	 */
@@ -194,7 +259,103 @@ final class EvaluationCache {
 		}
 		_plainCellCache.clear();
 		_formulaCellCache.clear();
+		_dirtyEntries.clear();
+		_areaData.clear();
+	}
+
+	/* package */ void addDirtyEntry(FormulaCellCacheEntry entry) {
+		_dirtyEntries.addLast(entry);
+		if (_dirtyEntries.size() > 16 + 2 * _formulaCellCache.size()) {
+			// no one polls the dirty entries - drop the ones, which were evaluated or removed meanwhile
+			List<FormulaCellCacheEntry> entries = removeDirtyEntries(-1);
+			_dirtyEntries.addAll(entries);
+		}
+	}
+
+	/**
+	 * Returns the formula cells of a workbook, whose cached results were cleared by changes
+	 * since the last call and which weren't evaluated meanwhile. The cells are sorted topologically
+	 * by the formula cells used in their last evaluation, so that precedents come before their
+	 * dependents. Circular references are broken at an arbitrary cell.
+	 *
+	 * @param bookIndex the workbook index of the cells to be returned
+	 * @return the dirty formula cells, which are removed from the list of dirty cells
+	 */
+	public List<EvaluationCell> pollDirtyFormulaCells(int bookIndex) {
+		List<FormulaCellCacheEntry> entries = sortByPrecedents(removeDirtyEntries(bookIndex));
+		List<EvaluationCell> result = new ArrayList<>(entries.size());
+		for (FormulaCellCacheEntry entry : entries) {
+			result.add(entry.getCell());
+		}
+		return result;
+	}
+
+	/**
+	 * Removes the entries of the given workbook (or all if bookIndex is -1), which are still dirty,
+	 * from the list of dirty entries. Entries which have been re-evaluated or removed from the cache
+	 * are discarded.
+	 */
+	private List<FormulaCellCacheEntry> removeDirtyEntries(int bookIndex) {
+		List<FormulaCellCacheEntry> result = new ArrayList<>();
+		Set<FormulaCellCacheEntry> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+		Iterator<FormulaCellCacheEntry> iter = _dirtyEntries.iterator();
+		while (iter.hasNext()) {
+			FormulaCellCacheEntry entry = iter.next();
+			boolean isDirty = entry.getValue() == null && _formulaCellCache.get(entry.getCell()) == entry;
+			if (!isDirty) {
+				iter.remove();
+			} else if (bookIndex == -1 || entry.getBookIndex() == bookIndex) {
+				iter.remove();
+				// an entry can be listed more than once, if it was evaluated and cleared again
+				if (seen.add(entry)) {
+					result.add(entry);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Sorts the entries by a depth-first search along their cleared formula inputs, each entry
+	 * being added after its inputs. Inputs, which aren't part of the given entries, are ignored.
+	 * The search uses an explicit stack, as chains of formulas can be very long.
+	 */
+	private static List<FormulaCellCacheEntry> sortByPrecedents(List<FormulaCellCacheEntry> entries) {
+		int nEntries = entries.size();
+		Set<FormulaCellCacheEntry> dirty = Collections.newSetFromMap(new IdentityHashMap<>(nEntries));
+		dirty.addAll(entries);
+		Set<FormulaCellCacheEntry> visited = Collections.newSetFromMap(new IdentityHashMap<>(nEntries));
+		List<FormulaCellCacheEntry> result = new ArrayList<>(nEntries);
+
+		// every entry is pushed at most once, so the stack can't exceed the number of entries
+		FormulaCellCacheEntry[] stack = new FormulaCellCacheEntry[nEntries];
+		int[] nextInput = new int[nEntries];
+		for (FormulaCellCacheEntry root : entries) {
+			if (!visited.add(root)) {
+				continue;
+			}
+			stack[0] = root;
+			nextInput[0] = 0;
+			int depth = 1;
+			while (depth > 0) {
+				FormulaCellCacheEntry entry = stack[depth-1];
+				FormulaCellCacheEntry[] inputs = entry.getClearedFormulaInputs();
+				if (inputs != null && nextInput[depth-1] < inputs.length) {
+					FormulaCellCacheEntry input = inputs[nextInput[depth-1]++];
+					if (dirty.contains(input) && visited.add(input)) {
+						stack[depth] = input;
+						nextInput[depth] = 0;
+						depth++;
+					}
+				} else {
+					result.add(entry);
+					depth--;
+				}
+			}
+		}
+		return result;
 	}
+
 	public void notifyDeleteCell(int bookIndex, int sheetIndex, EvaluationCell cell) {
 
 		if (cell.getCellType() == CellType.FORMULA) {
@@ -216,4 +377,30 @@ final class EvaluationCache {
 			}
 		}
 	}
+
+	/**
+	 * Stores data derived from areas. The data is evaluated like a formula cell, hence the cells
+	 * of the areas are the sensitive inputs of its cache entry.
+	 */
+	/* package */ static final class AreaDataEntry {
+		private final FormulaCellCacheEntry _cacheEntry;
+		private Object _data;
+
+		AreaDataEntry(int bookIndex) {
+			// the entry isn't bound to a cell, hence it's never reported as dirty formula cell
+			_cacheEntry = new FormulaCellCacheEntry(null, null, bookIndex);
+		}
+
+		public FormulaCellCacheEntry getCacheEntry() {
+			return _cacheEntry;
+		}
+
+		public Object getData() {
+			return _cacheEntry.getValue() == null ? null : _data;
+		}
+
+		public void setData(Object data) {
+			_data = data;
+		}
+	}
 }
@@ -40,6 +40,10 @@ final class EvaluationTracker {
 	private final List<CellEvaluationFrame> _evaluationFrames;
 	private final Set<FormulaCellCacheEntry> _currentlyEvaluatingCells;
 	private final EvaluationCache _cache;
+	/** the number of detected circular references */
+	private int _circularReferenceCount;
+	/** whether formula cells without a cached value must not be evaluated, see {@link WorkbookEvaluator#getAreaData} */
+	private boolean _cachedValuesOnly;
 
 	public EvaluationTracker(EvaluationCache cache) {
 		_cache = cache;
@@ -66,6 +70,7 @@ final class EvaluationTracker {
 			throw new IllegalArgumentException("cellLoc must not be null");
 		}
 		if (_currentlyEvaluatingCells.contains(cce)) {
+			_circularReferenceCount++;
 			return false;
 		}
 		_currentlyEvaluatingCells.add(cce);
@@ -73,6 +78,25 @@ final class EvaluationTracker {
 		return true;
 	}
 
+	/**
+	 * @return the number of failed calls of <tt>startEvaluate()</tt>, i.e. the number of
+	 * circular references, which were detected so far
+	 */
+	public int getCircularReferenceCount() {
+		return _circularReferenceCount;
+	}
+
+	/**
+	 * @return <code>true</code>, if formula cells without a cached value must not be evaluated
+	 */
+	public boolean isCachedValuesOnly() {
+		return _cachedValuesOnly;
+	}
+
+	public void setCachedValuesOnly(boolean cachedValuesOnly) {
+		_cachedValuesOnly = cachedValuesOnly;
+	}
+
 	public void updateCacheResult(ValueEval result) {
 
 		int nFrames = _evaluationFrames.size();
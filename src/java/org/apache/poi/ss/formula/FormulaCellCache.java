@@ -45,6 +45,10 @@ final class FormulaCellCache {
 		return result;
 	}
 
+	public int size() {
+		return _formulaEntriesByCell.size();
+	}
+
 	public void clear() {
 		_formulaEntriesByCell.clear();
 	}
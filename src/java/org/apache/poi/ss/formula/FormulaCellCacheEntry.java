@@ -39,8 +39,49 @@ final class FormulaCellCacheEntry extends CellCacheEntry {
 
 	private FormulaUsedBlankCellSet _usedBlankCellGroup;
 
+	/**
+	 * The formula cells used by the last evaluation, whose result was cleared since -
+	 * used to order the dirty cells, see {@link EvaluationCache#pollDirtyFormulaCells(int)}
+	 */
+	private FormulaCellCacheEntry[] _clearedFormulaInputs;
+
+	/** the cache, which is notified about cleared results - <code>null</code> in unit tests and for area data */
+	private final EvaluationCache _cache;
+	private final EvaluationCell _cell;
+	private final int _bookIndex;
+
 	public FormulaCellCacheEntry() {
-		// leave fields un-set
+		this(null, null, -1);
+	}
+
+	/* package */ FormulaCellCacheEntry(EvaluationCache cache, EvaluationCell cell, int bookIndex) {
+		_cache = cache;
+		_cell = cell;
+		_bookIndex = bookIndex;
+	}
+
+	/* package */ EvaluationCell getCell() {
+		return _cell;
+	}
+
+	/* package */ int getBookIndex() {
+		return _bookIndex;
+	}
+
+	/**
+	 * @return the formula cells used by the last evaluation, if the result was cleared, otherwise null
+	 */
+	/* package */ FormulaCellCacheEntry[] getClearedFormulaInputs() {
+		return _clearedFormulaInputs;
+	}
+
+	/**
+	 * Tells the cache, that the formula result was cleared and the cell needs to be recalculated
+	 */
+	/* package */ void markDirty() {
+		if (_cache != null) {
+			_cache.addDirtyEntry(this);
+		}
 	}
 	
 	public boolean isInputSensitive() {
@@ -55,6 +96,7 @@ final class FormulaCellCacheEntry extends CellCacheEntry {
 	public void setSensitiveInputCells(CellCacheEntry[] sensitiveInputCells) {
 		// need to tell all cells that were previously used, but no longer are, 
 		// that they are not consumed by this cell any more
+	    _clearedFormulaInputs = null;
 	    if (sensitiveInputCells == null) {
             _sensitiveInputCells = null;
 	        changeConsumingCells(CellCacheEntry.EMPTY_ARRAY);
@@ -67,8 +109,20 @@ final class FormulaCellCacheEntry extends CellCacheEntry {
 	public void clearFormulaEntry() {
 		CellCacheEntry[] usedCells = _sensitiveInputCells;
 		if (usedCells != null) {
+			int nFormulaInputs = 0;
 			for (int i = usedCells.length-1; i>=0; i--) {
 				usedCells[i].clearConsumingCell(this);
+				if (usedCells[i] instanceof FormulaCellCacheEntry) {
+					nFormulaInputs++;
+				}
+			}
+			if (_cache != null) {
+				_clearedFormulaInputs = new FormulaCellCacheEntry[nFormulaInputs];
+				for (CellCacheEntry usedCell : usedCells) {
+					if (usedCell instanceof FormulaCellCacheEntry) {
+						_clearedFormulaInputs[--nFormulaInputs] = (FormulaCellCacheEntry)usedCell;
+					}
+				}
 			}
 		}
 		_sensitiveInputCells = null;
@@ -118,6 +172,7 @@ final class FormulaCellCacheEntry extends CellCacheEntry {
 			if (_usedBlankCellGroup.containsCell(bsk, rowIndex, columnIndex)) {
 				clearFormulaEntry();
 				recurseClearCachedFormulaResults(evaluationListener);
+				markDirty();
 			}
 		}
 	}
@@ -0,0 +1,255 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.ss.formula;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import org.apache.poi.ss.formula.EvaluationWorkbook.ExternalSheet;
+import org.apache.poi.ss.formula.EvaluationWorkbook.ExternalSheetRange;
+import org.apache.poi.ss.formula.ptg.AreaPtgBase;
+import org.apache.poi.ss.formula.ptg.NamePtg;
+import org.apache.poi.ss.formula.ptg.Ptg;
+import org.apache.poi.ss.formula.ptg.Pxg;
+import org.apache.poi.ss.formula.ptg.Pxg3D;
+import org.apache.poi.ss.formula.ptg.RefPtgBase;
+import org.apache.poi.ss.usermodel.Cell;
+
+/**
+ * Splits the formula cells of a workbook into groups, which don't refer to each other.<p>
+ *
+ * The groups are the connected components of the graph of formula cells, whose edges are
+ * the cell, area, 3D and name references of the formula tokens. References, which are only known
+ * at evaluation time like INDIRECT or OFFSET, and references to external workbooks are ignored.
+ * So formulas of different groups can still depend on each other, which doesn't affect the results
+ * of separate evaluations, but causes the shared formulas to be evaluated more than once.<p>
+ *
+ * Each distinct referenced area is only looked up once: its formula cells are joined with
+ * each other and the following references to the same area are joined with the first cell found.
+ */
+final class FormulaCellPartition {
+    /** names referring to other names are followed up to this depth */
+    private static final int MAX_NAME_DEPTH = 16;
+
+    private final EvaluationWorkbook _workbook;
+    private final List<Cell> _cells = new ArrayList<>();
+    private final List<Integer> _sheetIndexes = new ArrayList<>();
+    /** the formula cells per sheet index, row index and column index */
+    private final Map<Integer, NavigableMap<Integer, NavigableMap<Integer, Integer>>> _cellsBySheet = new HashMap<>();
+    /** a formula cell of each referenced area or -1, if the area contains no formula cells */
+    private final Map<AreaKey, Integer> _areas = new HashMap<>();
+    private int[] _parents;
+
+    FormulaCellPartition(EvaluationWorkbook workbook) {
+        _workbook = workbook;
+    }
+
+    /**
+     * Adds a formula cell
+     */
+    void add(int sheetIndex, Cell cell) {
+        int node = _cells.size();
+        _cells.add(cell);
+        _sheetIndexes.add(sheetIndex);
+        _cellsBySheet.computeIfAbsent(sheetIndex, k -> new TreeMap<>())
+            .computeIfAbsent(cell.getRowIndex(), k -> new TreeMap<>())
+            .put(cell.getColumnIndex(), node);
+    }
+
+    /**
+     * @return the number of added formula cells
+     */
+    int size() {
+        return _cells.size();
+    }
+
+    /**
+     * @return the groups of formula cells, ordered by the first cell of the group
+     */
+    List<List<Cell>> getGroups() {
+        _parents = new int[_cells.size()];
+        for (int i = 0; i < _parents.length; i++) {
+            _parents[i] = i;
+        }
+
+        for (int node = 0; node < _parents.length; node++) {
+            Cell cell = _cells.get(node);
+            int sheetIndex = _sheetIndexes.get(node);
+            EvaluationCell evalCell = _workbook.getSheet(sheetIndex).getCell(cell.getRowIndex(), cell.getColumnIndex());
+            if (evalCell != null) {
+                unionReferences(node, sheetIndex, _workbook.getFormulaTokens(evalCell), 0);
+            }
+        }
+
+        Map<Integer, List<Cell>> groups = new LinkedHashMap<>();
+        for (int node = 0; node < _parents.length; node++) {
+            groups.computeIfAbsent(find(node), k -> new ArrayList<>()).add(_cells.get(node));
+        }
+        return new ArrayList<>(groups.values());
+    }
+
+    private void unionReferences(int node, int sheetIndex, Ptg[] ptgs, int depth) {
+        for (Ptg ptg : ptgs) {
+            if (ptg instanceof RefPtgBase) {
+                RefPtgBase ref = (RefPtgBase)ptg;
+                int[] sheets = getSheetRange(ptg, sheetIndex);
+                if (sheets != null) {
+                    unionArea(node, sheets, ref.getRow(), ref.getColumn(), ref.getRow(), ref.getColumn());
+                }
+            } else if (ptg instanceof AreaPtgBase) {
+                AreaPtgBase area = (AreaPtgBase)ptg;
+                int[] sheets = getSheetRange(ptg, sheetIndex);
+                if (sheets != null) {
+                    unionArea(node, sheets, area.getFirstRow(), area.getFirstColumn(), area.getLastRow(), area.getLastColumn());
+                }
+            } else if (ptg instanceof NamePtg && depth < MAX_NAME_DEPTH) {
+                EvaluationName name = _workbook.getName((NamePtg)ptg);
+                if (name != null && name.hasFormula()) {
+                    unionReferences(node, sheetIndex, name.getNameDefinition(), depth+1);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the first and last sheet index of the reference or {@code null},
+     *  if it refers to another workbook or can't be resolved
+     */
+    private int[] getSheetRange(Ptg ptg, int sheetIndex) {
+        String firstSheet, lastSheet = null;
+        if (ptg instanceof Pxg) {
+            Pxg pxg = (Pxg)ptg;
+            if (pxg.getExternalWorkbookNumber() > 0) {
+                return null;
+            }
+            firstSheet = pxg.getSheetName();
+            if (pxg instanceof Pxg3D) {
+                lastSheet = ((Pxg3D)pxg).getLastSheetName();
+            }
+        } else if (ptg instanceof ExternSheetReferenceToken) {
+            ExternalSheet externalSheet = _workbook.getExternalSheet(((ExternSheetReferenceToken)ptg).getExternSheetIndex());
+            if (externalSheet == null || externalSheet.getWorkbookName() != null) {
+                return null;
+            }
+            firstSheet = externalSheet.getSheetName();
+            if (externalSheet instanceof ExternalSheetRange) {
+                lastSheet = ((ExternalSheetRange)externalSheet).getLastSheetName();
+            }
+        } else {
+            return new int[]{ sheetIndex, sheetIndex };
+        }
+
+        if (firstSheet == null) {
+            return new int[]{ sheetIndex, sheetIndex };
+        }
+        int first = _workbook.getSheetIndex(firstSheet);
+        int last = (lastSheet == null) ? first : _workbook.getSheetIndex(lastSheet);
+        return (first < 0 || last < 0) ? null : new int[]{ Math.min(first, last), Math.max(first, last) };
+    }
+
+    private void unionArea(int node, int[] sheets, int firstRow, int firstCol, int lastRow, int lastCol) {
+        for (int sheetIndex = sheets[0]; sheetIndex <= sheets[1]; sheetIndex++) {
+            AreaKey key = new AreaKey(sheetIndex, firstRow, firstCol, lastRow, lastCol);
+            Integer member = _areas.get(key);
+            if (member == null) {
+                member = unionAreaCells(sheetIndex, firstRow, firstCol, lastRow, lastCol);
+                _areas.put(key, member);
+            }
+            if (member >= 0) {
+                union(node, member);
+            }
+        }
+    }
+
+    /**
+     * Joins the formula cells of the area
+     *
+     * @return one of the formula cells of the area or -1, if there are none
+     */
+    private int unionAreaCells(int sheetIndex, int firstRow, int firstCol, int lastRow, int lastCol) {
+        NavigableMap<Integer, NavigableMap<Integer, Integer>> rows = _cellsBySheet.get(sheetIndex);
+        if (rows == null) {
+            return -1;
+        }
+        int member = -1;
+        for (NavigableMap<Integer, Integer> row : rows.subMap(firstRow, true, lastRow, true).values()) {
+            for (int other : row.subMap(firstCol, true, lastCol, true).values()) {
+                if (member == -1) {
+                    member = other;
+                } else {
+                    union(member, other);
+                }
+            }
+        }
+        return member;
+    }
+
+    private int find(int node) {
+        int root = node;
+        while (_parents[root] != root) {
+            root = _parents[root];
+        }
+        // path compression
+        while (_parents[node] != root) {
+            int next = _parents[node];
+            _parents[node] = root;
+            node = next;
+        }
+        return root;
+    }
+
+    private void union(int a, int b) {
+        int rootA = find(a), rootB = find(b);
+        if (rootA != rootB) {
+            // keep the smaller index as root, so the groups are ordered by their first cell
+            _parents[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+        }
+    }
+
+    private static final class AreaKey {
+        private final int _sheetIndex, _firstRow, _firstCol, _lastRow, _lastCol;
+
+        AreaKey(int sheetIndex, int firstRow, int firstCol, int lastRow, int lastCol) {
+            _sheetIndex = sheetIndex;
+            _firstRow = firstRow;
+            _firstCol = firstCol;
+            _lastRow = lastRow;
+            _lastCol = lastCol;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof AreaKey)) {
+                return false;
+            }
+            AreaKey other = (AreaKey)obj;
+            return _sheetIndex == other._sheetIndex && _firstRow == other._firstRow && _firstCol == other._firstCol
+                && _lastRow == other._lastRow && _lastCol == other._lastCol;
+        }
+
+        @Override
+        public int hashCode() {
+            return (((_sheetIndex * 31 + _firstRow) * 31 + _firstCol) * 31 + _lastRow) * 31 + _lastCol;
+        }
+    }
+}
@@ -17,6 +17,12 @@
 
 package org.apache.poi.ss.formula;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
 import org.apache.poi.ss.formula.eval.AreaEval;
 import org.apache.poi.ss.formula.eval.AreaEvalBase;
 import org.apache.poi.ss.formula.eval.ValueEval;
@@ -104,4 +110,53 @@ final class LazyAreaEval extends AreaEvalBase {
         SheetRefEvaluator _sre = _evaluator.getSheetEvaluator(_evaluator.getFirstSheetIndex());
         return _sre.isRowHidden(getFirstRow() + rowIndex);
     }
+
+    /**
+     * @return the cached data, if all areas are lazy areas of a single sheet of the same workbook
+     */
+    @Override
+    public <T> T getCachedData(Object key, TwoDEval[] areas, Supplier<T> builder) {
+        WorkbookEvaluator bookEvaluator = getWorkbookEvaluator();
+        if (bookEvaluator == null) {
+            return null;
+        }
+        List<Object> areaKey = new ArrayList<>(1 + 5 * (areas.length + 1));
+        areaKey.add(key);
+        addAreaKey(areaKey);
+        int[] sheetIndexes = { getFirstSheetIndex() };
+        for (TwoDEval area : areas) {
+            if (!(area instanceof LazyAreaEval)) {
+                return null;
+            }
+            LazyAreaEval lazyArea = (LazyAreaEval)area;
+            if (lazyArea.getWorkbookEvaluator() != bookEvaluator) {
+                return null;
+            }
+            lazyArea.addAreaKey(areaKey);
+            int sheetIndex = lazyArea.getFirstSheetIndex();
+            if (IntStream.of(sheetIndexes).noneMatch(i -> i == sheetIndex)) {
+                sheetIndexes = Arrays.copyOf(sheetIndexes, sheetIndexes.length + 1);
+                sheetIndexes[sheetIndexes.length - 1] = sheetIndex;
+            }
+        }
+        return _evaluator.getSheetEvaluator(getFirstSheetIndex()).getAreaData(areaKey, sheetIndexes, builder);
+    }
+
+    /**
+     * @return the evaluator of the workbook or <code>null</code>, if the area spans multiple sheets
+     */
+    private WorkbookEvaluator getWorkbookEvaluator() {
+        if (getFirstSheetIndex() != getLastSheetIndex()) {
+            return null;
+        }
+        return _evaluator.getSheetEvaluator(getFirstSheetIndex()).getWorkbookEvaluator();
+    }
+
+    private void addAreaKey(List<Object> areaKey) {
+        areaKey.add(getFirstSheetIndex());
+        areaKey.add(getFirstRow());
+        areaKey.add(getFirstColumn());
+        areaKey.add(getLastRow());
+        areaKey.add(getLastColumn());
+    }
 }
@@ -0,0 +1,93 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.ss.formula;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.poi.ss.formula.eval.BoolEval;
+import org.apache.poi.ss.formula.eval.NumberEval;
+import org.apache.poi.ss.formula.eval.StringEval;
+import org.apache.poi.ss.formula.eval.ValueEval;
+
+/**
+ * Index of the values of a single row or column of an area, which maps each value to the position
+ * of its first occurrence. It's used for exact lookups by VLOOKUP, HLOOKUP and MATCH.<p>
+ *
+ * Numbers, strings (ignoring the case) and booleans are indexed, blanks and errors are never found.
+ * The index is kept as cached data of the area, so changes of the indexed cells clear the index
+ * along with the cached results of the formulas, which use it.
+ *
+ * @see TwoDEval#getRowLookupIndex(int)
+ * @see TwoDEval#getColumnLookupIndex(int)
+ * @since POI 4.1.1
+ */
+public final class LookupIndex {
+	private final Map<Object, Integer> _firstIndexes = new HashMap<>();
+
+	/**
+	 * @param vector a single row or column
+	 */
+	/* package */ LookupIndex(TwoDEval vector) {
+		boolean isColumn = vector.isColumn();
+		int size = isColumn ? vector.getHeight() : vector.getWidth();
+		for (int i = 0; i < size; i++) {
+			Object key = toKey(isColumn ? vector.getValue(i, 0) : vector.getValue(0, i));
+			if (key != null) {
+				_firstIndexes.putIfAbsent(key, i);
+			}
+		}
+	}
+
+	/**
+	 * Finds the first exact occurrence of the given value
+	 *
+	 * @param value a number, string or boolean value - strings are matched ignoring the case
+	 *  and without evaluating wildcards
+	 * @return the zero based index of the first occurrence or -1 if the value isn't contained
+	 */
+	public int indexOf(ValueEval value) {
+		Object key = toKey(value);
+		Integer index = (key == null) ? null : _firstIndexes.get(key);
+		return (index == null) ? -1 : index;
+	}
+
+	/**
+	 * @return a key, which is equal for values considered equal by the lookup functions,
+	 *  or <code>null</code> if the value never matches
+	 */
+	private static Object toKey(ValueEval value) {
+		if (value instanceof NumberEval) {
+			// Double.equals corresponds to Double.compare, which is used for the number lookups
+			return ((NumberEval)value).getNumberValue();
+		}
+		if (value instanceof StringEval) {
+			String str = ((StringEval)value).getStringValue();
+			// normalize the same way as String.compareToIgnoreCase
+			char[] chars = str.toCharArray();
+			for (int i = 0; i < chars.length; i++) {
+				chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+			}
+			return new String(chars);
+		}
+		if (value instanceof BoolEval) {
+			return ((BoolEval)value).getBooleanValue();
+		}
+		return null;
+	}
+}
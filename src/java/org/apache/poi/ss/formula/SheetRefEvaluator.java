@@ -17,6 +17,8 @@
 
 package org.apache.poi.ss.formula;
 
+import java.util.function.Supplier;
+
 import org.apache.poi.ss.formula.eval.ValueEval;
 import org.apache.poi.ss.formula.ptg.FuncVarPtg;
 import org.apache.poi.ss.formula.ptg.Ptg;
@@ -48,6 +50,17 @@ final class SheetRefEvaluator {
 		return _bookEvaluator.evaluateReference(getSheet(), _sheetIndex, rowIndex, columnIndex, _tracker);
 	}
 
+	/* package */ WorkbookEvaluator getWorkbookEvaluator() {
+		return _bookEvaluator;
+	}
+
+	/**
+	 * @return the cached data derived from areas of the workbook, see {@link WorkbookEvaluator#getAreaData}
+	 */
+	public <T> T getAreaData(Object key, int[] sheetIndexes, Supplier<T> builder) {
+		return _bookEvaluator.getAreaData(key, sheetIndexes, builder, _tracker);
+	}
+
 	private EvaluationSheet getSheet() {
 		if (_sheet == null) {
 			_sheet = _bookEvaluator.getSheet(_sheetIndex);
@@ -17,6 +17,8 @@
 
 package org.apache.poi.ss.formula;
 
+import java.util.function.Supplier;
+
 import org.apache.poi.ss.formula.eval.AreaEval;
 import org.apache.poi.ss.formula.eval.ValueEval;
 import org.apache.poi.ss.formula.functions.Subtotal;
@@ -74,4 +76,45 @@ public interface TwoDEval extends ValueEval {
      */
     boolean isRowHidden(int rowIndex);
 
+    /**
+     * Provides data derived from the values of this area and further areas, e.g. an index of the
+     * values, which is kept by the evaluator until one of the values read by the builder changes.
+     * The builder needs to read the values via the areas, so the evaluator can track them.
+     *
+     * @param key identifies the kind of data - the areas are added to the key
+     * @param areas the further areas, which are read by the builder - may be empty
+     * @param builder builds the data, if it isn't cached
+     * @return the cached or built data, or <code>null</code> if the areas don't support caching,
+     *  e.g. because they span multiple sheets or contain formula cells, which weren't evaluated yet,
+     *  or the builder returned <code>null</code>
+     * @since POI 4.1.1
+     */
+    default <T> T getCachedData(Object key, TwoDEval[] areas, Supplier<T> builder) {
+        return null;
+    }
+
+    /**
+     * Provides an index of the values of a row, which speeds up repeated exact lookups
+     *
+     * @param rowIndex relative row index (zero based)
+     * @return the lookup index or <code>null</code>, if the area doesn't support indexing
+     * @since POI 4.1.1
+     */
+    default LookupIndex getRowLookupIndex(int rowIndex) {
+        TwoDEval row = getRow(rowIndex);
+        return row.getCachedData(LookupIndex.class, new TwoDEval[0], () -> new LookupIndex(row));
+    }
+
+    /**
+     * Provides an index of the values of a column, which speeds up repeated exact lookups
+     *
+     * @param columnIndex relative column index (zero based)
+     * @return the lookup index or <code>null</code>, if the area doesn't support indexing
+     * @since POI 4.1.1
+     */
+    default LookupIndex getColumnLookupIndex(int columnIndex) {
+        TwoDEval column = getColumn(columnIndex);
+        return column.getCachedData(LookupIndex.class, new TwoDEval[0], () -> new LookupIndex(column));
+    }
+
 }
@@ -21,12 +21,15 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Stack;
 import java.util.TreeSet;
+import java.util.function.Supplier;
 
 import org.apache.poi.ss.SpreadsheetVersion;
 import org.apache.poi.ss.formula.CollaboratingWorkbooksEnvironment.WorkbookNotFoundException;
+import org.apache.poi.ss.formula.EvaluationCache.AreaDataEntry;
 import org.apache.poi.ss.formula.atp.AnalysisToolPak;
 import org.apache.poi.ss.formula.eval.*;
 import org.apache.poi.ss.formula.function.FunctionMetadataRegistry;
@@ -198,6 +201,22 @@ public final class WorkbookEvaluator {
         _cache.notifyDeleteCell(_workbookIx, sheetIndex, cell);
     }
     
+    /**
+     * Returns the formula cells of this workbook, whose cached results were invalidated by
+     * {@link #notifyUpdateCell(EvaluationCell)} or {@link #notifyDeleteCell(EvaluationCell)} since
+     * the last call, in the order they need to be recalculated, i.e. precedents before dependents.<p>
+     *
+     * The dependencies are recorded when a formula is evaluated, so only cells which were already
+     * evaluated, e.g. by a previous call of evaluateAll, are tracked. The returned cells are no
+     * longer regarded as dirty.
+     *
+     * @return the dirty formula cells
+     * @since POI 4.1.1
+     */
+    public List<EvaluationCell> pollDirtyFormulaCells() {
+        return _cache.pollDirtyFormulaCells(_workbookIx);
+    }
+
     private int getSheetIndex(EvaluationSheet sheet) {
         Integer result = _sheetIndexesBySheet.get(sheet);
         if (result == null) {
@@ -255,13 +274,16 @@ public final class WorkbookEvaluator {
             return result;
         }
 
-        FormulaCellCacheEntry cce = _cache.getOrCreateFormulaCellEntry(srcCell);
+        FormulaCellCacheEntry cce = _cache.getOrCreateFormulaCellEntry(_workbookIx, srcCell);
         if (shouldCellDependencyBeRecorded || cce.isInputSensitive()) {
             tracker.acceptFormulaDependency(cce);
         }
         IEvaluationListener evalListener = _evaluationListener;
         ValueEval result;
         if (cce.getValue() == null) {
+            if (tracker.isCachedValuesOnly()) {
+                throw new UncachedFormulaCellException();
+            }
             if (!tracker.startEvaluate(cce)) {
                 return ErrorEval.CIRCULAR_REF_ERROR;
             }
@@ -791,6 +813,60 @@ public final class WorkbookEvaluator {
         EvaluationCell cell = sheet.getCell(rowIndex, columnIndex);
         return evaluateAny(cell, sheetIndex, rowIndex, columnIndex, tracker);
     }
+
+    /**
+     * Thrown, when a formula cell without a cached value is read while area data is built
+     */
+    private static final class UncachedFormulaCellException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        UncachedFormulaCellException() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * Used by the lazy area evals to provide data derived from their cells.
+     * The data is built on first use and cleared, when one of the cells read by the builder changes.<p>
+     *
+     * The builder only reads cached values. Evaluating the formula cells of the areas might close
+     * a circular reference via the formula, which requested the data, although the formula
+     * wouldn't have read those cells, e.g. a lookup stopping at the first match. So the data
+     * isn't built, if the areas contain formula cells, which weren't evaluated yet.
+     *
+     * @param key identifies the data and its areas
+     * @param sheetIndexes the indexes of the sheets of the areas
+     * @return the data or <code>null</code>, if the builder returned <code>null</code> or
+     *  read a formula cell without a cached value
+     */
+    /* package */ <T> T getAreaData(Object key, int[] sheetIndexes, Supplier<T> builder, EvaluationTracker tracker) {
+        AreaDataEntry entry = _cache.getOrCreateAreaDataEntry(_workbookIx, sheetIndexes, key);
+        FormulaCellCacheEntry cce = entry.getCacheEntry();
+        @SuppressWarnings("unchecked")
+        T data = (T)entry.getData();
+        if (data == null) {
+            // the data is evaluated like a formula cell, so the cells read by the builder become its inputs
+            if (!tracker.startEvaluate(cce)) {
+                return null;
+            }
+            tracker.setCachedValuesOnly(true);
+            try {
+                data = builder.get();
+                if (data == null) {
+                    return null;
+                }
+                entry.setData(data);
+                tracker.updateCacheResult(BlankEval.instance);
+            } catch (UncachedFormulaCellException e) {
+                return null;
+            } finally {
+                tracker.setCachedValuesOnly(false);
+                tracker.endEvaluate(cce);
+            }
+        }
+        tracker.acceptFormulaDependency(cce);
+        return data;
+    }
     public FreeRefFunction findUserDefinedFunction(String functionName) {
         return _udfFinder.findFunction(functionName);
     }
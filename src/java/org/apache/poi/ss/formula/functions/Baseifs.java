@@ -67,7 +67,10 @@ import org.apache.poi.ss.formula.functions.Countif.ErrorMatcher;
             validateCriteriaRanges(sumRange, ae);
             validateCriteria(mp);
 
-            double result = aggregateMatchingCells(sumRange, ae, mp);
+            Double result = CriteriaGroups.aggregate(sumRange, ae, mp);
+            if (result == null) {
+                result = aggregateMatchingCells(sumRange, ae, mp);
+            }
             return new NumberEval(result);
         } catch (EvaluationException e) {
             return e.getErrorEval();
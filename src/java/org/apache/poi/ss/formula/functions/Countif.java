@@ -20,6 +20,7 @@ package org.apache.poi.ss.formula.functions;
 import java.util.regex.Pattern;
 
 import org.apache.poi.ss.formula.ThreeDEval;
+import org.apache.poi.ss.formula.eval.AreaEval;
 import org.apache.poi.ss.formula.eval.BlankEval;
 import org.apache.poi.ss.formula.eval.BoolEval;
 import org.apache.poi.ss.formula.eval.ErrorEval;
@@ -173,6 +174,71 @@ public final class Countif extends Fixed2ArgFunction {
             return sb.toString();
         }
         protected abstract String getValueText();
+        /**
+         * @return the keys of the values matched by an equality criteria or <code>null</code>,
+         * if other operators or wildcards are used
+         */
+        protected Object[] getGroupKeys() {
+            return null;
+        }
+        protected final boolean isEquality() {
+            return getCode() == CmpOp.NONE || getCode() == CmpOp.EQ;
+        }
+    }
+
+    /**
+     * Identifies the values, which are equal for the equality criteria. The number, text and
+     * numeric text keys are distinct, because they are matched differently.
+     */
+    private static final class GroupKey {
+        private static final int NUMBER = 0;
+        private static final int NUMERIC_TEXT = 1;
+        private static final int TEXT = 2;
+        private static final int EMPTY_TEXT = 3;
+        private static final int BLANK = 4;
+        private static final int BOOLEAN = 5;
+        private static final int ERROR = 6;
+
+        private static final GroupKey EMPTY_TEXT_KEY = new GroupKey(EMPTY_TEXT, null);
+        private static final GroupKey BLANK_KEY = new GroupKey(BLANK, null);
+
+        private final int _type;
+        private final Object _value;
+
+        private GroupKey(int type, Object value) {
+            _type = type;
+            _value = value;
+        }
+
+        static GroupKey number(double value) {
+            // Double.equals corresponds to Double.compare
+            return new GroupKey(NUMBER, value);
+        }
+        static GroupKey numericText(double value) {
+            // numeric texts are compared by ==, which doesn't distinguish -0.0 and 0.0
+            return new GroupKey(NUMERIC_TEXT, value + 0.0);
+        }
+        static GroupKey text(String value) {
+            // normalize the same way as String.compareToIgnoreCase
+            char[] chars = value.toCharArray();
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+            }
+            return new GroupKey(TEXT, new String(chars));
+        }
+
+        @Override
+        public int hashCode() {
+            return _type * 31 + (_value == null ? 0 : _value.hashCode());
+        }
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof GroupKey)) {
+                return false;
+            }
+            GroupKey other = (GroupKey)obj;
+            return _type == other._type && (_value == null ? other._value == null : _value.equals(other._value));
+        }
     }
 
     private static final class NumberMatcher extends MatcherBase {
@@ -230,6 +296,13 @@ public final class Countif extends Fixed2ArgFunction {
             }
             return evaluate(Double.compare(testValue, _value));
         }
+        @Override
+        protected Object[] getGroupKeys() {
+            if (!isEquality()) {
+                return null;
+            }
+            return new Object[] { GroupKey.number(_value), GroupKey.numericText(_value) };
+        }
     }
     private static final class BooleanMatcher extends MatcherBase {
 
@@ -287,6 +360,13 @@ public final class Countif extends Fixed2ArgFunction {
             }
             return evaluate(testValue - _value);
         }
+        @Override
+        protected Object[] getGroupKeys() {
+            if (!isEquality()) {
+                return null;
+            }
+            return new Object[] { new GroupKey(GroupKey.BOOLEAN, _value == 1) };
+        }
     }
     public static final class ErrorMatcher extends MatcherBase {
 
@@ -313,6 +393,13 @@ public final class Countif extends Fixed2ArgFunction {
         public int getValue() {
             return _value;
         }
+        @Override
+        protected Object[] getGroupKeys() {
+            if (!isEquality()) {
+                return null;
+            }
+            return new Object[] { new GroupKey(GroupKey.ERROR, _value) };
+        }
     }
     public static final class StringMatcher extends MatcherBase {
 
@@ -380,6 +467,19 @@ public final class Countif extends Fixed2ArgFunction {
             // for example, the string "apples" and the string "APPLES" will match the same cells.
             return evaluate(testedValue.compareToIgnoreCase(_value));
         }
+        @Override
+        protected Object[] getGroupKeys() {
+            if (!isEquality() || _pattern != null) {
+                return null;
+            }
+            if (_value.length() > 0) {
+                return new Object[] { GroupKey.text(_value) };
+            }
+            // criteria '' matches blanks and empty strings, '=' only blanks
+            return getCode() == CmpOp.NONE
+                ? new Object[] { GroupKey.BLANK_KEY, GroupKey.EMPTY_TEXT_KEY }
+                : new Object[] { GroupKey.BLANK_KEY };
+        }
         /**
          * Translates Excel countif wildcard strings into java regex strings
          * @return <code>null</code> if the specified value contains no special wildcard characters.
@@ -444,6 +544,12 @@ public final class Countif extends Fixed2ArgFunction {
             // If the criteria arg is a reference to a blank cell, countif always returns zero.
             return NumberEval.ZERO;
         }
+        if (arg0 instanceof AreaEval) {
+            Double result = CriteriaGroups.aggregate(null, new AreaEval[] { (AreaEval)arg0 }, new I_MatchPredicate[] { mp });
+            if (result != null) {
+                return new NumberEval(result);
+            }
+        }
         double result = countMatchingCellsInArea(arg0, mp);
         return new NumberEval(result);
     }
@@ -489,6 +595,46 @@ public final class Countif extends Fixed2ArgFunction {
                 + evaluatedCriteriaArg.getClass().getName() + ")");
     }
 
+    /**
+     * Returns the keys of the values matched by the criteria predicate, if the predicate
+     * is an equality criteria. A value matches such a predicate, if one of the keys of the
+     * predicate is contained in the keys of the value.
+     *
+     * @return <code>null</code> if the predicate doesn't check for equality or uses wildcards
+     * @see #getGroupKeys(ValueEval)
+     */
+    /* package */ static Object[] getGroupKeys(I_MatchPredicate mp) {
+        return (mp instanceof MatcherBase) ? ((MatcherBase)mp).getGroupKeys() : null;
+    }
+
+    /**
+     * @return the keys of the value, which are used to group the values for the equality criteria.
+     * At most one of these keys is contained in the keys of a predicate.
+     */
+    /* package */ static Object[] getGroupKeys(ValueEval x) {
+        if (x instanceof NumberEval) {
+            return new Object[] { GroupKey.number(((NumberEval)x).getNumberValue()) };
+        }
+        if (x instanceof StringEval) {
+            String value = ((StringEval)x).getStringValue();
+            GroupKey textKey = (value.length() == 0) ? GroupKey.EMPTY_TEXT_KEY : GroupKey.text(value);
+            Double val = OperandResolver.parseDouble(value);
+            return (val == null)
+                ? new Object[] { textKey }
+                : new Object[] { textKey, GroupKey.numericText(val) };
+        }
+        if (x instanceof BlankEval) {
+            return new Object[] { GroupKey.BLANK_KEY };
+        }
+        if (x instanceof BoolEval) {
+            return new Object[] { new GroupKey(GroupKey.BOOLEAN, ((BoolEval)x).getBooleanValue()) };
+        }
+        if (x instanceof ErrorEval) {
+            return new Object[] { new GroupKey(GroupKey.ERROR, ((ErrorEval)x).getErrorCode()) };
+        }
+        return new Object[0];
+    }
+
     /**
      *
      * @return the de-referenced criteria arg (possibly {@link ErrorEval})
@@ -0,0 +1,135 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.ss.formula.functions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.poi.ss.formula.TwoDEval;
+import org.apache.poi.ss.formula.eval.AreaEval;
+import org.apache.poi.ss.formula.eval.NumberEval;
+import org.apache.poi.ss.formula.eval.ValueEval;
+import org.apache.poi.ss.formula.functions.CountUtils.I_MatchPredicate;
+
+/**
+ * Counts and sums of the cells of criteria ranges grouped by their values, which answer the
+ * equality criteria of COUNTIF, SUMIF, COUNTIFS and SUMIFS without scanning the ranges.<p>
+ *
+ * The groups are kept as cached data of the ranges, so they are built once for all formulas
+ * using the same ranges and are cleared, when the cells of the ranges change.
+ * Criteria with other operators or wildcards are evaluated by scanning the ranges.
+ */
+final class CriteriaGroups {
+    /** the minimum number of cells of the ranges, which are grouped */
+    private static final int MIN_GROUPED_SIZE = 16;
+
+    /** the count and sum per combination of keys of the criteria ranges */
+    private final Map<List<Object>, double[]> _groups = new HashMap<>();
+
+    private CriteriaGroups(AreaEval sumRange, AreaEval[] ranges) {
+        int height = ranges[0].getHeight();
+        int width = ranges[0].getWidth();
+        Object[][] keys = new Object[ranges.length][];
+        for (int r = 0; r < height; r++) {
+            for (int c = 0; c < width; c++) {
+                for (int i = 0; i < ranges.length; i++) {
+                    keys[i] = Countif.getGroupKeys(ranges[i].getRelativeValue(r, c));
+                }
+                double addend = 0.0;
+                if (sumRange != null) {
+                    ValueEval value = sumRange.getRelativeValue(r, c);
+                    if (value instanceof NumberEval) {
+                        addend = ((NumberEval)value).getNumberValue();
+                    }
+                    // everything else (including string and boolean values) counts as zero
+                }
+                for (List<Object> combination : combine(keys)) {
+                    double[] group = _groups.computeIfAbsent(combination, k -> new double[2]);
+                    group[0] += 1;
+                    group[1] += addend;
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts or sums the cells matching all criteria
+     *
+     * @param sumRange the range to sum or <code>null</code> to count
+     * @param ranges the criteria ranges of the same size
+     * @param predicates the criteria predicates of the ranges
+     * @return the count or sum, or <code>null</code> if the criteria can't be answered by groups
+     */
+    static Double aggregate(AreaEval sumRange, AreaEval[] ranges, I_MatchPredicate[] predicates) {
+        if (ranges[0].getHeight() * ranges[0].getWidth() < MIN_GROUPED_SIZE) {
+            return null;
+        }
+        Object[][] criteriaKeys = new Object[predicates.length][];
+        for (int i = 0; i < predicates.length; i++) {
+            criteriaKeys[i] = Countif.getGroupKeys(predicates[i]);
+            if (criteriaKeys[i] == null) {
+                return null;
+            }
+        }
+
+        TwoDEval[] areas = new TwoDEval[ranges.length - 1 + (sumRange == null ? 0 : 1)];
+        System.arraycopy(ranges, 1, areas, 0, ranges.length - 1);
+        if (sumRange != null) {
+            areas[areas.length - 1] = sumRange;
+        }
+        List<Object> key = Arrays.asList(CriteriaGroups.class, ranges.length, sumRange != null);
+        CriteriaGroups groups = ranges[0].getCachedData(key, areas, () -> new CriteriaGroups(sumRange, ranges));
+        if (groups == null) {
+            return null;
+        }
+
+        // a cell is contained in at most one of the groups matching the criteria
+        double result = 0.0;
+        for (List<Object> combination : combine(criteriaKeys)) {
+            double[] group = groups._groups.get(combination);
+            if (group != null) {
+                result += group[sumRange == null ? 0 : 1];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return all combinations of one key of each key array
+     */
+    private static List<List<Object>> combine(Object[][] keys) {
+        List<List<Object>> result = new ArrayList<>();
+        result.add(new ArrayList<>(keys.length));
+        for (Object[] k : keys) {
+            List<List<Object>> next = new ArrayList<>(result.size() * k.length);
+            for (List<Object> combination : result) {
+                for (Object key : k) {
+                    List<Object> extended = new ArrayList<>(keys.length);
+                    extended.addAll(combination);
+                    extended.add(key);
+                    next.add(extended);
+                }
+            }
+            result = next;
+        }
+        return result;
+    }
+}
@@ -20,6 +20,7 @@ package org.apache.poi.ss.formula.functions;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.apache.poi.ss.formula.LookupIndex;
 import org.apache.poi.ss.formula.TwoDEval;
 import org.apache.poi.ss.formula.eval.BlankEval;
 import org.apache.poi.ss.formula.eval.BoolEval;
@@ -36,6 +37,8 @@ import org.apache.poi.ss.formula.eval.ValueEval;
  * Common functionality used by VLOOKUP, HLOOKUP, LOOKUP and MATCH
  */
 final class LookupUtils {
+	/** the minimum size of the row or column vectors, which are searched via a {@link LookupIndex} */
+	private static final int MIN_INDEXED_SIZE = 16;
 
 	/**
 	 * Represents a single row or column within an <tt>AreaEval</tt>.
@@ -73,6 +76,9 @@ final class LookupUtils {
 		public int getSize() {
 			return _size;
 		}
+		LookupIndex getLookupIndex() {
+			return _tableArray.getRowLookupIndex(_rowIndex);
+		}
 	}
 
 	private static final class ColumnVector implements ValueVector {
@@ -102,6 +108,9 @@ final class LookupUtils {
 		public int getSize() {
 			return _size;
 		}
+		LookupIndex getLookupIndex() {
+			return _tableArray.getColumnLookupIndex(_columnIndex);
+		}
 	}
 
     private static final class SheetVector implements ValueVector {
@@ -480,7 +489,7 @@ final class LookupUtils {
 		if(isRangeLookup) {
 			result = performBinarySearch(vector, lookupComparer);
 		} else {
-			result = lookupIndexOfExactValue(lookupComparer, vector);
+			result = lookupIndexOfExactValue(lookupValue, lookupComparer, vector);
 		}
 		if(result < 0) {
 			throw new EvaluationException(ErrorEval.NA);
@@ -489,6 +498,44 @@ final class LookupUtils {
 	}
 
 
+	/**
+	 * Finds first (lowest index) exact occurrence of specified value. Larger areas are
+	 * searched via their {@link LookupIndex}, unless the value contains wildcards.
+	 * @param lookupValue the value to be found, i.e. the value of the comparer
+	 * @param lookupComparer the comparer of the lookup value
+	 * @param vector the values to be searched
+	 * @return zero based index into the vector, -1 if value cannot be found
+	 */
+	static int lookupIndexOfExactValue(ValueEval lookupValue, LookupValueComparer lookupComparer, ValueVector vector) {
+		LookupIndex index = getLookupIndex(lookupValue, vector);
+		if (index != null) {
+			// blank eval translates to zero - like in createLookupComparer()
+			return index.indexOf(lookupValue == BlankEval.instance ? NumberEval.ZERO : lookupValue);
+		}
+		return lookupIndexOfExactValue(lookupComparer, vector);
+	}
+
+	/**
+	 * @return the lookup index of the vector or <code>null</code>, if the vector is too small,
+	 *  isn't part of an indexable area or the lookup value is a wildcard pattern
+	 */
+	private static LookupIndex getLookupIndex(ValueEval lookupValue, ValueVector vector) {
+		if (vector.getSize() < MIN_INDEXED_SIZE) {
+			return null;
+		}
+		if (lookupValue instanceof StringEval
+			&& Countif.StringMatcher.getWildCardPattern(((StringEval)lookupValue).getStringValue()) != null) {
+			return null;
+		}
+		if (vector instanceof ColumnVector) {
+			return ((ColumnVector)vector).getLookupIndex();
+		}
+		if (vector instanceof RowVector) {
+			return ((RowVector)vector).getLookupIndex();
+		}
+		return null;
+	}
+
 	/**
 	 * Finds first (lowest index) exact occurrence of specified value.
 	 * @param lookupComparer the value to be found in column or row vector
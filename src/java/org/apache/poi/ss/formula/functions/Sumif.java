@@ -75,7 +75,10 @@ public final class Sumif extends Var2or3ArgFunction {
 		    return NumberEval.ZERO;
 		}
 
-		double result = sumMatchingCells(aeRange, mp, aeSum);
+		Double result = CriteriaGroups.aggregate(aeSum, new AreaEval[] { aeRange }, new I_MatchPredicate[] { mp });
+		if (result == null) {
+			result = sumMatchingCells(aeRange, mp, aeSum);
+		}
 		return new NumberEval(result);
 	}
 
@@ -0,0 +1,856 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.ss.usermodel;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.text.DateFormatSymbols;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.poi.ss.util.NumberToTextConverter;
+
+/**
+ * An Excel number format compiled to an immutable representation, which formats values directly
+ * into a {@link StringBuilder} without {@link java.text.DecimalFormat} or
+ * {@link java.text.SimpleDateFormat}. Instances are shared and can be used by several threads.<p>
+ *
+ * Only the formats are compiled, which {@link DataFormatter} would format the same way
+ * by its <code>java.text</code> formats:
+ * <ul>
+ * <li><em>General</em></li>
+ * <li>number formats with a single section of digit placeholders (<code>0</code> and <code>#</code>),
+ *   thousands separators, a decimal point, a percent sign and literal text</li>
+ * <li>date formats of years, months, days, weekdays, hours, minutes, seconds and AM/PM markers</li>
+ * </ul>
+ * {@link #getInstance(String, Locale)} returns <code>null</code> for all other formats, e.g. formats
+ * with several sections or conditions, colors, fractions, scaling, scientific notation or elapsed times.
+ *
+ * @since POI 4.1.1
+ */
+public final class CompiledNumberFormat {
+    private enum Kind { GENERAL, NUMBER, DATE }
+
+    /** the cache marker for formats, which can't be compiled */
+    private static final Object UNSUPPORTED = new Object();
+    private static final int MAX_CACHED_FORMATS = 10000;
+    private static final ConcurrentMap<List<Object>, Object> CACHE = new ConcurrentHashMap<>();
+
+    private static final MathContext TO_10_SF = new MathContext(10, RoundingMode.HALF_UP);
+    /** the significant digits of the scientific notation of <em>General</em> */
+    private static final int SCIENTIFIC_DIGITS = 6;
+
+    private final Kind kind;
+
+    private final char zeroDigit;
+    private final char groupingSeparator;
+    private final char decimalSeparator;
+    /** the minus sign as expanded by {@link java.text.DecimalFormat}, which may include bidi marks */
+    private final String minusSign;
+    private final String exponentSeparator;
+    private final String infinity;
+    private final String nan;
+
+    // number formats
+    private final String prefix;
+    private final String suffix;
+    private final int minIntegerDigits;
+    private final int minFractionDigits;
+    private final int maxFractionDigits;
+    private final boolean grouping;
+    private final boolean percent;
+
+    // date formats
+    private final DateToken[] dateTokens;
+    private final String[] months;
+    private final String[] shortMonths;
+    private final String[] weekdays;
+    private final String[] shortWeekdays;
+    private final String[] amPmStrings;
+
+    /**
+     * A field (letter and count as in {@link java.text.SimpleDateFormat}) or literal text of a date format
+     */
+    private static final class DateToken {
+        private final char letter;
+        private final int count;
+        private final String literal;
+
+        private DateToken(char letter, int count, String literal) {
+            this.letter = letter;
+            this.count = count;
+            this.literal = literal;
+        }
+    }
+
+    private CompiledNumberFormat(Kind kind, Locale locale, NumberPattern number, DateToken[] dateTokens) {
+        this.kind = kind;
+        DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(locale);
+        zeroDigit = symbols.getZeroDigit();
+        groupingSeparator = symbols.getGroupingSeparator();
+        decimalSeparator = symbols.getDecimalSeparator();
+        // the affixes of the java.text formats are taken from a DecimalFormat, as they may differ
+        // from the bare symbols, e.g. the minus sign is preceded by a bidi mark in arabic locales
+        minusSign = new DecimalFormat("0", symbols).getNegativePrefix();
+        exponentSeparator = symbols.getExponentSeparator();
+        infinity = symbols.getInfinity();
+        nan = symbols.getNaN();
+
+        if (number != null) {
+            String percentSign = new DecimalFormat("0%", symbols).getPositiveSuffix();
+            prefix = number.prefix.toString().replace("%", percentSign).replace("-", minusSign);
+            suffix = number.suffix.toString().replace("%", percentSign).replace("-", minusSign);
+            minIntegerDigits = number.minIntegerDigits;
+            minFractionDigits = number.minFractionDigits;
+            maxFractionDigits = number.maxFractionDigits;
+            grouping = number.grouping;
+            percent = number.percent;
+        } else {
+            prefix = suffix = "";
+            minIntegerDigits = minFractionDigits = maxFractionDigits = 0;
+            grouping = percent = false;
+        }
+
+        this.dateTokens = dateTokens;
+        if (dateTokens != null) {
+            DateFormatSymbols dateSymbols = DateFormatSymbols.getInstance(locale);
+            months = dateSymbols.getMonths();
+            shortMonths = dateSymbols.getShortMonths();
+            weekdays = dateSymbols.getWeekdays();
+            shortWeekdays = dateSymbols.getShortWeekdays();
+            amPmStrings = dateSymbols.getAmPmStrings();
+        } else {
+            months = shortMonths = weekdays = shortWeekdays = amPmStrings = null;
+        }
+    }
+
+    /**
+     * @param formatString the Excel format string
+     * @param locale the locale of the decimal and date symbols
+     * @return the compiled format or <code>null</code>, if the format isn't supported
+     */
+    public static CompiledNumberFormat getInstance(String formatString, Locale locale) {
+        return getInstance(formatString, locale, false);
+    }
+
+    /**
+     * @param formatString the Excel format string
+     * @param locale the locale of the decimal and date symbols
+     * @param emulateCSV whether to emulate CSV output like {@link DataFormatter#DataFormatter(boolean)},
+     *   i.e. to replace spacers (<code>_</code>) by a space instead of removing them
+     * @return the compiled format or <code>null</code>, if the format isn't supported
+     */
+    public static CompiledNumberFormat getInstance(String formatString, Locale locale, boolean emulateCSV) {
+        List<Object> key = Arrays.asList(formatString, locale, emulateCSV);
+        Object cached = CACHE.get(key);
+        if (cached == null) {
+            cached = compile(formatString, locale, emulateCSV);
+            if (cached == null) {
+                cached = UNSUPPORTED;
+            }
+            if (CACHE.size() >= MAX_CACHED_FORMATS) {
+                CACHE.clear();
+            }
+            CACHE.put(key, cached);
+        }
+        return (cached == UNSUPPORTED) ? null : (CompiledNumberFormat)cached;
+    }
+
+    /**
+     * @return <code>true</code>, if this format formats the values as dates
+     */
+    public boolean isDateFormat() {
+        return kind == Kind.DATE;
+    }
+
+    /**
+     * Formats the value like {@link DataFormatter#formatRawCellContents(double, int, String, boolean)},
+     * i.e. numbers are rounded by their shortest decimal representation of 15 significant digits.
+     *
+     * @param value the value to format
+     * @param use1904Windowing whether dates are based on the 1904 date windowing
+     * @param out the builder to append the formatted value to
+     */
+    public void format(double value, boolean use1904Windowing, StringBuilder out) {
+        if (kind == Kind.DATE) {
+            formatDate(value, use1904Windowing, out);
+        } else {
+            formatNumber(value, true, out);
+        }
+    }
+
+    /**
+     * Formats a number
+     *
+     * @param value the value to format
+     * @param decimalRounding <code>true</code> to round the 15 digit decimal representation of the value
+     *   like Excel, <code>false</code> to round the exact binary value like {@link java.text.DecimalFormat}
+     * @param out the builder to append the formatted value to
+     */
+    void formatNumber(double value, boolean decimalRounding, StringBuilder out) {
+        String text = null;
+        if (decimalRounding && !Double.isNaN(value) && !Double.isInfinite(value)) {
+            text = NumberToTextConverter.toText(value);
+            if (text.indexOf('E') != -1) {
+                text = null;
+            }
+        }
+        if (kind == Kind.GENERAL) {
+            formatGeneral(value, text, out);
+        } else {
+            formatDecimal(value, text, prefix, suffix, percent, minIntegerDigits, minFractionDigits, maxFractionDigits, grouping, out);
+        }
+    }
+
+    /**
+     * Formats like {@link ExcelGeneralNumberFormat}
+     */
+    private void formatGeneral(double pValue, String text, StringBuilder out) {
+        double value = (text != null) ? Double.parseDouble(text) : pValue;
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            formatDecimal(value, null, "", "", false, 0, 0, 0, false, out);
+            return;
+        }
+        double abs = Math.abs(value);
+        if (abs >= 1E11 || (abs <= 1E-10 && abs > 0)) {
+            formatScientific(value, (text != null) ? new BigDecimal(text) : null, out);
+        } else if (Math.floor(value) == value || abs >= 1E10) {
+            formatDecimal(value, text, "", "", false, 0, 0, 0, false, out);
+        } else {
+            double rounded = new BigDecimal(value).round(TO_10_SF).doubleValue();
+            formatDecimal(rounded, null, "", "", false, 1, 0, 10, false, out);
+        }
+    }
+
+    /**
+     * Formats like a {@link java.text.DecimalFormat} of a single section pattern
+     *
+     * @param text the decimal representation of the value or <code>null</code> to use the double value
+     */
+    private void formatDecimal(double value, String text, String prefix, String suffix, boolean percent,
+            int minInt, int minFrac, int maxFrac, boolean grouping, StringBuilder out) {
+        if (Double.isNaN(value)) {
+            out.append(nan);
+            return;
+        }
+
+        Digits digits;
+        boolean negative;
+        if (text != null) {
+            digits = new Digits(text);
+            negative = text.charAt(0) == '-' && !digits.isZero();
+            if (percent && !digits.isZero()) {
+                digits.pointPos += 2;
+            }
+            digits.round(maxFrac, null);
+        } else {
+            negative = value < 0.0 || (value == 0.0 && 1 / value < 0.0);
+            double abs = Math.abs(percent ? value * 100 : value);
+            if (Double.isInfinite(abs)) {
+                appendAffixes(negative, prefix, out);
+                out.append(infinity).append(suffix);
+                return;
+            }
+            digits = new Digits(Double.toString(abs));
+            digits.round(maxFrac, abs);
+        }
+
+        appendAffixes(negative, prefix, out);
+        int integerCount = Math.max(minInt, digits.pointPos);
+        for (int i = integerCount - 1; i >= 0; i--) {
+            appendDigit(digits.getDigit(digits.pointPos - 1 - i), out);
+            if (grouping && i > 0 && i % 3 == 0) {
+                out.append(groupingSeparator);
+            }
+        }
+
+        int fractionCount = Math.max(0, digits.count - digits.pointPos);
+        boolean fractionPresent = minFrac > 0 || fractionCount > 0;
+        if (!fractionPresent && integerCount == 0) {
+            out.append(zeroDigit);
+        }
+        if (fractionPresent) {
+            out.append(decimalSeparator);
+            for (int i = 0; i < Math.max(minFrac, fractionCount); i++) {
+                appendDigit(digits.getDigit(digits.pointPos + i), out);
+            }
+        }
+        out.append(suffix);
+    }
+
+    /**
+     * Formats like a {@link java.text.DecimalFormat} of the pattern <code>0.#####E0</code>
+     */
+    private void formatScientific(double value, BigDecimal decimal, StringBuilder out) {
+        BigDecimal rounded;
+        boolean negative;
+        if (decimal != null) {
+            negative = decimal.signum() < 0;
+            rounded = decimal.abs().round(new MathContext(SCIENTIFIC_DIGITS, RoundingMode.HALF_UP));
+        } else {
+            negative = value < 0.0;
+            double abs = Math.abs(value);
+            rounded = new BigDecimal(Double.toString(abs));
+            if (rounded.precision() > SCIENTIFIC_DIGITS) {
+                rounded = new BigDecimal(abs).round(new MathContext(SCIENTIFIC_DIGITS, RoundingMode.HALF_UP));
+            }
+        }
+        rounded = rounded.stripTrailingZeros();
+        String digits = rounded.unscaledValue().toString();
+        int exponent = digits.length() - rounded.scale() - 1;
+
+        if (negative) {
+            out.append(minusSign);
+        }
+        appendDigit(digits.charAt(0), out);
+        if (digits.length() > 1) {
+            out.append(decimalSeparator);
+            for (int i = 1; i < digits.length(); i++) {
+                appendDigit(digits.charAt(i), out);
+            }
+        }
+        out.append(exponentSeparator);
+        // DataFormatter completes the scientific notation like Excel
+        out.append(exponent < 0 ? minusSign : "+");
+        String exponentDigits = Integer.toString(Math.abs(exponent));
+        for (int i = 0; i < exponentDigits.length(); i++) {
+            appendDigit(exponentDigits.charAt(i), out);
+        }
+    }
+
+    /**
+     * The significant decimal digits of a non-negative number, which are rounded like
+     * {@link java.text.DecimalFormat} rounds them in the rounding mode HALF_UP
+     */
+    private static final class Digits {
+        /** the digits without leading and trailing zeros */
+        private final char[] digits;
+        private int count;
+        /** the number of digits before the decimal point, which may be negative or larger than the count */
+        private int pointPos;
+
+        /**
+         * @param text a decimal number as returned by {@link Double#toString(double)} or
+         *   {@link NumberToTextConverter#toText(double)}
+         */
+        private Digits(String text) {
+            int exponentPos = text.indexOf('E');
+            int end = (exponentPos == -1) ? text.length() : exponentPos;
+            digits = new char[end + 1];
+            boolean afterPoint = false;
+            for (int i = 0; i < end; i++) {
+                char c = text.charAt(i);
+                if (c == '.') {
+                    afterPoint = true;
+                } else if (c >= '0' && c <= '9') {
+                    if (c == '0' && count == 0) {
+                        // leading zeros after the point move the point
+                        if (afterPoint) {
+                            pointPos--;
+                        }
+                    } else {
+                        digits[count++] = c;
+                        if (!afterPoint) {
+                            pointPos++;
+                        }
+                    }
+                }
+            }
+            if (exponentPos != -1) {
+                pointPos += Integer.parseInt(text.substring(exponentPos + 1));
+            }
+            stripTrailingZeros();
+        }
+
+        private boolean isZero() {
+            return count == 0;
+        }
+
+        /**
+         * @return the digit at the position relative to the start of the digits, which might be a padding zero
+         */
+        private char getDigit(int index) {
+            return (index >= 0 && index < count) ? digits[index] : '0';
+        }
+
+        /**
+         * Rounds to the fraction digits
+         *
+         * @param maxFrac the maximum number of fraction digits
+         * @param binaryValue the exact value, if the digits are the shortest representation of a double,
+         *   or <code>null</code> if the digits are exact
+         */
+        private void round(int maxFrac, Double binaryValue) {
+            int keep = pointPos + maxFrac;
+            if (keep >= count) {
+                return;
+            }
+            boolean roundUp;
+            if (keep < 0) {
+                roundUp = false;
+            } else if (digits[keep] != '5') {
+                roundUp = digits[keep] > '5';
+            } else if (keep + 1 < count || binaryValue == null) {
+                roundUp = true;
+            } else {
+                // a tie of the shortest representation is decided by the exact binary value
+                BigDecimal shortest = new BigDecimal(new String(digits, 0, count)).scaleByPowerOfTen(pointPos - count);
+                roundUp = new BigDecimal(binaryValue).compareTo(shortest) >= 0;
+            }
+
+            count = Math.max(keep, 0);
+            if (roundUp) {
+                int i = count - 1;
+                while (i >= 0 && digits[i] == '9') {
+                    i--;
+                }
+                if (i >= 0) {
+                    digits[i]++;
+                    count = i + 1;
+                } else {
+                    // all digits were nines or there are no digits left
+                    digits[0] = '1';
+                    count = 1;
+                    pointPos++;
+                }
+            }
+            stripTrailingZeros();
+        }
+
+        private void stripTrailingZeros() {
+            while (count > 0 && digits[count - 1] == '0') {
+                count--;
+            }
+            if (count == 0) {
+                pointPos = 0;
+            }
+        }
+    }
+
+    private void appendAffixes(boolean negative, String prefix, StringBuilder out) {
+        if (negative) {
+            out.append(minusSign);
+        }
+        out.append(prefix);
+    }
+
+    private void appendDigit(char digit, StringBuilder out) {
+        out.append((char)(zeroDigit + (digit - '0')));
+    }
+
+    /**
+     * Formats a date like {@link ExcelStyleDateFormatter} formats the date of
+     * {@link DateUtil#getJavaDate(double, boolean)} in a time zone without offset changes
+     */
+    private void formatDate(double value, boolean use1904Windowing, StringBuilder out) {
+        LocalDateTime date = DateUtil.getLocalDateTime(value, use1904Windowing);
+        for (DateToken token : dateTokens) {
+            switch (token.letter) {
+                case 0:
+                    out.append(token.literal);
+                    break;
+                case 'y':
+                    if (token.count == 2) {
+                        appendPadded(date.getYear() % 100, 2, out);
+                    } else {
+                        appendPadded(date.getYear(), token.count, out);
+                    }
+                    break;
+                case 'M':
+                    if (token.count >= 4) {
+                        out.append(months[date.getMonthValue() - 1]);
+                    } else if (token.count == 3) {
+                        out.append(shortMonths[date.getMonthValue() - 1]);
+                    } else {
+                        appendPadded(date.getMonthValue(), token.count, out);
+                    }
+                    break;
+                case 'd':
+                    appendPadded(date.getDayOfMonth(), token.count, out);
+                    break;
+                case 'E':
+                    // DateFormatSymbols start with Sunday at index 1
+                    int weekday = date.getDayOfWeek().getValue() % 7 + 1;
+                    out.append((token.count >= 4 ? weekdays : shortWeekdays)[weekday]);
+                    break;
+                case 'H':
+                    appendPadded(date.getHour(), token.count, out);
+                    break;
+                case 'h':
+                    int hour = date.getHour() % 12;
+                    appendPadded(hour == 0 ? 12 : hour, token.count, out);
+                    break;
+                case 'm':
+                    appendPadded(date.getMinute(), token.count, out);
+                    break;
+                case 's':
+                    appendPadded(date.getSecond(), token.count, out);
+                    break;
+                case 'a':
+                    out.append(amPmStrings[date.getHour() < 12 ? 0 : 1]);
+                    break;
+                default:
+                    throw new IllegalStateException("Unexpected date field " + token.letter);
+            }
+        }
+    }
+
+    private static void appendPadded(int value, int minDigits, StringBuilder out) {
+        String digits = Integer.toString(value);
+        for (int i = digits.length(); i < minDigits; i++) {
+            out.append('0');
+        }
+        out.append(digits);
+    }
+
+    private static CompiledNumberFormat compile(String formatString, Locale locale, boolean emulateCSV) {
+        if (formatString == null) {
+            return null;
+        }
+        if (formatString.indexOf(';') != formatString.lastIndexOf(';')) {
+            // several sections are formatted by CellFormat
+            return null;
+        }
+        String formatStr = replaceLocaleGroup(formatString);
+        if (formatStr == null || formatStr.trim().isEmpty()) {
+            return null;
+        }
+        if ("General".equalsIgnoreCase(formatStr) || "@".equals(formatStr)) {
+            // DataFormatter completes the exponent by searching for an ASCII "E" and digit or minus sign,
+            // which isn't found, if the minus sign is preceded by a bidi mark
+            DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(locale);
+            if (!"E".equals(symbols.getExponentSeparator()) || symbols.getZeroDigit() != '0'
+                    || !"-".equals(new DecimalFormat("0", symbols).getNegativePrefix())) {
+                return null;
+            }
+            return new CompiledNumberFormat(Kind.GENERAL, locale, null, null);
+        }
+        if (DateUtil.isADateFormat(-1, formatString)) {
+            DateToken[] tokens = compileDate(formatStr);
+            return (tokens == null) ? null : new CompiledNumberFormat(Kind.DATE, locale, null, tokens);
+        }
+        NumberPattern number = NumberPattern.compile(formatStr, emulateCSV);
+        return (number == null) ? null : new CompiledNumberFormat(Kind.NUMBER, locale, number, null);
+    }
+
+    /**
+     * Replaces a locale group like <code>[$&euro;-407]</code> by its currency symbol like {@link DataFormatter}
+     *
+     * @return the format string without locale group or <code>null</code> for other or several groups
+     */
+    private static String replaceLocaleGroup(String formatStr) {
+        int start = formatStr.indexOf('[');
+        if (start == -1) {
+            return formatStr;
+        }
+        int end = formatStr.indexOf(']', start);
+        if (end == -1 || formatStr.indexOf('[', end) != -1 || !formatStr.startsWith("[$", start)) {
+            return null;
+        }
+        int dash = formatStr.indexOf('-', start);
+        if (dash == -1 || dash > end - 2) {
+            return null;
+        }
+        for (int i = dash + 1; i < end; i++) {
+            char c = formatStr.charAt(i);
+            if (!((c >= '0' && c <= '9') || (c >= 'A' && c <= 'Z'))) {
+                return null;
+            }
+        }
+        String symbol = formatStr.substring(start + 2, dash);
+        if (symbol.indexOf('$') != -1 || symbol.indexOf(']') != -1) {
+            return null;
+        }
+        return formatStr.substring(0, start) + symbol + formatStr.substring(end + 1);
+    }
+
+    /**
+     * Converts the date format to the {@link java.text.SimpleDateFormat} fields the same way as
+     * {@link DataFormatter} does
+     *
+     * @return the fields or <code>null</code>, if the format isn't supported
+     */
+    private static DateToken[] compileDate(String pFormatStr) {
+        String formatStr = pFormatStr
+            .replace("\\-", "-")
+            .replace("\\,", ",")
+            .replace("\\.", ".")
+            .replace("\\ ", " ")
+            .replace("\\/", "/")
+            .replace(";@", "")
+            .replace("\"/\"", "/");
+        for (int i = 0; i < formatStr.length(); i++) {
+            char c = formatStr.charAt(i);
+            if (!isDateLetter(c) && " -/:.,".indexOf(c) == -1) {
+                return null;
+            }
+        }
+
+        // AM/PM markers
+        StringBuilder sb = new StringBuilder();
+        boolean hasAmPm = false;
+        for (int i = 0; i < formatStr.length(); i++) {
+            char c = formatStr.charAt(i);
+            if ("aApP".indexOf(c) != -1) {
+                while (i + 1 < formatStr.length() && "mMpP/".indexOf(formatStr.charAt(i + 1)) != -1) {
+                    i++;
+                }
+                sb.append('a');
+                hasAmPm = true;
+            } else {
+                sb.append(c);
+            }
+        }
+
+        // days as text
+        String withAmPm = sb.toString();
+        sb.setLength(0);
+        int dayRuns = 0;
+        for (int i = 0; i < withAmPm.length(); i++) {
+            char c = withAmPm.charAt(i);
+            int end = i;
+            while (end < withAmPm.length() && Character.toLowerCase(withAmPm.charAt(end)) == 'd') {
+                end++;
+            }
+            if (end - i >= 3) {
+                if (++dayRuns > 1) {
+                    return null;
+                }
+                for (int j = i; j < end; j++) {
+                    sb.append('E');
+                }
+                i = end - 1;
+            } else {
+                sb.append(c);
+            }
+        }
+
+        // months vs. minutes
+        char[] chars = sb.toString().toCharArray();
+        sb.setLength(0);
+        boolean mIsMonth = true;
+        List<Integer> ms = new ArrayList<>();
+        for (char c : chars) {
+            if (c == 'h' || c == 'H') {
+                mIsMonth = false;
+                sb.append(hasAmPm ? 'h' : 'H');
+            } else if (c == 'm' || c == 'M') {
+                if (mIsMonth) {
+                    sb.append('M');
+                    ms.add(sb.length() - 1);
+                } else {
+                    sb.append('m');
+                }
+            } else if (c == 's' || c == 'S') {
+                sb.append('s');
+                // if 'M' precedes 's' it should be minutes ('m')
+                for (int index : ms) {
+                    if (sb.charAt(index) == 'M') {
+                        sb.setCharAt(index, 'm');
+                    }
+                }
+                mIsMonth = true;
+                ms.clear();
+            } else if (Character.isLetter(c)) {
+                mIsMonth = true;
+                ms.clear();
+                sb.append(c == 'Y' ? 'y' : c == 'D' ? 'd' : c);
+            } else {
+                if (Character.isWhitespace(c)) {
+                    ms.clear();
+                }
+                sb.append(c);
+            }
+        }
+
+        // split into fields and literals
+        String pattern = sb.toString();
+        List<DateToken> tokens = new ArrayList<>();
+        for (int i = 0; i < pattern.length(); ) {
+            char c = pattern.charAt(i);
+            int end = i + 1;
+            if (Character.isLetter(c)) {
+                while (end < pattern.length() && pattern.charAt(end) == c) {
+                    end++;
+                }
+                if (c == 'M' && end - i > 4) {
+                    // MMMMM is the first letter of the month, which isn't compiled
+                    return null;
+                }
+                tokens.add(new DateToken(c, end - i, null));
+            } else {
+                while (end < pattern.length() && !Character.isLetter(pattern.charAt(end))) {
+                    end++;
+                }
+                tokens.add(new DateToken((char)0, 0, pattern.substring(i, end)));
+            }
+            i = end;
+        }
+        return tokens.toArray(new DateToken[0]);
+    }
+
+    private static boolean isDateLetter(char c) {
+        return "yYmMdDhHsSaApP".indexOf(c) != -1;
+    }
+
+    /**
+     * The number part, prefix and suffix of a single section number format, which are interpreted
+     * like {@link DataFormatter} converts the format to a {@link java.text.DecimalFormat} pattern
+     */
+    private static final class NumberPattern {
+        /** the prefix and suffix with <code>%</code> and <code>-</code> for the localized symbols */
+        private final StringBuilder prefix = new StringBuilder();
+        private final StringBuilder suffix = new StringBuilder();
+        private int minIntegerDigits;
+        private int minFractionDigits;
+        private int maxFractionDigits;
+        private boolean grouping;
+        private boolean percent;
+
+        private static NumberPattern compile(String formatStr, boolean emulateCSV) {
+            NumberPattern result = new NumberPattern();
+            // 0 = prefix, 1 = number, 2 = suffix
+            int phase = 0;
+            int digitLeftCount = 0, zeroDigitCount = 0, digitRightCount = 0;
+            int decimalPos = -1;
+            int groupingCount = -1;
+            for (int i = 0; i < formatStr.length(); i++) {
+                char c = formatStr.charAt(i);
+                if (c == '#' || c == '0' || c == ',' || c == '.') {
+                    if (phase == 2) {
+                        return null;
+                    }
+                    phase = 1;
+                    if (c == '#') {
+                        if (zeroDigitCount > 0) {
+                            digitRightCount++;
+                        } else {
+                            digitLeftCount++;
+                        }
+                        if (groupingCount >= 0 && decimalPos < 0) {
+                            groupingCount++;
+                        }
+                    } else if (c == '0') {
+                        if (digitRightCount > 0) {
+                            return null;
+                        }
+                        zeroDigitCount++;
+                        if (groupingCount >= 0 && decimalPos < 0) {
+                            groupingCount++;
+                        }
+                    } else if (c == ',') {
+                        groupingCount = 0;
+                    } else {
+                        if (decimalPos >= 0) {
+                            return null;
+                        }
+                        decimalPos = digitLeftCount + zeroDigitCount + digitRightCount;
+                    }
+                    continue;
+                }
+
+                if (phase == 1) {
+                    phase = 2;
+                }
+                StringBuilder affix = (phase == 0) ? result.prefix : result.suffix;
+                if (c == '"') {
+                    int end = formatStr.indexOf('"', i + 1);
+                    if (end == -1 || !appendLiteral(formatStr.substring(i + 1, end), affix)) {
+                        return null;
+                    }
+                    i = end;
+                } else if (c == '\\') {
+                    if (i + 1 == formatStr.length() || !appendLiteral(formatStr.substring(i + 1, i + 2), affix)) {
+                        return null;
+                    }
+                    i++;
+                } else if (c == '_' || c == '*') {
+                    if (i + 1 == formatStr.length()) {
+                        return null;
+                    }
+                    // spacers are replaced by a space for CSV, otherwise spacers and padding are removed
+                    if (c == '_' && emulateCSV) {
+                        affix.append(' ');
+                    }
+                    i++;
+                } else if (c == '%') {
+                    if (result.percent) {
+                        return null;
+                    }
+                    result.percent = true;
+                    affix.append('%');
+                } else if (c == '-') {
+                    affix.append('-');
+                } else if (!appendLiteral(String.valueOf(c), affix)) {
+                    return null;
+                }
+            }
+
+            if (phase == 0) {
+                return null;
+            }
+            if (zeroDigitCount == 0 && digitLeftCount > 0 && decimalPos >= 0) {
+                // handle "###.###" and "###." and ".###" like DecimalFormat
+                int n = decimalPos;
+                if (n == 0) {
+                    ++n;
+                }
+                digitRightCount = digitLeftCount - n;
+                digitLeftCount = n - 1;
+                zeroDigitCount = 1;
+            }
+            if ((decimalPos < 0 && digitRightCount > 0)
+                || (decimalPos >= 0 && (decimalPos < digitLeftCount || decimalPos > digitLeftCount + zeroDigitCount))
+                || (groupingCount != -1 && groupingCount != 3)
+                || (decimalPos >= 0 && decimalPos == digitLeftCount + zeroDigitCount + digitRightCount)) {
+                // malformed patterns, other grouping sizes, scaling and trailing decimal points aren't compiled
+                return null;
+            }
+            int digitTotalCount = digitLeftCount + zeroDigitCount + digitRightCount;
+            int effectiveDecimalPos = decimalPos >= 0 ? decimalPos : digitTotalCount;
+            result.minIntegerDigits = effectiveDecimalPos - digitLeftCount;
+            result.maxFractionDigits = decimalPos >= 0 ? (digitTotalCount - decimalPos) : 0;
+            result.minFractionDigits = decimalPos >= 0 ? (digitLeftCount + zeroDigitCount - decimalPos) : 0;
+            result.grouping = groupingCount > 0;
+            return result;
+        }
+
+        /**
+         * Appends literal text, which doesn't contain characters with a special meaning in
+         * {@link java.text.DecimalFormat} or {@link DataFormatter}
+         */
+        private static boolean appendLiteral(String text, StringBuilder affix) {
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if ((c >= '0' && c <= '9') || "#,.;%-'\"\\_*?/E@[]\u2030\u00A4".indexOf(c) != -1 || c < ' ') {
+                    return false;
+                }
+            }
+            affix.append(text);
+            return true;
+        }
+    }
+}
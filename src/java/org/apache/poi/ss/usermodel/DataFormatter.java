@@ -30,14 +30,19 @@ import java.text.FieldPosition;
 import java.text.Format;
 import java.text.ParsePosition;
 import java.text.SimpleDateFormat;
+import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Observable;
 import java.util.Observer;
+import java.util.Set;
+import java.util.TimeZone;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -204,6 +209,25 @@ public class DataFormatter implements Observer {
      */
     private final Map<String,Format> formats = new HashMap<>();
 
+    /** the format strings of the formats added by {@link #addFormat(String, Format)} */
+    private final Set<String> addedFormats = new HashSet<>();
+
+    /**
+     * The format strings and indexes of the date formats, which were first used by a compiled
+     * format, so their java.text format is created for invalid dates as if it was cached then
+     */
+    private final Map<String,Integer> compiledDateFormats = new HashMap<>();
+
+    /** whether to format by the shared {@link CompiledNumberFormat}s where possible */
+    private boolean useCompiledFormats = true;
+
+    /** the time zone and locales, for which {@link #compiledDateZone} was checked */
+    private TimeZone compiledDateTimeZone;
+    private Locale compiledDateLocale;
+    private Locale compiledDateFormatLocale;
+    /** the zone to check the compiled dates in or <code>null</code>, if dates can't be compiled */
+    private ZoneId compiledDateZone;
+
     private final boolean emulateCSV;
 
     /** stores the locale valid it the last formatting call */
@@ -290,13 +314,11 @@ public class DataFormatter implements Observer {
      * </ul>
      *
      * @param cell The cell to retrieve a Format for
-     * @return A Format for the format String
+     * @param numFmt the number format of the cell, which may come from a conditional format
      */
-    private Format getFormat(Cell cell, ConditionalFormattingEvaluator cfEvaluator) {
+    private Format getFormat(Cell cell, ExcelNumberFormat numFmt) {
         if (cell == null) return null;
         
-        ExcelNumberFormat numFmt = ExcelNumberFormat.from(cell, cfEvaluator);
-        
         if ( numFmt == null) {
             return null;
         }
@@ -372,7 +394,10 @@ public class DataFormatter implements Observer {
         }
         
         // Build a formatter, and cache it
-        format = createFormat(cellValue, formatIndex, formatStr);
+        Integer dateFormatIndex = compiledDateFormats.remove(formatStr);
+        format = (dateFormatIndex != null)
+            ? createFormat(0.0, dateFormatIndex, formatStr)
+            : createFormat(cellValue, formatIndex, formatStr);
         formats.put(formatStr, format);
         return format;
     }
@@ -825,7 +850,18 @@ public class DataFormatter implements Observer {
         if (cell == null) {
             return null;
         }
-        Format dateFormat = getFormat(cell, cfEvaluator);
+        ExcelNumberFormat numFmt = ExcelNumberFormat.from(cell, cfEvaluator);
+        if (numFmt != null) {
+            double value = cell.getNumericCellValue();
+            boolean use1904Windowing = isDate1904(cell);
+            CompiledNumberFormat compiled = getCompiledFormat(value, numFmt.getIdx(), numFmt.getFormat(), use1904Windowing, true);
+            if (compiled != null) {
+                StringBuilder sb = new StringBuilder();
+                compiled.format(value, use1904Windowing, sb);
+                return sb.toString();
+            }
+        }
+        Format dateFormat = getFormat(cell, numFmt);
         synchronized (dateFormat) {
             if(dateFormat instanceof ExcelStyleDateFormatter) {
                 // Hint about the raw excel value
@@ -855,8 +891,17 @@ public class DataFormatter implements Observer {
         if (cell == null) {
             return null;
         }
-        Format numberFormat = getFormat(cell, cfEvaluator);
+        ExcelNumberFormat numFmt = ExcelNumberFormat.from(cell, cfEvaluator);
         double d = cell.getNumericCellValue();
+        if (numFmt != null) {
+            CompiledNumberFormat compiled = getCompiledFormat(d, numFmt.getIdx(), numFmt.getFormat(), false, false);
+            if (compiled != null) {
+                StringBuilder sb = new StringBuilder();
+                compiled.formatNumber(d, false, sb);
+                return sb.toString();
+            }
+        }
+        Format numberFormat = getFormat(cell, numFmt);
         if (numberFormat == null) {
             return String.valueOf(d);
         }
@@ -883,6 +928,12 @@ public class DataFormatter implements Observer {
         // Is it a date?
         if(DateUtil.isADateFormat(formatIndex,formatString)) {
             if(DateUtil.isValidExcelDate(value)) {
+                CompiledNumberFormat compiled = getCompiledFormat(value, formatIndex, formatString, use1904Windowing, true);
+                if (compiled != null) {
+                    StringBuilder sb = new StringBuilder();
+                    compiled.format(value, use1904Windowing, sb);
+                    return sb.toString();
+                }
                 Format dateFormat = getFormat(value, formatIndex, formatString, use1904Windowing);
                 if(dateFormat instanceof ExcelStyleDateFormatter) {
                     // Hint about the raw excel value
@@ -898,6 +949,12 @@ public class DataFormatter implements Observer {
         }
         
         // else Number
+        CompiledNumberFormat compiled = getCompiledFormat(value, formatIndex, formatString, use1904Windowing, false);
+        if (compiled != null) {
+            StringBuilder sb = new StringBuilder();
+            compiled.formatNumber(value, true, sb);
+            return sb.toString();
+        }
         Format numberFormat = getFormat(value, formatIndex, formatString, use1904Windowing);
         if (numberFormat == null) {
             return String.valueOf(value);
@@ -1064,6 +1121,88 @@ public class DataFormatter implements Observer {
      */
     public void addFormat(String excelFormatStr, Format format) {
         formats.put(excelFormatStr, format);
+        addedFormats.add(excelFormatStr);
+    }
+
+    /**
+     * Sets whether numbers and dates are formatted by the shared, thread-safe
+     * {@link CompiledNumberFormat}s, if the format string is supported by them.
+     * The compiled formats produce the same text as the <code>java.text</code> formats,
+     * but don't need to be created and synchronized per formatter.
+     * Formats added by {@link #addFormat(String, Format)} always take precedence.
+     *
+     * @param useCompiledFormats <code>true</code> to use the compiled formats (the default),
+     *   <code>false</code> to always use the <code>java.text</code> formats
+     * @since POI 4.1.1
+     */
+    public void setUseCompiledFormats(boolean useCompiledFormats) {
+        this.useCompiledFormats = useCompiledFormats;
+    }
+
+    /**
+     * @return the compiled format for the value or <code>null</code>, if the value has to be
+     *   formatted by the <code>java.text</code> formats
+     */
+    private CompiledNumberFormat getCompiledFormat(double value, int formatIndex, String formatStr,
+            boolean use1904Windowing, boolean date) {
+        if (!useCompiledFormats || formatStr == null || addedFormats.contains(formatStr)
+                || Double.isNaN(value) || Double.isInfinite(value)) {
+            return null;
+        }
+        // Excel's # with value 0 will output empty, which is handled by the java.text formats
+        if (emulateCSV && value == 0.0 && formatStr.contains("#") && !formatStr.contains("0")) {
+            return null;
+        }
+        if (date) {
+            ZoneId zone = getCompiledDateZone();
+            // local times skipped by a daylight saving transition are shifted by java.util.Date
+            if (zone == null || (!zone.getRules().isFixedOffset() && zone.getRules().getValidOffsets(
+                    DateUtil.getLocalDateTime(value, use1904Windowing)).isEmpty())) {
+                return null;
+            }
+        }
+        CompiledNumberFormat compiled = CompiledNumberFormat.getInstance(formatStr, locale, emulateCSV);
+        // the compiled formats are dates, if the format string is a date format, but the built-in
+        // date formats are dates regardless of their format string
+        if (compiled == null || compiled.isDateFormat() != date || (!date && DateUtil.isInternalDateFormat(formatIndex))) {
+            return null;
+        }
+        if (date && formats.get(formatStr) == null) {
+            // invalid dates are formatted by the java.text format, which would have been cached -
+            // also in place of a null format, which was cached for an invalid date
+            compiledDateFormats.putIfAbsent(formatStr, formatIndex);
+        }
+        return compiled;
+    }
+
+    /**
+     * The dates of the java.text formats are converted by calendars of the user locale and the
+     * default locale, so the compiled dates are only used for the gregorian calendar and ASCII digits
+     *
+     * @return the zone of the user time zone or <code>null</code>, if the dates can't be compiled
+     */
+    private ZoneId getCompiledDateZone() {
+        TimeZone timeZone = LocaleUtil.getUserTimeZone();
+        Locale userLocale = LocaleUtil.getUserLocale();
+        Locale formatLocale = Locale.getDefault(Locale.Category.FORMAT);
+        if (!timeZone.equals(compiledDateTimeZone) || !userLocale.equals(compiledDateLocale)
+                || !formatLocale.equals(compiledDateFormatLocale)) {
+            ZoneId zone = null;
+            if ("gregory".equals(Calendar.getInstance(timeZone, userLocale).getCalendarType())
+                    && "gregory".equals(Calendar.getInstance(timeZone, formatLocale).getCalendarType())
+                    && DecimalFormatSymbols.getInstance(formatLocale).getZeroDigit() == '0') {
+                ZoneId zoneId = timeZone.toZoneId();
+                // custom time zones might not have the rules of their id
+                if (TimeZone.getTimeZone(zoneId).hasSameRules(timeZone)) {
+                    zone = zoneId;
+                }
+            }
+            compiledDateTimeZone = timeZone;
+            compiledDateLocale = userLocale;
+            compiledDateFormatLocale = formatLocale;
+            compiledDateZone = zone;
+        }
+        return compiledDateZone;
     }
 
     // Some custom formats
@@ -1133,6 +1272,8 @@ public class DataFormatter implements Observer {
         // init built-in formats
 
         formats.clear();
+        addedFormats.clear();
+        compiledDateFormats.clear();
         Format zipFormat = ZipPlusFourFormat.instance;
         addFormat("00000\\-0000", zipFormat);
         addFormat("00000-0000", zipFormat);
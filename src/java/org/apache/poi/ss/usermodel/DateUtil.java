@@ -18,9 +18,13 @@
 
 package org.apache.poi.ss.usermodel;
 
+import java.time.DateTimeException;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeFormatterBuilder;
 import java.time.temporal.ChronoField;
@@ -28,7 +32,10 @@ import java.time.temporal.TemporalAccessor;
 import java.time.temporal.TemporalQueries;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 import org.apache.poi.ss.formula.ConditionalFormattingEvaluator;
@@ -50,6 +57,11 @@ public class DateUtil {
     private static final int    BAD_DATE         = -1;   // used to specify that date is invalid
     public static final long   DAY_MILLISECONDS = SECONDS_PER_DAY * 1000L;
 
+    /** the day before the first day of the 1900 date windowing */
+    private static final long EPOCH_DAY_1900 = LocalDate.of(1899, 12, 31).toEpochDay();
+    /** the day before the first day of the 1904 date windowing */
+    private static final long EPOCH_DAY_1904 = LocalDate.of(1903, 12, 31).toEpochDay();
+
     private static final Pattern TIME_SEPARATOR_PATTERN = Pattern.compile(":");
 
     /**
@@ -93,10 +105,89 @@ public class DateUtil {
      * @param use1904windowing Should 1900 or 1904 date windowing be used?
      */
     public static double getExcelDate(Date date, boolean use1904windowing) {
+        Integer offset = getFixedOffset(LocaleUtil.getUserTimeZone());
+        if (offset != null) {
+            // without offset changes, the local time can be calculated without a calendar
+            long millis = date.getTime() + offset;
+            LocalDateTime local = LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000L),
+                (int)Math.floorMod(millis, 1000L) * 1000000, ZoneOffset.UTC);
+            return getExcelDate(local, use1904windowing);
+        }
         Calendar calStart = LocaleUtil.getLocaleCalendar();
         calStart.setTime(date);   // If date includes hours, minutes, and seconds, set them to 0
         return internalGetExcelDate(calStart, use1904windowing);
     }
+
+    /**
+     * Given a LocalDate, converts it into a double representing its internal Excel representation,
+     *   which is the number of days since 1/1/1900.
+     *
+     * @return Excel representation of Date (-1 if error - test for error by checking for less than 0.1)
+     * @param date the date
+     * @since POI 4.1.1
+     */
+    public static double getExcelDate(LocalDate date) {
+        return getExcelDate(date, false);
+    }
+
+    /**
+     * Given a LocalDate, converts it into a double representing its internal Excel representation,
+     *   which is the number of days since 1/1/1900.
+     *
+     * @return Excel representation of Date (-1 if error - test for error by checking for less than 0.1)
+     * @param date the date
+     * @param use1904windowing Should 1900 or 1904 date windowing be used?
+     * @since POI 4.1.1
+     */
+    public static double getExcelDate(LocalDate date, boolean use1904windowing) {
+        return getExcelDate(date.atStartOfDay(), use1904windowing);
+    }
+
+    /**
+     * Given a LocalDateTime, converts it into a double representing its internal Excel representation,
+     *   which is the number of days since 1/1/1900. Fractional days represent hours, minutes, and seconds.
+     *
+     * @return Excel representation of Date (-1 if error - test for error by checking for less than 0.1)
+     * @param date the date and time
+     * @since POI 4.1.1
+     */
+    public static double getExcelDate(LocalDateTime date) {
+        return getExcelDate(date, false);
+    }
+
+    /**
+     * Given a LocalDateTime, converts it into a double representing its internal Excel representation,
+     *   which is the number of days since 1/1/1900. Fractional days represent hours, minutes, and seconds.
+     *   Unlike the conversions of {@link Date}s, the result doesn't depend on the user time zone.
+     *
+     * @return Excel representation of Date (-1 if error - test for error by checking for less than 0.1)
+     * @param date the date and time
+     * @param use1904windowing Should 1900 or 1904 date windowing be used?
+     * @since POI 4.1.1
+     */
+    public static double getExcelDate(LocalDateTime date, boolean use1904windowing) {
+        int year = date.getYear();
+        if ((!use1904windowing && year < 1900) || (use1904windowing && year < 1904)) {
+            return BAD_DATE;
+        }
+        // the same calculation as for calendars, so the results are identical
+        double fraction = (((date.getHour() * 60.0
+                             + date.getMinute()
+                            ) * 60.0 + date.getSecond()
+                           ) * 1000.0 + date.getNano() / 1000000
+                          ) / DAY_MILLISECONDS;
+        long absoluteDay = date.toLocalDate().toEpochDay() - (use1904windowing ? EPOCH_DAY_1904 : EPOCH_DAY_1900);
+
+        double value = fraction + absoluteDay;
+
+        if (!use1904windowing && value >= 60) {
+            value++;
+        } else if (use1904windowing) {
+            value--;
+        }
+
+        return value;
+    }
     /**
      * Given a Date in the form of a Calendar, converts it into a double
      *  representing its internal Excel representation, which is the
@@ -215,10 +306,81 @@ public class DateUtil {
      *  @return Java representation of the date, or null if date is not a valid Excel date
      */
     public static Date getJavaDate(double date, boolean use1904windowing, TimeZone tz, boolean roundSeconds) {
+        Integer offset = getFixedOffset(tz != null ? tz : LocaleUtil.getUserTimeZone());
+        if (offset != null) {
+            // without offset changes, the time can be calculated without a calendar
+            LocalDateTime local = getLocalDateTime(date, use1904windowing, roundSeconds);
+            return local == null ? null : new Date(local.toInstant(ZoneOffset.UTC).toEpochMilli() - offset);
+        }
         Calendar calendar = getJavaCalendar(date, use1904windowing, tz, roundSeconds);
         return calendar == null ? null : calendar.getTime();
     }
 
+    /**
+     *  Given an Excel date with using 1900 date windowing, converts it to a
+     *  java.time.LocalDateTime.
+     *
+     *  Excel Dates and Times are stored without any timezone information,
+     *  so the local date and time doesn't depend on the user time zone.
+     *
+     *  @param date  The Excel date.
+     *  @return Java representation of the date, or null if date is not a valid Excel date
+     *  @since POI 4.1.1
+     */
+    public static LocalDateTime getLocalDateTime(double date) {
+        return getLocalDateTime(date, false, false);
+    }
+
+    /**
+     *  Given an Excel date with either 1900 or 1904 date windowing,
+     *  converts it to a java.time.LocalDateTime.
+     *
+     *  @param date  The Excel date.
+     *  @param use1904windowing  true if date uses 1904 windowing,
+     *   or false if using 1900 date windowing.
+     *  @return Java representation of the date, or null if date is not a valid Excel date
+     *  @since POI 4.1.1
+     */
+    public static LocalDateTime getLocalDateTime(double date, boolean use1904windowing) {
+        return getLocalDateTime(date, use1904windowing, false);
+    }
+
+    /**
+     *  Given an Excel date with either 1900 or 1904 date windowing,
+     *  converts it to a java.time.LocalDateTime by calculating the days
+     *  since the start of the date windowing, i.e. without a {@link Calendar}.
+     *
+     *  @param date  The Excel date.
+     *  @param use1904windowing  true if date uses 1904 windowing,
+     *   or false if using 1900 date windowing.
+     *  @param roundSeconds round to closest second
+     *  @return Java representation of the date, or null if date is not a valid Excel date
+     *  @since POI 4.1.1
+     */
+    public static LocalDateTime getLocalDateTime(double date, boolean use1904windowing, boolean roundSeconds) {
+        if (!isValidExcelDate(date)) {
+            return null;
+        }
+        int wholeDays = (int)Math.floor(date);
+        int millisecondsInDay = (int)((date - wholeDays) * DAY_MILLISECONDS + 0.5);
+        long epochDay;
+        if (use1904windowing) {
+            // 1904 date windowing uses 1/2/1904 as the first day
+            epochDay = EPOCH_DAY_1904 + wholeDays + 1;
+        } else if (wholeDays < 61) {
+            // Date is prior to 3/1/1900, so adjust because Excel thinks 2/29/1900 exists
+            // If Excel date == 2/29/1900, will become 3/1/1900 in Java representation
+            epochDay = EPOCH_DAY_1900 + wholeDays;
+        } else {
+            epochDay = EPOCH_DAY_1900 + wholeDays - 1;
+        }
+        if (roundSeconds) {
+            millisecondsInDay = (millisecondsInDay + 500) / 1000 * 1000;
+        }
+        // the milliseconds may overflow to the next day
+        return LocalDate.ofEpochDay(epochDay).atStartOfDay().plusNanos(millisecondsInDay * 1000000L);
+    }
+
     /**
      *  Given an Excel date with either 1900 or 1904 date windowing,
      *  converts it to a java.util.Date.
@@ -344,27 +506,61 @@ public class DateUtil {
     // avoid re-checking DataUtil.isADateFormat(int, String) if a given format
     // string represents a date format if the same string is passed multiple times.
     // see https://issues.apache.org/bugzilla/show_bug.cgi?id=55611
-    private static ThreadLocal<Integer> lastFormatIndex = new ThreadLocal<Integer>() {
-        @Override
-        protected Integer initialValue() {
-            return -1;
+    // Apart from the internal date formats, the result only depends on the format string,
+    // so the results are shared by all threads and format indexes.
+    private static final int MAX_CACHED_FORMATS = 10000;
+    private static final Map<String, Boolean> dateFormats = new ConcurrentHashMap<>();
+
+    // the offsets of the time zones without offset changes and the locales with gregorian calendars,
+    // whose dates are converted without calendars
+    private static final Integer NO_FIXED_OFFSET = Integer.MIN_VALUE;
+    private static final Map<String, Integer> fixedOffsets = new ConcurrentHashMap<>();
+    private static final Map<Locale, Boolean> gregorianLocales = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the offset of time zones, whose offset never changes, e.g. UTC, so the dates
+     * in these zones can be converted without a calendar
+     *
+     * @return the offset in milliseconds or <code>null</code>, if a calendar has to be used
+     */
+    private static Integer getFixedOffset(TimeZone timeZone) {
+        // the calendars of some locales aren't gregorian
+        Locale locale = LocaleUtil.getUserLocale();
+        Boolean gregorian = gregorianLocales.get(locale);
+        if (gregorian == null) {
+            gregorian = "gregory".equals(Calendar.getInstance(LocaleUtil.TIMEZONE_UTC, locale).getCalendarType());
+            cacheBounded(gregorianLocales, locale, gregorian);
+        }
+        if (!gregorian || timeZone.useDaylightTime()) {
+            return null;
         }
-    };
-    private static ThreadLocal<String> lastFormatString = new ThreadLocal<>();
-    private static ThreadLocal<Boolean> lastCachedResult = new ThreadLocal<>();
 
-    private static boolean isCached(String formatString, int formatIndex) {
-        String cachedFormatString = lastFormatString.get();
-        return cachedFormatString != null && formatIndex == lastFormatIndex.get()
-                && formatString.equals(cachedFormatString);
+        String id = timeZone.getID();
+        Integer offset = fixedOffsets.get(id);
+        if (offset == null) {
+            offset = NO_FIXED_OFFSET;
+            try {
+                ZoneId zoneId = ZoneId.of(id, ZoneId.SHORT_IDS);
+                if (zoneId.getRules().isFixedOffset()) {
+                    offset = zoneId.getRules().getOffset(Instant.EPOCH).getTotalSeconds() * 1000;
+                }
+            } catch (DateTimeException e) {
+                // custom time zone ids are handled by the calendar
+            }
+            cacheBounded(fixedOffsets, id, offset);
+        }
+        // custom time zones might have other offsets than the zone of their id
+        return (offset == timeZone.getRawOffset()) ? offset : null;
     }
 
-    private static void cache(String formatString, int formatIndex, boolean cached) {
-        lastFormatIndex.set(formatIndex);
-        lastFormatString.set(formatString);
-        lastCachedResult.set(Boolean.valueOf(cached));
+    private static <K,V> void cacheBounded(Map<K,V> cache, K key, V value) {
+        if (cache.size() >= MAX_CACHED_FORMATS) {
+            cache.clear();
+        }
+        cache.put(key, value);
     }
 
+
     /**
      * Given a format ID and its format String, will check to see if the
      *  format represents a date format or not.
@@ -405,7 +601,6 @@ public class DateUtil {
 
         // First up, is this an internal date format?
         if(isInternalDateFormat(formatIndex)) {
-            cache(formatString, formatIndex, true);
             return true;
         }
 
@@ -415,9 +610,16 @@ public class DateUtil {
         }
 
         // check the cache first
-        if (isCached(formatString, formatIndex)) {
-            return lastCachedResult.get();
+        Boolean cached = dateFormats.get(formatString);
+        if (cached != null) {
+            return cached;
         }
+        boolean result = isADateFormatString(formatString);
+        cacheBounded(dateFormats, formatString, result);
+        return result;
+    }
+
+    private static boolean isADateFormatString(String formatString) {
 
         String fs = formatString;
         /*if (false) {
@@ -468,7 +670,6 @@ public class DateUtil {
 
         // short-circuit if it indicates elapsed time: [h], [m] or [s]
         if(date_ptrn4.matcher(fs).matches()){
-            cache(formatString, formatIndex, true);
             return true;
         }
         // If it starts with [DBNum1] or [DBNum2] or [DBNum3]
@@ -498,9 +699,7 @@ public class DateUtil {
         //  y m d h s - \ / , . : [ ] T
         // optionally followed by AM/PM
 
-        boolean result = date_ptrn3b.matcher(fs).matches();
-        cache(formatString, formatIndex, result);
-        return result;
+        return date_ptrn3b.matcher(fs).matches();
     }
 
     /**
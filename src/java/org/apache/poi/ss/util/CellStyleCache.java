@@ -0,0 +1,63 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.ss.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.poi.ss.usermodel.CellStyleCacheSupport;
+import org.apache.poi.util.Internal;
+
+/**
+ * The cell style indexes of a workbook keyed by their format properties, which are used by
+ * {@link CellUtil} to find existing styles. The styles are indexed incrementally, i.e. only the
+ * styles added since the last lookup are scanned.
+ *
+ * @see CellStyleCacheSupport
+ * @since POI 4.1.1
+ */
+@Internal
+public final class CellStyleCache {
+    private final Map<Map<String, Object>, Integer> indexes = new HashMap<>();
+    /** the number of styles, which were indexed */
+    private int scannedCount;
+
+    Integer get(Map<String, Object> properties) {
+        return indexes.get(properties);
+    }
+
+    /**
+     * Adds a style, which wasn't indexed yet
+     */
+    void add(Map<String, Object> properties, int index) {
+        // the first style of equal styles is used
+        indexes.putIfAbsent(properties, index);
+        if (index == scannedCount) {
+            scannedCount++;
+        }
+    }
+
+    int getScannedCount() {
+        return scannedCount;
+    }
+
+    void clear() {
+        indexes.clear();
+        scannedCount = 0;
+    }
+}
@@ -28,6 +28,7 @@ import java.util.Set;
 import org.apache.poi.ss.usermodel.BorderStyle;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.CellStyleCacheSupport;
 import org.apache.poi.ss.usermodel.FillPatternType;
 import org.apache.poi.ss.usermodel.Font;
 import org.apache.poi.ss.usermodel.HorizontalAlignment;
@@ -275,34 +276,72 @@ public final class CellUtil {
     public static void setCellStyleProperties(Cell cell, Map<String, Object> properties) {
         Workbook workbook = cell.getSheet().getWorkbook();
         CellStyle originalStyle = cell.getCellStyle();
-        CellStyle newStyle = null;
         Map<String, Object> values = getFormatProperties(originalStyle);
         putAll(properties, values);
 
-        // index seems like what index the cellstyle is in the list of styles for a workbook.
-        // not good to compare on!
-        int numberCellStyles = workbook.getNumCellStyles();
-
-        for (int i = 0; i < numberCellStyles; i++) {
-            CellStyle wbStyle = workbook.getCellStyleAt(i);
-            Map<String, Object> wbStyleMap = getFormatProperties(wbStyle);
-
-            // the desired style already exists in the workbook. Use the existing style.
-            if (wbStyleMap.equals(values)) {
-                newStyle = wbStyle;
-                break;
-            }
-        }
+        CellStyleCache cache = getStyleCache(workbook);
+        CellStyle newStyle = findCellStyle(workbook, cache, values);
 
         // the desired style does not exist in the workbook. Create a new style with desired properties.
         if (newStyle == null) {
             newStyle = workbook.createCellStyle();
             setFormatProperties(newStyle, workbook, values);
+            cache.add(values, newStyle.getIndex() & 0xFFFF);
         }
 
         cell.setCellStyle(newStyle);
     }
 
+    /**
+     * Looks up a cell style with the given format properties.<p>
+     *
+     * The style indexes are cached by workbooks implementing {@link CellStyleCacheSupport}
+     * and only the styles added since the last lookup are indexed. As cell styles are mutable,
+     * a cached style is verified before it's returned and all styles are indexed again,
+     * if the verification fails. So a style, which is changed after it was indexed,
+     * might not be found, if no other lookup fails, and an equal style is created.
+     *
+     * @param workbook the workbook to search
+     * @param cache the style indexes of the workbook
+     * @param values the normalized format properties
+     * @return the first matching style or {@code null} if the workbook contains no such style
+     */
+    private static CellStyle findCellStyle(Workbook workbook, CellStyleCache cache, Map<String, Object> values) {
+        Integer index = cache.get(values);
+        CellStyle style = getCachedCellStyle(workbook, index, values);
+        if (style != null) {
+            return style;
+        }
+
+        int numberCellStyles = workbook.getNumCellStyles();
+        if (index != null || numberCellStyles < cache.getScannedCount()) {
+            // the styles were changed or removed
+            cache.clear();
+        }
+        // index seems like what index the cellstyle is in the list of styles for a workbook.
+        // not good to compare on!
+        for (int i = cache.getScannedCount(); i < numberCellStyles; i++) {
+            CellStyle wbStyle = workbook.getCellStyleAt(i);
+            cache.add(getFormatProperties(wbStyle), i);
+        }
+
+        return getCachedCellStyle(workbook, cache.get(values), values);
+    }
+
+    private static CellStyle getCachedCellStyle(Workbook workbook, Integer index, Map<String, Object> values) {
+        if (index == null || index >= workbook.getNumCellStyles()) {
+            return null;
+        }
+        CellStyle wbStyle = workbook.getCellStyleAt(index);
+        return (wbStyle != null && getFormatProperties(wbStyle).equals(values)) ? wbStyle : null;
+    }
+
+    private static CellStyleCache getStyleCache(Workbook workbook) {
+        return (workbook instanceof CellStyleCacheSupport)
+            ? ((CellStyleCacheSupport)workbook).getCellStyleCache()
+            : new CellStyleCache();
+    }
+
     /**
      * <p>This method attempts to find an existing CellStyle that matches the <code>cell</code>'s
      * current style plus a single style property <code>propertyName</code> with value
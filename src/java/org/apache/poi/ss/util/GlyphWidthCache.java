@@ -0,0 +1,165 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.ss.util;
+
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.font.TextAttribute;
+import java.awt.font.TextLayout;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.poi.ss.usermodel.Font;
+
+/**
+ * The advances of the glyphs of a font, which are used to measure the width of simple text
+ * by summing up the advances instead of laying out the text.<p>
+ *
+ * The advances are measured on first use in pages of 256 characters. Text, which requires
+ * a layout (complex scripts, combining marks, surrogate pairs) or contains characters the font can't display,
+ * isn't measured by the cache, so {@link TextLayout} has to be used for it.
+ */
+final class GlyphWidthCache {
+    /** the maximum number of fonts, whose advances are cached */
+    private static final int MAX_CACHED_FONTS = 64;
+
+    private static final Map<List<Object>, GlyphWidthCache> CACHES =
+        new LinkedHashMap<List<Object>, GlyphWidthCache>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<Object>, GlyphWidthCache> eldest) {
+                return size() > MAX_CACHED_FONTS;
+            }
+        };
+
+    private static final int PAGE_SIZE = 256;
+
+    private final java.awt.Font _font;
+    private final FontRenderContext _frc;
+    private final boolean _underline;
+    private final float[][] _pages = new float[Character.MAX_VALUE / PAGE_SIZE + 1][];
+    /** the right edge of the visual bounds of the glyph, which ends the measured text */
+    private final double _endCharBound;
+    private final float _endCharAdvance;
+
+    private GlyphWidthCache(Font font, char endChar, FontRenderContext frc) {
+        Map<TextAttribute, Object> attributes = new HashMap<>();
+        attributes.put(TextAttribute.FAMILY, font.getFontName());
+        attributes.put(TextAttribute.SIZE, (float)font.getFontHeightInPoints());
+        if (font.getBold()) attributes.put(TextAttribute.WEIGHT, TextAttribute.WEIGHT_BOLD);
+        if (font.getItalic()) attributes.put(TextAttribute.POSTURE, TextAttribute.POSTURE_OBLIQUE);
+        _font = new java.awt.Font(attributes);
+        _frc = frc;
+        _underline = font.getUnderline() == Font.U_SINGLE;
+
+        TextLayout layout = new TextLayout(String.valueOf(endChar), _font, frc);
+        Rectangle2D bounds = layout.getBounds();
+        _endCharBound = bounds.getX() + bounds.getWidth();
+        _endCharAdvance = layout.getAdvance();
+    }
+
+    /**
+     * @param font the font of the text
+     * @param endChar the character, which is appended to the measured text
+     * @param frc the context to measure the glyphs in
+     * @return the cached advances of the font
+     */
+    static GlyphWidthCache getInstance(Font font, char endChar, FontRenderContext frc) {
+        List<Object> key = Arrays.asList(font.getFontName(), font.getFontHeightInPoints(),
+            font.getBold(), font.getItalic(), font.getUnderline() == Font.U_SINGLE, endChar, frc);
+        synchronized (CACHES) {
+            GlyphWidthCache cache = CACHES.get(key);
+            if (cache == null) {
+                cache = new GlyphWidthCache(font, endChar, frc);
+                CACHES.put(key, cache);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * Measures the text followed by the end character like the right edge of the bounds of
+     * its {@link TextLayout}
+     *
+     * @param text the text to measure
+     * @return the width of the text or -1, if the text can't be measured by summing up the advances
+     */
+    double getWidth(CharSequence text) {
+        int length = text.length();
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = text.charAt(i);
+            if (requiresLayout(chars[i])) {
+                return -1;
+            }
+        }
+        if (_font.canDisplayUpTo(chars, 0, length) != -1) {
+            return -1;
+        }
+
+        double width = 0;
+        synchronized (this) {
+            for (char c : chars) {
+                width += getAdvance(c);
+            }
+        }
+        // the underline spans the advance of the end character
+        return width + (_underline ? Math.max(_endCharBound, _endCharAdvance) : _endCharBound);
+    }
+
+    /**
+     * @return true, if the character belongs to a script, which needs shaping or reordering,
+     *   or is a combining mark, bidi control or surrogate
+     */
+    private static boolean requiresLayout(char c) {
+        if (c < 0x0300) {
+            return false;
+        }
+        return (c <= 0x036F)                    // combining diacritical marks
+            || (c >= 0x0590 && c <= 0x07BF)     // Hebrew, Arabic, Syriac, Thaana
+            || (c >= 0x0900 && c <= 0x11FF)     // Indic, Thai, Lao, Tibetan, Myanmar, Hangul Jamo
+            || (c >= 0x1780 && c <= 0x18AF)     // Khmer, Mongolian
+            || (c >= 0x200C && c <= 0x200F)     // joiners and directional marks
+            || (c >= 0x202A && c <= 0x202E)     // directional formatting
+            || (c >= 0x206A && c <= 0x206F)
+            || (c >= 0x20D0 && c <= 0x20FF)     // combining marks for symbols
+            || (c >= 0xFB1D && c <= 0xFEFF)     // presentation forms
+            || Character.isSurrogate(c);
+    }
+
+    private float getAdvance(char c) {
+        float[] page = _pages[c / PAGE_SIZE];
+        if (page == null) {
+            char[] pageChars = new char[PAGE_SIZE];
+            int start = c - c % PAGE_SIZE;
+            for (int i = 0; i < PAGE_SIZE; i++) {
+                pageChars[i] = (char)(start + i);
+            }
+            GlyphVector gv = _font.createGlyphVector(_frc, pageChars);
+            page = new float[PAGE_SIZE];
+            for (int i = 0; i < PAGE_SIZE; i++) {
+                page[i] = gv.getGlyphMetrics(i).getAdvanceX();
+            }
+            _pages[c / PAGE_SIZE] = page;
+        }
+        return page[c % PAGE_SIZE];
+    }
+}
@@ -23,6 +23,7 @@ import java.awt.font.TextLayout;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Rectangle2D;
 import java.text.AttributedString;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
@@ -118,6 +119,11 @@ public class SheetUtil {
      * @return  the width in pixels or -1 if cell is empty
      */
     public static double getCellWidth(Cell cell, int defaultCharWidth, DataFormatter formatter, boolean useMergedCells) {
+        return getCellWidth(cell, defaultCharWidth, formatter, useMergedCells, cell.getSheet().getMergedRegions());
+    }
+
+    private static double getCellWidth(Cell cell, int defaultCharWidth, DataFormatter formatter, boolean useMergedCells,
+            List<CellRangeAddress> mergedRegions) {
         Sheet sheet = cell.getSheet();
         Workbook wb = sheet.getWorkbook();
         Row row = cell.getRow();
@@ -126,7 +132,7 @@ public class SheetUtil {
         // FIXME: this looks very similar to getCellWithMerges below. Consider consolidating.
         // We should only be checking merged regions if useMergedCells is true. Why are we doing this for-loop?
         int colspan = 1;
-        for (CellRangeAddress region : sheet.getMergedRegions()) {
+        for (CellRangeAddress region : mergedRegions) {
             if (region.isInRange(row.getRowNum(), column)) {
                 if (!useMergedCells) {
                     // If we're not using merged cells, skip this one and move on to the next.
@@ -149,18 +155,13 @@ public class SheetUtil {
         double width = -1;
         if (cellType == CellType.STRING) {
             RichTextString rt = cell.getRichStringCellValue();
-            String[] lines = rt.getString().split("\\n");
+            String[] lines = rt.getString().split("\n");
             for (String line : lines) {
-                String txt = line + defaultChar;
-
-                AttributedString str = new AttributedString(txt);
-                copyAttributes(font, str, 0, txt.length());
-
                 /*if (rt.numFormattingRuns() > 0) {
                     // TODO: support rich text fragments
                 }*/
 
-                width = getCellWidth(defaultCharWidth, colspan, style, width, str);
+                width = getCellWidth(defaultCharWidth, colspan, style, width, font, line);
             }
         } else {
             String sval = null;
@@ -175,16 +176,40 @@ public class SheetUtil {
                 sval = String.valueOf(cell.getBooleanCellValue()).toUpperCase(Locale.ROOT);
             }
             if(sval != null) {
-                String txt = sval + defaultChar;
-                AttributedString str = new AttributedString(txt);
-                copyAttributes(font, str, 0, txt.length());
-
-                width = getCellWidth(defaultCharWidth, colspan, style, width, str);
+                width = getCellWidth(defaultCharWidth, colspan, style, width, font, sval);
             }
         }
         return width;
     }
 
+    /**
+     * Calculate the best-fit width for a line of text in a cell.
+     * Unrotated text is measured by the cached glyph advances of its font, if possible,
+     * otherwise it's laid out with {@link TextLayout}.
+     *
+     * @param defaultCharWidth the width of a character using the default font in a workbook
+     * @param colspan the number of columns that is spanned by the cell (1 if the cell is not part of a merged region)
+     * @param style the cell style, which contains text rotation and indention information needed to compute the cell width
+     * @param minWidth the minimum best-fit width. This algorithm will only return values greater than or equal to the minimum width.
+     * @param font the font of the cell
+     * @param text the line of text contained in the cell
+     * @return the best fit cell width
+     */
+    private static double getCellWidth(int defaultCharWidth, int colspan,
+            CellStyle style, double minWidth, Font font, String text) {
+        if (style.getRotation() == 0) {
+            double frameWidth = GlyphWidthCache.getInstance(font, defaultChar, fontRenderContext).getWidth(text);
+            if (frameWidth >= 0) {
+                return Math.max(minWidth, ((frameWidth / colspan) / defaultCharWidth) + style.getIndention());
+            }
+        }
+
+        String txt = text + defaultChar;
+        AttributedString str = new AttributedString(txt);
+        copyAttributes(font, str, 0, txt.length());
+        return getCellWidth(defaultCharWidth, colspan, style, minWidth, str);
+    }
+
     /**
      * Calculate the best-fit width for a cell
      * If a merged cell spans multiple columns, evenly distribute the column width among those columns
@@ -246,12 +271,13 @@ public class SheetUtil {
     public static double getColumnWidth(Sheet sheet, int column, boolean useMergedCells, int firstRow, int lastRow){
         DataFormatter formatter = new DataFormatter();
         int defaultCharWidth = getDefaultCharWidth(sheet.getWorkbook());
+        List<CellRangeAddress> mergedRegions = sheet.getMergedRegions();
 
         double width = -1;
         for (int rowIdx = firstRow; rowIdx <= lastRow; ++rowIdx) {
             Row row = sheet.getRow(rowIdx);
             if( row != null ) {
-                double cellWidth = getColumnWidthForRow(row, column, defaultCharWidth, formatter, useMergedCells);
+                double cellWidth = getColumnWidthForRow(row, column, defaultCharWidth, formatter, useMergedCells, mergedRegions);
                 width = Math.max(width, cellWidth);
             }
         }
@@ -283,10 +309,12 @@ public class SheetUtil {
      * @param defaultCharWidth the width of a single character
      * @param formatter formatter used to prepare the text to be measured
      * @param useMergedCells    whether to use merged cells
+     * @param mergedRegions the merged regions of the sheet
      * @return  the width in pixels or -1 if cell is empty
      */
     private static double getColumnWidthForRow(
-            Row row, int column, int defaultCharWidth, DataFormatter formatter, boolean useMergedCells) {
+            Row row, int column, int defaultCharWidth, DataFormatter formatter, boolean useMergedCells,
+            List<CellRangeAddress> mergedRegions) {
         if( row == null ) {
             return -1;
         }
@@ -297,7 +325,7 @@ public class SheetUtil {
             return -1;
         }
 
-        return getCellWidth(cell, defaultCharWidth, formatter, useMergedCells);
+        return getCellWidth(cell, defaultCharWidth, formatter, useMergedCells, mergedRegions);
     }
 
     /**
@@ -0,0 +1,501 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.util;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A sparse map from primitive int keys to objects, ordered by key.<p>
+ *
+ * The entries are held in chunks of parallel key and value arrays, so an entry costs two
+ * array slots instead of a boxed {@link Integer} plus a tree node as in {@link java.util.TreeMap}.
+ * Lookups are binary searches over the chunks and within a chunk. Appending a key larger than
+ * the current last key is amortized O(1), inserting or removing in the middle shifts the tail of
+ * a single chunk and updates the positions of the following chunks - so random and descending
+ * insertion orders don't degrade to quadratic time.
+ *
+ * @param <V> the type of the mapped values
+ */
+@Internal
+public class IntSortedMap<V> {
+    private static final int DEFAULT_CAPACITY = 8;
+    /** the maximum number of entries of a chunk */
+    private static final int CHUNK_SIZE = 512;
+    private static final Chunk[] EMPTY_CHUNKS = {};
+    private static final int[] EMPTY_OFFSETS = {};
+
+    private static final class Chunk {
+        private int[] _keys;
+        private Object[] _values;
+        private int _size;
+
+        Chunk(int capacity) {
+            _keys = new int[capacity];
+            _values = new Object[capacity];
+        }
+
+        int firstKey() {
+            return _keys[0];
+        }
+
+        int lastKey() {
+            return _keys[_size-1];
+        }
+
+        int find(int key) {
+            return Arrays.binarySearch(_keys, 0, _size, key);
+        }
+
+        void insertAt(int idx, int key, Object value) {
+            if (_size == _keys.length) {
+                int newCap = Math.min(CHUNK_SIZE, Math.max(DEFAULT_CAPACITY, _size + (_size >> 1)));
+                _keys = Arrays.copyOf(_keys, newCap);
+                _values = Arrays.copyOf(_values, newCap);
+            }
+            if (idx < _size) {
+                System.arraycopy(_keys, idx, _keys, idx+1, _size-idx);
+                System.arraycopy(_values, idx, _values, idx+1, _size-idx);
+            }
+            _keys[idx] = key;
+            _values[idx] = value;
+            _size++;
+        }
+
+        void removeAt(int idx) {
+            int tail = _size-idx-1;
+            if (tail > 0) {
+                System.arraycopy(_keys, idx+1, _keys, idx, tail);
+                System.arraycopy(_values, idx+1, _values, idx, tail);
+            }
+            _values[--_size] = null;
+        }
+
+        /**
+         * Moves the entries from the given position to a new chunk
+         */
+        Chunk splitAt(int idx) {
+            int count = _size - idx;
+            Chunk upper = new Chunk(Math.max(DEFAULT_CAPACITY, count));
+            System.arraycopy(_keys, idx, upper._keys, 0, count);
+            System.arraycopy(_values, idx, upper._values, 0, count);
+            upper._size = count;
+            Arrays.fill(_values, idx, _size, null);
+            _size = idx;
+            return upper;
+        }
+
+        /**
+         * Appends the entries of the following chunk
+         */
+        void append(Chunk next) {
+            if (_keys.length < _size + next._size) {
+                _keys = Arrays.copyOf(_keys, _size + next._size);
+                _values = Arrays.copyOf(_values, _size + next._size);
+            }
+            System.arraycopy(next._keys, 0, _keys, _size, next._size);
+            System.arraycopy(next._values, 0, _values, _size, next._size);
+            _size += next._size;
+        }
+    }
+
+    private Chunk[] _chunks;
+    /** the position of the first entry of each chunk */
+    private int[] _offsets;
+    private int _chunkCount;
+    private final int _initialCapacity;
+    private int _size;
+    private int _modCount;
+
+    public IntSortedMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public IntSortedMap(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Illegal capacity: " + initialCapacity);
+        }
+        _initialCapacity = Math.max(1, Math.min(CHUNK_SIZE, initialCapacity));
+        _chunks = EMPTY_CHUNKS;
+        _offsets = EMPTY_OFFSETS;
+    }
+
+    /**
+     * @return the number of mappings in this map
+     */
+    public int size() {
+        return _size;
+    }
+
+    public boolean isEmpty() {
+        return _size == 0;
+    }
+
+    /**
+     * Removes all mappings from this map
+     */
+    public void clear() {
+        Arrays.fill(_chunks, 0, _chunkCount, null);
+        _chunkCount = 0;
+        _size = 0;
+        _modCount++;
+    }
+
+    /**
+     * @return the value mapped to the key or {@code null}, if the key isn't mapped
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        if (_size == 0) {
+            return null;
+        }
+        Chunk chunk = _chunks[findChunk(key)];
+        int idx = chunk.find(key);
+        return (idx < 0) ? null : (V)chunk._values[idx];
+    }
+
+    public boolean containsKey(int key) {
+        return _size > 0 && _chunks[findChunk(key)].find(key) >= 0;
+    }
+
+    /**
+     * Maps the value to the key
+     *
+     * @return the previously mapped value or {@code null}
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if (_size == 0) {
+            insertChunk(0, new Chunk(_initialCapacity));
+        }
+        int ci = findChunk(key);
+        Chunk chunk = _chunks[ci];
+        int idx = chunk.find(key);
+        if (idx >= 0) {
+            V old = (V)chunk._values[idx];
+            chunk._values[idx] = value;
+            return old;
+        }
+        idx = -(idx+1);
+        if (chunk._size == CHUNK_SIZE) {
+            if (idx == CHUNK_SIZE && ci == _chunkCount-1) {
+                // appending in ascending key order - keep the chunks full
+                ci++;
+                insertChunk(ci, new Chunk(DEFAULT_CAPACITY));
+                idx = 0;
+            } else if (idx == 0 && ci == 0) {
+                // prepending in descending key order
+                insertChunk(0, new Chunk(DEFAULT_CAPACITY));
+            } else {
+                insertChunk(ci+1, chunk.splitAt(CHUNK_SIZE/2));
+                if (idx > CHUNK_SIZE/2) {
+                    ci++;
+                    idx -= CHUNK_SIZE/2;
+                }
+            }
+            chunk = _chunks[ci];
+        }
+        chunk.insertAt(idx, key, value);
+        _size++;
+        _modCount++;
+        updateOffsets(ci+1);
+        return null;
+    }
+
+    /**
+     * Removes the mapping of the key
+     *
+     * @return the previously mapped value or {@code null}
+     */
+    public V remove(int key) {
+        if (_size == 0) {
+            return null;
+        }
+        int ci = findChunk(key);
+        int idx = _chunks[ci].find(key);
+        return (idx < 0) ? null : removeAt(ci, idx);
+    }
+
+    /**
+     * @return the lowest key
+     * @throws NoSuchElementException if the map is empty
+     */
+    public int firstKey() {
+        if (_size == 0) {
+            throw new NoSuchElementException();
+        }
+        return _chunks[0].firstKey();
+    }
+
+    /**
+     * @return the highest key
+     * @throws NoSuchElementException if the map is empty
+     */
+    public int lastKey() {
+        if (_size == 0) {
+            throw new NoSuchElementException();
+        }
+        return _chunks[_chunkCount-1].lastKey();
+    }
+
+    /**
+     * Returns the number of keys which are lower than the given key,
+     * i.e. the position of the key in the sorted key order,
+     * regardless if the key is mapped or not
+     */
+    public int headSize(int key) {
+        if (_size == 0) {
+            return 0;
+        }
+        int ci = findChunk(key);
+        int idx = _chunks[ci].find(key);
+        return _offsets[ci] + ((idx < 0) ? -(idx+1) : idx);
+    }
+
+    /**
+     * @return the key at the given position in ascending key order
+     */
+    public int keyAt(int index) {
+        checkIndex(index);
+        int ci = locate(index);
+        return _chunks[ci]._keys[index - _offsets[ci]];
+    }
+
+    /**
+     * @return the value at the given position in ascending key order
+     */
+    @SuppressWarnings("unchecked")
+    public V valueAt(int index) {
+        checkIndex(index);
+        int ci = locate(index);
+        return (V)_chunks[ci]._values[index - _offsets[ci]];
+    }
+
+    /**
+     * @return a view of the values in ascending key order - the view supports removal via
+     *  its iterator, structural changes of the map invalidate running iterators
+     */
+    public List<V> values() {
+        return new ValueView(0, -1);
+    }
+
+    /**
+     * @param fromKey the lowest key, inclusive
+     * @param toKey the highest key, exclusive
+     * @return a view of the values whose keys are in the given range, in ascending key order -
+     *  the view is only valid until the next structural change of the map
+     */
+    public List<V> subValues(int fromKey, int toKey) {
+        if (fromKey > toKey) {
+            throw new IllegalArgumentException("fromKey > toKey");
+        }
+        return new ValueView(headSize(fromKey), headSize(toKey));
+    }
+
+    /**
+     * @return the index of the first chunk, whose last key isn't lower than the key,
+     *  or the last chunk, if the key is higher than all keys
+     */
+    private int findChunk(int key) {
+        int lo = 0, hi = _chunkCount-1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (_chunks[mid].lastKey() < key) {
+                lo = mid+1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * @return the index of the chunk containing the entry at the given position
+     */
+    private int locate(int index) {
+        int lo = 0, hi = _chunkCount-1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (_offsets[mid] <= index) {
+                lo = mid;
+            } else {
+                hi = mid-1;
+            }
+        }
+        return lo;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= _size) {
+            throw new IndexOutOfBoundsException("Index: "+index+", Size: "+_size);
+        }
+    }
+
+    private void insertChunk(int ci, Chunk chunk) {
+        if (_chunkCount == _chunks.length) {
+            int newCap = Math.max(1, _chunkCount + (_chunkCount >> 1) + 1);
+            _chunks = Arrays.copyOf(_chunks, newCap);
+            _offsets = Arrays.copyOf(_offsets, newCap);
+        }
+        System.arraycopy(_chunks, ci, _chunks, ci+1, _chunkCount-ci);
+        System.arraycopy(_offsets, ci, _offsets, ci+1, _chunkCount-ci);
+        _chunks[ci] = chunk;
+        _chunkCount++;
+        updateOffsets(ci);
+    }
+
+    private void removeChunk(int ci) {
+        System.arraycopy(_chunks, ci+1, _chunks, ci, _chunkCount-ci-1);
+        System.arraycopy(_offsets, ci+1, _offsets, ci, _chunkCount-ci-1);
+        _chunks[--_chunkCount] = null;
+        updateOffsets(ci);
+    }
+
+    /**
+     * Recalculates the positions of the chunks from the given chunk on
+     */
+    private void updateOffsets(int fromChunk) {
+        for (int i = Math.max(1, fromChunk); i < _chunkCount; i++) {
+            _offsets[i] = _offsets[i-1] + _chunks[i-1]._size;
+        }
+        if (fromChunk == 0 && _chunkCount > 0) {
+            _offsets[0] = 0;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private V removeAt(int ci, int idx) {
+        Chunk chunk = _chunks[ci];
+        V old = (V)chunk._values[idx];
+        chunk.removeAt(idx);
+        _size--;
+        _modCount++;
+        if (chunk._size == 0) {
+            removeChunk(ci);
+        } else if (chunk._size < CHUNK_SIZE/4 && ci+1 < _chunkCount
+                && chunk._size + _chunks[ci+1]._size <= CHUNK_SIZE/2) {
+            // merge sparse chunks, so removals don't leave many small chunks
+            chunk.append(_chunks[ci+1]);
+            removeChunk(ci+1);
+        } else if (chunk._size < CHUNK_SIZE/4 && ci > 0
+                && chunk._size + _chunks[ci-1]._size <= CHUNK_SIZE/2) {
+            _chunks[ci-1].append(chunk);
+            removeChunk(ci);
+        } else {
+            updateOffsets(ci+1);
+        }
+        return old;
+    }
+
+    private class ValueView extends AbstractList<V> {
+        private final int _from;
+        // -1 denotes an open range, which follows the size of the map
+        private final int _to;
+
+        ValueView(int from, int to) {
+            _from = from;
+            _to = to;
+        }
+
+        @Override
+        public V get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index: "+index+", Size: "+size());
+            }
+            return valueAt(_from+index);
+        }
+
+        @Override
+        public int size() {
+            return (_to == -1 ? _size : Math.min(_to, _size)) - _from;
+        }
+
+        @Override
+        public Iterator<V> iterator() {
+            return new ValueIterator(_from, _from+size());
+        }
+    }
+
+    private class ValueIterator implements Iterator<V> {
+        private int _next;
+        private int _end;
+        private int _last = -1;
+        private int _expectedModCount = _modCount;
+        // the chunk and position within the chunk of the next entry
+        private int _chunk;
+        private int _pos;
+
+        ValueIterator(int from, int end) {
+            _next = from;
+            _end = end;
+            seek();
+        }
+
+        private void seek() {
+            if (_next < _size) {
+                _chunk = locate(_next);
+                _pos = _next - _offsets[_chunk];
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return _next < _end;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V next() {
+            checkModCount();
+            if (_next >= _end) {
+                throw new NoSuchElementException();
+            }
+            if (_pos == _chunks[_chunk]._size) {
+                _chunk++;
+                _pos = 0;
+            }
+            _last = _next++;
+            return (V)_chunks[_chunk]._values[_pos++];
+        }
+
+        @Override
+        public void remove() {
+            if (_last < 0) {
+                throw new IllegalStateException();
+            }
+            checkModCount();
+            int ci = locate(_last);
+            removeAt(ci, _last - _offsets[ci]);
+            _next = _last;
+            _end--;
+            _last = -1;
+            _expectedModCount = _modCount;
+            seek();
+        }
+
+        private void checkModCount() {
+            if (_modCount != _expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+}
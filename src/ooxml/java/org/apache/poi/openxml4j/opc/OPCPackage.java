@@ -51,6 +51,7 @@ import org.apache.poi.openxml4j.opc.internal.marshallers.DefaultMarshaller;
 import org.apache.poi.openxml4j.opc.internal.marshallers.ZipPackagePropertiesMarshaller;
 import org.apache.poi.openxml4j.opc.internal.unmarshallers.PackagePropertiesUnmarshaller;
 import org.apache.poi.openxml4j.opc.internal.unmarshallers.UnmarshallContext;
+import org.apache.poi.openxml4j.util.ZipDeflateStrategy;
 import org.apache.poi.openxml4j.util.ZipEntrySource;
 import org.apache.poi.util.IOUtils;
 import org.apache.poi.util.NotImplemented;
@@ -127,6 +128,11 @@ public abstract class OPCPackage implements RelationshipSource, Closeable {
 	 */
 	protected OutputStream output;
 
+	/**
+	 * Compression of the zip entries, when this package is saved.
+	 */
+	private ZipDeflateStrategy deflateStrategy = new ZipDeflateStrategy();
+
 	/**
 	 * Constructor.
 	 *
@@ -1452,6 +1458,30 @@ public abstract class OPCPackage implements RelationshipSource, Closeable {
 		return packageAccess;
 	}
 
+	/**
+	 * Get the compression of the zip entries, when this package is saved.
+	 *
+	 * @return the deflate strategy
+	 * @since POI 4.1.1
+	 */
+	public ZipDeflateStrategy getDeflateStrategy() {
+		return deflateStrategy;
+	}
+
+	/**
+	 * Set the compression of the zip entries, when this package is saved.
+	 * The strategy is also used by SXSSF, when the workbook of this package is written.
+	 *
+	 * @param deflateStrategy the deflate strategy
+	 * @since POI 4.1.1
+	 */
+	public void setDeflateStrategy(ZipDeflateStrategy deflateStrategy) {
+		if (deflateStrategy == null) {
+			throw new IllegalArgumentException("deflateStrategy must not be null");
+		}
+		this.deflateStrategy = deflateStrategy;
+	}
+
 	/**
 	 * Validates the package compliance with the OPC specifications.
 	 *
@@ -35,6 +35,7 @@ import org.apache.poi.openxml4j.opc.StreamHelper;
 import org.apache.poi.openxml4j.opc.TargetMode;
 import org.apache.poi.openxml4j.opc.internal.PartMarshaller;
 import org.apache.poi.openxml4j.opc.internal.ZipHelper;
+import org.apache.poi.openxml4j.util.ZipDeflateStrategy;
 import org.apache.poi.ooxml.util.DocumentHelper;
 import org.apache.poi.util.IOUtils;
 import org.apache.poi.util.POILogFactory;
@@ -75,16 +76,12 @@ public final class ZipPartMarshaller implements PartMarshaller {
 		ZipArchiveEntry partEntry = new ZipArchiveEntry(ZipHelper
 				.getZipItemNameFromOPCName(part.getPartName().getURI()
 						.getPath()));
-		try {
-			// Create next zip entry
-			zos.putArchiveEntry(partEntry);
-
+		ZipDeflateStrategy strategy = part.getPackage().getDeflateStrategy();
+		try (final InputStream ins = part.getInputStream();
+			 // Create next zip entry
+			 final OutputStream entryOut = strategy.openEntry(zos, partEntry, part.getContentType())) {
 			// Saving data in the ZIP file
-			try (final InputStream ins = part.getInputStream()) {
-				IOUtils.copy(ins, zos);
-			} finally {
-				zos.closeArchiveEntry();
-			}
+			IOUtils.copy(ins, entryOut);
 		} catch (IOException ioe) {
 			logger.log(POILogger.ERROR,"Cannot write: " + part.getPartName() + ": in ZIP",
 					ioe);
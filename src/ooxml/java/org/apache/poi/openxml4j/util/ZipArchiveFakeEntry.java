@@ -18,11 +18,23 @@
 package org.apache.poi.openxml4j.util;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.poi.poifs.crypt.temp.EncryptedTempData;
 import org.apache.poi.util.IOUtils;
+import org.apache.poi.util.POILogFactory;
+import org.apache.poi.util.POILogger;
+import org.apache.poi.util.TempFile;
 
 
 /**
@@ -30,24 +42,97 @@ import org.apache.poi.util.IOUtils;
  *  effectively work with it.
  * Holds the (decompressed!) data in memory, so
  *  close this as soon as you can!
+ * Entries larger than {@link ZipInputStreamZipEntrySource#getThresholdBytesForTempFiles()}
+ *  are spilled to a temp file instead, which is removed on {@link #close()}.
  */
-/* package */ class ZipArchiveFakeEntry extends ZipArchiveEntry {
+/* package */ class ZipArchiveFakeEntry extends ZipArchiveEntry implements Closeable {
+    private static final POILogger LOG = POILogFactory.getLogger(ZipArchiveFakeEntry.class);
+
     private final byte[] data;
+    private final boolean compressed;
+    private File tempFile;
+    private EncryptedTempData encryptedTempData;
 
     ZipArchiveFakeEntry(ZipArchiveEntry entry, InputStream inp) throws IOException {
         super(entry.getName());
 
         final long entrySize = entry.getSize();
+        final int threshold = ZipInputStreamZipEntrySource.getThresholdBytesForTempFiles();
+        compressed = ZipInputStreamZipEntrySource.shouldCompressTempFiles();
+
+        if (threshold < 0) {
+            if (entrySize < -1 || entrySize>=Integer.MAX_VALUE) {
+                throw new IOException("ZIP entry size is too large or invalid");
+            }
+
+            // Grab the de-compressed contents for later
+            data = (entrySize == -1) ? IOUtils.toByteArray(inp) : IOUtils.toByteArray(inp, (int)entrySize);
+            return;
+        }
+
+        if (entrySize < -1) {
+            throw new IOException("ZIP entry size is invalid");
+        }
+
+        // the entry size isn't known for entries followed by a data descriptor,
+        // so the data is buffered up to the threshold before deciding where to keep it
+        final ByteArrayOutputStream head = new ByteArrayOutputStream();
+        if (entrySize == -1 || entrySize <= threshold) {
+            IOUtils.copy(inp, head, threshold + 1L);
+            if (head.size() <= threshold) {
+                data = head.toByteArray();
+                return;
+            }
+        }
 
-        if (entrySize < -1 || entrySize>=Integer.MAX_VALUE) {
-            throw new IOException("ZIP entry size is too large or invalid");
+        data = null;
+        try (OutputStream os = getTempOutputStream()) {
+            head.writeTo(os);
+            IOUtils.copy(inp, os);
+        } catch (IOException|RuntimeException e) {
+            close();
+            throw e;
         }
+    }
+
+    public InputStream getInputStream() throws IOException {
+        if (data != null) {
+            return new ByteArrayInputStream(data);
+        }
+        if (tempFile == null && encryptedTempData == null) {
+            throw new IOException("The temp file of the ZIP entry " + getName() + " was already removed");
+        }
+        final InputStream is = (encryptedTempData != null)
+            ? encryptedTempData.getInputStream() : new FileInputStream(tempFile);
+        return compressed ? new GZIPInputStream(is) : is;
+    }
 
-        // Grab the de-compressed contents for later
-        data = (entrySize == -1) ? IOUtils.toByteArray(inp) : IOUtils.toByteArray(inp, (int)entrySize);
+    /**
+     * Removes the temp file of a spilled entry
+     */
+    @Override
+    public void close() {
+        if (encryptedTempData != null) {
+            encryptedTempData.dispose();
+            encryptedTempData = null;
+        }
+        if (tempFile != null) {
+            if (!tempFile.delete()) {
+                LOG.log(POILogger.WARN, tempFile.getAbsolutePath()+" can't be removed (or was already removed).");
+            }
+            tempFile = null;
+        }
     }
 
-    public InputStream getInputStream() {
-        return new ByteArrayInputStream(data);
+    private OutputStream getTempOutputStream() throws IOException {
+        final OutputStream os;
+        if (ZipInputStreamZipEntrySource.shouldEncryptTempFiles()) {
+            encryptedTempData = new EncryptedTempData();
+            os = encryptedTempData.getOutputStream();
+        } else {
+            tempFile = TempFile.createTempFile("poi-zip-entry", ".tmp");
+            os = new FileOutputStream(tempFile);
+        }
+        return compressed ? new GZIPOutputStream(os) : os;
     }
 }
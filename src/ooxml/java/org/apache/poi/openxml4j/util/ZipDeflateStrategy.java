@@ -0,0 +1,416 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.openxml4j.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.poi.util.POILogFactory;
+import org.apache.poi.util.POILogger;
+import org.apache.poi.util.TempFile;
+
+/**
+ * The compression of the zip entries, when a package is saved.<p>
+ *
+ * The compression level can be set per content type of the parts. Parts with already compressed
+ * content, like png or jpeg images, can be stored without compression. If an executor is set,
+ * large parts are split into blocks, which are deflated in parallel. The blocks are primed with
+ * the end of the previous block as dictionary and are joined by sync flushes, so the entry still
+ * contains a single standard deflate stream.<p>
+ *
+ * The default instance deflates all parts with the default level on the writing thread.
+ *
+ * @see org.apache.poi.openxml4j.opc.OPCPackage#setDeflateStrategy(ZipDeflateStrategy)
+ * @since POI 4.1.1
+ */
+public class ZipDeflateStrategy {
+    private static final POILogger LOG = POILogFactory.getLogger(ZipDeflateStrategy.class);
+
+    /** the size of the deflate window, i.e. the maximum size of a useful dictionary */
+    private static final int WINDOW_SIZE = 1 << 15;
+
+    private static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+
+    /** the content types of parts, which are already compressed */
+    private static final Set<String> COMPRESSED_CONTENT_TYPES = new HashSet<>(Arrays.asList(
+        "image/png", "image/jpeg", "image/gif", "audio/mpeg", "video/mp4", "application/zip"
+    ));
+
+    private int level = Deflater.DEFAULT_COMPRESSION;
+    private final Map<String, Integer> levelsByContentType = new HashMap<>();
+    private boolean storeCompressedMedia;
+    private ExecutorService executor;
+    private int blockSize = DEFAULT_BLOCK_SIZE;
+
+    /**
+     * @param level the compression level of the parts without a specific level,
+     *  see {@link Deflater#setLevel(int)}
+     */
+    public void setLevel(int level) {
+        this.level = checkLevel(level);
+    }
+
+    /**
+     * Sets the compression level of the parts with the given content type
+     *
+     * @param contentType the content type, e.g. {@code application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml}
+     * @param level the compression level, see {@link Deflater#setLevel(int)}
+     */
+    public void setLevel(String contentType, int level) {
+        levelsByContentType.put(contentType, checkLevel(level));
+    }
+
+    /**
+     * @param contentType the content type of the part or {@code null} if it's unknown
+     * @return the compression level of the parts with the given content type
+     */
+    public int getLevel(String contentType) {
+        Integer l = (contentType == null) ? null : levelsByContentType.get(contentType);
+        return (l == null) ? level : l;
+    }
+
+    /**
+     * @param store whether parts with already compressed content like png or jpeg images are stored
+     *  without compression. Defaults to {@code false}.
+     */
+    public void setStoreCompressedMedia(boolean store) {
+        this.storeCompressedMedia = store;
+    }
+
+    /**
+     * @param contentType the content type of the part or {@code null} if it's unknown
+     * @return whether the parts with the given content type are stored without compression
+     */
+    public boolean isStored(String contentType) {
+        return storeCompressedMedia && contentType != null && COMPRESSED_CONTENT_TYPES.contains(contentType);
+    }
+
+    /**
+     * Sets the executor, which deflates the blocks of large parts in parallel.
+     * The executor is not shut down by this strategy.
+     *
+     * @param executor the executor or {@code null} (the default) to deflate the parts on the writing thread
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * @return the executor, which deflates the blocks of large parts in parallel, or {@code null}
+     */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * @param blockSize the size of the blocks, which are deflated in parallel - parts, which don't exceed
+     *  a single block, are deflated on the writing thread. Defaults to 1 MB.
+     */
+    public void setBlockSize(int blockSize) {
+        if (blockSize < WINDOW_SIZE) {
+            throw new IllegalArgumentException("The block size needs to be at least " + WINDOW_SIZE + " bytes");
+        }
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * @return the size of the blocks, which are deflated in parallel
+     */
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Opens a zip entry. The returned stream needs to be closed to complete the entry,
+     * closing it doesn't close the zip stream.
+     *
+     * @param zos the zip stream
+     * @param entry the entry - the method and sizes are set by this strategy
+     * @param contentType the content type of the part or {@code null} if it's unknown
+     * @return the stream receiving the uncompressed data of the entry
+     * @throws IOException if the entry can't be added
+     */
+    public OutputStream openEntry(ZipArchiveOutputStream zos, ZipArchiveEntry entry, String contentType)
+    throws IOException {
+        if (isStored(contentType)) {
+            return new StoredEntryOutputStream(zos, entry);
+        }
+        int entryLevel = getLevel(contentType);
+        if (executor != null) {
+            return new ParallelDeflaterOutputStream(zos, entry, entryLevel);
+        }
+        putDeflatedEntry(zos, entry, entryLevel);
+        return new EntryOutputStream(zos);
+    }
+
+    private void putDeflatedEntry(ZipArchiveOutputStream zos, ZipArchiveEntry entry, int entryLevel) throws IOException {
+        entry.setMethod(ZipEntry.DEFLATED);
+        zos.setLevel(entryLevel);
+        zos.putArchiveEntry(entry);
+    }
+
+    private void closeEntry(ZipArchiveOutputStream zos) throws IOException {
+        zos.closeArchiveEntry();
+        // the other entries, e.g. the relationship parts, use the default level
+        zos.setLevel(level);
+    }
+
+    private static int checkLevel(int level) {
+        if ((level < 0 || level > 9) && level != Deflater.DEFAULT_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level: " + level);
+        }
+        return level;
+    }
+
+    /**
+     * Deflates a block into a raw deflate stream, which is either ended with a sync flush,
+     * so it can be continued by the next block, or with the final block
+     */
+    private static byte[] deflate(int level, byte[] data, int len, byte[] dictionary, boolean last) {
+        final Deflater def = new Deflater(level, true);
+        try {
+            if (dictionary != null) {
+                def.setDictionary(dictionary);
+            }
+            def.setInput(data, 0, len);
+            if (last) {
+                def.finish();
+            }
+            final ByteArrayOutputStream bos = new ByteArrayOutputStream(len / 4 + 64);
+            final byte[] buf = new byte[8192];
+            for (;;) {
+                int n = last ? def.deflate(buf) : def.deflate(buf, 0, buf.length, Deflater.SYNC_FLUSH);
+                bos.write(buf, 0, n);
+                if (last ? def.finished() : n < buf.length) {
+                    return bos.toByteArray();
+                }
+            }
+        } finally {
+            def.end();
+        }
+    }
+
+    /**
+     * Forwards the data to the open entry of the zip stream
+     */
+    private final class EntryOutputStream extends OutputStream {
+        private final ZipArchiveOutputStream zos;
+        private boolean closed;
+
+        EntryOutputStream(ZipArchiveOutputStream zos) {
+            this.zos = zos;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            zos.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            zos.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                closeEntry(zos);
+            }
+        }
+    }
+
+    /**
+     * Buffers the data, as the size and crc of stored entries are written in front of the data
+     */
+    private static final class StoredEntryOutputStream extends ByteArrayOutputStream {
+        private final ZipArchiveOutputStream zos;
+        private final ZipArchiveEntry entry;
+        private boolean closed;
+
+        StoredEntryOutputStream(ZipArchiveOutputStream zos, ZipArchiveEntry entry) {
+            this.zos = zos;
+            this.entry = entry;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            CRC32 crc = new CRC32();
+            crc.update(buf, 0, count);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(count);
+            entry.setCompressedSize(count);
+            entry.setCrc(crc.getValue());
+            zos.putArchiveEntry(entry);
+            try {
+                zos.write(buf, 0, count);
+            } finally {
+                zos.closeArchiveEntry();
+            }
+        }
+    }
+
+    /**
+     * Splits the data into blocks, which are deflated on the executor. The deflated blocks are
+     * collected in a temp file in order and copied as raw entry into the zip, when the stream is closed.
+     * Only a few blocks are queued, before the writing thread is blocked.
+     */
+    private final class ParallelDeflaterOutputStream extends OutputStream {
+        private final ZipArchiveOutputStream zos;
+        private final ZipArchiveEntry entry;
+        private final int entryLevel;
+        private final int maxPendingBlocks = 2 * Runtime.getRuntime().availableProcessors();
+        private final ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>();
+        private final CRC32 crc = new CRC32();
+        private long size;
+        private long compressedSize;
+        private byte[] dictionary;
+        private File tempFile;
+        private OutputStream temp;
+        private byte[] block = new byte[blockSize];
+        private int count;
+        private boolean closed;
+
+        ParallelDeflaterOutputStream(ZipArchiveOutputStream zos, ZipArchiveEntry entry, int entryLevel) {
+            this.zos = zos;
+            this.entry = entry;
+            this.entryLevel = entryLevel;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{ (byte)b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (count == block.length) {
+                    // the block is only submitted, when more data follows, so the last block can be finished
+                    submit(false);
+                }
+                int n = Math.min(len, block.length - count);
+                System.arraycopy(b, off, block, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        private void submit(boolean last) throws IOException {
+            if (temp == null) {
+                tempFile = TempFile.createTempFile("poi-zip-deflate", ".tmp");
+                temp = new FileOutputStream(tempFile);
+            }
+            final byte[] data = block;
+            final int len = count;
+            final byte[] dict = dictionary;
+            crc.update(data, 0, len);
+            size += len;
+            if (!last) {
+                dictionary = Arrays.copyOfRange(data, len - WINDOW_SIZE, len);
+                block = new byte[blockSize];
+                count = 0;
+            }
+            pending.add(executor.submit(() -> deflate(entryLevel, data, len, dict, last)));
+            while (pending.size() > maxPendingBlocks) {
+                writeBlock(pending.poll());
+            }
+        }
+
+        private void writeBlock(Future<byte[]> future) throws IOException {
+            final byte[] deflated;
+            try {
+                deflated = future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the part data to be deflated");
+            } catch (ExecutionException e) {
+                throw new IOException("Deflating the part data failed", e.getCause());
+            }
+            temp.write(deflated);
+            compressedSize += deflated.length;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+
+            if (temp == null) {
+                // small parts are deflated on the writing thread
+                putDeflatedEntry(zos, entry, entryLevel);
+                try {
+                    zos.write(block, 0, count);
+                } finally {
+                    closeEntry(zos);
+                }
+                return;
+            }
+
+            try {
+                submit(true);
+                while (!pending.isEmpty()) {
+                    writeBlock(pending.poll());
+                }
+                temp.close();
+
+                entry.setMethod(ZipEntry.DEFLATED);
+                entry.setCrc(crc.getValue());
+                entry.setSize(size);
+                entry.setCompressedSize(compressedSize);
+                try (FileInputStream raw = new FileInputStream(tempFile)) {
+                    zos.addRawArchiveEntry(entry, raw);
+                }
+            } finally {
+                for (Future<byte[]> f : pending) {
+                    f.cancel(true);
+                }
+                temp.close();
+                if (!tempFile.delete()) {
+                    LOG.log(POILogger.WARN, tempFile.getAbsolutePath()+" can't be removed (or was already removed).");
+                }
+            }
+        }
+    }
+}
@@ -32,25 +32,108 @@ import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
  *  a ZipFile, for a price in terms of memory.
  * Be sure to call {@link #close()} as soon as you're
  *  done, to free up that memory!
+ * To limit the memory, entries larger than a threshold
+ *  can be kept in temp files, see {@link #setThresholdBytesForTempFiles(int)}.
  */
 public class ZipInputStreamZipEntrySource implements ZipEntrySource {
+	private static int thresholdForTempFiles = -1;
+	private static boolean encryptTempFiles;
+	private static boolean compressTempFiles;
+
 	private final Map<String, ZipArchiveFakeEntry> zipEntries = new HashMap<>();
 
 	private InputStream streamToClose;
 
+	/**
+	 * Sets the size of the entries, from which on the decompressed data is kept in temp files
+	 *  instead of memory. This applies to packages opened afterwards from an InputStream,
+	 *  e.g. by {@link org.apache.poi.openxml4j.opc.OPCPackage#open(InputStream)} or
+	 *  {@code WorkbookFactory.create(InputStream)}.
+	 *
+	 * @param thresholdBytes the number of bytes, from which on entries are kept in temp files,
+	 *  or -1 (the default) to keep all entries in memory
+	 *
+	 * @since POI 4.1.1
+	 */
+	public static void setThresholdBytesForTempFiles(int thresholdBytes) {
+		thresholdForTempFiles = thresholdBytes;
+	}
+
+	/**
+	 * @return the number of bytes, from which on entries are kept in temp files,
+	 *  or -1 if all entries are kept in memory
+	 *
+	 * @since POI 4.1.1
+	 */
+	public static int getThresholdBytesForTempFiles() {
+		return thresholdForTempFiles;
+	}
+
+	/**
+	 * Sets whether the temp files of large entries are encrypted with a random key,
+	 *  see {@link org.apache.poi.poifs.crypt.temp.EncryptedTempData}. Defaults to {@code false}.
+	 *
+	 * @param encrypt whether the temp files are encrypted
+	 *
+	 * @since POI 4.1.1
+	 */
+	public static void setEncryptTempFiles(boolean encrypt) {
+		encryptTempFiles = encrypt;
+	}
+
+	/**
+	 * @return whether the temp files of large entries are encrypted
+	 *
+	 * @since POI 4.1.1
+	 */
+	public static boolean shouldEncryptTempFiles() {
+		return encryptTempFiles;
+	}
+
+	/**
+	 * Sets whether the temp files of large entries are gzip compressed,
+	 *  which saves disk space at the cost of deflating and inflating the data. Defaults to {@code false}.
+	 *
+	 * @param compress whether the temp files are compressed
+	 *
+	 * @since POI 4.1.1
+	 */
+	public static void setCompressTempFiles(boolean compress) {
+		compressTempFiles = compress;
+	}
+
+	/**
+	 * @return whether the temp files of large entries are compressed
+	 *
+	 * @since POI 4.1.1
+	 */
+	public static boolean shouldCompressTempFiles() {
+		return compressTempFiles;
+	}
+
 	/**
 	 * Reads all the entries from the ZipInputStream 
 	 *  into memory, and don't close (since POI 4.0.1) the source stream.
 	 * We'll then eat lots of memory, but be able to
 	 *  work with the entries at-will.
+	 * Entries exceeding {@link #getThresholdBytesForTempFiles()}
+	 *  are kept in temp files instead.
 	 */
 	public ZipInputStreamZipEntrySource(ZipArchiveThresholdInputStream inp) throws IOException {
-		for (;;) {
-			final ZipArchiveEntry zipEntry = inp.getNextEntry();
-			if (zipEntry == null) {
-				break;
+		try {
+			for (;;) {
+				final ZipArchiveEntry zipEntry = inp.getNextEntry();
+				if (zipEntry == null) {
+					break;
+				}
+				final ZipArchiveFakeEntry old = zipEntries.put(zipEntry.getName(), new ZipArchiveFakeEntry(zipEntry, inp));
+				if (old != null) {
+					old.close();
+				}
 			}
-			zipEntries.put(zipEntry.getName(), new ZipArchiveFakeEntry(zipEntry, inp));
+		} catch (final IOException|RuntimeException e) {
+			closeEntries();
+			throw e;
 		}
 
 		streamToClose = inp;
@@ -62,19 +145,26 @@ public class ZipInputStreamZipEntrySource implements ZipEntrySource {
 	}
 
 	@Override
-	public InputStream getInputStream(ZipArchiveEntry zipEntry) {
+	public InputStream getInputStream(ZipArchiveEntry zipEntry) throws IOException {
 	    assert (zipEntry instanceof ZipArchiveFakeEntry);
 		return ((ZipArchiveFakeEntry)zipEntry).getInputStream();
 	}
 
 	@Override
 	public void close() throws IOException {
-		// Free the memory
-		zipEntries.clear();
+		// Free the memory and remove the temp files
+		closeEntries();
 
 		streamToClose.close();
 	}
 
+	private void closeEntries() {
+		for (final ZipArchiveFakeEntry entry : zipEntries.values()) {
+			entry.close();
+		}
+		zipEntries.clear();
+	}
+
 	@Override
 	public boolean isClosed() {
 	    return zipEntries.isEmpty();
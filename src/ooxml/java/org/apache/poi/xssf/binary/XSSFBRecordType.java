@@ -17,9 +17,6 @@
 
 package org.apache.poi.xssf.binary;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import org.apache.poi.util.Internal;
 
 /**
@@ -42,11 +39,21 @@ public enum XSSFBRecordType {
     BrtRowHdr(0),
     BrtCellRString(62),
     BrtBeginSheet(129),
+    BrtEndSheet(130),
     BrtWsProp(147),
     BrtWsDim(148),
+    BrtBeginWsViews(133),
+    BrtEndWsViews(134),
+    BrtBeginWsView(137),
+    BrtEndWsView(138),
+    BrtBeginColInfos(390),
+    BrtEndColInfos(391),
     BrtColInfo(60),
     BrtBeginSheetData(145),
     BrtEndSheetData(146),
+    BrtBeginMergeCells(177),
+    BrtEndMergeCells(178),
+    BrtMergeCell(176),
     BrtHLink(494),
     BrtBeginHeaderFooter(479),
 
@@ -58,35 +65,62 @@ public enum XSSFBRecordType {
     BrtCommentText(637),
     BrtEndComment(636),
     //styles table
+    BrtBeginStyleSheet(278),
+    BrtEndStyleSheet(279),
     BrtXf(47),
     BrtFmt(44),
+    BrtFont(43),
+    BrtFill(45),
+    BrtBorder(46),
+    BrtStyle(48),
     BrtBeginFmts(615),
     BrtEndFmts(616),
+    BrtBeginFonts(611),
+    BrtEndFonts(612),
+    BrtBeginFills(603),
+    BrtEndFills(604),
+    BrtBeginBorders(613),
+    BrtEndBorders(614),
     BrtBeginCellXFs(617),
     BrtEndCellXFs(618),
+    BrtBeginStyles(619),
+    BrtEndStyles(620),
     BrtBeginCellStyleXFS(626),
     BrtEndCellStyleXFS(627),
+    BrtBeginDXFs(505),
+    BrtEndDXFs(506),
+    BrtBeginTableStyles(508),
+    BrtEndTableStyles(509),
 
     //stored strings table
     BrtSstItem(19),   //stored strings items
     BrtBeginSst(159), //stored strings begin sst
     BrtEndSst(160),   //stored strings end sst
 
+    BrtBeginBook(131),
+    BrtEndBook(132),
+    BrtWbProp(153), //Workbook prop contains 1904/1900-date based bit
+    BrtBeginBookViews(135),
+    BrtEndBookViews(136),
+    BrtBookView(158),
+    BrtBeginBundleShs(143),
+    BrtEndBundleShs(144),
     BrtBundleSh(156), //defines worksheet in wb part
 
     BrtAbsPath15(2071), //Excel 2013 path where the file was stored in wbpart
 
     //TODO -- implement these as needed
     //BrtFileVersion(128), //file version
-    //BrtWbProp(153), //Workbook prop contains 1904/1900-date based bit
     Unimplemented(-1);
 
-    private static final Map<Integer, XSSFBRecordType> TYPE_MAP =
-            new HashMap<>();
+    //record ids have up to 14 bits - the types are looked up without boxing the id
+    private static final XSSFBRecordType[] TYPES = new XSSFBRecordType[1 << 14];
 
     static {
         for (XSSFBRecordType type : XSSFBRecordType.values()) {
-            TYPE_MAP.put(type.getId(), type);
+            if (type.getId() >= 0) {
+                TYPES[type.getId()] = type;
+            }
         }
     }
 
@@ -101,7 +135,7 @@ public enum XSSFBRecordType {
     }
 
     public static XSSFBRecordType lookup(int id) {
-        XSSFBRecordType type = TYPE_MAP.get(id);
+        XSSFBRecordType type = (id >= 0 && id < TYPES.length) ? TYPES[id] : null;
         if (type == null) {
             return Unimplemented;
         }
@@ -0,0 +1,192 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.binary;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import org.apache.poi.util.Internal;
+import org.apache.poi.util.LittleEndian;
+import org.apache.poi.util.LittleEndianOutput;
+
+/**
+ * Writes BIFF12 records, i.e. the counterpart of {@link XSSFBParser}.<p>
+ *
+ * The data of a record is collected between {@link #startRecord(XSSFBRecordType)} and
+ * {@link #endRecord()}, when the record is written with its variable-length header.
+ * Not thread safe.
+ *
+ * @since POI 4.1.1
+ */
+@Internal
+public class XSSFBRecordWriter implements LittleEndianOutput, Closeable {
+
+    //the record length is stored in up to 4 bytes of 7 bits each
+    private static final int MAX_RECORD_LENGTH = (1 << 28) - 1;
+
+    private final OutputStream out;
+    private final byte[] header = new byte[6];
+    private byte[] data = new byte[256];
+    private int length;
+    private int recordId = -1;
+
+    public XSSFBRecordWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Starts a record - its data is written by the methods of {@link LittleEndianOutput}
+     *
+     * @param type the record type
+     * @throws IllegalStateException if the previous record wasn't ended
+     */
+    public void startRecord(XSSFBRecordType type) {
+        if (recordId != -1) {
+            throw new IllegalStateException("The record " + recordId + " wasn't ended");
+        }
+        recordId = type.getId();
+        length = 0;
+    }
+
+    /**
+     * Writes the record started by {@link #startRecord(XSSFBRecordType)}
+     */
+    public void endRecord() throws IOException {
+        if (recordId == -1) {
+            throw new IllegalStateException("No record was started");
+        }
+        if (length > MAX_RECORD_LENGTH) {
+            throw new IllegalStateException("The record " + recordId + " is too large: " + length);
+        }
+        int pos = 0;
+        //the record id has 1 or 2 bytes, the highest bit of the first one flags the second one
+        if (recordId < 0x80) {
+            header[pos++] = (byte) recordId;
+        } else {
+            header[pos++] = (byte) ((recordId & 0x7F) | 0x80);
+            header[pos++] = (byte) (recordId >> 7);
+        }
+        int len = length;
+        do {
+            int b = len & 0x7F;
+            len >>>= 7;
+            header[pos++] = (byte) (len == 0 ? b : b | 0x80);
+        } while (len != 0);
+        out.write(header, 0, pos);
+        out.write(data, 0, length);
+        recordId = -1;
+    }
+
+    /**
+     * Writes a record without data
+     */
+    public void writeRecord(XSSFBRecordType type) throws IOException {
+        startRecord(type);
+        endRecord();
+    }
+
+    /**
+     * Writes an XLWideString, i.e. the number of characters followed by the UTF-16LE characters
+     */
+    public void writeXLWideString(String str) {
+        int numChars = str.length();
+        writeInt(numChars);
+        ensureCapacity(2 * numChars);
+        for (int i = 0; i < numChars; i++) {
+            LittleEndian.putShort(data, length, (short) str.charAt(i));
+            length += 2;
+        }
+    }
+
+    /**
+     * Writes an XLNullableWideString, whose number of characters is 0xFFFFFFFF for {@code null}
+     */
+    public void writeXLNullableWideString(String str) {
+        if (str == null) {
+            writeInt(0xFFFFFFFF);
+        } else {
+            writeXLWideString(str);
+        }
+    }
+
+    @Override
+    public void writeByte(int v) {
+        ensureCapacity(1);
+        data[length++] = (byte) v;
+    }
+
+    @Override
+    public void writeShort(int v) {
+        ensureCapacity(LittleEndian.SHORT_SIZE);
+        LittleEndian.putShort(data, length, (short) v);
+        length += LittleEndian.SHORT_SIZE;
+    }
+
+    @Override
+    public void writeInt(int v) {
+        ensureCapacity(LittleEndian.INT_SIZE);
+        LittleEndian.putInt(data, length, v);
+        length += LittleEndian.INT_SIZE;
+    }
+
+    @Override
+    public void writeLong(long v) {
+        ensureCapacity(LittleEndian.LONG_SIZE);
+        LittleEndian.putLong(data, length, v);
+        length += LittleEndian.LONG_SIZE;
+    }
+
+    @Override
+    public void writeDouble(double v) {
+        ensureCapacity(LittleEndian.DOUBLE_SIZE);
+        LittleEndian.putDouble(data, length, v);
+        length += LittleEndian.DOUBLE_SIZE;
+    }
+
+    @Override
+    public void write(byte[] b) {
+        write(b, 0, b.length);
+    }
+
+    @Override
+    public void write(byte[] b, int offset, int len) {
+        ensureCapacity(len);
+        System.arraycopy(b, offset, data, length, len);
+        length += len;
+    }
+
+    private void ensureCapacity(int count) {
+        if (recordId == -1) {
+            throw new IllegalStateException("No record was started");
+        }
+        if (length + count > data.length) {
+            data = Arrays.copyOf(data, Math.max(2 * data.length, length + count));
+        }
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
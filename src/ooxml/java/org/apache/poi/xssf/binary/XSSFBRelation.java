@@ -36,7 +36,7 @@ import org.apache.poi.util.POILogger;
 public class XSSFBRelation extends POIXMLRelation {
     private static final POILogger log = POILogFactory.getLogger(XSSFBRelation.class);
 
-    static final XSSFBRelation SHARED_STRINGS_BINARY = new XSSFBRelation(
+    public static final XSSFBRelation SHARED_STRINGS_BINARY = new XSSFBRelation(
             "application/vnd.ms-excel.sharedStrings",
             "http://schemas.openxmlformats.org/officeDocument/2006/relationships/sharedStrings",
             "/xl/sharedStrings.bin",
@@ -50,6 +50,16 @@ public class XSSFBRelation extends POIXMLRelation {
             null
     );
 
+    /**
+     * @since POI 4.1.1
+     */
+    public static final XSSFBRelation WORKSHEET_BINARY = new XSSFBRelation(
+            "application/vnd.ms-excel.worksheet",
+            "http://schemas.openxmlformats.org/officeDocument/2006/relationships/worksheet",
+            "/xl/worksheets/sheet#.bin",
+            null
+    );
+
     private XSSFBRelation(String type, String rel, String defaultName, Class<? extends POIXMLDocumentPart> cls) {
         super(type, rel, defaultName, cls);
     }
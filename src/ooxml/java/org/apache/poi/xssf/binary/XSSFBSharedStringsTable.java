@@ -151,16 +151,21 @@ public class XSSFBSharedStringsTable implements SharedStrings {
 
         @Override
         public void handleRecord(int recordType, byte[] data) throws XSSFBParseException {
+            handleRecord(recordType, data, 0, data.length);
+        }
+
+        @Override
+        public void handleRecord(int recordType, byte[] data, int offset, int length) throws XSSFBParseException {
             XSSFBRecordType type = XSSFBRecordType.lookup(recordType);
 
             switch (type) {
                 case BrtSstItem:
-                    XSSFBRichStr rstr = XSSFBRichStr.build(data, 0);
+                    XSSFBRichStr rstr = XSSFBRichStr.build(data, offset);
                     strings.add(rstr.getString());
                     break;
                 case BrtBeginSst:
-                    count = XSSFBUtils.castToInt(LittleEndian.getUInt(data,0));
-                    uniqueCount = XSSFBUtils.castToInt(LittleEndian.getUInt(data, 4));
+                    count = XSSFBUtils.castToInt(LittleEndian.getUInt(data, offset));
+                    uniqueCount = XSSFBUtils.castToInt(LittleEndian.getUInt(data, offset + 4));
                     break;
             }
 
@@ -19,6 +19,8 @@ package org.apache.poi.xssf.binary;
 
 
 import java.io.InputStream;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Queue;
 
 import org.apache.poi.ss.usermodel.BuiltinFormats;
@@ -39,21 +41,36 @@ public class XSSFBSheetHandler extends XSSFBParser {
 
     private static final int CHECK_ALL_ROWS = -1;
 
+    //column index and style index of a cell record
+    private static final int CELL_HEADER_LENGTH = 8;
+
+    //the records handled by the CellValueHandler
+    private static final BitSet CELL_RECORDS = new BitSet();
+
+    static {
+        CELL_RECORDS.set(XSSFBRecordType.BrtRowHdr.getId());
+        CELL_RECORDS.set(XSSFBRecordType.BrtEndSheetData.getId());
+        for (int id = XSSFBRecordType.BrtCellBlank.getId(); id <= XSSFBRecordType.BrtFmlaError.getId(); id++) {
+            CELL_RECORDS.set(id);
+        }
+    }
+
     private final SharedStrings stringsTable;
     private final XSSFSheetXMLHandler.SheetContentsHandler handler;
     private final XSSFBStylesTable styles;
     private final XSSFBCommentsTable comments;
     private final DataFormatter dataFormatter;
     private final boolean formulasNotResults;//TODO: implement this
+    private final CellValueHandler cellValueHandler;
 
     private int lastEndedRow = -1;
     private int lastStartedRow = -1;
     private int currentRow;
-    private byte[] rkBuffer = new byte[8];
+    private int currentCol;
+    private int currentStyleIdx;
     private XSSFBCellRange hyperlinkCellRange;
     private StringBuilder xlWideStringBuffer = new StringBuilder();
 
-    private final XSSFBCellHeader cellBuffer = new XSSFBCellHeader();
     public XSSFBSheetHandler(InputStream is,
                              XSSFBStylesTable styles,
                              XSSFBCommentsTable comments,
@@ -68,51 +85,76 @@ public class XSSFBSheetHandler extends XSSFBParser {
         this.handler = sheetContentsHandler;
         this.dataFormatter = dataFormatter;
         this.formulasNotResults = formulasNotResults;
+        this.cellValueHandler = null;
+    }
+
+    /**
+     * Creates a handler, which passes the raw cell values to the given handler instead of
+     * formatting them. Comments and header/footers aren't reported, and the records
+     * not containing rows or cells are skipped.
+     *
+     * @since POI 4.1.1
+     */
+    public XSSFBSheetHandler(InputStream is, CellValueHandler cellValueHandler) {
+        super(is, CELL_RECORDS);
+        this.styles = null;
+        this.comments = null;
+        this.stringsTable = null;
+        this.handler = null;
+        this.dataFormatter = null;
+        this.formulasNotResults = false;
+        this.cellValueHandler = cellValueHandler;
     }
 
     @Override
     public void handleRecord(int id, byte[] data) throws XSSFBParseException {
+        handleRecord(id, data, 0, data.length);
+    }
+
+    @Override
+    public void handleRecord(int id, byte[] data, int offset, int length) throws XSSFBParseException {
         XSSFBRecordType type = XSSFBRecordType.lookup(id);
 
+        if (cellValueHandler != null) {
+            handleCellValueRecord(type, data, offset);
+            return;
+        }
+
         switch(type) {
             case BrtRowHdr:
-                int rw = XSSFBUtils.castToInt(LittleEndian.getUInt(data, 0));
-                if (rw > 0x00100000) {//could make sure this is larger than currentRow, according to spec?
-                    throw new XSSFBParseException("Row number beyond allowable range: "+rw);
-                }
-                currentRow = rw;
+                currentRow = readRowNum(data, offset);
                 checkMissedComments(currentRow);
                 startRow(currentRow);
                 break;
             case BrtCellIsst:
-                handleBrtCellIsst(data);
+                handleBrtCellIsst(data, offset);
                 break;
             case BrtCellSt: //TODO: needs test
-                handleCellSt(data);
+                handleCellSt(data, offset);
                 break;
             case BrtCellRk:
-                handleCellRk(data);
+                handleCellRk(data, offset);
                 break;
             case BrtCellReal:
-                handleCellReal(data);
+                handleCellReal(data, offset);
                 break;
             case BrtCellBool:
-                handleBoolean(data);
+                handleBoolean(data, offset);
                 break;
             case BrtCellError:
-                handleCellError(data);
+                handleCellError(data, offset);
                 break;
             case BrtCellBlank:
-                beforeCellValue(data);//read cell info and check for missing comments
+                beforeCellValue(data, offset);//read cell info and check for missing comments
                 break;
             case BrtFmlaString:
-                handleFmlaString(data);
+                handleFmlaString(data, offset);
                 break;
             case BrtFmlaNum:
-                handleFmlaNum(data);
+                handleFmlaNum(data, offset);
                 break;
             case BrtFmlaError:
-                handleFmlaError(data);
+                handleFmlaError(data, offset);
                 break;
                 //TODO: All the PCDI and PCDIA
             case BrtEndSheetData:
@@ -120,19 +162,86 @@ public class XSSFBSheetHandler extends XSSFBParser {
                 endRow(lastStartedRow);
                 break;
             case BrtBeginHeaderFooter:
-                handleHeaderFooter(data);
+                handleHeaderFooter(Arrays.copyOfRange(data, offset, offset + length));
                 break;
         }
     }
 
+    private void handleCellValueRecord(XSSFBRecordType type, byte[] data, int offset) {
+        if (type == XSSFBRecordType.BrtRowHdr) {
+            if (lastStartedRow != -1) {
+                cellValueHandler.endRow(lastStartedRow);
+            }
+            currentRow = readRowNum(data, offset);
+            lastStartedRow = currentRow;
+            cellValueHandler.startRow(currentRow);
+            return;
+        }
+        if (type == XSSFBRecordType.BrtEndSheetData) {
+            if (lastStartedRow != -1) {
+                cellValueHandler.endRow(lastStartedRow);
+                lastStartedRow = -1;
+            }
+            return;
+        }
 
-    private void beforeCellValue(byte[] data) {
-        XSSFBCellHeader.parse(data, 0, currentRow, cellBuffer);
-        checkMissedComments(currentRow, cellBuffer.getColNum());
+        readCellHeader(data, offset);
+        int valueOffset = offset + CELL_HEADER_LENGTH;
+        switch (type) {
+            case BrtCellBlank:
+                cellValueHandler.blankCell(currentRow, currentCol, currentStyleIdx);
+                break;
+            case BrtCellRk:
+                cellValueHandler.numericCell(currentRow, currentCol, currentStyleIdx, rkNumber(data, valueOffset));
+                break;
+            case BrtCellReal:
+            case BrtFmlaNum:
+                cellValueHandler.numericCell(currentRow, currentCol, currentStyleIdx, LittleEndian.getDouble(data, valueOffset));
+                break;
+            case BrtCellIsst:
+                cellValueHandler.sharedStringCell(currentRow, currentCol, currentStyleIdx,
+                        XSSFBUtils.castToInt(LittleEndian.getUInt(data, valueOffset)));
+                break;
+            case BrtCellSt:
+            case BrtFmlaString:
+                xlWideStringBuffer.setLength(0);
+                XSSFBUtils.readXLWideString(data, valueOffset, xlWideStringBuffer);
+                cellValueHandler.stringCell(currentRow, currentCol, currentStyleIdx, xlWideStringBuffer);
+                break;
+            case BrtCellBool:
+            case BrtFmlaBool:
+                cellValueHandler.booleanCell(currentRow, currentCol, currentStyleIdx, data[valueOffset] == 1);
+                break;
+            case BrtCellError:
+            case BrtFmlaError:
+                cellValueHandler.errorCell(currentRow, currentCol, currentStyleIdx, data[valueOffset]);
+                break;
+        }
+    }
+
+    private static int readRowNum(byte[] data, int offset) {
+        int rw = XSSFBUtils.castToInt(LittleEndian.getUInt(data, offset));
+        if (rw > 0x00100000) {//could make sure this is larger than currentRow, according to spec?
+            throw new XSSFBParseException("Row number beyond allowable range: "+rw);
+        }
+        return rw;
+    }
+
+    /**
+     * Reads the column and the style index, which precede the value of a cell record
+     */
+    private void readCellHeader(byte[] data, int offset) {
+        currentCol = XSSFBUtils.castToInt(LittleEndian.getUInt(data, offset));
+        currentStyleIdx = XSSFBUtils.get24BitInt(data, offset + LittleEndian.INT_SIZE);
+    }
+
+    private void beforeCellValue(byte[] data, int offset) {
+        readCellHeader(data, offset);
+        checkMissedComments(currentRow, currentCol);
     }
 
     private void handleCellValue(String formattedValue) {
-        CellAddress cellAddress = new CellAddress(currentRow, cellBuffer.getColNum());
+        CellAddress cellAddress = new CellAddress(currentRow, currentCol);
         XSSFBComment comment = null;
         if (comments != null) {
             comment = comments.get(cellAddress);
@@ -140,56 +249,56 @@ public class XSSFBSheetHandler extends XSSFBParser {
         handler.cell(cellAddress.formatAsString(), formattedValue, comment);
     }
 
-    private void handleFmlaNum(byte[] data) {
-        beforeCellValue(data);
+    private void handleFmlaNum(byte[] data, int offset) {
+        beforeCellValue(data, offset);
         //xNum
-        double val = LittleEndian.getDouble(data, XSSFBCellHeader.length);
-        handleCellValue(formatVal(val, cellBuffer.getStyleIdx()));
+        double val = LittleEndian.getDouble(data, offset + CELL_HEADER_LENGTH);
+        handleCellValue(formatVal(val, currentStyleIdx));
     }
 
-    private void handleCellSt(byte[] data) {
-        beforeCellValue(data);
+    private void handleCellSt(byte[] data, int offset) {
+        beforeCellValue(data, offset);
         xlWideStringBuffer.setLength(0);
-        XSSFBUtils.readXLWideString(data, XSSFBCellHeader.length, xlWideStringBuffer);
+        XSSFBUtils.readXLWideString(data, offset + CELL_HEADER_LENGTH, xlWideStringBuffer);
         handleCellValue(xlWideStringBuffer.toString());
     }
 
-    private void handleFmlaString(byte[] data) {
-        beforeCellValue(data);
+    private void handleFmlaString(byte[] data, int offset) {
+        beforeCellValue(data, offset);
         xlWideStringBuffer.setLength(0);
-        XSSFBUtils.readXLWideString(data, XSSFBCellHeader.length, xlWideStringBuffer);
+        XSSFBUtils.readXLWideString(data, offset + CELL_HEADER_LENGTH, xlWideStringBuffer);
         handleCellValue(xlWideStringBuffer.toString());
     }
 
-    private void handleCellError(byte[] data) {
-        beforeCellValue(data);
+    private void handleCellError(byte[] data, int offset) {
+        beforeCellValue(data, offset);
         //TODO, read byte to figure out the type of error
         handleCellValue("ERROR");
     }
 
-    private void handleFmlaError(byte[] data) {
-        beforeCellValue(data);
+    private void handleFmlaError(byte[] data, int offset) {
+        beforeCellValue(data, offset);
         //TODO, read byte to figure out the type of error
         handleCellValue("ERROR");
     }
 
-    private void handleBoolean(byte[] data) {
-        beforeCellValue(data);
-        String formattedVal = (data[XSSFBCellHeader.length] == 1) ? "TRUE" : "FALSE";
+    private void handleBoolean(byte[] data, int offset) {
+        beforeCellValue(data, offset);
+        String formattedVal = (data[offset + CELL_HEADER_LENGTH] == 1) ? "TRUE" : "FALSE";
         handleCellValue(formattedVal);
     }
 
-    private void handleCellReal(byte[] data) {
-        beforeCellValue(data);
+    private void handleCellReal(byte[] data, int offset) {
+        beforeCellValue(data, offset);
         //xNum
-        double val = LittleEndian.getDouble(data, XSSFBCellHeader.length);
-        handleCellValue(formatVal(val, cellBuffer.getStyleIdx()));
+        double val = LittleEndian.getDouble(data, offset + CELL_HEADER_LENGTH);
+        handleCellValue(formatVal(val, currentStyleIdx));
     }
 
-    private void handleCellRk(byte[] data) {
-        beforeCellValue(data);
-        double val = rkNumber(data, XSSFBCellHeader.length);
-        handleCellValue(formatVal(val, cellBuffer.getStyleIdx()));
+    private void handleCellRk(byte[] data, int offset) {
+        beforeCellValue(data, offset);
+        double val = rkNumber(data, offset + CELL_HEADER_LENGTH);
+        handleCellValue(formatVal(val, currentStyleIdx));
     }
 
     private String formatVal(double val, int styleIdx) {
@@ -206,9 +315,9 @@ public class XSSFBSheetHandler extends XSSFBParser {
         return dataFormatter.formatRawCellContents(val, styleIndex, formatString);
     }
 
-    private void handleBrtCellIsst(byte[] data) {
-        beforeCellValue(data);
-        int idx = XSSFBUtils.castToInt(LittleEndian.getUInt(data, XSSFBCellHeader.length));
+    private void handleBrtCellIsst(byte[] data, int offset) {
+        beforeCellValue(data, offset);
+        int idx = XSSFBUtils.castToInt(LittleEndian.getUInt(data, offset + CELL_HEADER_LENGTH));
         RichTextString rtss = stringsTable.getItemAt(idx);
         handleCellValue(rtss.getString());
     }
@@ -301,31 +410,56 @@ public class XSSFBSheetHandler extends XSSFBParser {
         handler.cell(cellAddress.formatAsString(), null, comment);
     }
 
-    private double rkNumber(byte[] data, int offset) {
+    private static double rkNumber(byte[] data, int offset) {
         //see 2.5.122
-        byte b0 = data[offset];
-        boolean numDivBy100 = ((b0 & 1) == 1); // else as is
-        boolean floatingPoint = ((b0 >> 1 & 1) == 0); // else signed integer
+        int raw = LittleEndian.getInt(data, offset);
+        boolean numDivBy100 = ((raw & 1) == 1); // else as is
+        boolean floatingPoint = ((raw & 2) == 0); // else signed integer
 
-        //unset highest 2 bits
-        b0 &= ~1;
-        b0 &= ~(1<<1);
-
-        rkBuffer[4] = b0;
-        for (int i = 1; i < 4; i++) {
-            rkBuffer[i+4] = data[offset+i];
-        }
-        double d = 0.0;
+        double d;
         if (floatingPoint) {
-            d = LittleEndian.getDouble(rkBuffer);
+            //the 30 bits are the highest bits of a double, the lowest 2 bits are unset
+            d = Double.longBitsToDouble((long)(raw & ~3) << 32);
         } else {
-            int rawInt = LittleEndian.getInt(rkBuffer, 4);
-            d = rawInt >> 2;//divide by 4/shift bits coz 30 bit int, not 32
+            d = raw >> 2;//divide by 4/shift bits coz 30 bit int, not 32
         }
         d = (numDivBy100) ? d/100 : d;
         return d;
     }
 
+    /**
+     * Receives the unformatted values of the cells, which are decoded from the records
+     * without creating objects per cell. The style index refers to the cell xfs of the
+     * {@link XSSFBStylesTable}, the shared string index to the {@link XSSFBSharedStringsTable}.
+     * The rows are reported in their order in the sheet, empty rows without a record are skipped.
+     * Formula cells are reported by their cached result.
+     *
+     * @since POI 4.1.1
+     */
+    public interface CellValueHandler {
+        void startRow(int rowNum);
+
+        void endRow(int rowNum);
+
+        void blankCell(int rowNum, int colNum, int styleIdx);
+
+        void numericCell(int rowNum, int colNum, int styleIdx, double value);
+
+        void sharedStringCell(int rowNum, int colNum, int styleIdx, int sstIndex);
+
+        /**
+         * @param value the text, which is only valid until this method returns
+         */
+        void stringCell(int rowNum, int colNum, int styleIdx, CharSequence value);
+
+        void booleanCell(int rowNum, int colNum, int styleIdx, boolean value);
+
+        /**
+         * @param errorCode the error code, see {@link org.apache.poi.ss.usermodel.FormulaError}
+         */
+        void errorCell(int rowNum, int colNum, int styleIdx, byte errorCode);
+    }
+
     /**
      * You need to implement this to handle the results
      *  of the sheet parsing.
@@ -0,0 +1,393 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.binary;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.poi.ss.usermodel.HorizontalAlignment;
+import org.apache.poi.ss.usermodel.VerticalAlignment;
+import org.apache.poi.util.Internal;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFFont;
+import org.apache.poi.xssf.usermodel.extensions.XSSFCellBorder;
+import org.apache.poi.xssf.usermodel.extensions.XSSFCellFill;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTBooleanProperty;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTBorder;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTBorderPr;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTCellAlignment;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTCellProtection;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTColor;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTFont;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTPatternFill;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTXf;
+
+/**
+ * Writes the styles of a {@link StylesTable} as styles.bin part, i.e. the counterpart of
+ * {@link XSSFBStylesTable}.<p>
+ *
+ * The number formats, fonts, fills, borders, cell style xfs and cell xfs are written.
+ * Gradient fills are written as empty fills. Of the named cell styles only "Normal" is written,
+ * differential formats and table styles aren't written.
+ *
+ * @since POI 4.1.1
+ */
+@Internal
+public class XSSFBStylesWriter {
+
+    //the system foreground and background colors, which are the default colors of pattern fills
+    private static final int ICV_FOREGROUND = 64;
+    private static final int ICV_BACKGROUND = 65;
+
+    //xfGrbitAtr: the attributes of a cell xf, which differ from its cell style xf
+    private static final int ATR_NUM = 0x01;
+    private static final int ATR_FONT = 0x02;
+    private static final int ATR_ALIGNMENT = 0x04;
+    private static final int ATR_BORDER = 0x08;
+    private static final int ATR_FILL = 0x10;
+    private static final int ATR_PROTECTION = 0x20;
+
+    private final StylesTable styles;
+
+    public XSSFBStylesWriter(StylesTable styles) {
+        this.styles = styles;
+    }
+
+    /**
+     * Writes the styles part - the stream isn't closed
+     */
+    public void write(OutputStream out) throws IOException {
+        XSSFBRecordWriter w = new XSSFBRecordWriter(out);
+        w.writeRecord(XSSFBRecordType.BrtBeginStyleSheet);
+        writeFormats(w);
+        writeFonts(w);
+        writeFills(w);
+        writeBorders(w);
+
+        int styleXfs = styles._getStyleXfsSize();
+        startList(w, XSSFBRecordType.BrtBeginCellStyleXFS, styleXfs);
+        for (int i = 0; i < styleXfs; i++) {
+            writeXf(w, styles.getCellStyleXfAt(i), true);
+        }
+        w.writeRecord(XSSFBRecordType.BrtEndCellStyleXFS);
+
+        int cellXfs = styles.getNumCellStyles();
+        startList(w, XSSFBRecordType.BrtBeginCellXFs, cellXfs);
+        for (int i = 0; i < cellXfs; i++) {
+            writeXf(w, styles.getCellXfAt(i), false);
+        }
+        w.writeRecord(XSSFBRecordType.BrtEndCellXFs);
+
+        startList(w, XSSFBRecordType.BrtBeginStyles, 1);
+        w.startRecord(XSSFBRecordType.BrtStyle);
+        w.writeInt(0);      //ixf
+        w.writeShort(1);    //fBuiltIn
+        w.writeByte(0);     //iStyBuiltIn: Normal
+        w.writeByte(0xFF);  //iLevel
+        w.writeXLNullableWideString("Normal");
+        w.endRecord();
+        w.writeRecord(XSSFBRecordType.BrtEndStyles);
+
+        startList(w, XSSFBRecordType.BrtBeginDXFs, 0);
+        w.writeRecord(XSSFBRecordType.BrtEndDXFs);
+
+        w.startRecord(XSSFBRecordType.BrtBeginTableStyles);
+        w.writeInt(0);
+        w.writeXLNullableWideString("TableStyleMedium2");
+        w.writeXLNullableWideString("PivotStyleLight16");
+        w.endRecord();
+        w.writeRecord(XSSFBRecordType.BrtEndTableStyles);
+
+        w.writeRecord(XSSFBRecordType.BrtEndStyleSheet);
+        w.flush();
+    }
+
+    private static void startList(XSSFBRecordWriter w, XSSFBRecordType type, int count) throws IOException {
+        w.startRecord(type);
+        w.writeInt(count);
+        w.endRecord();
+    }
+
+    private void writeFormats(XSSFBRecordWriter w) throws IOException {
+        Map<Short, String> formats = styles.getNumberFormats();
+        startList(w, XSSFBRecordType.BrtBeginFmts, formats.size());
+        for (Map.Entry<Short, String> format : formats.entrySet()) {
+            w.startRecord(XSSFBRecordType.BrtFmt);
+            w.writeShort(format.getKey());
+            w.writeXLWideString(format.getValue());
+            w.endRecord();
+        }
+        w.writeRecord(XSSFBRecordType.BrtEndFmts);
+    }
+
+    private void writeFonts(XSSFBRecordWriter w) throws IOException {
+        List<XSSFFont> fonts = styles.getFonts();
+        startList(w, XSSFBRecordType.BrtBeginFonts, fonts.size());
+        for (XSSFFont font : fonts) {
+            CTFont ctFont = font.getCTFont();
+            int flags = 0;
+            if (font.getItalic()) {
+                flags |= 0x02;
+            }
+            if (font.getStrikeout()) {
+                flags |= 0x08;
+            }
+            if (isSet(ctFont.getOutlineList())) {
+                flags |= 0x10;
+            }
+            if (isSet(ctFont.getShadowList())) {
+                flags |= 0x20;
+            }
+            if (isSet(ctFont.getCondenseList())) {
+                flags |= 0x40;
+            }
+            if (isSet(ctFont.getExtendList())) {
+                flags |= 0x80;
+            }
+
+            w.startRecord(XSSFBRecordType.BrtFont);
+            w.writeShort(font.getFontHeight());
+            w.writeShort(flags);
+            w.writeShort(font.getBold() ? 700 : 400);
+            w.writeShort(font.getTypeOffset());
+            w.writeByte(font.getUnderline());
+            w.writeByte(font.getFamily());
+            w.writeByte(font.getCharSet());
+            w.writeByte(0);
+            writeColor(w, ctFont.sizeOfColorArray() == 0 ? null : ctFont.getColorArray(0), -1);
+            //none, major, minor
+            w.writeByte(font.getScheme().getValue() - 1);
+            String name = font.getFontName();
+            w.writeXLWideString(name == null ? "" : name);
+            w.endRecord();
+        }
+        w.writeRecord(XSSFBRecordType.BrtEndFonts);
+    }
+
+    private static boolean isSet(List<CTBooleanProperty> property) {
+        return !property.isEmpty() && property.get(0).getVal();
+    }
+
+    private void writeFills(XSSFBRecordWriter w) throws IOException {
+        List<XSSFCellFill> fills = styles.getFills();
+        startList(w, XSSFBRecordType.BrtBeginFills, fills.size());
+        for (XSSFCellFill fill : fills) {
+            CTPatternFill pattern = fill.getCTFill().isSetPatternFill() ? fill.getCTFill().getPatternFill() : null;
+
+            w.startRecord(XSSFBRecordType.BrtFill);
+            //the pattern types are ordered like STPatternType, starting at none
+            w.writeInt(pattern != null && pattern.isSetPatternType() ? pattern.getPatternType().intValue() - 1 : 0);
+            writeColor(w, pattern != null && pattern.isSetFgColor() ? pattern.getFgColor() : null, ICV_FOREGROUND);
+            writeColor(w, pattern != null && pattern.isSetBgColor() ? pattern.getBgColor() : null, ICV_BACKGROUND);
+            //the gradient type, degree, left, right, top and bottom and the number of stops
+            w.writeInt(0);
+            for (int i = 0; i < 5; i++) {
+                w.writeDouble(0);
+            }
+            w.writeInt(0);
+            w.endRecord();
+        }
+        w.writeRecord(XSSFBRecordType.BrtEndFills);
+    }
+
+    private void writeBorders(XSSFBRecordWriter w) throws IOException {
+        List<XSSFCellBorder> borders = styles.getBorders();
+        startList(w, XSSFBRecordType.BrtBeginBorders, borders.size());
+        for (XSSFCellBorder border : borders) {
+            CTBorder ctBorder = border.getCTBorder();
+            int flags = 0;
+            if (ctBorder.isSetDiagonalDown() && ctBorder.getDiagonalDown()) {
+                flags |= 0x01;
+            }
+            if (ctBorder.isSetDiagonalUp() && ctBorder.getDiagonalUp()) {
+                flags |= 0x02;
+            }
+
+            w.startRecord(XSSFBRecordType.BrtBorder);
+            w.writeByte(flags);
+            writeBorderLine(w, ctBorder.isSetTop() ? ctBorder.getTop() : null);
+            writeBorderLine(w, ctBorder.isSetBottom() ? ctBorder.getBottom() : null);
+            writeBorderLine(w, ctBorder.isSetLeft() ? ctBorder.getLeft() : null);
+            writeBorderLine(w, ctBorder.isSetRight() ? ctBorder.getRight() : null);
+            writeBorderLine(w, ctBorder.isSetDiagonal() ? ctBorder.getDiagonal() : null);
+            w.endRecord();
+        }
+        w.writeRecord(XSSFBRecordType.BrtEndBorders);
+    }
+
+    private static void writeBorderLine(XSSFBRecordWriter w, CTBorderPr line) {
+        //the line styles are ordered like STBorderStyle, starting at none
+        w.writeByte(line != null && line.isSetStyle() ? line.getStyle().intValue() - 1 : 0);
+        w.writeByte(0);
+        writeColor(w, line != null && line.isSetColor() ? line.getColor() : null, -1);
+    }
+
+    /**
+     * Writes a BrtColor structure
+     *
+     * @param color the color or {@code null} for the default color
+     * @param defaultIndex the index of the default color or -1, if the default color is automatic
+     */
+    private static void writeColor(XSSFBRecordWriter w, CTColor color, int defaultIndex) {
+        //xColorType: 0 - auto, 1 - indexed, 2 - rgb, 3 - theme
+        int type;
+        int index = 0;
+        if (color == null) {
+            type = (defaultIndex == -1) ? 0 : 1;
+            index = Math.max(defaultIndex, 0);
+        } else if (color.isSetAuto() && color.getAuto()) {
+            type = 0;
+        } else if (color.isSetTheme()) {
+            type = 3;
+            index = (int) color.getTheme();
+        } else if (color.isSetIndexed()) {
+            type = 1;
+            index = (int) color.getIndexed();
+        } else if (color.isSetRgb()) {
+            type = 2;
+        } else {
+            type = 0;
+        }
+        byte[] argb = (color != null && color.isSetRgb()) ? color.getRgb() : null;
+        boolean validRGB = (argb != null && (argb.length == 3 || argb.length == 4));
+
+        w.writeByte(type << 1 | (validRGB ? 1 : 0));
+        w.writeByte(index);
+        double tint = (color != null && color.isSetTint()) ? color.getTint() : 0;
+        w.writeShort((int) Math.round(tint * (tint < 0 ? 32768 : 32767)));
+        if (validRGB) {
+            int offset = argb.length - 3;
+            w.writeByte(argb[offset]);
+            w.writeByte(argb[offset + 1]);
+            w.writeByte(argb[offset + 2]);
+            w.writeByte(offset == 0 ? 0xFF : argb[0]);
+        } else {
+            w.writeInt(0);
+        }
+    }
+
+    private void writeXf(XSSFBRecordWriter w, CTXf xf, boolean styleXf) throws IOException {
+        int alignment = getAlignment(xf);
+        int protection = getProtection(xf);
+        int attributes;
+        if (styleXf) {
+            //the attributes, which aren't part of the cell style
+            attributes = 0;
+            if (xf.isSetApplyNumberFormat() && !xf.getApplyNumberFormat()) {
+                attributes |= ATR_NUM;
+            }
+            if (xf.isSetApplyFont() && !xf.getApplyFont()) {
+                attributes |= ATR_FONT;
+            }
+            if (xf.isSetApplyAlignment() && !xf.getApplyAlignment()) {
+                attributes |= ATR_ALIGNMENT;
+            }
+            if (xf.isSetApplyBorder() && !xf.getApplyBorder()) {
+                attributes |= ATR_BORDER;
+            }
+            if (xf.isSetApplyFill() && !xf.getApplyFill()) {
+                attributes |= ATR_FILL;
+            }
+            if (xf.isSetApplyProtection() && !xf.getApplyProtection()) {
+                attributes |= ATR_PROTECTION;
+            }
+        } else {
+            CTXf parent = styles.getCellStyleXfAt((int) xf.getXfId());
+            if (parent == null) {
+                attributes = ATR_NUM | ATR_FONT | ATR_ALIGNMENT | ATR_BORDER | ATR_FILL | ATR_PROTECTION;
+            } else {
+                attributes = 0;
+                if (xf.getNumFmtId() != parent.getNumFmtId()) {
+                    attributes |= ATR_NUM;
+                }
+                if (xf.getFontId() != parent.getFontId()) {
+                    attributes |= ATR_FONT;
+                }
+                if (alignment != getAlignment(parent)) {
+                    attributes |= ATR_ALIGNMENT;
+                }
+                if (xf.getBorderId() != parent.getBorderId()) {
+                    attributes |= ATR_BORDER;
+                }
+                if (xf.getFillId() != parent.getFillId()) {
+                    attributes |= ATR_FILL;
+                }
+                if (protection != getProtection(parent)) {
+                    attributes |= ATR_PROTECTION;
+                }
+            }
+        }
+
+        w.startRecord(XSSFBRecordType.BrtXf);
+        w.writeShort(styleXf ? 0xFFFF : (int) xf.getXfId());
+        w.writeShort((int) xf.getNumFmtId());
+        w.writeShort((int) xf.getFontId());
+        w.writeShort((int) xf.getFillId());
+        w.writeShort((int) xf.getBorderId());
+        //the text rotation and the indent
+        w.writeByte(alignment >>> 24);
+        w.writeByte(alignment >>> 16);
+        w.writeShort((alignment & 0xFFFF) | protection);
+        w.writeShort(attributes);
+        w.endRecord();
+    }
+
+    /**
+     * @return the text rotation, the indent and the alignment flags of the xf packed into an int
+     */
+    private static int getAlignment(CTXf xf) {
+        CTCellAlignment al = xf.isSetAlignment() ? xf.getAlignment() : null;
+        int horizontal = (al != null && al.isSetHorizontal())
+                ? al.getHorizontal().intValue() - 1 : HorizontalAlignment.GENERAL.getCode();
+        int vertical = (al != null && al.isSetVertical())
+                ? al.getVertical().intValue() - 1 : VerticalAlignment.BOTTOM.getCode();
+        int bits = horizontal | vertical << 3;
+        if (al != null) {
+            if (al.getWrapText()) {
+                bits |= 0x40;
+            }
+            if (al.getJustifyLastLine()) {
+                bits |= 0x80;
+            }
+            if (al.getShrinkToFit()) {
+                bits |= 0x100;
+            }
+            bits |= ((int) al.getReadingOrder() & 0x03) << 10;
+            bits |= ((int) al.getIndent() & 0xFF) << 16;
+            bits |= ((int) al.getTextRotation() & 0xFF) << 24;
+        }
+        return bits;
+    }
+
+    /**
+     * @return the locked and hidden flags of the xf
+     */
+    private static int getProtection(CTXf xf) {
+        CTCellProtection protection = xf.isSetProtection() ? xf.getProtection() : null;
+        int bits = 0;
+        if (protection == null || !protection.isSetLocked() || protection.getLocked()) {
+            bits |= 0x1000;
+        }
+        if (protection != null && protection.isSetHidden() && protection.getHidden()) {
+            bits |= 0x2000;
+        }
+        return bits;
+    }
+}
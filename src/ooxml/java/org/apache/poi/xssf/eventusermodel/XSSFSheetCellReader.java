@@ -0,0 +1,584 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.eventusermodel;
+
+import static org.apache.poi.xssf.usermodel.XSSFRelation.NS_SPREADSHEETML;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.apache.poi.util.StaxHelper;
+import org.apache.poi.xssf.model.SharedStrings;
+import org.apache.poi.xssf.model.Styles;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFRichTextString;
+
+/**
+ * A pull reader for the cells of a sheet#.xml sheet part of a XSSF .xlsx file.<p>
+ *
+ * In contrast to {@link XSSFSheetXMLHandler}, the cell values are provided as typed values:
+ * the row and column as ints, numbers as doubles, shared strings as their index and the style
+ * as its index. The value text is decoded directly from the character buffers of the StAX parser,
+ * so numeric values don't create any strings. StAX only exposes attributes as strings, so the
+ * cell reference, style and type attributes are allocated by the parser, but they are decoded in
+ * place without creating cell references.
+ * Resolving shared strings and formatting the values is an opt-in step.<p>
+ *
+ * <pre>{@code
+ * try (XSSFSheetCellReader cells = new XSSFSheetCellReader(sheetStream, sharedStrings, styles)) {
+ *     while (cells.next()) {
+ *         if (cells.getCellType() == CellType.NUMERIC) {
+ *             sum[cells.getColumnIndex()] += cells.getNumericValue();
+ *         }
+ *     }
+ * }
+ * }</pre>
+ *
+ * Comments, header/footers and shared formulas aren't processed by this reader.
+ *
+ * @since POI 4.1.1
+ */
+public class XSSFSheetCellReader implements Closeable {
+    private static final double[] POW10 = new double[23];
+    static {
+        POW10[0] = 1;
+        for (int i=1; i<POW10.length; i++) {
+            POW10[i] = POW10[i-1] * 10;
+        }
+    }
+
+    private final InputStream stream;
+    private final XMLStreamReader reader;
+    private final SharedStrings sharedStrings;
+    private final Styles styles;
+
+    private boolean done;
+
+    private int rowIndex = -1;
+    private int nextRowIndex;
+    private int columnIndex;
+    private int nextColumnIndex;
+    private int styleIndex;
+
+    private CellType cellType;
+    private char typeAttr;
+    private boolean sharedString;
+    private boolean hasFormula;
+    private final StringBuilder formula = new StringBuilder(64);
+
+    private char[] value = new char[64];
+    private int valueLength;
+    private boolean valueSet;
+
+    // cached number formats by style index, resolved on demand
+    private short[] formatIndexes;
+    private String[] formatStrings;
+
+    /**
+     * Creates a reader without shared strings and styles, i.e. only the raw values are available
+     *
+     * @param sheet the sheet part data, will be closed by {@link #close()}
+     */
+    public XSSFSheetCellReader(InputStream sheet) throws XMLStreamException {
+        this(sheet, null, null);
+    }
+
+    /**
+     * @param sheet the sheet part data, will be closed by {@link #close()}
+     * @param sharedStrings the shared strings to resolve string values or {@code null}
+     * @param styles the styles for formatting values or {@code null}
+     */
+    public XSSFSheetCellReader(InputStream sheet, SharedStrings sharedStrings, Styles styles) throws XMLStreamException {
+        this.stream = sheet;
+        this.reader = StaxHelper.newXMLInputFactory().createXMLStreamReader(sheet);
+        this.sharedStrings = sharedStrings;
+        this.styles = styles;
+    }
+
+    /**
+     * Advances to the next cell
+     *
+     * @return {@code true} if there's a current cell, {@code false} if the end of the sheet data was reached
+     */
+    public boolean next() throws XMLStreamException {
+        while (!done && reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    if (!NS_SPREADSHEETML.equals(reader.getNamespaceURI())) {
+                        break;
+                    }
+                    String name = reader.getLocalName();
+                    if ("row".equals(name)) {
+                        startRow();
+                    } else if ("c".equals(name)) {
+                        readCell();
+                        return true;
+                    }
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    if ("sheetData".equals(reader.getLocalName())) {
+                        done = true;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        done = true;
+        return false;
+    }
+
+    private void startRow() {
+        rowIndex = nextRowIndex;
+        for (int i=0; i<reader.getAttributeCount(); i++) {
+            if ("r".equals(reader.getAttributeLocalName(i))) {
+                rowIndex = parseInt(reader.getAttributeValue(i)) - 1;
+            }
+        }
+        nextRowIndex = rowIndex + 1;
+        nextColumnIndex = 0;
+    }
+
+    private void readCell() throws XMLStreamException {
+        columnIndex = nextColumnIndex;
+        styleIndex = 0;
+        typeAttr = 'n';
+        hasFormula = false;
+        formula.setLength(0);
+        valueLength = 0;
+        valueSet = false;
+
+        for (int i=0; i<reader.getAttributeCount(); i++) {
+            String attr = reader.getAttributeLocalName(i);
+            if ("r".equals(attr)) {
+                columnIndex = parseColumn(reader.getAttributeValue(i));
+            } else if ("s".equals(attr)) {
+                styleIndex = parseInt(reader.getAttributeValue(i));
+            } else if ("t".equals(attr)) {
+                typeAttr = cellTypeCode(reader.getAttributeValue(i));
+            }
+        }
+        nextColumnIndex = columnIndex + 1;
+
+        // 0 = none, 1 = v, 2 = f, 3 = is/t
+        int textTarget = 0;
+        boolean inInlineString = false, inPhonetic = false;
+        int depth = 0;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+                String name = reader.getLocalName();
+                if ("v".equals(name)) {
+                    textTarget = 1;
+                    valueSet = true;
+                } else if ("f".equals(name)) {
+                    textTarget = 2;
+                    hasFormula = true;
+                } else if ("is".equals(name)) {
+                    inInlineString = true;
+                    valueSet = true;
+                } else if ("rPh".equals(name)) {
+                    inPhonetic = true;
+                } else if ("t".equals(name) && inInlineString && !inPhonetic) {
+                    textTarget = 3;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (depth == 0) {
+                    // end of c
+                    break;
+                }
+                depth--;
+                String name = reader.getLocalName();
+                if ("is".equals(name)) {
+                    inInlineString = false;
+                } else if ("rPh".equals(name)) {
+                    inPhonetic = false;
+                }
+                textTarget = 0;
+            } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+                    || event == XMLStreamConstants.SPACE) {
+                if (textTarget == 1 || textTarget == 3) {
+                    appendValue(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                } else if (textTarget == 2) {
+                    formula.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                }
+            }
+        }
+
+        sharedString = false;
+        if (!valueSet) {
+            cellType = CellType.BLANK;
+            return;
+        }
+        switch (typeAttr) {
+            case 's':
+                sharedString = true;
+                cellType = CellType.STRING;
+                break;
+            case 'b':
+                cellType = CellType.BOOLEAN;
+                break;
+            case 'e':
+                cellType = CellType.ERROR;
+                break;
+            case 'i':
+            case 't':
+            case 'd':
+                cellType = CellType.STRING;
+                break;
+            default:
+                cellType = CellType.NUMERIC;
+                break;
+        }
+    }
+
+    private static char cellTypeCode(String type) {
+        switch (type) {
+            case "s": return 's';
+            case "b": return 'b';
+            case "e": return 'e';
+            case "inlineStr": return 'i';
+            case "str": return 't';
+            case "d": return 'd';
+            default: return 'n';
+        }
+    }
+
+    private void appendValue(char[] chars, int start, int length) {
+        if (valueLength + length > value.length) {
+            value = Arrays.copyOf(value, Math.max(value.length * 2, valueLength + length));
+        }
+        System.arraycopy(chars, start, value, valueLength, length);
+        valueLength += length;
+    }
+
+    /**
+     * @return the zero based row index of the current cell
+     */
+    public int getRowIndex() {
+        return rowIndex;
+    }
+
+    /**
+     * @return the zero based column index of the current cell
+     */
+    public int getColumnIndex() {
+        return columnIndex;
+    }
+
+    /**
+     * @return the style index of the current cell, 0 if no style is given
+     */
+    public int getStyleIndex() {
+        return styleIndex;
+    }
+
+    /**
+     * @return the type of the value of the current cell - for formula cells the type of the cached result.
+     *  Cells without a value are reported as {@link CellType#BLANK}.
+     */
+    public CellType getCellType() {
+        return cellType;
+    }
+
+    /**
+     * @return {@code true} if the current cell has a formula element
+     */
+    public boolean hasFormula() {
+        return hasFormula;
+    }
+
+    /**
+     * @return the formula text of the current cell, which is empty for cells of a shared formula
+     *  apart from the master cell, or {@code null} if the cell has no formula
+     */
+    public String getFormula() {
+        return hasFormula ? formula.toString() : null;
+    }
+
+    /**
+     * @return {@code true} if the current cell refers to a shared string
+     */
+    public boolean isSharedString() {
+        return sharedString;
+    }
+
+    /**
+     * @return the index into the shared strings table
+     * @throws IllegalStateException if the current cell doesn't refer to a shared string
+     */
+    public int getSharedStringIndex() {
+        if (!sharedString) {
+            throw new IllegalStateException("Cell " + rowIndex + "/" + columnIndex + " isn't a shared string cell");
+        }
+        return parseInt(value, 0, valueLength);
+    }
+
+    /**
+     * @return the numeric value of the current cell
+     * @throws IllegalStateException if the current cell isn't numeric
+     */
+    public double getNumericValue() {
+        if (cellType != CellType.NUMERIC) {
+            throw new IllegalStateException("Cell " + rowIndex + "/" + columnIndex + " isn't numeric, but " + cellType);
+        }
+        return parseDouble(value, 0, valueLength);
+    }
+
+    /**
+     * @return the boolean value of the current cell
+     * @throws IllegalStateException if the current cell isn't a boolean
+     */
+    public boolean getBooleanValue() {
+        if (cellType != CellType.BOOLEAN) {
+            throw new IllegalStateException("Cell " + rowIndex + "/" + columnIndex + " isn't a boolean, but " + cellType);
+        }
+        return valueLength > 0 && value[0] != '0';
+    }
+
+    /**
+     * @return the error code of the current cell
+     * @throws IllegalStateException if the current cell isn't an error
+     */
+    public byte getErrorCellValue() {
+        if (cellType != CellType.ERROR) {
+            throw new IllegalStateException("Cell " + rowIndex + "/" + columnIndex + " isn't an error, but " + cellType);
+        }
+        return FormulaError.forString(new String(value, 0, valueLength)).getCode();
+    }
+
+    /**
+     * @return the string value of the current cell, shared strings are resolved via the shared strings table
+     *  given to the constructor
+     * @throws IllegalStateException if the current cell is a shared string and no shared strings table was given
+     */
+    public String getStringValue() {
+        if (sharedString) {
+            if (sharedStrings == null) {
+                throw new IllegalStateException("Shared strings can't be resolved without a shared strings table");
+            }
+            return sharedStrings.getItemAt(getSharedStringIndex()).getString();
+        }
+        String raw = new String(value, 0, valueLength);
+        // inline strings use the same character escaping as shared strings
+        return (typeAttr == 'i') ? new XSSFRichTextString(raw).getString() : raw;
+    }
+
+    /**
+     * Formats the value of the current cell like {@link XSSFSheetXMLHandler} would do,
+     * i.e. numbers are formatted according to the number format of the cell style
+     *
+     * @param formatter the formatter for numeric values
+     * @return the formatted value, an empty string for blank cells
+     */
+    public String getFormattedValue(DataFormatter formatter) {
+        switch (cellType) {
+            case BLANK:
+                return "";
+            case BOOLEAN:
+                return getBooleanValue() ? "TRUE" : "FALSE";
+            case ERROR:
+                return "ERROR:" + new String(value, 0, valueLength);
+            case STRING:
+                return getStringValue();
+            default:
+                break;
+        }
+        double val = getNumericValue();
+        String formatString = getFormatString();
+        return (formatString == null)
+            ? new String(value, 0, valueLength)
+            : formatter.formatRawCellContents(val, formatIndexes[styleIndex], formatString);
+    }
+
+    private String getFormatString() {
+        if (styles == null || styles.getNumCellStyles() == 0) {
+            return null;
+        }
+        if (formatIndexes == null) {
+            formatIndexes = new short[styles.getNumCellStyles()];
+            formatStrings = new String[styles.getNumCellStyles()];
+        }
+        if (styleIndex >= formatIndexes.length) {
+            return null;
+        }
+        if (formatStrings[styleIndex] == null) {
+            XSSFCellStyle style = styles.getStyleAt(styleIndex);
+            short fmtIdx = style.getDataFormat();
+            String fmt = style.getDataFormatString();
+            formatIndexes[styleIndex] = fmtIdx;
+            formatStrings[styleIndex] = (fmt != null) ? fmt : BuiltinFormats.getBuiltinFormat(fmtIdx);
+        }
+        return formatStrings[styleIndex];
+    }
+
+    /**
+     * Closes the parser and the underlying stream
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            reader.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Decodes the column index of a cell reference like "AB12" without creating a CellReference
+     */
+    static int parseColumn(String ref) {
+        int col = 0;
+        for (int i=0; i<ref.length(); i++) {
+            char c = ref.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                col = col*26 + (c-'A'+1);
+            } else if (c >= 'a' && c <= 'z') {
+                col = col*26 + (c-'a'+1);
+            } else if (c != '$') {
+                break;
+            }
+        }
+        return col-1;
+    }
+
+    private static int parseInt(String str) {
+        int val = 0;
+        for (int i=0; i<str.length(); i++) {
+            val = val*10 + digit(str.charAt(i), str);
+        }
+        return val;
+    }
+
+    private static int parseInt(char[] chars, int start, int length) {
+        int val = 0;
+        for (int i=start; i<start+length; i++) {
+            char c = chars[i];
+            if (c < '0' || c > '9') {
+                throw new NumberFormatException("Invalid integer: " + new String(chars, start, length));
+            }
+            val = val*10 + (c-'0');
+        }
+        return val;
+    }
+
+    private static int digit(char c, String str) {
+        if (c < '0' || c > '9') {
+            throw new NumberFormatException("Invalid integer: " + str);
+        }
+        return c-'0';
+    }
+
+    /**
+     * Parses a decimal number. Numbers with up to 15 significant digits and a small decimal exponent
+     * are converted exactly by a single (correctly rounded) multiplication or division of two exact
+     * doubles, all other numbers are delegated to {@link Double#parseDouble(String)}.
+     */
+    static double parseDouble(char[] chars, int start, int length) {
+        int i = start, end = start+length;
+        boolean negative = false;
+        if (i < end && (chars[i] == '-' || chars[i] == '+')) {
+            negative = chars[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0, scale = 0;
+        boolean dot = false, anyDigit = false;
+        for (; i<end; i++) {
+            char c = chars[i];
+            if (c >= '0' && c <= '9') {
+                anyDigit = true;
+                if (mantissa == 0 && c == '0') {
+                    // leading zeros aren't significant
+                    if (dot) {
+                        scale--;
+                    }
+                    continue;
+                }
+                if (++digits > 15) {
+                    return slowParse(chars, start, length);
+                }
+                mantissa = mantissa*10 + (c-'0');
+                if (dot) {
+                    scale--;
+                }
+            } else if (c == '.' && !dot) {
+                dot = true;
+            } else {
+                break;
+            }
+        }
+        if (!anyDigit) {
+            return slowParse(chars, start, length);
+        }
+        if (i < end) {
+            if (chars[i] != 'E' && chars[i] != 'e') {
+                return slowParse(chars, start, length);
+            }
+            i++;
+            boolean negExp = false;
+            if (i < end && (chars[i] == '-' || chars[i] == '+')) {
+                negExp = chars[i] == '-';
+                i++;
+            }
+            if (i == end) {
+                return slowParse(chars, start, length);
+            }
+            int exp = 0;
+            for (; i<end; i++) {
+                char c = chars[i];
+                if (c < '0' || c > '9' || exp > 1000) {
+                    return slowParse(chars, start, length);
+                }
+                exp = exp*10 + (c-'0');
+            }
+            scale += negExp ? -exp : exp;
+        }
+
+        double val;
+        if (mantissa == 0) {
+            val = 0;
+        } else if (scale == 0) {
+            val = mantissa;
+        } else if (scale > 0 && scale < POW10.length) {
+            val = mantissa * POW10[scale];
+        } else if (scale < 0 && -scale < POW10.length) {
+            val = mantissa / POW10[-scale];
+        } else {
+            return slowParse(chars, start, length);
+        }
+        return negative ? -val : val;
+    }
+
+    private static double slowParse(char[] chars, int start, int length) {
+        return Double.parseDouble(new String(chars, start, length));
+    }
+}
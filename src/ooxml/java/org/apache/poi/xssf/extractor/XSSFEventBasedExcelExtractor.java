@@ -19,10 +19,14 @@ package org.apache.poi.xssf.extractor;
 import javax.xml.parsers.ParserConfigurationException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.apache.poi.ooxml.POIXMLProperties;
 import org.apache.poi.ooxml.POIXMLProperties.CoreProperties;
@@ -31,6 +35,7 @@ import org.apache.poi.ooxml.POIXMLProperties.ExtendedProperties;
 import org.apache.poi.ooxml.extractor.POIXMLTextExtractor;
 import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
 import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackagePart;
 import org.apache.poi.ss.usermodel.DataFormatter;
 import org.apache.poi.util.POILogFactory;
 import org.apache.poi.util.POILogger;
@@ -68,6 +73,7 @@ public class XSSFEventBasedExcelExtractor extends POIXMLTextExtractor
     protected boolean includeHeadersFooters = true;
     protected boolean formulasNotResults;
     protected boolean concatenatePhoneticRuns = true;
+    protected ExecutorService executor;
 
     public XSSFEventBasedExcelExtractor(String path) throws XmlException, OpenXML4JException, IOException {
         this(OPCPackage.open(path));
@@ -179,6 +185,31 @@ public class XSSFEventBasedExcelExtractor extends POIXMLTextExtractor
         this.concatenatePhoneticRuns = concatenatePhoneticRuns;
     }
 
+    /**
+     * Sets the executor used to parse the sheets concurrently. Each worksheet is an independent
+     * part of the package, so the sheets are parsed by separate tasks, which share the read-only
+     * shared strings and styles tables. The tables are only read while parsing, so they need
+     * to be safe for concurrent reads, if {@link #createSharedStringsTable} is overridden.
+     * The text of the sheets is still returned in sheet order.<p>
+     *
+     * The executor is not shut down by this extractor. Default is {@code null},
+     * i.e. the sheets are parsed sequentially on the calling thread.
+     *
+     * @param executor the executor or {@code null} to parse the sheets sequentially
+     * @since POI 4.1.1
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * @return the executor used to parse the sheets concurrently or {@code null}
+     * @since POI 4.1.1
+     */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
     public void setLocale(Locale locale) {
         this.locale = locale;
     }
@@ -269,6 +300,12 @@ public class XSSFEventBasedExcelExtractor extends POIXMLTextExtractor
             StylesTable styles = xssfReader.getStylesTable();
             XSSFReader.SheetIterator iter = (XSSFReader.SheetIterator) xssfReader.getSheetsData();
             StringBuilder text = new StringBuilder(64);
+
+            if (executor != null) {
+                processSheetsConcurrently(iter, styles, strings, text);
+                return text.toString();
+            }
+
             SheetTextExtractor sheetExtractor = new SheetTextExtractor();
 
             while (iter.hasNext()) {
@@ -279,16 +316,7 @@ public class XSSFEventBasedExcelExtractor extends POIXMLTextExtractor
                 }
                 Comments comments = includeCellComments ? iter.getSheetComments() : null;
                 processSheet(sheetExtractor, styles, comments, strings, stream);
-                if (includeHeadersFooters) {
-                    sheetExtractor.appendHeaderText(text);
-                }
-                sheetExtractor.appendCellText(text);
-                if (includeTextBoxes) {
-                    processShapes(iter.getShapes(), text);
-                }
-                if (includeHeadersFooters) {
-                    sheetExtractor.appendFooterText(text);
-                }
+                appendSheetText(sheetExtractor, includeTextBoxes ? iter.getShapes() : null, text);
                 sheetExtractor.reset();
                 stream.close();
             }
@@ -297,6 +325,83 @@ public class XSSFEventBasedExcelExtractor extends POIXMLTextExtractor
         } catch (IOException | OpenXML4JException | SAXException e) {
             LOGGER.log(POILogger.WARN, e);
             return null;
+        } catch (InterruptedException e) {
+            LOGGER.log(POILogger.WARN, e);
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Submits a parsing task per sheet to the executor and appends the results in sheet order.
+     * The sheet iterator isn't thread-safe, so the sheet parts, comments and shapes are
+     * looked up on the calling thread, only the parsing of the sheet data is done by the tasks.<p>
+     *
+     * Each task opens and closes the stream of its sheet part and gets its own handler and
+     * DataFormatter via {@link #processSheet}. The shared strings and the StylesTable are shared
+     * between the tasks - they are only read by the sheet handler, which looks up the styles and
+     * their number formats, but never adds or changes styles.
+     */
+    private void processSheetsConcurrently(
+            XSSFReader.SheetIterator iter, StylesTable styles, SharedStrings strings, StringBuilder text)
+            throws IOException, SAXException, InterruptedException {
+        List<Future<String>> results = new ArrayList<>();
+        try {
+            while (iter.hasNext()) {
+                // the iterator opens the sheet stream, the tasks open their own stream instead
+                iter.next().close();
+                final PackagePart sheetPart = iter.getSheetPart();
+                final String sheetName = iter.getSheetName();
+                final Comments comments = includeCellComments ? iter.getSheetComments() : null;
+                final List<XSSFShape> shapes = includeTextBoxes ? iter.getShapes() : null;
+                results.add(executor.submit(() -> {
+                    StringBuilder sheetText = new StringBuilder(64);
+                    if (includeSheetNames) {
+                        sheetText.append(sheetName).append('\n');
+                    }
+                    SheetTextExtractor sheetExtractor = new SheetTextExtractor();
+                    try (InputStream stream = sheetPart.getInputStream()) {
+                        processSheet(sheetExtractor, styles, comments, strings, stream);
+                    }
+                    appendSheetText(sheetExtractor, shapes, sheetText);
+                    return sheetText.toString();
+                }));
+            }
+
+            for (Future<String> result : results) {
+                String sheetText = result.get();
+                checkMaxTextSize(text, sheetText);
+                text.append(sheetText);
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException)cause;
+            } else if (cause instanceof SAXException) {
+                throw (SAXException)cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            } else if (cause instanceof Error) {
+                throw (Error)cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            for (Future<String> result : results) {
+                result.cancel(true);
+            }
+        }
+    }
+
+    private void appendSheetText(SheetTextExtractor sheetExtractor, List<XSSFShape> shapes, StringBuilder text) {
+        if (includeHeadersFooters) {
+            sheetExtractor.appendHeaderText(text);
+        }
+        sheetExtractor.appendCellText(text);
+        if (includeTextBoxes) {
+            processShapes(shapes, text);
+        }
+        if (includeHeadersFooters) {
+            sheetExtractor.appendFooterText(text);
         }
     }
 
@@ -0,0 +1,464 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.model;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.poi.xssf.usermodel.XSSFRelation.NS_SPREADSHEETML;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.poi.ooxml.POIXMLDocumentPart;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.ss.usermodel.RichTextString;
+import org.apache.poi.util.Beta;
+import org.apache.poi.util.Removal;
+import org.apache.poi.util.StaxHelper;
+import org.apache.poi.xssf.usermodel.XSSFFactory;
+import org.apache.poi.xssf.usermodel.XSSFRichTextString;
+import org.apache.xmlbeans.XmlException;
+import org.apache.xmlbeans.XmlOptions;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTRst;
+
+/**
+ * A {@link SharedStringsTable}, which keeps the strings outside of the java heap.<p>
+ *
+ * The strings are stored as UTF-8 bytes in memory-mapped temp file segments (or direct buffers)
+ * and are deduplicated via an open-addressing hash index, so the heap usage is roughly 20 bytes
+ * per unique string. Plain strings are kept as text, rich text strings as their si element XML.
+ * The part is read and written by streaming the XML, i.e. there's no XMLBeans document
+ * of the whole table.<p>
+ *
+ * The table is usually selected via a factory, which replaces the default shared strings table:
+ * <pre>{@code
+ * XSSFWorkbook wb = new XSSFWorkbook(OPCPackage.open(file), OffHeapSharedStringsTable.factory(true));
+ * SXSSFWorkbook swb = new SXSSFWorkbook(new XSSFWorkbook(OffHeapSharedStringsTable.factory(true)), 100, false, true);
+ * }</pre>
+ *
+ * The items returned by {@link #getItemAt(int)} are decoded on demand and the recently used items
+ * are cached, so they need to be treated as read-only - changing their formatting doesn't update
+ * the table.
+ *
+ * @since POI 4.1.1
+ */
+@Beta
+public class OffHeapSharedStringsTable extends SharedStringsTable {
+    private static final byte PLAIN = 0;
+    private static final byte RICH = 1;
+
+    private static final String SI_START = "<si xmlns=\"" + NS_SPREADSHEETML + "\">";
+    /** the number of decoded items kept on the heap */
+    private static final int ITEM_CACHE_SIZE = 1024;
+
+    private static final XmlOptions SAVE_OPTIONS = new XmlOptions();
+    private static final XmlOptions LOAD_OPTIONS = new XmlOptions();
+    static {
+        SAVE_OPTIONS.setSaveSyntheticDocumentElement(new QName(NS_SPREADSHEETML, "si"));
+        SAVE_OPTIONS.setSaveAggressiveNamespaces();
+        SAVE_OPTIONS.setUseDefaultNamespace();
+        LOAD_OPTIONS.setLoadReplaceDocumentElement(null);
+    }
+
+    // not initialized in its declaration, as readFrom is already called by the super constructor
+    private final OffHeapStringPool pool;
+
+    // the recently used items, so repeated lookups don't decode or parse the item again
+    private final Map<Integer,CTRst> itemCache = new LinkedHashMap<Integer,CTRst>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer,CTRst> eldest) {
+            return size() > ITEM_CACHE_SIZE;
+        }
+    };
+
+    /**
+     * Creates an empty table backed by a temp file
+     */
+    public OffHeapSharedStringsTable() throws IOException {
+        this(true);
+    }
+
+    /**
+     * Creates an empty table
+     *
+     * @param useTempFile if {@code true} the strings are stored in a memory-mapped temp file,
+     *  otherwise in direct byte buffers
+     */
+    public OffHeapSharedStringsTable(boolean useTempFile) throws IOException {
+        super();
+        pool = new OffHeapStringPool(useTempFile, OffHeapStringPool.DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Reads the table from the package part into a temp file backed pool
+     */
+    public OffHeapSharedStringsTable(PackagePart part) throws IOException {
+        this(part, true);
+    }
+
+    /**
+     * Reads the table from the package part
+     *
+     * @param useTempFile if {@code true} the strings are stored in a memory-mapped temp file,
+     *  otherwise in direct byte buffers
+     */
+    public OffHeapSharedStringsTable(PackagePart part, boolean useTempFile) throws IOException {
+        // the pool isn't available in the super constructor, so the part is read here
+        super(part, false);
+        pool = new OffHeapStringPool(useTempFile, OffHeapStringPool.DEFAULT_SEGMENT_SIZE);
+        try (InputStream is = part.getInputStream()) {
+            readFrom(is);
+        }
+    }
+
+    /**
+     * @param useTempFile if {@code true} the strings are stored in memory-mapped temp files,
+     *  otherwise in direct byte buffers
+     * @return a factory to be used with {@link org.apache.poi.xssf.usermodel.XSSFWorkbook},
+     *  which creates instances of this class instead of the default shared strings table
+     */
+    public static XSSFFactory factory(boolean useTempFile) {
+        return new OffHeapFactory(useTempFile);
+    }
+
+    @Override
+    public void readFrom(InputStream is) throws IOException {
+        try {
+            XMLStreamReader reader = StaxHelper.newXMLInputFactory().createXMLStreamReader(is);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                        continue;
+                    }
+                    String name = reader.getLocalName();
+                    if ("sst".equals(name)) {
+                        count = parseCount(reader.getAttributeValue(null, "count"));
+                        uniqueCount = parseCount(reader.getAttributeValue(null, "uniqueCount"));
+                    } else if ("si".equals(name)) {
+                        readItem(reader);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("unable to parse shared strings table", e);
+        }
+    }
+
+    private static int parseCount(String val) {
+        return (val == null) ? 0 : (int)Long.parseLong(val);
+    }
+
+    /**
+     * Reads a si element - plain strings, i.e. items with a single t child, are stored as text,
+     * everything else as xml
+     */
+    private void readItem(XMLStreamReader reader) throws XMLStreamException, IOException {
+        StringBuilder xml = new StringBuilder(64);
+        xml.append(SI_START);
+        StringBuilder text = new StringBuilder(32);
+        int depth = 0, children = 0;
+        boolean plain = true;
+
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    if (depth == 1) {
+                        children++;
+                        plain &= (children == 1 && "t".equals(reader.getLocalName()));
+                    } else {
+                        plain = false;
+                    }
+                    writeStartElement(reader, xml);
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    if (depth == 0) {
+                        // end of si - duplicates in the file need to keep their own index,
+                        // lookups return the last one as in SharedStringsTable
+                        xml.append("</si>");
+                        pool.append(plain ? encode(PLAIN, text) : encode(RICH, xml));
+                        return;
+                    }
+                    xml.append("</").append(qname(reader.getPrefix(), reader.getLocalName())).append('>');
+                    depth--;
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    if (depth == 1) {
+                        text.append(reader.getText());
+                    }
+                    if (depth > 0) {
+                        escape(reader.getText(), xml, false);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Writes the start element including the namespace declarations of the element and attribute
+     * prefixes, as the prefixes might have been declared by an enclosing element of the si element
+     */
+    private static void writeStartElement(XMLStreamReader reader, StringBuilder xml) {
+        String prefix = reader.getPrefix();
+        String ns = reader.getNamespaceURI();
+        xml.append('<').append(qname(prefix, reader.getLocalName()));
+        if (prefix == null || prefix.isEmpty()) {
+            if (!NS_SPREADSHEETML.equals(ns)) {
+                // the default namespace of the si element is redefined
+                writeNamespace(null, ns, xml);
+            }
+        } else {
+            writeNamespace(prefix, ns, xml);
+        }
+        Set<String> declared = null;
+        for (int i=0; i<reader.getAttributeCount(); i++) {
+            String attrPrefix = reader.getAttributePrefix(i);
+            // the xml prefix is bound by definition and must not be declared
+            if (attrPrefix == null || attrPrefix.isEmpty() || "xml".equals(attrPrefix) || attrPrefix.equals(prefix)) {
+                continue;
+            }
+            if (declared == null) {
+                declared = new HashSet<>();
+            }
+            if (declared.add(attrPrefix)) {
+                writeNamespace(attrPrefix, reader.getAttributeNamespace(i), xml);
+            }
+        }
+        for (int i=0; i<reader.getAttributeCount(); i++) {
+            xml.append(' ').append(qname(reader.getAttributePrefix(i), reader.getAttributeLocalName(i))).append("=\"");
+            escape(reader.getAttributeValue(i), xml, true);
+            xml.append('"');
+        }
+        xml.append('>');
+    }
+
+    private static void writeNamespace(String prefix, String ns, StringBuilder xml) {
+        xml.append(prefix == null ? " xmlns" : " xmlns:" + prefix).append("=\"");
+        escape(ns == null ? "" : ns, xml, true);
+        xml.append('"');
+    }
+
+    private static String qname(String prefix, String localName) {
+        return (prefix == null || prefix.isEmpty()) ? localName : prefix + ":" + localName;
+    }
+
+    private static byte[] encode(byte kind, CharSequence str) {
+        byte[] utf8 = str.toString().getBytes(UTF_8);
+        byte[] data = new byte[utf8.length+1];
+        data[0] = kind;
+        System.arraycopy(utf8, 0, data, 1, utf8.length);
+        return data;
+    }
+
+    private static String decode(byte[] data) {
+        return new String(data, 1, data.length-1, UTF_8);
+    }
+
+    /**
+     * @deprecated use <code>getItemAt(int idx)</code> instead
+     */
+    @Override
+    @Deprecated
+    @Removal(version = "4.2")
+    public CTRst getEntryAt(int idx) {
+        CTRst st = itemCache.get(idx);
+        if (st == null) {
+            st = decodeEntry(idx);
+            itemCache.put(idx, st);
+        }
+        return st;
+    }
+
+    @Override
+    public RichTextString getItemAt(int idx) {
+        return new XSSFRichTextString(getEntryAt(idx));
+    }
+
+    private CTRst decodeEntry(int idx) {
+        byte[] data = pool.get(idx);
+        if (data[0] == PLAIN) {
+            return new XSSFRichTextString(decode(data)).getCTRst();
+        }
+        try {
+            return CTRst.Factory.parse(decode(data), LOAD_OPTIONS);
+        } catch (XmlException e) {
+            throw new IllegalStateException("invalid rich text string at index " + idx, e);
+        }
+    }
+
+    /**
+     * @deprecated use <code>addSharedStringItem(RichTextString string)</code> instead
+     */
+    @Override
+    @Deprecated
+    @Removal(version = "4.2")
+    public int addEntry(CTRst st) {
+        final byte[] data;
+        if (isPlain(st)) {
+            data = encode(PLAIN, st.getT());
+        } else {
+            data = encode(RICH, st.xmlText(SAVE_OPTIONS));
+        }
+        count++;
+        try {
+            int size = pool.size();
+            int idx = pool.add(data);
+            if (idx == size) {
+                uniqueCount++;
+            }
+            return idx;
+        } catch (IOException e) {
+            throw new IllegalStateException("unable to add shared string", e);
+        }
+    }
+
+    private static boolean isPlain(CTRst st) {
+        return st.isSetT() && st.sizeOfRArray() == 0 && st.sizeOfRPhArray() == 0 && !st.isSetPhoneticPr();
+    }
+
+    /**
+     * @deprecated use <code>getSharedStringItems</code> instead
+     */
+    @Override
+    @Deprecated
+    @Removal(version = "4.2")
+    public List<CTRst> getItems() {
+        List<CTRst> items = new ArrayList<>(pool.size());
+        for (int i=0; i<pool.size(); i++) {
+            items.add(getEntryAt(i));
+        }
+        return Collections.unmodifiableList(items);
+    }
+
+    @Override
+    public List<RichTextString> getSharedStringItems() {
+        List<RichTextString> items = new ArrayList<>(pool.size());
+        for (int i=0; i<pool.size(); i++) {
+            items.add(getItemAt(i));
+        }
+        return Collections.unmodifiableList(items);
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        // don't close the writer, as this would close the underlying stream
+        Writer w = new BufferedWriter(new OutputStreamWriter(out, UTF_8));
+        w.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+        w.write("<sst xmlns=\"" + NS_SPREADSHEETML + "\" count=\"" + count + "\" uniqueCount=\"" + uniqueCount + "\">");
+        StringBuilder sb = new StringBuilder(64);
+        for (int i=0; i<pool.size(); i++) {
+            byte[] data = pool.get(i);
+            String str = decode(data);
+            sb.setLength(0);
+            if (data[0] == PLAIN) {
+                sb.append("<si>");
+                sb.append(needsPreserve(str) ? "<t xml:space=\"preserve\">" : "<t>");
+                escape(str, sb, false);
+                sb.append("</t></si>");
+            } else {
+                // rich text strings are stored as complete si elements
+                sb.append(str);
+            }
+            w.write(sb.toString());
+        }
+        w.write("</sst>");
+        w.flush();
+    }
+
+    private static boolean needsPreserve(String str) {
+        return !str.isEmpty() &&
+            (Character.isWhitespace(str.charAt(0)) || Character.isWhitespace(str.charAt(str.length()-1)));
+    }
+
+    private static void escape(String str, StringBuilder sb, boolean attribute) {
+        for (int i=0; i<str.length(); i++) {
+            char c = str.charAt(i);
+            switch (c) {
+                case '<': sb.append("&lt;"); break;
+                case '>': sb.append("&gt;"); break;
+                case '&': sb.append("&amp;"); break;
+                case '"': sb.append(attribute ? "&quot;" : "\""); break;
+                case '\n': sb.append("&#xa;"); break;
+                case '\r': sb.append("&#xd;"); break;
+                case '\t': sb.append("&#x9;"); break;
+                default:
+                    // XmlBeans replaces ISO control characters and "not a character" symbols with question marks
+                    sb.append(c < ' ' || ('\uFFFE' <= c && c <= '\uFFFF') ? '?' : c);
+                    break;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        itemCache.clear();
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    private static class OffHeapFactory extends XSSFFactory {
+        private final boolean useTempFile;
+
+        OffHeapFactory(boolean useTempFile) {
+            this.useTempFile = useTempFile;
+        }
+
+        @Override
+        protected POIXMLDocumentPart createDocumentPart(Class<? extends POIXMLDocumentPart> cls, Class<?>[] classes, Object[] values)
+        throws SecurityException, NoSuchMethodException, InstantiationException, IllegalAccessException, InvocationTargetException {
+            if (cls != SharedStringsTable.class) {
+                return super.createDocumentPart(cls, classes, values);
+            }
+            try {
+                if (values == null) {
+                    return new OffHeapSharedStringsTable(useTempFile);
+                }
+                if (values.length == 1 && values[0] instanceof PackagePart) {
+                    return new OffHeapSharedStringsTable((PackagePart)values[0], useTempFile);
+                }
+                // let the caller fall back to the part-only constructor
+                throw new NoSuchMethodException();
+            } catch (IOException e) {
+                throw new InvocationTargetException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,280 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.model;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.poi.poifs.nio.CleanerUtil;
+import org.apache.poi.util.POILogFactory;
+import org.apache.poi.util.POILogger;
+import org.apache.poi.util.TempFile;
+
+/**
+ * A deduplicating pool of byte sequences, which keeps the bytes outside of the java heap.<p>
+ *
+ * The entries are appended to segments, which are either memory-mapped regions of a temp file
+ * or direct byte buffers. The heap only holds the offset, length and hash per entry plus an
+ * open-addressing hash table of entry indexes, i.e. roughly 20 bytes per entry regardless
+ * of the entry size.
+ */
+final class OffHeapStringPool implements Closeable {
+    private static final POILogger LOG = POILogFactory.getLogger(OffHeapStringPool.class);
+
+    static final int DEFAULT_SEGMENT_SIZE = 1 << 24;
+
+    private final int segmentSize;
+    private final List<ByteBuffer> segments = new ArrayList<>();
+
+    private File tempFile;
+    private RandomAccessFile raf;
+    private FileChannel channel;
+    private long fileSize;
+
+    /** segment index in the upper, position in the lower 32 bits */
+    private long[] offsets = new long[16];
+    private int[] lengths = new int[16];
+    private int[] hashes = new int[16];
+    private int size;
+
+    /** entry index + 1, 0 denotes an empty slot */
+    private int[] table = new int[32];
+
+    /**
+     * @param useTempFile if {@code true} the segments are mapped from a temp file,
+     *  otherwise direct byte buffers are used
+     * @param segmentSize the size of the segments - entries larger than this get
+     *  a segment of their own
+     */
+    OffHeapStringPool(boolean useTempFile, int segmentSize) throws IOException {
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException("segmentSize needs to be positive");
+        }
+        this.segmentSize = segmentSize;
+        if (useTempFile) {
+            tempFile = TempFile.createTempFile("poi-sst", ".tmp");
+            raf = new RandomAccessFile(tempFile, "rw");
+            channel = raf.getChannel();
+        }
+    }
+
+    /**
+     * @return the number of entries
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Adds the entry, if it's not already contained in the pool
+     *
+     * @return the index of the new or the existing entry
+     */
+    int add(byte[] data) throws IOException {
+        final int hash = hash(data);
+        final int slot = findSlot(data, hash);
+        return (table[slot] != 0) ? table[slot]-1 : appendAt(data, hash, slot);
+    }
+
+    /**
+     * Appends the entry, even if an equal entry is already contained in the pool.
+     * Lookups of the entry will return the index of the last equal entry.
+     *
+     * @return the index of the new entry
+     */
+    int append(byte[] data) throws IOException {
+        final int hash = hash(data);
+        return appendAt(data, hash, findSlot(data, hash));
+    }
+
+    private int appendAt(byte[] data, int hash, int slot) throws IOException {
+        final boolean replace = (table[slot] != 0);
+        final int idx = size;
+        if (idx == offsets.length) {
+            int newCap = idx * 2;
+            offsets = Arrays.copyOf(offsets, newCap);
+            lengths = Arrays.copyOf(lengths, newCap);
+            hashes = Arrays.copyOf(hashes, newCap);
+        }
+        offsets[idx] = store(data);
+        lengths[idx] = data.length;
+        hashes[idx] = hash;
+        size++;
+
+        table[slot] = idx+1;
+        if (!replace && size*2 > table.length) {
+            rehash();
+        }
+        return idx;
+    }
+
+    /**
+     * @return the index of the entry or -1 if it's not contained in the pool
+     */
+    int indexOf(byte[] data) {
+        int slot = findSlot(data, hash(data));
+        return table[slot]-1;
+    }
+
+    /**
+     * @return a copy of the entry bytes
+     */
+    byte[] get(int idx) {
+        if (idx < 0 || idx >= size) {
+            throw new IndexOutOfBoundsException("Index: "+idx+", Size: "+size);
+        }
+        final long off = offsets[idx];
+        ByteBuffer seg = segments.get((int)(off >>> 32)).duplicate();
+        seg.position((int)off);
+        byte[] data = new byte[lengths[idx]];
+        seg.get(data);
+        return data;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (CleanerUtil.UNMAP_SUPPORTED) {
+            for (ByteBuffer bb : segments) {
+                CleanerUtil.getCleaner().freeBuffer(bb);
+            }
+        }
+        segments.clear();
+        size = 0;
+        if (raf != null) {
+            raf.close();
+            raf = null;
+            channel = null;
+            if (!tempFile.delete()) {
+                LOG.log(POILogger.WARN, "Can't delete temp file " + tempFile);
+            }
+        }
+    }
+
+    private int findSlot(byte[] data, int hash) {
+        final int mask = table.length-1;
+        int slot = hash & mask;
+        for (;;) {
+            int entry = table[slot];
+            if (entry == 0 || (hashes[entry-1] == hash && matches(entry-1, data))) {
+                return slot;
+            }
+            slot = (slot+1) & mask;
+        }
+    }
+
+    private boolean matches(int idx, byte[] data) {
+        if (lengths[idx] != data.length) {
+            return false;
+        }
+        final long off = offsets[idx];
+        final ByteBuffer seg = segments.get((int)(off >>> 32));
+        final int pos = (int)off;
+        for (int i=0; i<data.length; i++) {
+            if (seg.get(pos+i) != data[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Doubles the hash table - only the indexed entries are reinserted, i.e. the replaced
+     * duplicates stay unreachable
+     */
+    private void rehash() {
+        final int[] newTable = new int[table.length*2];
+        final int mask = newTable.length-1;
+        for (int entry : table) {
+            if (entry == 0) {
+                continue;
+            }
+            final int idx = entry-1;
+            int slot = hashes[idx] & mask;
+            while (newTable[slot] != 0) {
+                slot = (slot+1) & mask;
+            }
+            newTable[slot] = idx+1;
+        }
+        table = newTable;
+    }
+
+    private long store(byte[] data) throws IOException {
+        ByteBuffer seg = segments.isEmpty() ? null : segments.get(segments.size()-1);
+        if (seg == null || seg.remaining() < data.length) {
+            seg = newSegment(Math.max(segmentSize, data.length));
+            segments.add(seg);
+        }
+        final long off = ((long)(segments.size()-1) << 32) | seg.position();
+        seg.put(data);
+        return off;
+    }
+
+    private ByteBuffer newSegment(int capacity) throws IOException {
+        if (channel == null) {
+            return ByteBuffer.allocateDirect(capacity);
+        }
+        ByteBuffer bb = channel.map(FileChannel.MapMode.READ_WRITE, fileSize, capacity);
+        fileSize += capacity;
+        return bb;
+    }
+
+    /**
+     * Murmur3 32-bit hash of the entry bytes
+     */
+    private static int hash(byte[] data) {
+        int h = 0x9747b28c;
+        final int len = data.length;
+        final int blocks = len & ~3;
+        for (int i=0; i<blocks; i+=4) {
+            int k = (data[i] & 0xFF) | ((data[i+1] & 0xFF) << 8) | ((data[i+2] & 0xFF) << 16) | (data[i+3] << 24);
+            h ^= mixK(k);
+            h = Integer.rotateLeft(h, 13) * 5 + 0xe6546b64;
+        }
+        final int tail = len & 3;
+        if (tail > 0) {
+            int k = data[blocks] & 0xFF;
+            if (tail > 1) {
+                k |= (data[blocks+1] & 0xFF) << 8;
+            }
+            if (tail > 2) {
+                k |= (data[blocks+2] & 0xFF) << 16;
+            }
+            h ^= mixK(k);
+        }
+        h ^= len;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private static int mixK(int k) {
+        k *= 0xcc9e2d51;
+        k = Integer.rotateLeft(k, 15);
+        return k * 0x1b873593;
+    }
+}
@@ -107,8 +107,25 @@ public class SharedStringsTable extends POIXMLDocumentPart implements SharedStri
      * @since POI 3.14-Beta1
      */
     public SharedStringsTable(PackagePart part) throws IOException {
+        this(part, true);
+    }
+
+    /**
+     * @param readPart if {@code false} the part isn't parsed, for subclasses
+     *  which read the part themselves
+     *
+     * @since POI 4.1.1
+     */
+    protected SharedStringsTable(PackagePart part, boolean readPart) throws IOException {
         super(part);
-        readFrom(part.getInputStream());
+        if (readPart) {
+            try (InputStream is = part.getInputStream()) {
+                readFrom(is);
+            }
+        } else {
+            _sstDoc = SstDocument.Factory.newInstance();
+            _sstDoc.addNewSst();
+        }
     }
 
     /**
@@ -26,12 +26,14 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.function.BiConsumer;
 
 import org.apache.poi.ooxml.POIXMLDocumentPart;
 import org.apache.poi.openxml4j.opc.PackagePart;
@@ -65,6 +67,12 @@ public class StylesTable extends POIXMLDocumentPart implements Styles {
     private final List<CTXf> xfs = new ArrayList<>();
 
     private final List<CTDxf> dxfs = new ArrayList<>();
+
+    // hash indexes of the above lists - built on demand
+    private ContentIndex<XSSFFont> fontIndex;
+    private ContentIndex<XSSFCellFill> fillIndex;
+    private ContentIndex<XSSFCellBorder> borderIndex;
+    private Map<CTXf, Integer> xfIndex;
     private final Map<String, TableStyle> tableStyles = new HashMap<>();
     
     private IndexedColorMap indexedColors = new DefaultIndexedColorMap();
@@ -165,6 +173,10 @@ public class StylesTable extends POIXMLDocumentPart implements Styles {
         for(XSSFCellBorder border : borders) {
             border.setThemesTable(theme);
         }
+
+        // the colors of fonts and borders are resolved via the theme
+        fontIndex = null;
+        borderIndex = null;
     }
     
     /**
@@ -394,17 +406,21 @@ public class StylesTable extends POIXMLDocumentPart implements Styles {
      */
     @Override
     public int putFont(XSSFFont font, boolean forceRegistration) {
-        int idx = -1;
         if(!forceRegistration) {
-            idx = fonts.indexOf(font);
-        }
-
-        if (idx != -1) {
-            return idx;
+            if (fontIndex == null) {
+                fontIndex = new ContentIndex<>(fonts, XSSFFont::setChangeListener);
+            }
+            int idx = fontIndex.indexOf(fonts, font);
+            if (idx != -1) {
+                return idx;
+            }
         }
 
-        idx = fonts.size();
+        int idx = fonts.size();
         fonts.add(font);
+        if (fontIndex != null) {
+            fontIndex.add(font, idx);
+        }
         return idx;
     }
 
@@ -438,10 +454,26 @@ public class StylesTable extends POIXMLDocumentPart implements Styles {
     public int putStyle(XSSFCellStyle style) {
         CTXf mainXF = style.getCoreXf();
 
-        if(! xfs.contains(mainXF)) {
+        Integer idx = getXfIndex().get(mainXF);
+        if (idx == null) {
+            idx = xfs.size();
             xfs.add(mainXF);
+            xfIndex.put(mainXF, idx);
+        }
+        return idx;
+    }
+
+    /**
+     * The mutable xml beans only equal themselves, so the xfs are indexed by identity
+     */
+    private Map<CTXf, Integer> getXfIndex() {
+        if (xfIndex == null) {
+            xfIndex = new IdentityHashMap<>();
+            for (int i = 0; i < xfs.size(); i++) {
+                xfIndex.putIfAbsent(xfs.get(i), i);
+            }
         }
-        return xfs.indexOf(mainXF);
+        return xfIndex;
     }
 
     @Override
@@ -458,13 +490,18 @@ public class StylesTable extends POIXMLDocumentPart implements Styles {
      */
     @Override
     public int putBorder(XSSFCellBorder border) {
-        int idx = borders.indexOf(border);
+        if (borderIndex == null) {
+            borderIndex = new ContentIndex<>(borders, XSSFCellBorder::setChangeListener);
+        }
+        int idx = borderIndex.indexOf(borders, border);
         if (idx != -1) {
             return idx;
         }
+        idx = borders.size();
         borders.add(border);
         border.setThemesTable(theme);
-        return borders.size() - 1;
+        borderIndex.add(border, idx);
+        return idx;
     }
 
     @Override
@@ -497,12 +534,17 @@ public class StylesTable extends POIXMLDocumentPart implements Styles {
      */
     @Override
     public int putFill(XSSFCellFill fill) {
-        int idx = fills.indexOf(fill);
+        if (fillIndex == null) {
+            fillIndex = new ContentIndex<>(fills, XSSFCellFill::setChangeListener);
+        }
+        int idx = fillIndex.indexOf(fills, fill);
         if (idx != -1) {
             return idx;
         }
+        idx = fills.size();
         fills.add(fill);
-        return fills.size() - 1;
+        fillIndex.add(fill, idx);
+        return idx;
     }
 
     @Internal
@@ -520,12 +562,16 @@ public class StylesTable extends POIXMLDocumentPart implements Styles {
     @Internal
     public int putCellXf(CTXf cellXf) {
         xfs.add(cellXf);
+        if (xfIndex != null) {
+            xfIndex.putIfAbsent(cellXf, xfs.size() - 1);
+        }
         return xfs.size();
     }
     
     @Internal
     public void replaceCellXfAt(int idx, CTXf cellXf) {
         xfs.set(idx, cellXf);
+        xfIndex = null;
     }
 
     @Internal
@@ -891,4 +937,81 @@ public class StylesTable extends POIXMLDocumentPart implements Styles {
     public IndexedColorMap getIndexedColors() {
         return indexedColors;
     }
+
+    /**
+     * Hash index of the fonts, fills or borders, to find an equal entry without scanning the list.<p>
+     *
+     * The entries are mutable, i.e. an entry is indexed by the hash it had when it was added
+     * and the candidates of a lookup are verified via equals. The entries notify the index,
+     * when they are changed by their setters, and are moved to the bucket of their current
+     * hash on the next lookup. Changes of the underlying XML beans aren't noticed, so such
+     * a changed entry might not be found for an equal entry.
+     */
+    private static final class ContentIndex<T> {
+        private final Map<Integer, List<Integer>> buckets = new HashMap<>();
+        /** the hash, by which the entry at the list index is indexed */
+        private final List<Integer> hashes = new ArrayList<>();
+        /** the list index of the entries */
+        private final Map<T, Integer> positions = new IdentityHashMap<>();
+        /** the entries, which were changed since the last lookup */
+        private final Set<T> changed = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final BiConsumer<T, Runnable> listenerSetter;
+
+        ContentIndex(List<T> entries, BiConsumer<T, Runnable> listenerSetter) {
+            this.listenerSetter = listenerSetter;
+            for (int i = 0; i < entries.size(); i++) {
+                add(entries.get(i), i);
+            }
+        }
+
+        /**
+         * Adds the entry, which was appended to the list at the given index
+         */
+        void add(T entry, int idx) {
+            int hash = entry.hashCode();
+            assert(idx == hashes.size());
+            hashes.add(hash);
+            buckets.computeIfAbsent(hash, k -> new ArrayList<>(1)).add(idx);
+            if (positions.putIfAbsent(entry, idx) == null) {
+                listenerSetter.accept(entry, () -> changed.add(entry));
+            }
+        }
+
+        /**
+         * @return the lowest index of an entry equal to the given one, or -1
+         */
+        int indexOf(List<T> entries, T entry) {
+            if (!changed.isEmpty()) {
+                for (T e : changed) {
+                    reindex(e, positions.get(e));
+                }
+                changed.clear();
+            }
+            List<Integer> candidates = buckets.get(entry.hashCode());
+            int found = -1;
+            if (candidates != null) {
+                for (int idx : candidates) {
+                    if ((found == -1 || idx < found) && entry.equals(entries.get(idx))) {
+                        found = idx;
+                    }
+                }
+            }
+            return found;
+        }
+
+        private void reindex(T entry, int idx) {
+            Integer oldHash = hashes.get(idx);
+            int hash = entry.hashCode();
+            if (oldHash == hash) {
+                return;
+            }
+            List<Integer> bucket = buckets.get(oldHash);
+            bucket.remove(Integer.valueOf(idx));
+            if (bucket.isEmpty()) {
+                buckets.remove(oldHash);
+            }
+            hashes.set(idx, hash);
+            buckets.computeIfAbsent(hash, k -> new ArrayList<>(1)).add(idx);
+        }
+    }
 }
@@ -0,0 +1,222 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.streaming;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.TempFile;
+import org.apache.poi.xssf.binary.XSSFBRecordType;
+import org.apache.poi.xssf.binary.XSSFBRecordWriter;
+import org.apache.poi.xssf.model.SharedStringsTable;
+import org.apache.poi.xssf.usermodel.XSSFRichTextString;
+
+/**
+ * Sheet writer, which serializes the rows as BIFF12 records of an xlsb worksheet.<p>
+ *
+ * Each row is written as BrtRowHdr record followed by a record for each cell.
+ * The records are stored in the temp file and copied between the head and the tail
+ * of the worksheet part by {@link SXSSFBWorkbook}.
+ */
+class BinarySheetDataWriter extends SheetDataWriter {
+    /** the range of integers, which can be stored as RkNumber */
+    private static final int MAX_RK_INT = (1 << 29) - 1;
+    private static final int MIN_RK_INT = -(1 << 29);
+
+    private final File _file;
+    private final XSSFBRecordWriter _out;
+    private final SharedStringsTable _sharedStringSource;
+    /** the first and last column of the spans of a row - one span per block of 1024 columns */
+    private final int[] _spans = new int[32];
+    private int _rownum;
+    private int _firstColumn = -1;
+    private int _lastColumn = -1;
+
+    /**
+     * @param sharedStringsTable the shared strings table, or null if inline text is used
+     */
+    BinarySheetDataWriter(SharedStringsTable sharedStringsTable) throws IOException {
+        super(null, sharedStringsTable);
+        _file = TempFile.createTempFile("poi-sxssf-sheet", ".bin");
+        _out = new XSSFBRecordWriter(new BufferedOutputStream(new FileOutputStream(_file)));
+        _sharedStringSource = sharedStringsTable;
+    }
+
+    @Override
+    protected File getTempFile() {
+        return _file;
+    }
+
+    /**
+     * @return the lowest column index of the written cells or -1, if no cells were written
+     */
+    int getFirstColumn() {
+        return _firstColumn;
+    }
+
+    /**
+     * @return the highest column index of the written cells or -1, if no cells were written
+     */
+    int getLastColumn() {
+        return _lastColumn;
+    }
+
+    @Override
+    void beginRow(int rownum, SXSSFRow row) throws IOException {
+        _rownum = rownum;
+
+        int spans = 0;
+        for (Cell cell : row) {
+            int col = cell.getColumnIndex();
+            if (spans > 0 && (_spans[spans - 2] >> 10) == (col >> 10)) {
+                _spans[spans - 1] = col;
+            } else {
+                _spans[spans++] = col;
+                _spans[spans++] = col;
+            }
+        }
+
+        int flags = row.getOutlineLevel() & 0x07;
+        if (Boolean.TRUE.equals(row.getCollapsed())) {
+            flags |= 0x08;
+        }
+        if (row.getZeroHeight() || Boolean.TRUE.equals(row.getHidden())) {
+            flags |= 0x10;
+        }
+        if (row.hasCustomHeight()) {
+            flags |= 0x20;
+        }
+        if (row.isFormatted()) {
+            flags |= 0x40;
+        }
+
+        _out.startRecord(XSSFBRecordType.BrtRowHdr);
+        _out.writeInt(rownum);
+        _out.writeInt(row.isFormatted() ? row.getRowStyleIndex() : 0);
+        _out.writeShort(row.getHeight());
+        _out.writeByte(0);
+        _out.writeByte(flags);
+        _out.writeByte(0);
+        _out.writeInt(spans / 2);
+        for (int i = 0; i < spans; i++) {
+            _out.writeInt(_spans[i]);
+        }
+        _out.endRecord();
+    }
+
+    @Override
+    void endRow() {
+        // the cells of a row aren't enclosed by records
+    }
+
+    @Override
+    public void writeCell(int columnIndex, Cell cell) throws IOException {
+        if (cell == null) {
+            return;
+        }
+        if (_firstColumn == -1 || columnIndex < _firstColumn) {
+            _firstColumn = columnIndex;
+        }
+        _lastColumn = Math.max(_lastColumn, columnIndex);
+
+        CellType cellType = cell.getCellType();
+        switch (cellType) {
+            case BLANK:
+                startCell(XSSFBRecordType.BrtCellBlank, columnIndex, cell);
+                break;
+            case NUMERIC: {
+                double value = cell.getNumericCellValue();
+                if (value >= MIN_RK_INT && value <= MAX_RK_INT && value == (int) value) {
+                    // a 30 bit integer flagged by the second bit
+                    startCell(XSSFBRecordType.BrtCellRk, columnIndex, cell);
+                    _out.writeInt(((int) value << 2) | 0x02);
+                } else {
+                    startCell(XSSFBRecordType.BrtCellReal, columnIndex, cell);
+                    _out.writeDouble(value);
+                }
+                break;
+            }
+            case STRING:
+                if (_sharedStringSource != null) {
+                    XSSFRichTextString rt = new XSSFRichTextString(cell.getStringCellValue());
+                    int sRef = _sharedStringSource.addSharedStringItem(rt);
+                    startCell(XSSFBRecordType.BrtCellIsst, columnIndex, cell);
+                    _out.writeInt(sRef);
+                } else {
+                    startCell(XSSFBRecordType.BrtCellSt, columnIndex, cell);
+                    _out.writeXLWideString(cell.getStringCellValue());
+                }
+                break;
+            case BOOLEAN:
+                startCell(XSSFBRecordType.BrtCellBool, columnIndex, cell);
+                _out.writeByte(cell.getBooleanCellValue() ? 1 : 0);
+                break;
+            case ERROR:
+                startCell(XSSFBRecordType.BrtCellError, columnIndex, cell);
+                _out.writeByte(cell.getErrorCellValue());
+                break;
+            case FORMULA:
+                // already rejected when the formula was set
+                checkFormula(_rownum, columnIndex);
+                break;
+            default:
+                throw new IllegalStateException("Invalid cell type: " + cellType);
+        }
+        _out.endRecord();
+    }
+
+    /**
+     * Formulas are rejected, as their tokens would have to be encoded in the BIFF12 formula format
+     */
+    @Override
+    void checkFormula(int rownum, int columnIndex) {
+        throw new IllegalStateException("Formulas can't be written to xlsb files: "
+                + new CellReference(rownum, columnIndex).formatAsString());
+    }
+
+    /**
+     * Starts the record of a cell with the column and the style index
+     */
+    private void startCell(XSSFBRecordType type, int columnIndex, Cell cell) {
+        _out.startRecord(type);
+        _out.writeInt(columnIndex);
+        // the style index has 24 bits, followed by the phonetic flags
+        _out.writeInt(cell.getCellStyle().getIndex() & 0xffff);
+    }
+
+    @Override
+    public void close() throws IOException {
+        _out.close();
+    }
+
+    @Override
+    boolean dispose() throws IOException {
+        final boolean ret;
+        try {
+            ret = super.dispose();
+        } finally {
+            _out.close();
+        }
+        return _file.delete() && ret;
+    }
+}
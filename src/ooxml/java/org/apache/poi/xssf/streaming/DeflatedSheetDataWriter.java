@@ -0,0 +1,398 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.streaming;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.poi.util.POILogFactory;
+import org.apache.poi.util.POILogger;
+import org.apache.poi.util.TempFile;
+import org.apache.poi.xssf.model.SharedStringsTable;
+
+/**
+ * Sheet writer, which deflates the sheet data on a background thread.<p>
+ *
+ * The rows are serialized on the calling thread, as the rows and the shared strings table aren't
+ * thread-safe, but the encoded bytes are handed over in chunks to a task, which deflates them into
+ * the temp file. The raw deflate stream is ended with a sync flush instead of a final block, so it
+ * can be stitched between the deflated worksheet head and tail and copied into the zip as-is.
+ */
+class DeflatedSheetDataWriter extends SheetDataWriter {
+    private static final POILogger LOG = POILogFactory.getLogger(DeflatedSheetDataWriter.class);
+
+    /** a final, empty fixed huffman block plus the dummy byte needed by a nowrap inflater */
+    private static final byte[] FINAL_BLOCK = { 0x03, 0x00, 0x00 };
+
+    private final BackgroundDeflaterOutputStream _deflated;
+
+    /**
+     * @param sharedStringsTable the shared strings table, or null if inline text is used
+     * @param executor the executor running the deflate tasks
+     */
+    DeflatedSheetDataWriter(SharedStringsTable sharedStringsTable, Executor executor) throws IOException {
+        this(new BackgroundDeflaterOutputStream(
+                TempFile.createTempFile("poi-sxssf-sheet-xml", ".deflate"), executor), sharedStringsTable);
+    }
+
+    private DeflatedSheetDataWriter(BackgroundDeflaterOutputStream deflated, SharedStringsTable sharedStringsTable) {
+        super(new BufferedWriter(new OutputStreamWriter(deflated, StandardCharsets.UTF_8)), sharedStringsTable);
+        _deflated = deflated;
+    }
+
+    @Override
+    protected File getTempFile() {
+        return _deflated.file;
+    }
+
+    @Override
+    public InputStream getWorksheetXMLInputStream() throws IOException {
+        InputStream data = new SequenceInputStream(new FileInputStream(getTempFile()), new ByteArrayInputStream(FINAL_BLOCK));
+        return new InflaterInputStream(data, new Inflater(true));
+    }
+
+    /**
+     * Adds the worksheet entry to the zip without recompressing the sheet data.
+     * The writer needs to be closed before.
+     *
+     * @param zos the zip stream
+     * @param template the template entry - the name and time are copied to the new entry
+     * @param head the worksheet xml up to the sheet data
+     * @param tail the worksheet xml following the sheet data
+     */
+    void addWorksheetEntry(ZipArchiveOutputStream zos, ZipArchiveEntry template, byte[] head, byte[] tail)
+            throws IOException {
+        final BackgroundDeflaterOutputStream data = _deflated;
+        final byte[] headDeflated = deflate(head, false);
+        final byte[] tailDeflated = deflate(tail, true);
+
+        long crc = crc32Combine(crc32(head), data.crc.getValue(), data.size);
+        crc = crc32Combine(crc, crc32(tail), tail.length);
+
+        ZipArchiveEntry ze = new ZipArchiveEntry(template.getName());
+        ze.setTime(template.getTime());
+        ze.setMethod(ZipEntry.DEFLATED);
+        ze.setCrc(crc);
+        ze.setSize(head.length + data.size + tail.length);
+        ze.setCompressedSize(headDeflated.length + data.compressedSize + tailDeflated.length);
+
+        try (InputStream rows = new FileInputStream(getTempFile())) {
+            InputStream raw = new SequenceInputStream(Collections.enumeration(Arrays.asList(
+                new ByteArrayInputStream(headDeflated), rows, new ByteArrayInputStream(tailDeflated))));
+            zos.addRawArchiveEntry(ze, raw);
+        }
+    }
+
+    @Override
+    boolean dispose() throws IOException {
+        final boolean ret;
+        try {
+            ret = super.dispose();
+        } finally {
+            _deflated.close();
+        }
+        return getTempFile().delete() && ret;
+    }
+
+    /**
+     * Deflates the data into a raw deflate stream, which is either ended with a sync flush,
+     * so it can be continued by other deflated data, or with the final block
+     */
+    private static byte[] deflate(byte[] data, boolean last) {
+        final Deflater def = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            def.setInput(data);
+            if (last) {
+                def.finish();
+            }
+            final ByteArrayOutputStream bos = new ByteArrayOutputStream(data.length / 4 + 64);
+            final byte[] buf = new byte[4096];
+            for (;;) {
+                int len = last ? def.deflate(buf) : def.deflate(buf, 0, buf.length, Deflater.SYNC_FLUSH);
+                bos.write(buf, 0, len);
+                if (last ? def.finished() : len < buf.length) {
+                    return bos.toByteArray();
+                }
+            }
+        } finally {
+            def.end();
+        }
+    }
+
+    private static long crc32(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return crc.getValue();
+    }
+
+    /**
+     * Combines the crc of two consecutive blocks - ported from zlib's crc32_combine
+     *
+     * @param crc1 the crc of the first block
+     * @param crc2 the crc of the second block
+     * @param len2 the length of the second block
+     * @return the crc of the concatenated blocks
+     */
+    static long crc32Combine(long crc1, long crc2, long len2) {
+        if (len2 <= 0) {
+            return crc1;
+        }
+
+        long[] even = new long[32];
+        long[] odd = new long[32];
+
+        // put operator for one zero bit in odd
+        odd[0] = 0xedb88320L;
+        long row = 1;
+        for (int n = 1; n < 32; n++) {
+            odd[n] = row;
+            row <<= 1;
+        }
+
+        // put operator for two zero bits in even, then for four zero bits in odd
+        gf2MatrixSquare(even, odd);
+        gf2MatrixSquare(odd, even);
+
+        // apply len2 zeros to crc1 (first square will put the operator for one
+        // zero byte, eight zero bits, in even)
+        do {
+            gf2MatrixSquare(even, odd);
+            if ((len2 & 1) != 0) {
+                crc1 = gf2MatrixTimes(even, crc1);
+            }
+            len2 >>= 1;
+            if (len2 == 0) {
+                break;
+            }
+
+            gf2MatrixSquare(odd, even);
+            if ((len2 & 1) != 0) {
+                crc1 = gf2MatrixTimes(odd, crc1);
+            }
+            len2 >>= 1;
+        } while (len2 != 0);
+
+        return crc1 ^ crc2;
+    }
+
+    private static long gf2MatrixTimes(long[] mat, long vec) {
+        long sum = 0;
+        for (int i = 0; vec != 0; i++, vec >>>= 1) {
+            if ((vec & 1) != 0) {
+                sum ^= mat[i];
+            }
+        }
+        return sum;
+    }
+
+    private static void gf2MatrixSquare(long[] square, long[] mat) {
+        for (int n = 0; n < 32; n++) {
+            square[n] = gf2MatrixTimes(mat, mat[n]);
+        }
+    }
+
+    /**
+     * Buffers the written bytes and deflates them in chunks on the executor. The chunks of a stream
+     * are processed one after the other, so a stream occupies at most one thread at a time.
+     * Only a few chunks are queued, before the writing thread is blocked.
+     */
+    private static final class BackgroundDeflaterOutputStream extends OutputStream {
+        private static final int CHUNK_SIZE = 1 << 16;
+        private static final int MAX_QUEUED_CHUNKS = 4;
+
+        private final File file;
+        private final OutputStream out;
+        private final Executor executor;
+        private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        private final byte[] deflateBuf = new byte[CHUNK_SIZE];
+        private final CRC32 crc = new CRC32();
+        private long size;
+        private long compressedSize;
+
+        private byte[] buf = new byte[CHUNK_SIZE];
+        private int count;
+
+        // guarded by queue
+        private final ArrayDeque<byte[]> queue = new ArrayDeque<>();
+        private boolean active;
+        private Throwable failure;
+        private boolean closed;
+
+        BackgroundDeflaterOutputStream(File file, Executor executor) throws IOException {
+            this.file = file;
+            this.out = new FileOutputStream(file);
+            this.executor = executor;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buf.length) {
+                submit();
+            }
+            buf[count++] = (byte)b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (count == buf.length) {
+                    submit();
+                }
+                int n = Math.min(len, buf.length - count);
+                System.arraycopy(b, off, buf, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        private void submit() throws IOException {
+            if (count == 0) {
+                return;
+            }
+            final byte[] chunk = (count == buf.length) ? buf : Arrays.copyOf(buf, count);
+            buf = new byte[CHUNK_SIZE];
+            count = 0;
+            synchronized (queue) {
+                while (queue.size() >= MAX_QUEUED_CHUNKS && failure == null) {
+                    await();
+                }
+                checkFailure();
+                queue.add(chunk);
+                if (!active) {
+                    active = true;
+                    try {
+                        executor.execute(this::drain);
+                    } catch (RuntimeException e) {
+                        active = false;
+                        queue.clear();
+                        throw e;
+                    }
+                }
+            }
+        }
+
+        private void drain() {
+            for (;;) {
+                byte[] chunk;
+                synchronized (queue) {
+                    chunk = queue.poll();
+                    queue.notifyAll();
+                    if (chunk == null || failure != null) {
+                        queue.clear();
+                        active = false;
+                        return;
+                    }
+                }
+                try {
+                    crc.update(chunk);
+                    size += chunk.length;
+                    deflater.setInput(chunk);
+                    while (!deflater.needsInput()) {
+                        writeDeflated(deflater.deflate(deflateBuf));
+                    }
+                } catch (Throwable e) {
+                    synchronized (queue) {
+                        failure = e;
+                    }
+                }
+            }
+        }
+
+        private void writeDeflated(int len) throws IOException {
+            out.write(deflateBuf, 0, len);
+            compressedSize += len;
+        }
+
+        private void await() throws IOException {
+            try {
+                queue.wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the sheet data to be deflated");
+            }
+        }
+
+        private void checkFailure() throws IOException {
+            if (failure != null) {
+                throw (failure instanceof IOException)
+                    ? (IOException)failure
+                    : new IOException("Deflating the sheet data failed", failure);
+            }
+        }
+
+        @Override
+        public void flush() {
+            // the data is flushed in chunks, the last chunk is only flushed on close
+        }
+
+        /**
+         * Waits for the queued chunks and ends the deflate stream with a sync flush
+         */
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            try {
+                submit();
+                synchronized (queue) {
+                    while (active) {
+                        await();
+                    }
+                    checkFailure();
+                }
+                int len;
+                do {
+                    len = deflater.deflate(deflateBuf, 0, deflateBuf.length, Deflater.SYNC_FLUSH);
+                    writeDeflated(len);
+                } while (len == deflateBuf.length);
+            } finally {
+                closed = true;
+                deflater.end();
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    LOG.log(POILogger.WARN, "Can't close sheet data file " + file, e);
+                }
+            }
+        }
+    }
+}
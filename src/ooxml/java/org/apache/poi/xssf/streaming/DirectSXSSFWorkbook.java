@@ -0,0 +1,288 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.streaming;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.poi.openxml4j.util.ZipDeflateStrategy;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.util.Beta;
+import org.apache.poi.util.IOUtils;
+import org.apache.poi.xssf.model.SharedStringsTable;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+
+/**
+ * Streaming workbook, which writes the sheet data directly into the zip entries of the output
+ * instead of temp files.<p>
+ *
+ * The output stream is given on construction. When the rows of a sheet are flushed for the first time,
+ * the zip entry of the sheet is opened and the worksheet xml up to the sheet data is written.
+ * As the zip entries are written one after the other, the sheets need to be filled sequentially:
+ * when a sheet starts flushing, the remaining rows of the previously flushed sheet are flushed and its
+ * entry is completed. Flushing rows of a completed sheet causes an {@link IllegalStateException}.<p>
+ *
+ * The worksheet xml preceding the sheet data, e.g. column widths, freeze panes or sheet properties,
+ * is taken when the sheet is opened, i.e. it needs to be set before the first rows are flushed.
+ * The xml following the sheet data, e.g. merged regions, hyperlinks or the page setup, is taken
+ * when the sheet is completed. The remaining parts of the workbook are added by
+ * {@link #write(OutputStream)}, which needs to be called with the stream given on construction.
+ *
+ * @since POI 4.1.1
+ */
+@Beta
+public class DirectSXSSFWorkbook extends SXSSFWorkbook {
+    private final OutputStream _out;
+    private ZipArchiveOutputStream _zos;
+    private DirectSheetDataWriter _current;
+    private final Set<String> _writtenEntries = new HashSet<>();
+    private boolean _finished;
+
+    /**
+     * Construct a new workbook with the default row window size and inline strings
+     *
+     * @param out the stream to write the workbook to
+     */
+    public DirectSXSSFWorkbook(OutputStream out) {
+        this(out, DEFAULT_WINDOW_SIZE, false);
+    }
+
+    /**
+     * @param out the stream to write the workbook to
+     * @param rowAccessWindowSize the number of rows that are kept in memory until flushed out,
+     *  see {@link SXSSFWorkbook#SXSSFWorkbook(int)}
+     * @param useSharedStringsTable whether to use a shared strings table
+     */
+    public DirectSXSSFWorkbook(OutputStream out, int rowAccessWindowSize, boolean useSharedStringsTable) {
+        super(null, rowAccessWindowSize, false, useSharedStringsTable);
+        if (out == null) {
+            throw new IllegalArgumentException("out must not be null");
+        }
+        _out = out;
+    }
+
+    @Override
+    protected SheetDataWriter createSheetDataWriter() {
+        return new DirectSheetDataWriter(new SheetEntryOutputStream(), getSharedStringSource());
+    }
+
+    /**
+     * Completes the sheet entries and writes the remaining parts of the workbook.
+     * The output stream isn't closed.
+     *
+     * @param stream the stream given on construction
+     * @throws IllegalArgumentException if the stream isn't the one given on construction
+     */
+    @Override
+    public void write(OutputStream stream) throws IOException {
+        if (stream != _out) {
+            throw new IllegalArgumentException("DirectSXSSFWorkbook can only be written to the stream given on construction");
+        }
+        if (_finished) {
+            throw new IllegalStateException("The workbook was already written");
+        }
+
+        // write the sheets, which haven't been flushed yet, in workbook order
+        for (Sheet sheet : this) {
+            DirectSheetDataWriter writer = (DirectSheetDataWriter)((SXSSFSheet)sheet).getSheetDataWriter();
+            if (!writer._completed && writer != _current) {
+                openEntry(writer);
+            }
+        }
+        completeEntry();
+        _finished = true;
+
+        // the template contains all other parts - the sheet entries are replaced by the entries above
+        ByteArrayOutputStream template = new ByteArrayOutputStream();
+        getXSSFWorkbook().write(template);
+        ZipArchiveOutputStream zos = getArchiveOutputStream();
+        ZipDeflateStrategy strategy = getXSSFWorkbook().getPackage().getDeflateStrategy();
+        try (ZipArchiveInputStream zis = new ZipArchiveInputStream(new ByteArrayInputStream(template.toByteArray()))) {
+            ZipArchiveEntry ze;
+            while ((ze = zis.getNextZipEntry()) != null) {
+                if (_writtenEntries.contains(ze.getName())) {
+                    continue;
+                }
+                ZipArchiveEntry zeOut = new ZipArchiveEntry(ze.getName());
+                zeOut.setTime(ze.getTime());
+                try (OutputStream entryOut = strategy.openEntry(zos, zeOut, getContentType(ze.getName()))) {
+                    IOUtils.copy(zis, entryOut);
+                }
+            }
+        }
+        zos.finish();
+    }
+
+    /**
+     * Discards any sheet data, which hasn't been written yet, and closes the underlying workbook.
+     * The output stream isn't closed.
+     */
+    @Override
+    public void close() throws IOException {
+        _finished = true;
+        super.close();
+    }
+
+    /**
+     * Removes the sheet - only sheets, whose rows haven't been flushed yet, can be removed.
+     *
+     * @throws IllegalStateException if the sheet data was already written
+     */
+    @Override
+    public void removeSheetAt(int index) {
+        DirectSheetDataWriter writer = (DirectSheetDataWriter)getSheetAt(index).getSheetDataWriter();
+        if (writer == _current || writer._completed) {
+            throw new IllegalStateException("The sheet data was already written, the sheet can't be removed");
+        }
+        super.removeSheetAt(index);
+    }
+
+    @Override
+    public boolean dispose() {
+        _finished = true;
+        return super.dispose();
+    }
+
+    private ZipArchiveOutputStream getArchiveOutputStream() {
+        if (_zos == null) {
+            _zos = createArchiveOutputStream(_out);
+        }
+        return _zos;
+    }
+
+    private SXSSFSheet getSheet(DirectSheetDataWriter writer) {
+        for (Sheet sheet : this) {
+            if (((SXSSFSheet)sheet).getSheetDataWriter() == writer) {
+                return (SXSSFSheet)sheet;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Completes the current sheet entry and opens the entry of the given sheet
+     *
+     * @return {@code false} if the sheet was removed from the workbook
+     */
+    private boolean openEntry(DirectSheetDataWriter writer) throws IOException {
+        SXSSFSheet sheet = getSheet(writer);
+        if (sheet == null) {
+            return false;
+        }
+        completeEntry();
+
+        XSSFSheet xSheet = getXSSFSheet(sheet);
+        String name = xSheet.getPackagePart().getPartName().getName().substring(1);
+        ZipArchiveOutputStream zos = getArchiveOutputStream();
+        zos.putArchiveEntry(new ZipArchiveEntry(name));
+        _writtenEntries.add(name);
+        _current = writer;
+        zos.write(splitWorksheet(xSheet)[0]);
+        return true;
+    }
+
+    private void completeEntry() throws IOException {
+        final DirectSheetDataWriter writer = _current;
+        if (writer == null) {
+            return;
+        }
+        SXSSFSheet sheet = getSheet(writer);
+        if (sheet != null) {
+            sheet.flushRows(0);
+        }
+        writer.close();
+        _current = null;
+        writer._completed = true;
+
+        ZipArchiveOutputStream zos = getArchiveOutputStream();
+        if (sheet != null) {
+            zos.write(splitWorksheet(getXSSFSheet(sheet))[1]);
+        }
+        zos.closeArchiveEntry();
+    }
+
+    private static byte[][] splitWorksheet(XSSFSheet xSheet) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        xSheet.writeWorksheet(bos);
+        try (InputStream is = new ByteArrayInputStream(bos.toByteArray())) {
+            return SXSSFWorkbook.splitWorksheet(is);
+        }
+    }
+
+    private class DirectSheetDataWriter extends SheetDataWriter {
+        private boolean _completed;
+
+        DirectSheetDataWriter(SheetEntryOutputStream out, SharedStringsTable sharedStringsTable) {
+            super(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)), sharedStringsTable);
+            out._writer = this;
+        }
+
+        @Override
+        public void writeRow(int rownum, SXSSFRow row) throws IOException {
+            if (_finished) {
+                // rows flushed after the workbook was written or closed are discarded
+                return;
+            }
+            if (_completed) {
+                throw new IllegalStateException("The sheet was already written, the rows of a "+
+                    "DirectSXSSFWorkbook need to be created sheet by sheet");
+            }
+            if (_current != this && !openEntry(this)) {
+                // the sheet was removed
+                return;
+            }
+            super.writeRow(rownum, row);
+        }
+
+        @Override
+        public InputStream getWorksheetXMLInputStream() {
+            throw new IllegalStateException("The sheet data of a DirectSXSSFWorkbook is written directly to the output");
+        }
+    }
+
+    /**
+     * Passes the sheet data to the zip entry of the sheet, while the entry is open
+     */
+    private class SheetEntryOutputStream extends OutputStream {
+        private DirectSheetDataWriter _writer;
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{ (byte)b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            // data written after the workbook was written or closed is discarded
+            if (len > 0 && !_finished && _current == _writer) {
+                getArchiveOutputStream().write(b, off, len);
+            }
+        }
+    }
+}
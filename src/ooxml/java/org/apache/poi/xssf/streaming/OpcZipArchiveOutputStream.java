@@ -18,10 +18,18 @@
 package org.apache.poi.xssf.streaming;
 
 import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.poi.util.IOUtils;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
 
 class OpcZipArchiveOutputStream extends ZipArchiveOutputStream {
     private final OpcOutputStream out;
@@ -48,6 +56,28 @@ class OpcZipArchiveOutputStream extends ZipArchiveOutputStream {
     }
 
 
+    /**
+     * The entries of this stream are always deflated by {@link OpcOutputStream},
+     * so the raw data is inflated and written as a usual entry
+     */
+    @Override
+    public void addRawArchiveEntry(ZipArchiveEntry entry, InputStream rawStream) throws IOException {
+        putArchiveEntry(entry);
+        if (entry.getMethod() == ZipEntry.STORED) {
+            IOUtils.copy(rawStream, this);
+        } else {
+            // the dummy byte is needed by a nowrap inflater
+            Inflater inflater = new Inflater(true);
+            try {
+                InputStream data = new SequenceInputStream(rawStream, new ByteArrayInputStream(new byte[1]));
+                IOUtils.copy(new InflaterInputStream(data, inflater), this);
+            } finally {
+                inflater.end();
+            }
+        }
+        closeArchiveEntry();
+    }
+
     @Override
     public void finish() throws IOException {
         out.finish();
@@ -0,0 +1,397 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.streaming;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.poi.openxml4j.opc.ContentTypes;
+import org.apache.poi.openxml4j.opc.PackageNamespaces;
+import org.apache.poi.openxml4j.opc.PackageRelationshipTypes;
+import org.apache.poi.openxml4j.util.ZipDeflateStrategy;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.util.Beta;
+import org.apache.poi.util.IOUtils;
+import org.apache.poi.xssf.binary.XSSFBRecordType;
+import org.apache.poi.xssf.binary.XSSFBRecordWriter;
+import org.apache.poi.xssf.binary.XSSFBRelation;
+import org.apache.poi.xssf.binary.XSSFBStylesWriter;
+import org.apache.poi.xssf.model.SharedStringsTable;
+import org.apache.poi.xssf.usermodel.XSSFRelation;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTCol;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTCols;
+
+/**
+ * Streaming workbook, which writes an Excel binary workbook (xlsb) instead of xlsx.<p>
+ *
+ * The rows are flushed like in {@link SXSSFWorkbook}, but serialized as BIFF12 records into
+ * the temp files. The shared strings table is built while the rows are flushed and written
+ * along with the workbook, the styles and the sheets by {@link #write(OutputStream)}.<p>
+ *
+ * Only a subset of the workbook is written: the sheet names, their visibility and selection,
+ * the column widths, the merged regions, the cell values and the cell styles. Hyperlinks, comments,
+ * drawings, defined names, the page setup and the document properties are not written.
+ * Formulas can't be written, as their tokens would need to be encoded in the binary format,
+ * i.e. flushing a formula cell causes an {@link IllegalStateException}.
+ * The temp files are never compressed.
+ *
+ * @since POI 4.1.1
+ */
+@Beta
+public class SXSSFBWorkbook extends SXSSFWorkbook {
+    private static final String WORKBOOK_DIR = "/xl/";
+
+    /**
+     * Construct a new workbook with the default row window size and a shared strings table
+     */
+    public SXSSFBWorkbook() {
+        this(DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Construct a new workbook with a shared strings table
+     *
+     * @param rowAccessWindowSize the number of rows that are kept in memory until flushed out,
+     *  see {@link SXSSFWorkbook#SXSSFWorkbook(int)}
+     */
+    public SXSSFBWorkbook(int rowAccessWindowSize) {
+        this(rowAccessWindowSize, true);
+    }
+
+    /**
+     * @param rowAccessWindowSize the number of rows that are kept in memory until flushed out,
+     *  see {@link SXSSFWorkbook#SXSSFWorkbook(int)}
+     * @param useSharedStringsTable whether to use a shared strings table or inline strings
+     */
+    public SXSSFBWorkbook(int rowAccessWindowSize, boolean useSharedStringsTable) {
+        super(null, rowAccessWindowSize, false, useSharedStringsTable);
+    }
+
+    @Override
+    protected SheetDataWriter createSheetDataWriter() throws IOException {
+        return new BinarySheetDataWriter(getSharedStringSource());
+    }
+
+    /**
+     * Write out this workbook as xlsb file to an OutputStream.
+     *
+     * @param stream - the java OutputStream you wish to write to
+     * @exception IOException if anything can't be written.
+     */
+    @Override
+    public void write(OutputStream stream) throws IOException {
+        flushSheets();
+
+        ZipArchiveOutputStream zos = createArchiveOutputStream(stream);
+        ZipDeflateStrategy strategy = getXSSFWorkbook().getPackage().getDeflateStrategy();
+        SharedStringsTable sst = getSharedStringSource();
+        boolean writeSst = sst != null && sst.getUniqueCount() > 0;
+        int sheetCount = getNumberOfSheets();
+
+        try (OutputStream out = openEntry(zos, strategy, "/[Content_Types].xml", null)) {
+            out.write(getContentTypes(sheetCount, writeSst).getBytes(StandardCharsets.UTF_8));
+        }
+        try (OutputStream out = openEntry(zos, strategy, "/_rels/.rels", ContentTypes.RELATIONSHIPS_PART)) {
+            StringBuilder sb = startRelationships();
+            appendRelationship(sb, 1, PackageRelationshipTypes.CORE_DOCUMENT,
+                XSSFRelation.XLSB_BINARY_WORKBOOK.getDefaultFileName().substring(1));
+            out.write(endRelationships(sb).getBytes(StandardCharsets.UTF_8));
+        }
+        try (OutputStream out = openEntry(zos, strategy, "/xl/_rels/workbook.bin.rels", ContentTypes.RELATIONSHIPS_PART)) {
+            StringBuilder sb = startRelationships();
+            for (int i = 0; i < sheetCount; i++) {
+                appendRelationship(sb, i + 1, XSSFBRelation.WORKSHEET_BINARY.getRelation(),
+                    getRelativeName(XSSFBRelation.WORKSHEET_BINARY.getFileName(i + 1)));
+            }
+            appendRelationship(sb, sheetCount + 1, XSSFBRelation.STYLES_BINARY.getRelation(),
+                getRelativeName(XSSFBRelation.STYLES_BINARY.getDefaultFileName()));
+            if (writeSst) {
+                appendRelationship(sb, sheetCount + 2, XSSFBRelation.SHARED_STRINGS_BINARY.getRelation(),
+                    getRelativeName(XSSFBRelation.SHARED_STRINGS_BINARY.getDefaultFileName()));
+            }
+            out.write(endRelationships(sb).getBytes(StandardCharsets.UTF_8));
+        }
+        try (OutputStream out = openEntry(zos, strategy, XSSFRelation.XLSB_BINARY_WORKBOOK)) {
+            writeWorkbook(new XSSFBRecordWriter(out));
+        }
+        try (OutputStream out = openEntry(zos, strategy, XSSFBRelation.STYLES_BINARY)) {
+            new XSSFBStylesWriter(getXSSFWorkbook().getStylesSource()).write(out);
+        }
+        if (writeSst) {
+            try (OutputStream out = openEntry(zos, strategy, XSSFBRelation.SHARED_STRINGS_BINARY)) {
+                writeSharedStrings(new XSSFBRecordWriter(out), sst);
+            }
+        }
+        for (int i = 0; i < sheetCount; i++) {
+            SXSSFSheet sheet = getSheetAt(i);
+            String name = XSSFBRelation.WORKSHEET_BINARY.getFileName(i + 1);
+            try (OutputStream out = openEntry(zos, strategy, name, XSSFBRelation.WORKSHEET_BINARY.getContentType());
+                 InputStream rows = sheet.getWorksheetXMLInputStream()) {
+                XSSFBRecordWriter writer = new XSSFBRecordWriter(out);
+                writeSheetHead(writer, sheet);
+                writer.flush();
+                IOUtils.copy(rows, out);
+                writeSheetTail(writer, sheet);
+                writer.flush();
+            }
+        }
+        zos.finish();
+    }
+
+    private static OutputStream openEntry(ZipArchiveOutputStream zos, ZipDeflateStrategy strategy, XSSFRelation rel)
+    throws IOException {
+        return openEntry(zos, strategy, rel.getDefaultFileName(), rel.getContentType());
+    }
+
+    private static OutputStream openEntry(ZipArchiveOutputStream zos, ZipDeflateStrategy strategy, XSSFBRelation rel)
+    throws IOException {
+        return openEntry(zos, strategy, rel.getDefaultFileName(), rel.getContentType());
+    }
+
+    /**
+     * @param partName the part name, which starts with a slash
+     */
+    private static OutputStream openEntry(ZipArchiveOutputStream zos, ZipDeflateStrategy strategy,
+        String partName, String contentType) throws IOException {
+        ZipArchiveEntry ze = new ZipArchiveEntry(partName.substring(1));
+        return new BufferedOutputStream(strategy.openEntry(zos, ze, contentType));
+    }
+
+    private static String getRelativeName(String partName) {
+        return partName.substring(WORKBOOK_DIR.length());
+    }
+
+    private static String getContentTypes(int sheetCount, boolean writeSst) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+        sb.append("<Types xmlns=\"").append(PackageNamespaces.CONTENT_TYPES).append("\">");
+        sb.append("<Default Extension=\"rels\" ContentType=\"").append(ContentTypes.RELATIONSHIPS_PART).append("\"/>");
+        appendOverride(sb, XSSFRelation.XLSB_BINARY_WORKBOOK.getDefaultFileName(),
+            XSSFRelation.XLSB_BINARY_WORKBOOK.getContentType());
+        for (int i = 0; i < sheetCount; i++) {
+            appendOverride(sb, XSSFBRelation.WORKSHEET_BINARY.getFileName(i + 1),
+                XSSFBRelation.WORKSHEET_BINARY.getContentType());
+        }
+        appendOverride(sb, XSSFBRelation.STYLES_BINARY.getDefaultFileName(),
+            XSSFBRelation.STYLES_BINARY.getContentType());
+        if (writeSst) {
+            appendOverride(sb, XSSFBRelation.SHARED_STRINGS_BINARY.getDefaultFileName(),
+                XSSFBRelation.SHARED_STRINGS_BINARY.getContentType());
+        }
+        sb.append("</Types>");
+        return sb.toString();
+    }
+
+    private static void appendOverride(StringBuilder sb, String partName, String contentType) {
+        sb.append("<Override PartName=\"").append(partName)
+          .append("\" ContentType=\"").append(contentType).append("\"/>");
+    }
+
+    private static StringBuilder startRelationships() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+        sb.append("<Relationships xmlns=\"").append(PackageNamespaces.RELATIONSHIPS).append("\">");
+        return sb;
+    }
+
+    private static void appendRelationship(StringBuilder sb, int id, String type, String target) {
+        sb.append("<Relationship Id=\"rId").append(id).append("\" Type=\"").append(type)
+          .append("\" Target=\"").append(target).append("\"/>");
+    }
+
+    private static String endRelationships(StringBuilder sb) {
+        return sb.append("</Relationships>").toString();
+    }
+
+    private void writeWorkbook(XSSFBRecordWriter out) throws IOException {
+        out.writeRecord(XSSFBRecordType.BrtBeginBook);
+
+        out.startRecord(XSSFBRecordType.BrtWbProp);
+        // fShowInkAnnotation and fAutoCompressPictures are set by default
+        out.writeInt(0x00010020 | (isDate1904() ? 0x01 : 0));
+        out.writeInt(0);
+        out.writeXLWideString("");
+        out.endRecord();
+
+        out.writeRecord(XSSFBRecordType.BrtBeginBookViews);
+        out.startRecord(XSSFBRecordType.BrtBookView);
+        // position and size of the window in twips, as set by Excel
+        out.writeInt(0);
+        out.writeInt(0);
+        out.writeInt(16710);
+        out.writeInt(5970);
+        out.writeInt(600);
+        out.writeInt(getFirstVisibleTab());
+        out.writeInt(getActiveSheetIndex());
+        // fVisible, fVertical, fHorizontal and fTabs
+        out.writeByte(0x78);
+        out.endRecord();
+        out.writeRecord(XSSFBRecordType.BrtEndBookViews);
+
+        out.writeRecord(XSSFBRecordType.BrtBeginBundleShs);
+        for (int i = 0; i < getNumberOfSheets(); i++) {
+            out.startRecord(XSSFBRecordType.BrtBundleSh);
+            // the ordinals match the hsState values: visible, hidden, very hidden
+            out.writeInt(getSheetVisibility(i).ordinal());
+            out.writeInt(i + 1);
+            out.writeXLNullableWideString("rId" + (i + 1));
+            out.writeXLWideString(getSheetName(i));
+            out.endRecord();
+        }
+        out.writeRecord(XSSFBRecordType.BrtEndBundleShs);
+
+        out.writeRecord(XSSFBRecordType.BrtEndBook);
+        out.flush();
+    }
+
+    private static void writeSharedStrings(XSSFBRecordWriter out, SharedStringsTable sst) throws IOException {
+        out.startRecord(XSSFBRecordType.BrtBeginSst);
+        out.writeInt(sst.getCount());
+        out.writeInt(sst.getUniqueCount());
+        out.endRecord();
+        for (int i = 0; i < sst.getUniqueCount(); i++) {
+            out.startRecord(XSSFBRecordType.BrtSstItem);
+            // neither rich text nor phonetic runs
+            out.writeByte(0);
+            out.writeXLWideString(sst.getItemAt(i).getString());
+            out.endRecord();
+        }
+        out.writeRecord(XSSFBRecordType.BrtEndSst);
+        out.flush();
+    }
+
+    private void writeSheetHead(XSSFBRecordWriter out, SXSSFSheet sheet) throws IOException {
+        XSSFSheet xSheet = getXSSFSheet(sheet);
+        BinarySheetDataWriter rows = (BinarySheetDataWriter) sheet.getSheetDataWriter();
+
+        out.writeRecord(XSSFBRecordType.BrtBeginSheet);
+
+        out.startRecord(XSSFBRecordType.BrtWsProp);
+        // the flags default to the values of the sheetPr element
+        out.writeByte(0xC9);
+        out.writeByte(0x04);
+        out.writeByte(0x02);
+        // automatic tab color
+        out.writeByte(0x00);
+        out.writeByte(0x40);
+        out.writeShort(0);
+        out.writeInt(0xFF000000);
+        out.writeInt(-1);
+        out.writeInt(-1);
+        out.writeXLWideString("");
+        out.endRecord();
+
+        out.startRecord(XSSFBRecordType.BrtWsDim);
+        if (rows.getNumberOfFlushedRows() > 0) {
+            out.writeInt(rows.getLowestIndexOfFlushedRows());
+            out.writeInt(rows.getLastFlushedRow());
+        } else {
+            out.writeInt(0);
+            out.writeInt(0);
+        }
+        out.writeInt(Math.max(rows.getFirstColumn(), 0));
+        out.writeInt(Math.max(rows.getLastColumn(), 0));
+        out.endRecord();
+
+        out.writeRecord(XSSFBRecordType.BrtBeginWsViews);
+        out.startRecord(XSSFBRecordType.BrtBeginWsView);
+        // fWnProt, fDspFmla, fDspGrid, fDspRwCol, fDspZeros, fRightToLeft, fSelected, fDspRuler, fDspGuts, fDefaultHdr
+        int flags = 0x0380
+            | (xSheet.isDisplayFormulas() ? 0x0002 : 0)
+            | (xSheet.isDisplayGridlines() ? 0x0004 : 0)
+            | (xSheet.isDisplayRowColHeadings() ? 0x0008 : 0)
+            | (xSheet.isDisplayZeros() ? 0x0010 : 0)
+            | (xSheet.isRightToLeft() ? 0x0020 : 0)
+            | (xSheet.isSelected() ? 0x0040 : 0);
+        out.writeShort(flags);
+        out.writeInt(0);
+        out.writeInt(0);
+        out.writeInt(0);
+        out.writeByte(0x40);
+        out.writeByte(0);
+        out.writeShort(0);
+        out.writeShort(100);
+        out.writeShort(0);
+        out.writeShort(0);
+        out.writeShort(0);
+        out.writeInt(0);
+        out.endRecord();
+        out.writeRecord(XSSFBRecordType.BrtEndWsView);
+        out.writeRecord(XSSFBRecordType.BrtEndWsViews);
+
+        List<CTCols> colsList = xSheet.getCTWorksheet().getColsList();
+        if (!colsList.isEmpty()) {
+            out.writeRecord(XSSFBRecordType.BrtBeginColInfos);
+            for (CTCols cols : colsList) {
+                for (CTCol col : cols.getColList()) {
+                    writeColInfo(out, xSheet, col);
+                }
+            }
+            out.writeRecord(XSSFBRecordType.BrtEndColInfos);
+        }
+
+        out.writeRecord(XSSFBRecordType.BrtBeginSheetData);
+    }
+
+    private static void writeColInfo(XSSFBRecordWriter out, XSSFSheet xSheet, CTCol col) throws IOException {
+        double width = col.isSetWidth() ? col.getWidth() : xSheet.getDefaultColumnWidth();
+        int flags = (col.getHidden() ? 0x0001 : 0)
+            | (col.getCustomWidth() ? 0x0002 : 0)
+            | (col.getBestFit() ? 0x0004 : 0)
+            | (col.getPhonetic() ? 0x0008 : 0)
+            | ((col.getOutlineLevel() & 0x07) << 8)
+            | (col.getCollapsed() ? 0x1000 : 0);
+
+        out.startRecord(XSSFBRecordType.BrtColInfo);
+        out.writeInt((int) col.getMin() - 1);
+        out.writeInt((int) col.getMax() - 1);
+        out.writeInt((int) Math.round(width * 256));
+        out.writeInt(col.isSetStyle() ? (int) col.getStyle() : 0);
+        out.writeShort(flags);
+        out.endRecord();
+    }
+
+    private void writeSheetTail(XSSFBRecordWriter out, SXSSFSheet sheet) throws IOException {
+        out.writeRecord(XSSFBRecordType.BrtEndSheetData);
+
+        List<CellRangeAddress> mergedRegions = getXSSFSheet(sheet).getMergedRegions();
+        if (!mergedRegions.isEmpty()) {
+            out.startRecord(XSSFBRecordType.BrtBeginMergeCells);
+            out.writeInt(mergedRegions.size());
+            out.endRecord();
+            for (CellRangeAddress region : mergedRegions) {
+                out.startRecord(XSSFBRecordType.BrtMergeCell);
+                out.writeInt(region.getFirstRow());
+                out.writeInt(region.getLastRow());
+                out.writeInt(region.getFirstColumn());
+                out.writeInt(region.getLastColumn());
+                out.endRecord();
+            }
+            out.writeRecord(XSSFBRecordType.BrtEndMergeCells);
+        }
+
+        out.writeRecord(XSSFBRecordType.BrtEndSheet);
+    }
+}
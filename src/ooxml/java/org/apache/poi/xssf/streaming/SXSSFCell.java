@@ -236,6 +236,9 @@ public class SXSSFCell extends CellBase {
     @Override
     public void setCellFormulaImpl(String formula) throws FormulaParseException {
         assert formula != null;
+        if (_row != null) {
+            getSheet().getSheetDataWriter().checkFormula(getRowIndex(), getColumnIndex());
+        }
         if (getCellType() == CellType.FORMULA) {
             ((FormulaValue)_value).setValue(formula);
         } else {
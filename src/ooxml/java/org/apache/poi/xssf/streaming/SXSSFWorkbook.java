@@ -17,6 +17,7 @@
 
 package org.apache.poi.xssf.streaming;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -25,25 +26,33 @@ import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.commons.compress.archivers.ArchiveOutputStream;
 import org.apache.commons.compress.archivers.zip.Zip64Mode;
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
 import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.openxml4j.opc.PackagingURIHelper;
+import org.apache.poi.openxml4j.opc.internal.ZipHelper;
 import org.apache.poi.openxml4j.util.ZipArchiveThresholdInputStream;
+import org.apache.poi.openxml4j.util.ZipDeflateStrategy;
 import org.apache.poi.openxml4j.util.ZipEntrySource;
 import org.apache.poi.openxml4j.util.ZipFileZipEntrySource;
 import org.apache.poi.openxml4j.util.ZipSecureFile;
 import org.apache.poi.ss.SpreadsheetVersion;
 import org.apache.poi.ss.formula.udf.UDFFinder;
 import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.CellStyleCacheSupport;
 import org.apache.poi.ss.usermodel.CreationHelper;
 import org.apache.poi.ss.usermodel.DataFormat;
 import org.apache.poi.ss.usermodel.Font;
@@ -53,6 +62,7 @@ import org.apache.poi.ss.usermodel.Row.MissingCellPolicy;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.SheetVisibility;
 import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.util.CellStyleCache;
 import org.apache.poi.util.*;
 import org.apache.poi.xssf.model.SharedStringsTable;
 import org.apache.poi.xssf.usermodel.XSSFChartSheet;
@@ -85,7 +95,7 @@ import org.apache.poi.xssf.usermodel.XSSFWorkbook;
  * Carefully review your memory budget and compatibility needs before deciding
  * whether to enable shared strings or not.
  */
-public class SXSSFWorkbook implements Workbook {
+public class SXSSFWorkbook implements Workbook, CellStyleCacheSupport {
     /**
      * Specifies how many rows can be accessed at most via {@link SXSSFSheet#getRow}.
      * When a new node is created via {@link SXSSFSheet#createRow} and the total number
@@ -108,6 +118,11 @@ public class SXSSFWorkbook implements Workbook {
      */
     private boolean _compressTmpFiles;
 
+    /**
+     * executor for deflating the sheet data in the background - null for deflating on write
+     */
+    private ExecutorService _sheetDataExecutor;
+
     /**
      * shared string table - a cache of strings in this workbook
      */
@@ -328,6 +343,40 @@ public class SXSSFWorkbook implements Workbook {
     public void setCompressTempFiles(boolean compress) {
         _compressTmpFiles = compress;
     }
+
+    /**
+     * Get the executor, which deflates the sheet data in the background.
+     *
+     * @return the executor or {@code null} if the sheet data is deflated on write
+     * @since POI 4.1.1
+     */
+    public ExecutorService getSheetDataExecutor() {
+        return _sheetDataExecutor;
+    }
+
+    /**
+     * Set the executor, which deflates the sheet data in the background.
+     * <p>
+     *     By default the flushed rows are written uncompressed (or gzipped) to the temp files
+     *     and {@link #write(OutputStream)} deflates all sheets one after the other on the calling thread.
+     *     If an executor is set, the flushed rows of a sheet are handed over to a task, which deflates
+     *     them into the temp file, so the sheets are compressed concurrently while the rows are created.
+     *     On write, the deflated sheet data is copied into the zip without recompressing it.
+     * </p>
+     * <p>
+     *     The rows are still serialized on the thread calling the sheet methods and each sheet uses at most
+     *     one thread of the executor at a time. The executor is not shut down by this workbook.
+     *     This option takes precedence over {@link #setCompressTempFiles(boolean)}.
+     * </p>
+     * <p>
+     *     Setting this option only affects subsequent <code>createSheet()</code> calls.
+     * </p>
+     * @param executor the executor or {@code null} to deflate the sheet data on write
+     * @since POI 4.1.1
+     */
+    public void setSheetDataExecutor(ExecutorService executor) {
+        _sheetDataExecutor = executor;
+    }
     
     @Internal
     protected SharedStringsTable getSharedStringSource() {
@@ -335,6 +384,9 @@ public class SXSSFWorkbook implements Workbook {
     }
 
     protected SheetDataWriter createSheetDataWriter() throws IOException {
+        if(_sheetDataExecutor != null) {
+            return new DeflatedSheetDataWriter(_sharedStringSource, _sheetDataExecutor);
+        }
         if(_compressTmpFiles) {
             return new GZIPSheetDataWriter(_sharedStringSource);
         }
@@ -386,16 +438,20 @@ public class SXSSFWorkbook implements Workbook {
     }
 
     protected void injectData(ZipEntrySource zipEntrySource, OutputStream out) throws IOException {
-        ArchiveOutputStream zos = createArchiveOutputStream(out);
+        ZipArchiveOutputStream zos = createArchiveOutputStream(out);
+        ZipDeflateStrategy strategy = _wb.getPackage().getDeflateStrategy();
         try {
             Enumeration<? extends ZipArchiveEntry> en = zipEntrySource.getEntries();
             while (en.hasMoreElements()) {
                 ZipArchiveEntry ze = en.nextElement();
+                if (injectDeflatedData(zipEntrySource, ze, zos)) {
+                    continue;
+                }
                 ZipArchiveEntry zeOut = new ZipArchiveEntry(ze.getName());
                 zeOut.setSize(ze.getSize());
                 zeOut.setTime(ze.getTime());
-                zos.putArchiveEntry(zeOut);
-                try (final InputStream is = zipEntrySource.getInputStream(ze)) {
+                try (final InputStream is = zipEntrySource.getInputStream(ze);
+                     final OutputStream entryOut = strategy.openEntry(zos, zeOut, getContentType(ze.getName()))) {
                     if (is instanceof ZipArchiveThresholdInputStream) {
                         // #59743 - disable Threshold handling for SXSSF copy
                         // as users tend to put too much repetitive data in when using SXSSF :)
@@ -406,13 +462,11 @@ public class SXSSFWorkbook implements Workbook {
                     if (xSheet != null && !(xSheet instanceof XSSFChartSheet)) {
                         SXSSFSheet sxSheet = getSXSSFSheet(xSheet);
                         try (InputStream xis = sxSheet.getWorksheetXMLInputStream()) {
-                            copyStreamAndInjectWorksheet(is, zos, xis);
+                            copyStreamAndInjectWorksheet(is, entryOut, xis);
                         }
                     } else {
-                        IOUtils.copy(is, zos);
+                        IOUtils.copy(is, entryOut);
                     }
-                } finally {
-                    zos.closeArchiveEntry();
                 }
             }
         } finally {
@@ -421,6 +475,54 @@ public class SXSSFWorkbook implements Workbook {
         }
     }
 
+    /**
+     * Copies the pre-deflated sheet data of a {@link DeflatedSheetDataWriter} into the zip
+     *
+     * @return {@code true} if the entry was written, {@code false} if it needs to be copied
+     */
+    private boolean injectDeflatedData(ZipEntrySource zipEntrySource, ZipArchiveEntry ze, ArchiveOutputStream zos)
+    throws IOException {
+        // the Zip64Mode.Always stream doesn't support raw entries
+        if (!(zos instanceof ZipArchiveOutputStream) || zos instanceof OpcZipArchiveOutputStream) {
+            return false;
+        }
+        XSSFSheet xSheet = getSheetFromZipEntryName(ze.getName());
+        if (xSheet == null || xSheet instanceof XSSFChartSheet) {
+            return false;
+        }
+        SXSSFSheet sxSheet = getSXSSFSheet(xSheet);
+        SheetDataWriter writer = sxSheet.getSheetDataWriter();
+        if (!(writer instanceof DeflatedSheetDataWriter)) {
+            return false;
+        }
+
+        sxSheet.flushRows(0);
+        writer.close();
+
+        byte[][] headTail;
+        try (InputStream is = zipEntrySource.getInputStream(ze)) {
+            if (is instanceof ZipArchiveThresholdInputStream) {
+                ((ZipArchiveThresholdInputStream)is).setGuardState(false);
+            }
+            headTail = splitWorksheet(is);
+        }
+        ((DeflatedSheetDataWriter)writer).addWorksheetEntry((ZipArchiveOutputStream)zos, ze, headTail[0], headTail[1]);
+        return true;
+    }
+
+    /**
+     * @return the content type of the part of the zip entry or {@code null} if it's not a part
+     */
+    String getContentType(String zipEntryName) {
+        try {
+            PackagePart part = _wb.getPackage().getPart(PackagingURIHelper.createPartName(
+                ZipHelper.getOPCNameFromZipItemName(zipEntryName)));
+            return (part == null) ? null : part.getContentType();
+        } catch (InvalidFormatException|IllegalArgumentException e) {
+            return null;
+        }
+    }
+
     protected ZipArchiveOutputStream createArchiveOutputStream(OutputStream out) {
         if (Zip64Mode.Always.equals(zip64Mode)) {
             return new OpcZipArchiveOutputStream(out);
@@ -431,6 +533,28 @@ public class SXSSFWorkbook implements Workbook {
         }
     }
 
+    /**
+     * Splits the worksheet xml at the position, where the sheet data is injected
+     *
+     * @param worksheet the worksheet xml
+     * @return the xml before and after the sheet data
+     */
+    static byte[][] splitWorksheet(InputStream worksheet) throws IOException {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        final int[] dataPos = { -1 };
+        // the position is recorded, when the (empty) sheet data stream is read
+        InputStream dataMarker = new InputStream() {
+            @Override
+            public int read() {
+                dataPos[0] = bos.size();
+                return -1;
+            }
+        };
+        copyStreamAndInjectWorksheet(worksheet, bos, dataMarker);
+        byte[] xml = bos.toByteArray();
+        return new byte[][]{ Arrays.copyOf(xml, dataPos[0]), Arrays.copyOfRange(xml, dataPos[0], xml.length) };
+    }
+
     private static void copyStreamAndInjectWorksheet(InputStream in, OutputStream out, InputStream worksheetData) throws IOException {
         InputStreamReader inReader = new InputStreamReader(in, StandardCharsets.UTF_8);
         OutputStreamWriter outWriter = new OutputStreamWriter(out, StandardCharsets.UTF_8);
@@ -884,6 +1008,16 @@ public class SXSSFWorkbook implements Workbook {
         return _wb.createCellStyle();
     }
 
+    /**
+     * @return the cell style lookups of {@link org.apache.poi.ss.util.CellUtil},
+     *  which are shared with the wrapped workbook, as it holds the styles
+     */
+    @Internal
+    @Override
+    public CellStyleCache getCellStyleCache() {
+        return _wb.getCellStyleCache();
+    }
+
     /**
      * Get the number of styles the workbook contains
      *
@@ -76,6 +76,22 @@ public class SheetDataWriter implements Closeable {
         this();
         this._sharedStringSource = sharedStringsTable;
     }
+
+    /**
+     * Constructs a sheet data writer, which writes to the given writer instead of a temp file.
+     * Subclasses using this constructor need to provide the written data themselves,
+     * see {@link #getWorksheetXMLInputStream()}.
+     *
+     * @param out the writer for the sheet data, or null if the subclass serializes the rows itself
+     * @param sharedStringsTable the shared strings table, or null if inline text is used
+     *
+     * @since POI 4.1.1
+     */
+    protected SheetDataWriter(Writer out, SharedStringsTable sharedStringsTable) {
+        _fd = null;
+        _out = out;
+        _sharedStringSource = sharedStringsTable;
+    }
     /**
      * Create a temp file to write sheet data. 
      * By default, temp files are created in the default temporary-file directory
@@ -125,8 +141,10 @@ public class SheetDataWriter implements Closeable {
      * This method <em>must</em> be invoked before calling {@link #getWorksheetXMLInputStream()}
      */
     public void close() throws IOException {
-        _out.flush();
-        _out.close();
+        if (_out != null) {
+            _out.flush();
+            _out.close();
+        }
     }
 
     protected File getTempFile() {
@@ -179,7 +197,7 @@ public class SheetDataWriter implements Closeable {
 
     @Override
     protected void finalize() throws Throwable {
-        if (!_fd.delete()) {
+        if (_fd != null && !_fd.delete()) {
             logger.log(POILogger.ERROR, "Can't delete temporary encryption file: "+_fd);
         }
 
@@ -434,6 +452,15 @@ public class SheetDataWriter implements Closeable {
         }
     }
 
+    /**
+     * Checks if a formula can be written for the cell, before the formula is set
+     *
+     * @throws IllegalStateException if the formula can't be written
+     */
+    void checkFormula(int rownum, int columnIndex) {
+        // formulas are written as text
+    }
+
     static boolean replaceWithQuestionMark(char c) {
         return c < ' ' || ('\uFFFE' <= c && c <= '\uFFFF');
     }
@@ -445,9 +472,11 @@ public class SheetDataWriter implements Closeable {
     boolean dispose() throws IOException {
         final boolean ret;
         try {
-            _out.close();
+            if (_out != null) {
+                _out.close();
+            }
         } finally {
-            ret = _fd.delete();
+            ret = _fd == null || _fd.delete();
         }
         return ret;
     }
@@ -374,7 +374,7 @@ public final class XSSFCell extends CellBase {
                 } else {
                     if (_cell.isSetV()) {
                         int idx = Integer.parseInt(_cell.getV());
-                        rt = new XSSFRichTextString(_sharedStringSource.getEntryAt(idx));
+                        rt = (XSSFRichTextString)_sharedStringSource.getItemAt(idx);
                     }
                     else {
                         rt = new XSSFRichTextString("");
@@ -1137,7 +1137,7 @@ public final class XSSFCell extends CellBase {
                 return TRUE_AS_STRING.equals(_cell.getV());
             case STRING:
                 int sstIndex = Integer.parseInt(_cell.getV());
-                XSSFRichTextString rt = new XSSFRichTextString(_sharedStringSource.getEntryAt(sstIndex));
+                XSSFRichTextString rt = (XSSFRichTextString)_sharedStringSource.getItemAt(sstIndex);
                 String text = rt.getString();
                 return Boolean.parseBoolean(text);
             case NUMERIC:
@@ -1163,7 +1163,7 @@ public final class XSSFCell extends CellBase {
                 return TRUE_AS_STRING.equals(_cell.getV()) ? TRUE : FALSE;
             case STRING:
                 int sstIndex = Integer.parseInt(_cell.getV());
-                XSSFRichTextString rt = new XSSFRichTextString(_sharedStringSource.getEntryAt(sstIndex));
+                XSSFRichTextString rt = (XSSFRichTextString)_sharedStringSource.getItemAt(sstIndex);
                 return rt.getString();
             case NUMERIC:
             case ERROR:
@@ -406,7 +406,13 @@ public class XSSFColor extends ExtendedColor {
     
     @Override
     public int hashCode(){
-        return ctColor.toString().hashCode();
+        // needs to be consistent with equals, i.e. based on the same properties
+        int hash = isRGB() ? Arrays.hashCode(getARGB()) : 0;
+        hash = 31 * hash + (isThemed() ? getTheme() : -1);
+        hash = 31 * hash + (isIndexed() ? getIndexed() : -1);
+        // equals compares the tints with ==, so -0.0 needs to be hashed like 0.0
+        hash = 31 * hash + (hasTint() ? Double.hashCode(getTint() + 0.0) : 0);
+        return 31 * hash + (isAuto() ? 1 : 0);
     }
 
     // Helper methods for {@link #equals(Object)}
@@ -0,0 +1,1201 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.usermodel;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.poi.ooxml.POIXMLTypeLoader.DEFAULT_XML_OPTIONS;
+import static org.apache.poi.xssf.usermodel.XSSFRelation.NS_SPREADSHEETML;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+
+import org.apache.poi.ooxml.POIXMLDocumentPart;
+import org.apache.poi.ooxml.POIXMLException;
+import org.apache.poi.ooxml.POIXMLRelation;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.Beta;
+import org.apache.poi.util.IntList;
+import org.apache.poi.util.IntSortedMap;
+import org.apache.poi.util.StaxHelper;
+import org.apache.xmlbeans.XmlCursor;
+import org.apache.xmlbeans.XmlException;
+import org.apache.xmlbeans.XmlObject;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTCell;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTCellFormula;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTRow;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTWorksheet;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.STCellType;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.WorksheetDocument;
+
+/**
+ * Keeps the rows of a worksheet, which weren't accessed yet, in a compact form instead of XMLBeans.<p>
+ *
+ * The row elements are diverted into this store while the worksheet is parsed. The cells are kept
+ * column-oriented in primitive arrays - the column, the style index, the cell type and the value
+ * as long (a shared string index, an integer or the bits of a double) - which takes roughly
+ * 16 bytes per cell. Values, which can't be restored from their number, formulas and cells with
+ * uncommon content, e.g. inline rich text, are kept as text.<p>
+ *
+ * A row is converted into {@link CTRow} / {@link XSSFRow} on its first access, e.g. via
+ * {@link XSSFSheet#getRow(int)}. Operations on the whole sheet, like iterating the rows,
+ * shifting, evaluating or auto-sizing, convert all rows. On write, the pending rows are
+ * written directly from this store.<p>
+ *
+ * The store is selected via a factory, which can wrap another factory:
+ * <pre>{@code
+ * XSSFWorkbook wb = new XSSFWorkbook(OPCPackage.open(file), XSSFCompactSheetData.factory(null));
+ * XSSFWorkbook wb = new XSSFWorkbook(OPCPackage.open(file),
+ *     XSSFCompactSheetData.factory(OffHeapSharedStringsTable.factory(true)));
+ * }</pre>
+ *
+ * The sheet data element of {@link XSSFSheet#getCTWorksheet()} only contains the converted rows.
+ *
+ * @since POI 4.1.1
+ */
+@Beta
+public final class XSSFCompactSheetData {
+    // the cell type is kept in the lower bits, 0 for a cell without type attribute
+    private static final int TYPE_MASK = 0x07;
+    private static final int VALUE_SHIFT = 3;
+    private static final int VALUE_MASK = 0x07;
+    private static final int VALUE_NONE = 0;
+    /** the value is a canonical integer */
+    private static final int VALUE_LONG = 1;
+    /** the value is a double as written by Java */
+    private static final int VALUE_DOUBLE = 2;
+    /** the value is a double with 17 significant digits as written by Excel */
+    private static final int VALUE_DOUBLE17 = 3;
+    /** the value is kept as text */
+    private static final int VALUE_TEXT = 4;
+    /** the value is a plain inline string kept as text */
+    private static final int VALUE_INLINE = 5;
+    /** the value is a plain inline string with preserved spaces kept as text */
+    private static final int VALUE_INLINE_PRESERVE = 6;
+    private static final int FORMULA = 0x40;
+    /** the cell is kept as xml */
+    private static final int RAW = 0x80;
+
+    private static final MathContext EXCEL_PRECISION = new MathContext(17);
+    private static final Pattern SHEET_DATA = Pattern.compile("<([\\w.-]+:)?sheetData[\\s/>]");
+    private static final String[] NO_ATTRIBUTES = {};
+
+    // the rows in document order - the cells of row i are rowCells[i] to rowCells[i+1]-1
+    private int rowCount;
+    private int[] rowNums = new int[256];
+    private int[] rowAttributes = new int[256];
+    private int[] rowCells = new int[257];
+    private final BitSet materialized = new BitSet();
+    private int pendingRows;
+    /** whether the row numbers aren't ascending, i.e. the rows can't be looked up */
+    private boolean unordered;
+    /** the rows holding master formulas, which need to be registered by the sheet */
+    private final IntList formulaRows = new IntList();
+    /** the child elements of a row besides the cells, keyed by row index */
+    private final IntSortedMap<String> rowExtras = new IntSortedMap<>();
+
+    private int cellCount;
+    private short[] cellCols = new short[1024];
+    private int[] cellStyles = new int[1024];
+    private byte[] cellTypes = new byte[1024];
+    private long[] cellValues = new long[1024];
+    /** the text values or xml of the cells, keyed by cell index */
+    private final IntSortedMap<String> cellTexts = new IntSortedMap<>();
+    private final IntSortedMap<Formula> formulas = new IntSortedMap<>();
+
+    // the distinct attribute sets of rows and formulas as (namespace, prefix, local name, value) quadruples
+    private final List<String[]> attributeSets = new ArrayList<>();
+    private final Map<List<String>,Integer> attributeSetIds = new HashMap<>();
+    private final List<String> attributes = new ArrayList<>();
+    private final Capture capture = new Capture();
+
+    XSSFCompactSheetData() {
+        attributeSets.add(NO_ATTRIBUTES);
+        attributeSetIds.put(Collections.emptyList(), 0);
+    }
+
+    /**
+     * @param factory the factory to wrap, {@code null} for the default factory
+     * @return a factory to be used with {@link XSSFWorkbook}, whose worksheets keep the rows,
+     *  which weren't accessed yet, in a compact store
+     */
+    public static XSSFFactory factory(XSSFFactory factory) {
+        return new CompactFactory(factory == null ? XSSFFactory.getInstance() : factory);
+    }
+
+    /**
+     * Parses the worksheet, the rows are read into this store instead of the sheet data element
+     */
+    CTWorksheet read(InputStream is) throws XmlException {
+        try {
+            XMLStreamReader reader = StaxHelper.newXMLInputFactory().createXMLStreamReader(is);
+            try {
+                return WorksheetDocument.Factory.parse(new RowDiverter(reader), DEFAULT_XML_OPTIONS).getWorksheet();
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new XmlException("unable to parse the worksheet", e);
+        }
+    }
+
+    private void readRow(XMLStreamReader reader) throws XMLStreamException {
+        attributes.clear();
+        String ref = null;
+        for (int i=0; i<reader.getAttributeCount(); i++) {
+            if (isEmpty(reader.getAttributeNamespace(i)) && "r".equals(reader.getAttributeLocalName(i))) {
+                ref = reader.getAttributeValue(i);
+            } else {
+                addAttribute(reader, i, attributes);
+            }
+        }
+
+        final int idx = rowCount;
+        final int lastRowNum = (idx == 0) ? -1 : rowNums[idx-1];
+        final int rownum;
+        if (ref == null) {
+            // as in XSSFRow, a missing row number follows the previous row
+            rownum = lastRowNum + 1;
+        } else {
+            rownum = parseIndex(ref) - 1;
+            if (rownum < 0) {
+                throw new XMLStreamException("invalid row number '" + ref + "'", reader.getLocation());
+            }
+        }
+        unordered |= (rownum <= lastRowNum);
+
+        if (idx+1 == rowNums.length) {
+            int len = rowNums.length * 2;
+            rowNums = Arrays.copyOf(rowNums, len);
+            rowAttributes = Arrays.copyOf(rowAttributes, len);
+            rowCells = Arrays.copyOf(rowCells, len+1);
+        }
+        rowNums[idx] = rownum;
+        rowAttributes[idx] = attributeSet(attributes);
+        rowCells[idx] = cellCount;
+
+        StringBuilder extras = null;
+        boolean hasMasterFormula = false;
+        int col = -1;
+        for (int event = reader.next(); event != XMLStreamConstants.END_ELEMENT; event = reader.next()) {
+            if (event != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            if (isElement(reader, "c")) {
+                col = readCell(reader, rownum, col);
+                hasMasterFormula |= capture.masterFormula;
+            } else {
+                capture.reset();
+                capture.start(reader);
+                readText(reader);
+                if (extras == null) {
+                    extras = new StringBuilder();
+                }
+                extras.append(capture.xml);
+            }
+        }
+
+        rowCount++;
+        rowCells[rowCount] = cellCount;
+        pendingRows++;
+        if (extras != null) {
+            rowExtras.put(idx, extras.toString());
+        }
+        if (hasMasterFormula) {
+            formulaRows.add(idx);
+        }
+    }
+
+    /**
+     * Reads a cell - all events are captured, so the cell can be kept as xml,
+     * if it contains anything besides the formula and the value
+     *
+     * @return the column index
+     */
+    private int readCell(XMLStreamReader reader, int rownum, int prevCol) throws XMLStreamException {
+        capture.reset();
+        capture.start(reader);
+
+        boolean raw = false;
+        String ref = null;
+        int style = -1, type = 0;
+        for (int i=0; i<reader.getAttributeCount(); i++) {
+            String value = reader.getAttributeValue(i);
+            String name = reader.getAttributeLocalName(i);
+            if (!isEmpty(reader.getAttributeNamespace(i))) {
+                raw = true;
+            } else if ("r".equals(name)) {
+                ref = value;
+            } else if ("s".equals(name)) {
+                style = parseIndex(value);
+                raw |= (style < 0);
+            } else if ("t".equals(name)) {
+                STCellType.Enum t = STCellType.Enum.forString(value);
+                raw |= (t == null);
+                type = (t == null) ? 0 : t.intValue();
+            } else {
+                raw = true;
+            }
+        }
+
+        // as in XSSFCell, a missing cell reference follows the previous cell
+        int col = prevCol + 1;
+        if (ref != null) {
+            col = parseColumn(ref, rownum);
+            if (col < 0) {
+                raw = true;
+                try {
+                    col = new CellReference(ref).getCol();
+                } catch (RuntimeException e) {
+                    col = prevCol + 1;
+                }
+            }
+        }
+
+        int children = 0;
+        String formula = null, value = null, inline = null;
+        int formulaAttributes = 0;
+        for (int event = reader.next(); event != XMLStreamConstants.END_ELEMENT; event = reader.next()) {
+            switch (event) {
+                case XMLStreamConstants.START_ELEMENT:
+                    capture.start(reader);
+                    if (children == 0 && isElement(reader, "f")) {
+                        attributes.clear();
+                        for (int i=0; i<reader.getAttributeCount(); i++) {
+                            addAttribute(reader, i, attributes);
+                        }
+                        formulaAttributes = attributeSet(attributes);
+                        capture.masterFormula = isMasterFormula(reader);
+                        formula = readText(reader);
+                        raw |= (formula == null);
+                        children = 1;
+                    } else if (children < 2 && isElement(reader, "v") && reader.getAttributeCount() == 0) {
+                        value = readText(reader);
+                        raw |= (value == null);
+                        children = 2;
+                    } else if (children == 0 && isElement(reader, "is") && reader.getAttributeCount() == 0) {
+                        inline = readInlineString(reader);
+                        raw |= (inline == null);
+                        children = 3;
+                    } else {
+                        readText(reader);
+                        raw = true;
+                    }
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    capture.text(reader);
+                    raw |= !reader.isWhiteSpace();
+                    break;
+                case XMLStreamConstants.COMMENT:
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    capture.other(reader);
+                    raw = true;
+                    break;
+                default:
+                    break;
+            }
+        }
+        capture.end(reader);
+
+        if (cellCount == cellTypes.length) {
+            int len = cellTypes.length * 2;
+            cellCols = Arrays.copyOf(cellCols, len);
+            cellStyles = Arrays.copyOf(cellStyles, len);
+            cellTypes = Arrays.copyOf(cellTypes, len);
+            cellValues = Arrays.copyOf(cellValues, len);
+        }
+        final int ci = cellCount++;
+        cellCols[ci] = (short)Math.min(col, Short.MAX_VALUE);
+        cellStyles[ci] = style;
+        if (raw) {
+            cellTypes[ci] = (byte)RAW;
+            cellTexts.put(ci, capture.xml.toString());
+        } else if (inline != null) {
+            cellTexts.put(ci, inline);
+            cellTypes[ci] = (byte)(type | ((capture.preserve ? VALUE_INLINE_PRESERVE : VALUE_INLINE) << VALUE_SHIFT));
+        } else {
+            int flags = type | (storeValue(ci, value) << VALUE_SHIFT);
+            if (formula != null) {
+                flags |= FORMULA;
+                formulas.put(ci, new Formula(formulaAttributes, formula));
+            }
+            cellTypes[ci] = (byte)flags;
+        }
+        return col;
+    }
+
+    /**
+     * Shared formula masters and array formulas are registered by the sheet, when the row is read
+     */
+    private static boolean isMasterFormula(XMLStreamReader reader) {
+        String t = reader.getAttributeValue(null, "t");
+        return "array".equals(t) || ("shared".equals(t) && reader.getAttributeValue(null, "ref") != null);
+    }
+
+    /**
+     * Captures the remaining events of the current element
+     *
+     * @return the text of the element or {@code null}, if it contains child elements
+     */
+    private String readText(XMLStreamReader reader) throws XMLStreamException {
+        StringBuilder text = new StringBuilder();
+        boolean plain = true;
+        for (int depth = 0; depth >= 0; ) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    capture.start(reader);
+                    plain = false;
+                    depth++;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    capture.end(reader);
+                    depth--;
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    capture.text(reader);
+                    if (depth == 0) {
+                        text.append(reader.getText());
+                    }
+                    break;
+                case XMLStreamConstants.COMMENT:
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    capture.other(reader);
+                    plain = false;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return plain ? text.toString() : null;
+    }
+
+    /**
+     * Reads an inline string, which consists of a single text element
+     *
+     * @return the text or {@code null}, if it's a rich text string or contains anything else
+     */
+    private String readInlineString(XMLStreamReader reader) throws XMLStreamException {
+        String text = null;
+        boolean plain = true;
+        for (int event = reader.next(); event != XMLStreamConstants.END_ELEMENT; event = reader.next()) {
+            switch (event) {
+                case XMLStreamConstants.START_ELEMENT:
+                    capture.start(reader);
+                    int attrs = reader.getAttributeCount();
+                    capture.preserve = (attrs == 1 && "preserve".equals(reader.getAttributeValue(XMLConstants.XML_NS_URI, "space")));
+                    plain &= (text == null && isElement(reader, "t") && (attrs == 0 || capture.preserve));
+                    text = readText(reader);
+                    plain &= (text != null);
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    capture.text(reader);
+                    plain &= reader.isWhiteSpace();
+                    break;
+                case XMLStreamConstants.COMMENT:
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    capture.other(reader);
+                    plain = false;
+                    break;
+                default:
+                    break;
+            }
+        }
+        capture.end(reader);
+        return plain ? text : null;
+    }
+
+    private int storeValue(int ci, String value) {
+        if (value == null) {
+            return VALUE_NONE;
+        }
+        long l = parseLong(value);
+        if (l != Long.MIN_VALUE) {
+            cellValues[ci] = l;
+            return VALUE_LONG;
+        }
+        char first = value.isEmpty() ? ' ' : value.charAt(0);
+        if (first == '-' || first == '.' || Character.isDigit(first)) {
+            try {
+                double d = Double.parseDouble(value);
+                if (Double.toString(d).equals(value)) {
+                    cellValues[ci] = Double.doubleToRawLongBits(d);
+                    return VALUE_DOUBLE;
+                }
+                if (toExcelString(d).equals(value)) {
+                    cellValues[ci] = Double.doubleToRawLongBits(d);
+                    return VALUE_DOUBLE17;
+                }
+            } catch (NumberFormatException e) {
+                // kept as text
+            }
+        }
+        cellTexts.put(ci, value);
+        return VALUE_TEXT;
+    }
+
+    private String getValue(int ci, int flags) {
+        switch ((flags >> VALUE_SHIFT) & VALUE_MASK) {
+            case VALUE_LONG:
+                return Long.toString(cellValues[ci]);
+            case VALUE_DOUBLE:
+                return Double.toString(Double.longBitsToDouble(cellValues[ci]));
+            case VALUE_DOUBLE17:
+                return toExcelString(Double.longBitsToDouble(cellValues[ci]));
+            case VALUE_TEXT:
+                return cellTexts.get(ci);
+            default:
+                return null;
+        }
+    }
+
+    private static String toExcelString(double d) {
+        return new BigDecimal(d).round(EXCEL_PRECISION).stripTrailingZeros().toPlainString();
+    }
+
+    /**
+     * @return the value, if it is a canonical integer with up to 18 digits, otherwise {@code Long.MIN_VALUE}
+     */
+    private static long parseLong(String value) {
+        int len = value.length();
+        boolean negative = len > 1 && value.charAt(0) == '-';
+        int start = negative ? 1 : 0;
+        if (len == start || len - start > 18 || (value.charAt(start) == '0' && len - start > 1) || (negative && value.charAt(1) == '0')) {
+            return Long.MIN_VALUE;
+        }
+        long l = 0;
+        for (int i=start; i<len; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return Long.MIN_VALUE;
+            }
+            l = l * 10 + (c - '0');
+        }
+        return negative ? -l : l;
+    }
+
+    /**
+     * @return the value, if it is a canonical non-negative int, otherwise -1
+     */
+    private static int parseIndex(String value) {
+        long l = parseLong(value);
+        return (l < 0 || l > Integer.MAX_VALUE) ? -1 : (int)l;
+    }
+
+    /**
+     * @return the column of a cell reference like "AB12" in the given row, otherwise -1
+     */
+    private static int parseColumn(String ref, int rownum) {
+        int col = 0, i = 0;
+        for (; i < ref.length() && i < 4; i++) {
+            char c = ref.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                break;
+            }
+            col = col * 26 + (c - 'A' + 1);
+        }
+        return (i == 0 || i > 3 || parseIndex(ref.substring(i)) != rownum + 1) ? -1 : col - 1;
+    }
+
+    private static void addAttribute(XMLStreamReader reader, int i, List<String> attributes) {
+        attributes.add(nonNull(reader.getAttributeNamespace(i)));
+        attributes.add(nonNull(reader.getAttributePrefix(i)));
+        attributes.add(reader.getAttributeLocalName(i));
+        attributes.add(reader.getAttributeValue(i));
+    }
+
+    private int attributeSet(List<String> attributes) {
+        Integer id = attributeSetIds.get(attributes);
+        if (id == null) {
+            String[] set = attributes.toArray(new String[0]);
+            id = attributeSets.size();
+            attributeSets.add(set);
+            attributeSetIds.put(Arrays.asList(set), id);
+        }
+        return id;
+    }
+
+    /**
+     * @return the number of rows, which weren't converted yet
+     */
+    int getPendingRowCount() {
+        return pendingRows;
+    }
+
+    /**
+     * @return the number of the first pending row, only valid if there are pending rows
+     */
+    int getFirstRowNum() {
+        int first = Integer.MAX_VALUE;
+        for (int idx = materialized.nextClearBit(0); idx < rowCount; idx = materialized.nextClearBit(idx+1)) {
+            first = Math.min(first, rowNums[idx]);
+            if (!unordered) {
+                break;
+            }
+        }
+        return first;
+    }
+
+    /**
+     * @return the number of the last pending row, only valid if there are pending rows
+     */
+    int getLastRowNum() {
+        int last = -1;
+        for (int idx = materialized.previousClearBit(rowCount-1); idx >= 0; idx = materialized.previousClearBit(idx-1)) {
+            last = Math.max(last, rowNums[idx]);
+            if (!unordered) {
+                break;
+            }
+        }
+        return last;
+    }
+
+    /**
+     * @return the row number of the given row index
+     */
+    int getRowNum(int idx) {
+        return rowNums[idx];
+    }
+
+    /**
+     * @return the index of the pending row or -1, if the row isn't pending
+     */
+    int indexOf(int rownum) {
+        if (unordered) {
+            for (int idx = materialized.nextClearBit(0); idx < rowCount; idx = materialized.nextClearBit(idx+1)) {
+                if (rowNums[idx] == rownum) {
+                    return idx;
+                }
+            }
+            return -1;
+        }
+        int idx = Arrays.binarySearch(rowNums, 0, rowCount, rownum);
+        return (idx < 0 || materialized.get(idx)) ? -1 : idx;
+    }
+
+    /**
+     * @return the indexes of the pending rows between startRowNum and endRowNum, inclusive,
+     *  in document order
+     */
+    int[] getPendingRows(int startRowNum, int endRowNum) {
+        IntList rows = new IntList();
+        int from = 0;
+        if (!unordered) {
+            from = Arrays.binarySearch(rowNums, 0, rowCount, startRowNum);
+            from = (from < 0) ? -from - 1 : from;
+        }
+        for (int idx = materialized.nextClearBit(from); idx < rowCount; idx = materialized.nextClearBit(idx+1)) {
+            int rownum = rowNums[idx];
+            if (rownum > endRowNum && !unordered) {
+                break;
+            }
+            if (startRowNum <= rownum && rownum <= endRowNum) {
+                rows.add(idx);
+            }
+        }
+        return rows.toArray();
+    }
+
+    /**
+     * @return the indexes of the rows, which need to be converted after reading - the rows with master
+     *  formulas, which are registered by the sheet, or all rows, if the row numbers aren't ascending
+     */
+    int[] getInitialRows() {
+        return unordered ? getPendingRows(0, Integer.MAX_VALUE) : formulaRows.toArray();
+    }
+
+    /**
+     * @return the highest outline level of the pending rows
+     */
+    int getMaxOutlineLevel() {
+        int[] levels = new int[attributeSets.size()];
+        Arrays.fill(levels, -1);
+        int max = 0;
+        for (int idx = materialized.nextClearBit(0); idx < rowCount; idx = materialized.nextClearBit(idx+1)) {
+            int set = rowAttributes[idx];
+            if (levels[set] == -1) {
+                String level = getAttribute(set, "outlineLevel");
+                levels[set] = (level == null) ? 0 : Math.max(0, parseIndex(level));
+            }
+            max = Math.max(max, levels[set]);
+        }
+        return max;
+    }
+
+    /**
+     * @return the lowest column index of the pending cells or {@code Integer.MAX_VALUE}
+     */
+    int getFirstColumn() {
+        int first = Integer.MAX_VALUE;
+        for (int idx = materialized.nextClearBit(0); idx < rowCount; idx = materialized.nextClearBit(idx+1)) {
+            for (int ci = rowCells[idx]; ci < rowCells[idx+1]; ci++) {
+                first = Math.min(first, cellCols[ci]);
+            }
+        }
+        return first;
+    }
+
+    /**
+     * @return the highest column index of the pending cells or {@code Integer.MIN_VALUE}
+     */
+    int getLastColumn() {
+        int last = Integer.MIN_VALUE;
+        for (int idx = materialized.nextClearBit(0); idx < rowCount; idx = materialized.nextClearBit(idx+1)) {
+            for (int ci = rowCells[idx]; ci < rowCells[idx+1]; ci++) {
+                last = Math.max(last, cellCols[ci]);
+            }
+        }
+        return last;
+    }
+
+    private String getAttribute(int set, String name) {
+        String[] attrs = attributeSets.get(set);
+        for (int i=0; i<attrs.length; i+=4) {
+            if (attrs[i].isEmpty() && name.equals(attrs[i+2])) {
+                return attrs[i+3];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Fills the empty row bean with the attributes and cells of the pending row,
+     * which is removed from this store
+     */
+    void materialize(int idx, CTRow ctRow) {
+        final int rownum = rowNums[idx];
+        XmlCursor cur = ctRow.newCursor();
+        try {
+            cur.toNextToken();
+            cur.insertAttributeWithValue("r", Integer.toString(rownum + 1));
+            insertAttributes(cur, rowAttributes[idx]);
+        } finally {
+            cur.dispose();
+        }
+
+        for (int ci = rowCells[idx]; ci < rowCells[idx+1]; ci++) {
+            int flags = cellTypes[ci] & 0xFF;
+            if ((flags & RAW) != 0) {
+                appendXml(ctRow, cellTexts.remove(ci));
+                continue;
+            }
+            CTCell cell = ctRow.addNewC();
+            cell.setR(CellReference.convertNumToColString(cellCols[ci]) + (rownum + 1));
+            if (cellStyles[ci] >= 0) {
+                cell.setS(cellStyles[ci]);
+            }
+            if ((flags & TYPE_MASK) != 0) {
+                cell.setT(STCellType.Enum.forInt(flags & TYPE_MASK));
+            }
+            if ((flags & FORMULA) != 0) {
+                Formula formula = formulas.remove(ci);
+                CTCellFormula f = cell.addNewF();
+                cur = f.newCursor();
+                try {
+                    cur.toNextToken();
+                    insertAttributes(cur, formula.attributes);
+                } finally {
+                    cur.dispose();
+                }
+                if (!formula.text.isEmpty()) {
+                    f.setStringValue(formula.text);
+                }
+            }
+            int kind = (flags >> VALUE_SHIFT) & VALUE_MASK;
+            if (kind == VALUE_INLINE || kind == VALUE_INLINE_PRESERVE) {
+                cell.addNewIs().setT(cellTexts.get(ci));
+                if (kind == VALUE_INLINE_PRESERVE) {
+                    cur = cell.getIs().xgetT().newCursor();
+                    try {
+                        cur.toNextToken();
+                        cur.insertAttributeWithValue(new QName(XMLConstants.XML_NS_URI, "space", "xml"), "preserve");
+                    } finally {
+                        cur.dispose();
+                    }
+                }
+            } else {
+                String value = getValue(ci, flags);
+                if (value != null) {
+                    cell.setV(value);
+                }
+            }
+            if (kind >= VALUE_TEXT) {
+                cellTexts.remove(ci);
+            }
+        }
+
+        String extras = rowExtras.remove(idx);
+        if (extras != null) {
+            appendXml(ctRow, extras);
+        }
+
+        materialized.set(idx);
+        pendingRows--;
+    }
+
+    private void insertAttributes(XmlCursor cur, int set) {
+        String[] attrs = attributeSets.get(set);
+        for (int i=0; i<attrs.length; i+=4) {
+            cur.insertAttributeWithValue(new QName(attrs[i], attrs[i+2], attrs[i+1]), attrs[i+3]);
+        }
+    }
+
+    /**
+     * Appends the elements of the captured xml to the bean
+     */
+    private static void appendXml(XmlObject target, String xml) {
+        XmlObject fragment;
+        try {
+            fragment = XmlObject.Factory.parse("<xml-fragment>" + xml + "</xml-fragment>", DEFAULT_XML_OPTIONS);
+        } catch (XmlException e) {
+            throw new POIXMLException(e);
+        }
+        XmlCursor src = fragment.newCursor();
+        try {
+            if (src.toFirstChild()) {
+                do {
+                    XmlCursor dst = target.newCursor();
+                    dst.toEndToken();
+                    src.copyXml(dst);
+                    dst.dispose();
+                } while (src.toNextSibling());
+            }
+        } finally {
+            src.dispose();
+        }
+    }
+
+    /**
+     * Writes the saved worksheet, whose sheet data element contains the converted rows,
+     * merged with the pending rows in the order of the row numbers
+     */
+    void write(String worksheet, OutputStream out) throws IOException {
+        // the main namespace might be bound to a prefix, if the worksheet was read with a prefix
+        Matcher m = SHEET_DATA.matcher(worksheet);
+        if (!m.find()) {
+            throw new POIXMLException("sheetData element not found in the saved worksheet");
+        }
+        final int start = m.start();
+        final String closeSheetData = "</" + tagName(worksheet, start) + ">";
+        final int tagEnd = endOfTag(worksheet, start);
+        final boolean empty = (worksheet.charAt(tagEnd-1) == '/');
+        final int contentEnd = empty ? tagEnd : worksheet.indexOf(closeSheetData, tagEnd);
+        final int end = empty ? tagEnd+1 : contentEnd + closeSheetData.length();
+
+        // the converted rows as (row number, start, end) - XmlBeans keeps them in the insertion order
+        List<int[]> rows = new ArrayList<>();
+        for (int pos = worksheet.indexOf('<', tagEnd); pos != -1 && pos < contentEnd; pos = worksheet.indexOf('<', pos)) {
+            int rowTagEnd = endOfTag(worksheet, pos);
+            int rowEnd;
+            if (worksheet.charAt(rowTagEnd-1) == '/') {
+                rowEnd = rowTagEnd+1;
+            } else {
+                String closeTag = "</" + tagName(worksheet, pos) + ">";
+                rowEnd = worksheet.indexOf(closeTag, rowTagEnd) + closeTag.length();
+            }
+            String r = parseAttributes(worksheet, pos, rowTagEnd).get("r");
+            int rownum = (r != null) ? Integer.parseInt(r) - 1 : rows.isEmpty() ? 0 : rows.get(rows.size()-1)[0] + 1;
+            rows.add(new int[]{rownum, pos, rowEnd});
+            pos = rowEnd;
+        }
+        rows.sort(Comparator.comparingInt(r -> r[0]));
+
+        // the prefixes declared by the worksheet element don't need to be declared on the row elements
+        Map<String,String> namespaces = new HashMap<>();
+        int root = worksheet.indexOf('<');
+        while (root != -1 && !Character.isLetter(worksheet.charAt(root+1))) {
+            root = worksheet.indexOf('<', root+1);
+        }
+        for (Map.Entry<String,String> me : parseAttributes(worksheet, root, endOfTag(worksheet, root)).entrySet()) {
+            if (me.getKey().startsWith("xmlns:")) {
+                namespaces.put(me.getKey().substring(6), me.getValue());
+            } else if (me.getKey().equals("xmlns")) {
+                namespaces.put("", me.getValue());
+            }
+        }
+        final String rowStart = NS_SPREADSHEETML.equals(namespaces.get(""))
+            ? "<row r=\"" : "<row xmlns=\"" + NS_SPREADSHEETML + "\" r=\"";
+
+        // don't close the writer, as this would close the underlying stream
+        Writer w = new BufferedWriter(new OutputStreamWriter(out, UTF_8));
+        w.write(worksheet, 0, start);
+        w.write(worksheet, start, tagEnd-start-(empty ? 1 : 0));
+        w.write('>');
+        StringBuilder sb = new StringBuilder(1024);
+        int next = 0;
+        for (int idx = materialized.nextClearBit(0); idx < rowCount; idx = materialized.nextClearBit(idx+1)) {
+            for (; next < rows.size() && rows.get(next)[0] < rowNums[idx]; next++) {
+                int[] row = rows.get(next);
+                w.write(worksheet, row[1], row[2]-row[1]);
+            }
+            sb.setLength(0);
+            writeRow(idx, rowStart, sb, namespaces);
+            w.append(sb);
+        }
+        for (; next < rows.size(); next++) {
+            int[] row = rows.get(next);
+            w.write(worksheet, row[1], row[2]-row[1]);
+        }
+        w.write(closeSheetData);
+        w.write(worksheet, end, worksheet.length()-end);
+        w.flush();
+    }
+
+    private void writeRow(int idx, String rowStart, StringBuilder sb, Map<String,String> namespaces) {
+        final String rowRef = Integer.toString(rowNums[idx] + 1);
+        sb.append(rowStart).append(rowRef).append('"');
+        writeAttributes(rowAttributes[idx], sb, namespaces);
+        String extras = rowExtras.get(idx);
+        if (rowCells[idx] == rowCells[idx+1] && extras == null) {
+            sb.append("/>");
+            return;
+        }
+        sb.append('>');
+        for (int ci = rowCells[idx]; ci < rowCells[idx+1]; ci++) {
+            int flags = cellTypes[ci] & 0xFF;
+            if ((flags & RAW) != 0) {
+                sb.append(cellTexts.get(ci));
+                continue;
+            }
+            sb.append("<c r=\"").append(CellReference.convertNumToColString(cellCols[ci])).append(rowRef).append('"');
+            if (cellStyles[ci] >= 0) {
+                sb.append(" s=\"").append(cellStyles[ci]).append('"');
+            }
+            if ((flags & TYPE_MASK) != 0) {
+                sb.append(" t=\"").append(STCellType.Enum.forInt(flags & TYPE_MASK)).append('"');
+            }
+            String value = getValue(ci, flags);
+            int kind = (flags >> VALUE_SHIFT) & VALUE_MASK;
+            if (kind == VALUE_INLINE || kind == VALUE_INLINE_PRESERVE) {
+                sb.append(kind == VALUE_INLINE ? "><is><t>" : "><is><t xml:space=\"preserve\">");
+                escape(cellTexts.get(ci), sb, false);
+                sb.append("</t></is></c>");
+                continue;
+            }
+            if ((flags & FORMULA) == 0 && value == null) {
+                sb.append("/>");
+                continue;
+            }
+            sb.append('>');
+            if ((flags & FORMULA) != 0) {
+                Formula formula = formulas.get(ci);
+                sb.append("<f");
+                writeAttributes(formula.attributes, sb, namespaces);
+                if (formula.text.isEmpty()) {
+                    sb.append("/>");
+                } else {
+                    sb.append('>');
+                    escape(formula.text, sb, false);
+                    sb.append("</f>");
+                }
+            }
+            if (value != null) {
+                sb.append("<v>");
+                escape(value, sb, false);
+                sb.append("</v>");
+            }
+            sb.append("</c>");
+        }
+        if (extras != null) {
+            sb.append(extras);
+        }
+        sb.append("</row>");
+    }
+
+    private void writeAttributes(int set, StringBuilder sb, Map<String,String> namespaces) {
+        String[] attrs = attributeSets.get(set);
+        Set<String> declared = null;
+        for (int i=0; i<attrs.length; i+=4) {
+            String prefix = attrs[i+1];
+            // the xml prefix is bound by definition and must not be declared
+            if (prefix.isEmpty() || "xml".equals(prefix) || attrs[i].equals(namespaces.get(prefix))) {
+                continue;
+            }
+            if (declared == null) {
+                declared = new HashSet<>();
+            }
+            if (declared.add(prefix)) {
+                writeNamespace(prefix, attrs[i], sb);
+            }
+        }
+        for (int i=0; i<attrs.length; i+=4) {
+            sb.append(' ').append(qname(attrs[i+1], attrs[i+2])).append("=\"");
+            escape(attrs[i+3], sb, true);
+            sb.append('"');
+        }
+    }
+
+    /**
+     * @return the index of the closing bracket of the tag starting at pos
+     */
+    private static int endOfTag(String xml, int pos) {
+        char quote = 0;
+        for (int i = pos; i < xml.length(); i++) {
+            char c = xml.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '>') {
+                return i;
+            }
+        }
+        throw new POIXMLException("unterminated tag in the saved worksheet");
+    }
+
+    private static String tagName(String xml, int pos) {
+        int i = pos+1;
+        while (i < xml.length() && " \t\r\n/>".indexOf(xml.charAt(i)) == -1) {
+            i++;
+        }
+        return xml.substring(pos+1, i);
+    }
+
+    /**
+     * @return the attributes of the tag between start and end - the values aren't unescaped
+     */
+    private static Map<String,String> parseAttributes(String xml, int start, int end) {
+        Map<String,String> attrs = new HashMap<>();
+        int i = start + 1 + tagName(xml, start).length();
+        while (i < end) {
+            int eq = xml.indexOf('=', i);
+            if (eq == -1 || eq > end) {
+                break;
+            }
+            String name = xml.substring(i, eq).trim();
+            char quote = xml.charAt(eq+1);
+            int valueEnd = xml.indexOf(quote, eq+2);
+            attrs.put(name, xml.substring(eq+2, valueEnd));
+            i = valueEnd+1;
+        }
+        return attrs;
+    }
+
+    private static boolean isElement(XMLStreamReader reader, String localName) {
+        return localName.equals(reader.getLocalName()) && NS_SPREADSHEETML.equals(reader.getNamespaceURI());
+    }
+
+    private static boolean isEmpty(String str) {
+        return str == null || str.isEmpty();
+    }
+
+    private static String nonNull(String str) {
+        return (str == null) ? "" : str;
+    }
+
+    private static String qname(String prefix, String localName) {
+        return (prefix == null || prefix.isEmpty()) ? localName : prefix + ":" + localName;
+    }
+
+    private static void writeNamespace(String prefix, String ns, StringBuilder xml) {
+        xml.append(prefix.isEmpty() ? " xmlns" : " xmlns:" + prefix).append("=\"");
+        escape(ns, xml, true);
+        xml.append('"');
+    }
+
+    private static void escape(String str, StringBuilder sb, boolean attribute) {
+        for (int i=0; i<str.length(); i++) {
+            char c = str.charAt(i);
+            switch (c) {
+                case '<': sb.append("&lt;"); break;
+                case '>': sb.append("&gt;"); break;
+                case '&': sb.append("&amp;"); break;
+                case '"': sb.append(attribute ? "&quot;" : "\""); break;
+                case '\n': sb.append(attribute ? "&#xa;" : "\n"); break;
+                case '\r': sb.append("&#xd;"); break;
+                case '\t': sb.append(attribute ? "&#x9;" : "\t"); break;
+                default:
+                    // XmlBeans replaces ISO control characters and "not a character" symbols with question marks
+                    sb.append(c < ' ' || ('\uFFFE' <= c && c <= '\uFFFF') ? '?' : c);
+                    break;
+            }
+        }
+    }
+
+    private static final class Formula {
+        final int attributes;
+        final String text;
+
+        Formula(int attributes, String text) {
+            this.attributes = attributes;
+            this.text = text;
+        }
+    }
+
+    /**
+     * Serializes the events of an element, which is kept as xml - the namespaces of the used prefixes
+     * are declared, as they might have been declared by an enclosing element
+     */
+    private static final class Capture {
+        final StringBuilder xml = new StringBuilder(256);
+        // the declared namespaces as prefix/namespace pairs and the number of pairs per open element
+        private final List<String> bindings = new ArrayList<>();
+        private final IntList scopes = new IntList();
+        /** whether the last read cell contains a master formula */
+        boolean masterFormula;
+        /** whether the last read inline string preserves spaces */
+        boolean preserve;
+
+        void reset() {
+            xml.setLength(0);
+            bindings.clear();
+            scopes.clear();
+            masterFormula = false;
+            preserve = false;
+        }
+
+        void start(XMLStreamReader reader) {
+            scopes.add(bindings.size());
+            String prefix = nonNull(reader.getPrefix());
+            xml.append('<').append(qname(prefix, reader.getLocalName()));
+            declare(prefix, nonNull(reader.getNamespaceURI()));
+            for (int i=0; i<reader.getAttributeCount(); i++) {
+                String attrPrefix = nonNull(reader.getAttributePrefix(i));
+                if (!attrPrefix.isEmpty()) {
+                    declare(attrPrefix, nonNull(reader.getAttributeNamespace(i)));
+                }
+            }
+            for (int i=0; i<reader.getAttributeCount(); i++) {
+                xml.append(' ').append(qname(reader.getAttributePrefix(i), reader.getAttributeLocalName(i))).append("=\"");
+                escape(reader.getAttributeValue(i), xml, true);
+                xml.append('"');
+            }
+            xml.append('>');
+        }
+
+        void end(XMLStreamReader reader) {
+            xml.append("</").append(qname(reader.getPrefix(), reader.getLocalName())).append('>');
+            int size = scopes.remove(scopes.size()-1);
+            while (bindings.size() > size) {
+                bindings.remove(bindings.size()-1);
+            }
+        }
+
+        void text(XMLStreamReader reader) {
+            escape(reader.getText(), xml, false);
+        }
+
+        void other(XMLStreamReader reader) {
+            if (reader.getEventType() == XMLStreamConstants.COMMENT) {
+                xml.append("<!--").append(reader.getText()).append("-->");
+            } else {
+                String data = reader.getPIData();
+                xml.append("<?").append(reader.getPITarget()).append(isEmpty(data) ? "" : " " + data).append("?>");
+            }
+        }
+
+        private void declare(String prefix, String ns) {
+            // the xml prefix is bound by definition and must not be declared
+            if ("xml".equals(prefix)) {
+                return;
+            }
+            for (int i = bindings.size()-2; i >= 0; i -= 2) {
+                if (bindings.get(i).equals(prefix)) {
+                    if (bindings.get(i+1).equals(ns)) {
+                        return;
+                    }
+                    break;
+                }
+            }
+            bindings.add(prefix);
+            bindings.add(ns);
+            writeNamespace(prefix, ns, xml);
+        }
+    }
+
+    /**
+     * Hands the worksheet over to XmlBeans, but reads the rows of the sheet data into this store
+     */
+    private final class RowDiverter extends StreamReaderDelegate {
+        private boolean inSheetData;
+
+        RowDiverter(XMLStreamReader reader) {
+            super(reader);
+        }
+
+        @Override
+        public int next() throws XMLStreamException {
+            int event = super.next();
+            if (inSheetData) {
+                while (event == START_ELEMENT && isElement(getParent(), "row")) {
+                    readRow(getParent());
+                    event = super.next();
+                }
+                inSheetData = !(event == END_ELEMENT && isElement(getParent(), "sheetData"));
+            } else {
+                inSheetData = (event == START_ELEMENT && isElement(getParent(), "sheetData"));
+            }
+            return event;
+        }
+    }
+
+    private static final class CompactFactory extends XSSFFactory {
+        private final XSSFFactory factory;
+
+        CompactFactory(XSSFFactory factory) {
+            this.factory = factory;
+        }
+
+        @Override
+        protected POIXMLRelation getDescriptor(String relationshipType) {
+            return factory.getDescriptor(relationshipType);
+        }
+
+        @Override
+        protected POIXMLDocumentPart createDocumentPart(Class<? extends POIXMLDocumentPart> cls, Class<?>[] classes, Object[] values)
+        throws SecurityException, NoSuchMethodException, InstantiationException, IllegalAccessException, InvocationTargetException {
+            POIXMLDocumentPart part = factory.createDocumentPart(cls, classes, values);
+            if (part instanceof XSSFSheet) {
+                ((XSSFSheet)part).useCompactSheetData();
+            }
+            return part;
+        }
+    }
+}
@@ -17,20 +17,44 @@
 
 package org.apache.poi.xssf.usermodel;
 
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.apache.poi.ss.SpreadsheetVersion;
 import org.apache.poi.ss.formula.EvaluationCell;
 import org.apache.poi.ss.formula.EvaluationSheet;
 import org.apache.poi.ss.formula.FormulaParser;
 import org.apache.poi.ss.formula.FormulaType;
+import org.apache.poi.ss.formula.SharedFormula;
+import org.apache.poi.ss.formula.ptg.OperandPtg;
 import org.apache.poi.ss.formula.ptg.Ptg;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.util.CellRangeAddress;
 import org.apache.poi.util.Internal;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTCellFormula;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.STCellFormulaType;
 
 /**
  * Internal POI use only
  */
 @Internal
 public final class XSSFEvaluationWorkbook extends BaseXSSFEvaluationWorkbook {
+    private static final SharedFormula SHARED_FORMULA = new SharedFormula(SpreadsheetVersion.EXCEL2007);
+
     private XSSFEvaluationSheet[] _sheetCache;
-    
+
+    /**
+     * Parsed formulas by cell. The entries are validated against the formula text and the
+     * position of the cell, so changed, moved or renamed formulas are parsed again.
+     */
+    private final Map<XSSFCell, FormulaTokens> _formulaCache = new IdentityHashMap<>();
+    /** Parsed formulas of shared formula groups, keyed by the formula of the master cell */
+    private final Map<CTCellFormula, FormulaTokens> _sharedFormulaCache = new IdentityHashMap<>();
+    /** the number of names, when the formulas were cached - name tokens refer to names by index */
+    private int _numberOfNames = -1;
+    /** the number of sheets, when the formulas were cached - removed sheets drop their entries */
+    private int _numberOfSheets = -1;
+
     public static XSSFEvaluationWorkbook create(XSSFWorkbook book) {
         if (book == null) {
             return null;
@@ -49,8 +73,25 @@ public final class XSSFEvaluationWorkbook extends BaseXSSFEvaluationWorkbook {
     public void clearAllCachedResultValues() {
         super.clearAllCachedResultValues();
         _sheetCache = null;
+        _formulaCache.clear();
+        _sharedFormulaCache.clear();
     }
     
+    /**
+     * Drops the parsed formula of the cell, e.g. when the cell was removed or its formula was set.
+     * If the cell is the master cell of a shared formula, the parsed shared formula is dropped too.
+     */
+    /* package */ void notifyFormulaChanged(XSSFCell cell) {
+        _formulaCache.remove(cell);
+        if (_sharedFormulaCache.isEmpty()) {
+            return;
+        }
+        final CTCellFormula f = cell.getCTCell().getF();
+        if (f != null && f.getT() == STCellFormulaType.SHARED && f.isSetRef()) {
+            _sharedFormulaCache.remove(f);
+        }
+    }
+
     @Override
     public int getSheetIndex(EvaluationSheet evalSheet) {
         XSSFSheet sheet = ((XSSFEvaluationSheet)evalSheet).getXSSFSheet();
@@ -77,11 +118,105 @@ public final class XSSFEvaluationWorkbook extends BaseXSSFEvaluationWorkbook {
         return _sheetCache[sheetIndex];
     }
 
-    @Override    
+    /**
+     * Returns the parsed formula of the cell. The tokens are parsed once per cell and formula text
+     * and a copy of the cached tokens is returned, so callers may modify the returned tokens.
+     */
+    @Override
     public Ptg[] getFormulaTokens(EvaluationCell evalCell) {
         final XSSFCell cell = ((XSSFEvaluationCell)evalCell).getXSSFCell();
         final int sheetIndex = _uBook.getSheetIndex(cell.getSheet());
         final int rowIndex = cell.getRowIndex();
+
+        final int numberOfNames = _uBook.getNumberOfNames();
+        final int numberOfSheets = _uBook.getNumberOfSheets();
+        if (numberOfNames != _numberOfNames || numberOfSheets != _numberOfSheets) {
+            _formulaCache.clear();
+            _sharedFormulaCache.clear();
+            _numberOfNames = numberOfNames;
+            _numberOfSheets = numberOfSheets;
+        }
+
+        final CTCellFormula f = (cell.getCellType() == CellType.FORMULA) ? cell.getCTCell().getF() : null;
+        if (f != null && f.getT() == STCellFormulaType.SHARED) {
+            Ptg[] ptgs = getSharedFormulaTokens(cell, (int)f.getSi(), sheetIndex);
+            if (ptgs != null) {
+                return ptgs;
+            }
+        } else if (f != null && !f.getStringValue().isEmpty()) {
+            final String formula = f.getStringValue();
+            FormulaTokens ft = _formulaCache.get(cell);
+            if (ft == null || !ft.isValid(formula, null, sheetIndex, rowIndex)) {
+                ft = new FormulaTokens(formula, null, sheetIndex, rowIndex,
+                    FormulaParser.parse(formula, this, FormulaType.CELL, sheetIndex, rowIndex));
+                _formulaCache.put(cell, ft);
+            }
+            return copyOf(ft._ptgs);
+        }
+
+        // slave cells of array formulas are resolved via their master cell
         return FormulaParser.parse(cell.getCellFormula(this), this, FormulaType.CELL, sheetIndex, rowIndex);
     }
+
+    /**
+     * Shifts the parsed formula of the shared formula group to the cell, instead of parsing
+     * the shifted formula string. The shifted tokens are new instances.
+     *
+     * @return the tokens or {@code null}, if the shared formula can't be cached
+     */
+    private Ptg[] getSharedFormulaTokens(XSSFCell cell, int si, int sheetIndex) {
+        final CTCellFormula sf = cell.getSheet().getSharedFormula(si);
+        if (sf == null) {
+            return null;
+        }
+        final String formula = sf.getStringValue();
+        final String ref = sf.getRef();
+        // structured references like [#This Row] depend on the row the formula is parsed for
+        if (formula == null || ref == null || formula.indexOf('[') >= 0) {
+            return null;
+        }
+
+        final CellRangeAddress range = CellRangeAddress.valueOf(ref);
+        FormulaTokens ft = _sharedFormulaCache.get(sf);
+        if (ft == null || !ft.isValid(formula, ref, sheetIndex, range.getFirstRow())) {
+            ft = new FormulaTokens(formula, ref, sheetIndex, range.getFirstRow(),
+                FormulaParser.parse(formula, this, FormulaType.CELL, sheetIndex, range.getFirstRow()));
+            _sharedFormulaCache.put(sf, ft);
+        }
+        return SHARED_FORMULA.convertSharedFormulas(ft._ptgs,
+            cell.getRowIndex() - range.getFirstRow(), cell.getColumnIndex() - range.getFirstColumn());
+    }
+
+    /**
+     * Operand tokens are mutable, so the cached tokens are copied - all other tokens are
+     * immutable and can be shared, as in {@link SharedFormula#convertSharedFormulas(Ptg[], int, int)}
+     */
+    private static Ptg[] copyOf(Ptg[] ptgs) {
+        final Ptg[] copy = new Ptg[ptgs.length];
+        for (int i=0; i<ptgs.length; i++) {
+            copy[i] = (ptgs[i] instanceof OperandPtg) ? ((OperandPtg)ptgs[i]).copy() : ptgs[i];
+        }
+        return copy;
+    }
+
+    private static final class FormulaTokens {
+        private final String _formula;
+        private final String _ref;
+        private final int _sheetIndex;
+        private final int _rowIndex;
+        private final Ptg[] _ptgs;
+
+        FormulaTokens(String formula, String ref, int sheetIndex, int rowIndex, Ptg[] ptgs) {
+            _formula = formula;
+            _ref = ref;
+            _sheetIndex = sheetIndex;
+            _rowIndex = rowIndex;
+            _ptgs = ptgs;
+        }
+
+        boolean isValid(String formula, String ref, int sheetIndex, int rowIndex) {
+            return _sheetIndex == sheetIndex && _rowIndex == rowIndex
+                && _formula.equals(formula) && (_ref == null ? ref == null : _ref.equals(ref));
+        }
+    }
 }
@@ -66,6 +66,7 @@ public class XSSFFont implements Font {
     private ThemesTable _themes;
     private CTFont _ctFont;
     private int _index;
+    private Runnable _changeListener;
 
     /**
      * Create a new XSSFFont
@@ -305,6 +306,7 @@ public class XSSFFont implements Font {
         } else {
             _ctFont.setBArray(null);
         }
+        changed();
     }
 
     /**
@@ -347,6 +349,7 @@ public class XSSFFont implements Font {
        // We know that FontCharset only has valid entries in it,
        //  so we can just set the int value from it
        charsetProperty.setVal( charSet.getValue() );
+        changed();
     }
 
     /**
@@ -370,6 +373,7 @@ public class XSSFFont implements Font {
             default:
                 ctColor.setIndexed(color);
         }
+        changed();
     }
 
     /**
@@ -386,6 +390,7 @@ public class XSSFFont implements Font {
             }
             ctColor.setRgb(color.getRGB());
         }
+        changed();
     }
 
     /**
@@ -405,6 +410,7 @@ public class XSSFFont implements Font {
     public void setFontHeight(double height) {
         CTFontSize fontSize = _ctFont.sizeOfSzArray() == 0 ? _ctFont.addNewSz() : _ctFont.getSzArray(0);
         fontSize.setVal(height);
+        changed();
     }
 
     /**
@@ -424,6 +430,7 @@ public class XSSFFont implements Font {
     public void setThemeColor(short theme) {
         CTColor ctColor = _ctFont.sizeOfColorArray() == 0 ? _ctFont.addNewColor() : _ctFont.getColorArray(0);
         ctColor.setTheme(theme);
+        changed();
     }
 
     /**
@@ -440,6 +447,7 @@ public class XSSFFont implements Font {
     public void setFontName(String name) {
         CTFontName fontName = _ctFont.sizeOfNameArray() == 0 ? _ctFont.addNewName() : _ctFont.getNameArray(0);
         fontName.setVal(name == null ? DEFAULT_FONT_NAME : name);
+        changed();
     }
 
 
@@ -456,6 +464,7 @@ public class XSSFFont implements Font {
         } else {
             _ctFont.setIArray(null);
         }
+        changed();
     }
 
 
@@ -472,6 +481,7 @@ public class XSSFFont implements Font {
         } else {
             _ctFont.setStrikeArray(null);
         }
+        changed();
     }
 
     /**
@@ -503,6 +513,7 @@ public class XSSFFont implements Font {
                     throw new IllegalStateException("Invalid type offset: " + offset);
             }
         }
+        changed();
     }
 
     /**
@@ -531,6 +542,7 @@ public class XSSFFont implements Font {
             STUnderlineValues.Enum val = STUnderlineValues.Enum.forInt(underline.getValue());
             ctUnderline.setVal(val);
         }
+        changed();
     }
 
 
@@ -563,6 +575,25 @@ public class XSSFFont implements Font {
        this._themes = themes;
     }
 
+    /**
+     * Sets the listener, which is notified when this font is changed by its setters.
+     * The styles table uses it to keep its index of the fonts up-to-date.
+     *
+     * @param listener the listener or <code>null</code>
+     *
+     * @since POI 4.1.1
+     */
+    @Internal
+    public void setChangeListener(Runnable listener) {
+        _changeListener = listener;
+    }
+
+    private void changed() {
+        if (_changeListener != null) {
+            _changeListener.run();
+        }
+    }
+
     /**
      * get the font scheme property.
      * is used only in StylesTable to create the default instance of font
@@ -586,6 +617,7 @@ public class XSSFFont implements Font {
         CTFontScheme ctFontScheme = _ctFont.sizeOfSchemeArray() == 0 ? _ctFont.addNewScheme() : _ctFont.getSchemeArray(0);
         STFontScheme.Enum val = STFontScheme.Enum.forInt(scheme.getValue());
         ctFontScheme.setVal(val);
+        changed();
     }
 
     /**
@@ -610,6 +642,7 @@ public class XSSFFont implements Font {
     public void setFamily(int value) {
         CTIntProperty family = _ctFont.sizeOfFamilyArray() == 0 ? _ctFont.addNewFamily() : _ctFont.getFamilyArray(0);
         family.setVal(value);
+        changed();
     }
 
     /**
@@ -636,7 +669,10 @@ public class XSSFFont implements Font {
     }
 
     public int hashCode(){
-        return _ctFont.toString().hashCode();
+        // needs to be consistent with equals, i.e. based on the same properties
+        return Objects.hash(getItalic(), getBold(), getStrikeout(), getCharSet(), getColor(), getFamily(),
+                getFontHeight(), getFontName(), getScheme(), getThemeColor(), getTypeOffset(), getUnderline(),
+                getXSSFColor());
     }
 
     public boolean equals(Object o){
@@ -33,12 +33,19 @@ import org.apache.poi.ss.usermodel.Cell;
  */
 public final class XSSFFormulaEvaluator extends BaseXSSFFormulaEvaluator {
     private XSSFWorkbook _book;
+    // the evaluation workbook caching the parsed formulas, if it was created by this evaluator
+    private XSSFEvaluationWorkbook _evaluationWorkbook;
 
     public XSSFFormulaEvaluator(XSSFWorkbook workbook) {
         this(workbook, null, null);
     }
     private XSSFFormulaEvaluator(XSSFWorkbook workbook, IStabilityClassifier stabilityClassifier, UDFFinder udfFinder) {
-        this(workbook, new WorkbookEvaluator(XSSFEvaluationWorkbook.create(workbook), stabilityClassifier, udfFinder));
+        this(workbook, XSSFEvaluationWorkbook.create(workbook), stabilityClassifier, udfFinder);
+    }
+    private XSSFFormulaEvaluator(XSSFWorkbook workbook, XSSFEvaluationWorkbook evaluationWorkbook,
+            IStabilityClassifier stabilityClassifier, UDFFinder udfFinder) {
+        this(workbook, new WorkbookEvaluator(evaluationWorkbook, stabilityClassifier, udfFinder));
+        _evaluationWorkbook = evaluationWorkbook;
     }
     protected XSSFFormulaEvaluator(XSSFWorkbook workbook, WorkbookEvaluator bookEvaluator) {
         super(bookEvaluator);
@@ -56,15 +63,24 @@ public final class XSSFFormulaEvaluator extends BaseXSSFFormulaEvaluator {
     }
 
     public void notifySetFormula(Cell cell) {
+        notifyFormulaChanged(cell);
         _bookEvaluator.notifyUpdateCell(new XSSFEvaluationCell((XSSFCell)cell));
     }
     public void notifyDeleteCell(Cell cell) {
+        notifyFormulaChanged(cell);
         _bookEvaluator.notifyDeleteCell(new XSSFEvaluationCell((XSSFCell)cell));
     }
     public void notifyUpdateCell(Cell cell) {
+        notifyFormulaChanged(cell);
         _bookEvaluator.notifyUpdateCell(new XSSFEvaluationCell((XSSFCell)cell));
     }
 
+    private void notifyFormulaChanged(Cell cell) {
+        if (_evaluationWorkbook != null) {
+            _evaluationWorkbook.notifyFormulaChanged((XSSFCell)cell);
+        }
+    }
+
     /**
      * Loops over all cells in all sheets of the supplied
      *  workbook.
@@ -111,4 +127,9 @@ public final class XSSFFormulaEvaluator extends BaseXSSFFormulaEvaluator {
 
         return new XSSFEvaluationCell((XSSFCell)cell);
     }
+
+    @Override
+    protected Cell toCell(EvaluationCell evalCell) {
+        return ((XSSFEvaluationCell)evalCell).getXSSFCell();
+    }
 }
@@ -20,7 +20,6 @@ package org.apache.poi.xssf.usermodel;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
-import java.util.TreeMap;
 
 import org.apache.poi.ss.SpreadsheetVersion;
 import org.apache.poi.ss.formula.FormulaShifter;
@@ -33,6 +32,7 @@ import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.helpers.RowShifter;
 import org.apache.poi.ss.util.CellRangeAddress;
 import org.apache.poi.util.Beta;
+import org.apache.poi.util.IntSortedMap;
 import org.apache.poi.util.Internal;
 import org.apache.poi.xssf.model.StylesTable;
 import org.apache.poi.xssf.usermodel.helpers.XSSFRowShifter;
@@ -52,9 +52,9 @@ public class XSSFRow implements Row, Comparable<XSSFRow> {
 
     /**
      * Cells of this row keyed by their column indexes.
-     * The TreeMap ensures that the cells are ordered by columnIndex in the ascending order.
+     * The IntSortedMap ensures that the cells are ordered by columnIndex in the ascending order.
      */
-    private final TreeMap<Integer, XSSFCell> _cells;
+    private final IntSortedMap<XSSFCell> _cells;
 
     /**
      * the parent sheet
@@ -70,12 +70,11 @@ public class XSSFRow implements Row, Comparable<XSSFRow> {
     protected XSSFRow(CTRow row, XSSFSheet sheet) {
         _row = row;
         _sheet = sheet;
-        _cells = new TreeMap<>();
-        for (CTCell c : row.getCArray()) {
+        final CTCell[] cArray = row.getCArray();
+        _cells = new IntSortedMap<>(cArray.length);
+        for (CTCell c : cArray) {
             XSSFCell cell = new XSSFCell(this, c);
-            // Performance optimization for bug 57840: explicit boxing is slightly faster than auto-unboxing, though may use more memory
-            final Integer colI = Integer.valueOf(cell.getColumnIndex()); // NOSONAR
-            _cells.put(colI, cell);
+            _cells.put(cell.getColumnIndex(), cell);
             sheet.onReadCell(cell);
         }
 
@@ -209,10 +208,8 @@ public class XSSFRow implements Row, Comparable<XSSFRow> {
      */
     @Override
     public XSSFCell createCell(int columnIndex, CellType type) {
-        // Performance optimization for bug 57840: explicit boxing is slightly faster than auto-unboxing, though may use more memory
-        final Integer colI = Integer.valueOf(columnIndex); // NOSONAR
         CTCell ctCell;
-        XSSFCell prev = _cells.get(colI);
+        XSSFCell prev = _cells.get(columnIndex);
         if(prev != null){
             ctCell = prev.getCTCell();
             ctCell.set(CTCell.Factory.newInstance());
@@ -225,7 +222,7 @@ public class XSSFRow implements Row, Comparable<XSSFRow> {
             setDefaultValue(xcell, type);
         }
 
-        _cells.put(colI, xcell);
+        _cells.put(columnIndex, xcell);
         return xcell;
     }
 
@@ -271,9 +268,7 @@ public class XSSFRow implements Row, Comparable<XSSFRow> {
             throw new IllegalArgumentException("Cell index must be >= 0");
         }
 
-        // Performance optimization for bug 57840: explicit boxing is slightly faster than auto-unboxing, though may use more memory
-        final Integer colI = Integer.valueOf(cellnum); // NOSONAR
-        XSSFCell cell = _cells.get(colI);
+        XSSFCell cell = _cells.get(cellnum);
         switch (policy) {
             case RETURN_NULL_AND_BLANK:
                 return cell;
@@ -507,9 +502,7 @@ public class XSSFRow implements Row, Comparable<XSSFRow> {
         if(cell.getCellType() == CellType.FORMULA) {
            _sheet.getWorkbook().onDeleteFormula(xcell);
         }
-        // Performance optimization for bug 57840: explicit boxing is slightly faster than auto-unboxing, though may use more memory
-        final Integer colI = Integer.valueOf(cell.getColumnIndex()); // NOSONAR
-        _cells.remove(colI);
+        _cells.remove(cell.getColumnIndex());
     }
 
     /**
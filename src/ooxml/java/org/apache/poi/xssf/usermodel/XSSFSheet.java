@@ -21,6 +21,7 @@ import static org.apache.poi.ooxml.POIXMLTypeLoader.DEFAULT_XML_OPTIONS;
 import static org.apache.poi.xssf.usermodel.helpers.XSSFPasswordHelper.setPassword;
 import static org.apache.poi.xssf.usermodel.helpers.XSSFPasswordHelper.validatePassword;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -76,6 +77,7 @@ import org.apache.poi.ss.util.PaneInformation;
 import org.apache.poi.ss.util.SSCellRange;
 import org.apache.poi.ss.util.SheetUtil;
 import org.apache.poi.util.Beta;
+import org.apache.poi.util.IntSortedMap;
 import org.apache.poi.util.Internal;
 import org.apache.poi.util.POILogFactory;
 import org.apache.poi.util.POILogger;
@@ -124,6 +126,7 @@ import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTSheet;
 import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTSheetCalcPr;
 import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTSheetFormatPr;
 import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTSheetPr;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTSheetData;
 import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTSheetProtection;
 import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTSheetView;
 import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTSheetViews;
@@ -162,10 +165,20 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet  {
     protected CTSheet sheet;
     protected CTWorksheet worksheet;
 
-    private final SortedMap<Integer, XSSFRow> _rows = new TreeMap<>();
+    private final IntSortedMap<XSSFRow> _rows = new IntSortedMap<>();
     private List<XSSFHyperlink> hyperlinks;
     private ColumnHelper columnHelper;
     private CommentsTable sheetComments;
+    /**
+     * whether the worksheet wasn't parsed yet, because the workbook loads its sheets lazily
+     */
+    private volatile boolean readDeferred;
+    /** whether the deferred worksheet is being parsed - guarded by this sheet */
+    private boolean readInProgress;
+    /** whether the rows are read into a compact store, see {@link XSSFCompactSheetData#factory(XSSFFactory)} */
+    private boolean readCompact;
+    /** the rows, which weren't accessed yet - {@code null} if there are no pending rows */
+    private XSSFCompactSheetData compactData;
     /**
      * cache of master shared formulas in this sheet.
      * Master shared formula is the first formula in a group of shared formulas is saved in the f element.
@@ -221,14 +234,61 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet  {
         }
     }
 
+    /**
+     * Defers the reading of the worksheet data until {@link #ensureRead()} is called
+     */
+    void deferRead() {
+        readDeferred = true;
+    }
+
+    /**
+     * Reads the worksheet data, if it was deferred by a lazily loaded workbook.
+     * The sheet is parsed once, even if several threads access it concurrently -
+     * they wait until it is read. Calls while reading, e.g. from the sheet itself, return immediately.
+     */
+    void ensureRead() {
+        if (readDeferred) {
+            synchronized (this) {
+                if (readDeferred && !readInProgress) {
+                    readInProgress = true;
+                    try {
+                        onDocumentRead();
+                        readDeferred = false;
+                    } finally {
+                        readInProgress = false;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the rows into a compact store, which converts them on demand
+     */
+    void useCompactSheetData() {
+        readCompact = true;
+    }
+
     protected void read(InputStream is) throws IOException {
         try {
-            worksheet = WorksheetDocument.Factory.parse(is, DEFAULT_XML_OPTIONS).getWorksheet();
+            if (readCompact) {
+                compactData = new XSSFCompactSheetData();
+                worksheet = compactData.read(is);
+            } else {
+                worksheet = WorksheetDocument.Factory.parse(is, DEFAULT_XML_OPTIONS).getWorksheet();
+            }
         } catch (XmlException e){
             throw new POIXMLException(e);
         }
 
         initRows(worksheet);
+        if (compactData != null) {
+            // the shared and array formulas are registered when their rows are read
+            materializeRows(compactData, compactData.getInitialRows());
+            if (compactData != null && compactData.getPendingRowCount() == 0) {
+                compactData = null;
+            }
+        }
         columnHelper = new ColumnHelper(worksheet);
         // Look for bits we're interested in
         for(RelationPart rp : getRelationParts()){
@@ -240,7 +300,8 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet  {
                 tables.put( rp.getRelationship().getId(), (XSSFTable)p );
             }
             if(p instanceof XSSFPivotTable) {
-                getWorkbook().getPivotTables().add((XSSFPivotTable) p);
+                // the pivot tables of the other sheets aren't needed, so they are not read
+                getWorkbook().registerPivotTable((XSSFPivotTable) p);
             }
         }
 
@@ -266,12 +327,43 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet  {
         arrayFormulas = new ArrayList<>();
         for (CTRow row : worksheetParam.getSheetData().getRowArray()) {
             XSSFRow r = new XSSFRow(row, this);
-            // Performance optimization: explicit boxing is slightly faster than auto-unboxing, though may use more memory
-            final Integer rownumI = Integer.valueOf(r.getRowNum()); // NOSONAR
-            _rows.put(rownumI, r);
+            _rows.put(r.getRowNum(), r);
         }
     }
 
+    /**
+     * Converts the pending rows with the given indexes of the compact store
+     */
+    private void materializeRows(XSSFCompactSheetData data, int[] rows) {
+        for (int idx : rows) {
+            materializeRow(data, idx);
+        }
+    }
+
+    /**
+     * Converts the pending rows between startRowNum and endRowNum, inclusive
+     */
+    private void materializeRows(int startRowNum, int endRowNum) {
+        if (compactData != null) {
+            materializeRows(compactData, compactData.getPendingRows(startRowNum, endRowNum));
+        }
+    }
+
+    private XSSFRow materializeRow(XSSFCompactSheetData data, int idx) {
+        int rownum = data.getRowNum(idx);
+        // the rows of the sheet data are in the same order as the row index
+        int pos = _rows.headSize(rownum);
+        CTSheetData sheetData = worksheet.getSheetData();
+        CTRow ctRow = (pos == sheetData.sizeOfRowArray()) ? sheetData.addNewRow() : sheetData.insertNewRow(pos);
+        data.materialize(idx, ctRow);
+        XSSFRow row = new XSSFRow(ctRow, this);
+        _rows.put(rownum, row);
+        if (data.getPendingRowCount() == 0) {
+            compactData = null;
+        }
+        return row;
+    }
+
     /**
      * Read hyperlink relations, link them with CTHyperlink beans in this worksheet
      * and initialize the internal array of XSSFHyperlink objects
@@ -755,10 +847,8 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet  {
      */
     @Override
     public XSSFRow createRow(int rownum) {
-        // Performance optimization: explicit boxing is slightly faster than auto-unboxing, though may use more memory
-        final Integer rownumI = Integer.valueOf(rownum); // NOSONAR
         CTRow ctRow;
-        XSSFRow prev = _rows.get(rownumI);
+        XSSFRow prev = getRow(rownum);
         if(prev != null){
             // the Cells in an existing row are invalidated on-purpose, in order to clean up correctly, we
             // need to call the remove, so things like ArrayFormulas and CalculationChain updates are done 
@@ -778,13 +868,13 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet  {
             } else {
                 // get number of rows where row index < rownum
                 // --> this tells us where our row should go
-                int idx = _rows.headMap(rownumI).size();
+                int idx = _rows.headSize(rownum);
                 ctRow = worksheet.getSheetData().insertNewRow(idx);
             }
         }
         XSSFRow r = new XSSFRow(ctRow, this);
         r.setRowNum(rownum);
-        _rows.put(rownumI, r);
+        _rows.put(rownum, r);
         return r;
     }
 
@@ -1096,6 +1186,10 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet  {
      */
     @Override
     public int getFirstRowNum() {
+        if (compactData != null) {
+            int first = compactData.getFirstRowNum();
+            return _rows.isEmpty() ? first : Math.min(first, _rows.firstKey());
+        }
         return _rows.isEmpty() ? 0 : _rows.firstKey();
     }
 
@@ -1214,10 +1308,11 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet  {
 
     @Override
     public int getLastRowNum() {
-        // _rows.getLastKey() (O(logN)) or caching last row (O(1))?
-        // A test with 1_000_000 rows shows that querying getLastRowNum with lastKey() implementation takes ~40 ms,
-        // and ~1.2 ms with cached implementation. 40 ms is negligible compared to the time of evaluation a million
-        // cells, and the lastKey implementation is much more elegant and less error prone than caching.
+        // lastKey() is O(1), as the row index keeps its keys in a sorted array
+        if (compactData != null) {
+            int last = compactData.getLastRowNum();
+            return _rows.isEmpty() ? last : Math.max(last, _rows.lastKey());
+        }
         return _rows.isEmpty() ? 0 : _rows.lastKey();
     }
 
@@ -1398,7 +1493,7 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet  {
      */
     @Override
     public int getPhysicalNumberOfRows() {
-        return _rows.size();
+        return _rows.size() + (compactData == null ? 0 : compactData.getPendingRowCount());
     }
 
     /**
@@ -1476,9 +1571,14 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet  {
      */
     @Override
     public XSSFRow getRow(int rownum) {
-        // Performance optimization: explicit boxing is slightly faster than auto-unboxing, though may use more memory
-        final Integer rownumI = Integer.valueOf(rownum); // NOSONAR
-        return _rows.get(rownumI);
+        XSSFRow row = _rows.get(rownum);
+        if (row == null && compactData != null) {
+            int idx = compactData.indexOf(rownum);
+            if (idx != -1) {
+                row = materializeRow(compactData, idx);
+            }
+        }
+        return row;
     }
 
     /**
@@ -1508,11 +1608,8 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet  {
             }
         }
         else {
-            // Performance optimization: explicit boxing is slightly faster than auto-unboxing, though may use more memory
-            final Integer startI = Integer.valueOf(startRowNum); // NOSONAR
-            final Integer endI = Integer.valueOf(endRowNum+1); // NOSONAR
-            final Collection<XSSFRow> inclusive = _rows.subMap(startI, endI).values();
-            rows.addAll(inclusive);
+            materializeRows(startRowNum, endRowNum);
+            rows.addAll(_rows.subValues(startRowNum, endRowNum+1));
         }
         return rows;
     }
@@ -1729,6 +1826,9 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet  {
         for (XSSFRow xrow : _rows.values()) {
             outlineLevel = Math.max(outlineLevel, xrow.getCTRow().getOutlineLevel());
         }
+        if (compactData != null) {
+            outlineLevel = Math.max(outlineLevel, compactData.getMaxOutlineLevel());
+        }
         return (short) outlineLevel;
     }
 
@@ -2017,12 +2117,10 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet  {
             row.removeCell(cell);
         }
 
-        // Performance optimization: explicit boxing is slightly faster than auto-unboxing, though may use more memory
         final int rowNum = row.getRowNum();
-        final Integer rowNumI = Integer.valueOf(rowNum); // NOSONAR
         // this is not the physical row number!
-        final int idx = _rows.headMap(rowNumI).size();
-        _rows.remove(rowNumI);
+        final int idx = _rows.headSize(rowNum);
+        _rows.remove(rowNum);
         worksheet.getSheetData().removeRow(idx);
 
         // also remove any comment located in that row
@@ -2106,6 +2204,7 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet  {
     @Override
     @SuppressWarnings("unchecked")
     public Iterator<Row> rowIterator() {
+        materializeRows(0, Integer.MAX_VALUE);
         return (Iterator<Row>)(Iterator<? extends Row>) _rows.values().iterator();
     }
 
@@ -3017,6 +3116,8 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet  {
      */
     @Override
     public void shiftRows(int startRow, int endRow, final int n, boolean copyRowHeight, boolean resetOriginalRowHeight) {
+        // the row beans are shifted in place
+        materializeRows(0, Integer.MAX_VALUE);
         XSSFVMLDrawing vml = getVMLDrawing(false);
 
         int sheetIndex = getWorkbook().getSheetIndex(this);
@@ -3047,6 +3148,8 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet  {
      */
     @Override
     public void shiftColumns(int startColumn, int endColumn, final int n) {
+        // the cell beans are shifted in place
+        materializeRows(0, Integer.MAX_VALUE);
         XSSFVMLDrawing vml = getVMLDrawing(false);
         shiftCommentsForColumns(vml, startColumn, endColumn, n);
         FormulaShifter formulaShifter = FormulaShifter.createForColumnShift(this.getWorkbook().getSheetIndex(this), this.getSheetName(), startColumn, endColumn, n, SpreadsheetVersion.EXCEL2007);
@@ -3066,9 +3169,7 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet  {
         List<XSSFRow> rowList = new ArrayList<>(_rows.values());
         _rows.clear();
         for(XSSFRow r : rowList) {
-            // Performance optimization: explicit boxing is slightly faster than auto-unboxing, though may use more memory
-            final Integer rownumI = new Integer(r.getRowNum()); // NOSONAR
-            _rows.put(rownumI, r);
+            _rows.put(r.getRowNum(), r);
         }
     }
 
@@ -3081,9 +3182,7 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet  {
             // check if we should remove this row as it will be overwritten by the data later
             if (shouldRemoveRow(startRow, endRow, n, rownum)) {
                 // remove row from worksheet.getSheetData row array
-                // Performance optimization: explicit boxing is slightly faster than auto-unboxing, though may use more memory
-                final Integer rownumI = Integer.valueOf(row.getRowNum()); // NOSONAR
-                int idx = _rows.headMap(rownumI).size();
+                int idx = _rows.headSize(rownum);
                 worksheet.getSheetData().removeRow(idx);
 
                 // remove row from _rows
@@ -3570,14 +3669,37 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet  {
         }
     }
 
+    @Override
+    protected void prepareForCommit() {
+        // the part of a sheet, which wasn't read, still contains the unchanged worksheet
+        if (!readDeferred) {
+            super.prepareForCommit();
+        }
+    }
+
     @Override
     protected void commit() throws IOException {
+        if (readDeferred) {
+            return;
+        }
         PackagePart part = getPackagePart();
         OutputStream out = part.getOutputStream();
         write(out);
         out.close();
     }
 
+    /**
+     * Writes the worksheet xml without committing the package part,
+     * used by SXSSF to write the sheet data directly to the output.
+     *
+     * @param out the stream to write to
+     * @since POI 4.1.1
+     */
+    @Internal
+    public void writeWorksheet(OutputStream out) throws IOException {
+        write(out);
+    }
+
     protected void write(OutputStream out) throws IOException {
         boolean setToNull = false;
         if(worksheet.sizeOfColsArray() == 1) {
@@ -3625,8 +3747,7 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet  {
         }
 
         int minCell = Integer.MAX_VALUE, maxCell = Integer.MIN_VALUE;
-        for(Map.Entry<Integer, XSSFRow> entry : _rows.entrySet()) {
-            XSSFRow row = entry.getValue();
+        for(XSSFRow row : _rows.values()) {
 
             // first perform the normal write actions for the row
             row.onDocumentWrite();
@@ -3640,6 +3761,11 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet  {
             }
         }
 
+        if (compactData != null) {
+            minCell = Math.min(minCell, compactData.getFirstColumn());
+            maxCell = Math.max(maxCell, compactData.getLastColumn());
+        }
+
         // finally, if we had at least one cell we can populate the optional dimension-field
         if(minCell != Integer.MAX_VALUE) {
             String ref = new CellRangeAddress(getFirstRowNum(), getLastRowNum(), minCell, maxCell).formatAsString();
@@ -3653,7 +3779,14 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet  {
         XmlOptions xmlOptions = new XmlOptions(DEFAULT_XML_OPTIONS);
         xmlOptions.setSaveSyntheticDocumentElement(new QName(CTWorksheet.type.getName().getNamespaceURI(), "worksheet"));
 
-        worksheet.save(out, xmlOptions);
+        if (compactData == null) {
+            worksheet.save(out, xmlOptions);
+        } else {
+            // the pending rows are merged into the sheet data of the saved worksheet
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            worksheet.save(bos, xmlOptions);
+            compactData.write(bos.toString("UTF-8"), out);
+        }
 
         // Bug 52233: Ensure that we have a col-array even if write() removed it
         if(setToNull) {
@@ -4542,7 +4675,9 @@ public class XSSFSheet extends POIXMLDocumentPart implements Sheet  {
     @Beta
     public List<XSSFPivotTable> getPivotTables() {
         List<XSSFPivotTable> tables = new ArrayList<>();
-        for (XSSFPivotTable table : getWorkbook().getPivotTables()) {
+        ensureRead();
+        // the pivot tables of this sheet are registered when it is read
+        for (XSSFPivotTable table : getWorkbook().getRegisteredPivotTables()) {
             if (table.getParent() == this) {
                 tables.add(table);
             }
@@ -69,6 +69,7 @@ import org.apache.poi.ss.formula.udf.IndexedUDFFinder;
 import org.apache.poi.ss.formula.udf.UDFFinder;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.ss.usermodel.Row.MissingCellPolicy;
+import org.apache.poi.ss.util.CellStyleCache;
 import org.apache.poi.ss.util.CellReference;
 import org.apache.poi.ss.util.WorkbookUtil;
 import org.apache.poi.util.Beta;
@@ -115,7 +116,7 @@ import org.openxmlformats.schemas.spreadsheetml.x2006.main.WorkbookDocument;
  * will construct whether they are reading or writing a workbook.  It is also the
  * top level object for creating new sheets/etc.
  */
-public class XSSFWorkbook extends POIXMLDocument implements Workbook, Date1904Support {
+public class XSSFWorkbook extends POIXMLDocument implements Workbook, Date1904Support, CellStyleCacheSupport {
     private static final Pattern COMMA_PATTERN = Pattern.compile(",");
 
     /**
@@ -234,6 +235,13 @@ public class XSSFWorkbook extends POIXMLDocument implements Workbook, Date1904Su
 
     private final XSSFFactory xssfFactory;
 
+    /**
+     * Whether the worksheets are parsed on first access instead of when the workbook is read
+     */
+    private final boolean lazySheets;
+
+    private final CellStyleCache cellStyleCache = new CellStyleCache();
+
     /**
      * Create a new SpreadsheetML workbook.
      */
@@ -256,6 +264,7 @@ public class XSSFWorkbook extends POIXMLDocument implements Workbook, Date1904Su
     private XSSFWorkbook(XSSFWorkbookType workbookType, XSSFFactory factory) {
         super(newPackage(workbookType));
         this.xssfFactory = (factory == null) ? XSSFFactory.getInstance() : factory;
+        this.lazySheets = false;
         onWorkbookCreate();
     }
 
@@ -273,8 +282,43 @@ public class XSSFWorkbook extends POIXMLDocument implements Workbook, Date1904Su
      * @param pkg the OpenXML4J <code>OPC Package</code> object.
      */
     public XSSFWorkbook(OPCPackage pkg) throws IOException {
+        this(pkg, null);
+    }
+
+    /**
+     * Constructs a XSSFWorkbook object given a OpenXML4J <code>Package</code> object
+     * and a factory, which creates the document parts.
+     *
+     * @param pkg the OpenXML4J <code>OPC Package</code> object.
+     * @param factory the factory for the document parts, if {@code null} the default factory is used
+     *
+     * @see org.apache.poi.xssf.model.OffHeapSharedStringsTable#factory(boolean)
+     * @since POI 4.1.1
+     */
+    public XSSFWorkbook(OPCPackage pkg, XSSFFactory factory) throws IOException {
+        this(pkg, factory, false);
+    }
+
+    /**
+     * Constructs a XSSFWorkbook object given a OpenXML4J <code>Package</code> object,
+     * which optionally parses the worksheets on demand.<p>
+     *
+     * When the sheets are loaded lazily, only the workbook part and the parts shared by the sheets,
+     * like the styles and the shared strings, are parsed on construction. A worksheet is parsed,
+     * when the sheet is first returned by the workbook, e.g. by {@link #getSheetAt(int)},
+     * {@link #getSheet(String)} or the sheet iterator. Sheets, which were never accessed,
+     * are written unchanged.
+     *
+     * @param pkg the OpenXML4J <code>OPC Package</code> object.
+     * @param factory the factory for the document parts, if {@code null} the default factory is used
+     * @param lazySheets whether the worksheets are parsed on first access
+     *
+     * @since POI 4.1.1
+     */
+    public XSSFWorkbook(OPCPackage pkg, XSSFFactory factory, boolean lazySheets) throws IOException {
         super(pkg);
-        this.xssfFactory = XSSFFactory.getInstance();
+        this.xssfFactory = (factory == null) ? XSSFFactory.getInstance() : factory;
+        this.lazySheets = lazySheets;
 
         beforeDocumentRead();
 
@@ -445,7 +489,11 @@ public class XSSFWorkbook extends POIXMLDocument implements Workbook, Date1904Su
             return;
         }
         sh.sheet = ctSheet;
-        sh.onDocumentRead();
+        if (lazySheets) {
+            sh.deferRead();
+        } else {
+            sh.onDocumentRead();
+        }
         sheets.add(sh);
     }
 
@@ -601,7 +649,7 @@ public class XSSFWorkbook extends POIXMLDocument implements Workbook, Date1904Su
      */
     public XSSFSheet cloneSheet(int sheetNum, String newName) {
         validateSheetIndex(sheetNum);
-        XSSFSheet srcSheet = sheets.get(sheetNum);
+        XSSFSheet srcSheet = getSheetAt(sheetNum);
 
         if (newName == null) {
             String srcName = srcSheet.getSheetName();
@@ -1061,6 +1109,15 @@ public class XSSFWorkbook extends POIXMLDocument implements Workbook, Date1904Su
         return -1;
     }
 
+    /**
+     * @return the cell style lookups of {@link org.apache.poi.ss.util.CellUtil}
+     */
+    @Internal
+    @Override
+    public CellStyleCache getCellStyleCache() {
+        return cellStyleCache;
+    }
+
     /**
      * Get the number of styles the workbook contains
      *
@@ -1127,6 +1184,7 @@ public class XSSFWorkbook extends POIXMLDocument implements Workbook, Date1904Su
     public XSSFSheet getSheet(String name) {
         for (XSSFSheet sheet : sheets) {
             if (name.equalsIgnoreCase(sheet.getSheetName())) {
+                sheet.ensureRead();
                 return sheet;
             }
         }
@@ -1144,7 +1202,9 @@ public class XSSFWorkbook extends POIXMLDocument implements Workbook, Date1904Su
     @Override
     public XSSFSheet getSheetAt(int index) {
         validateSheetIndex(index);
-        return sheets.get(index);
+        XSSFSheet sheet = sheets.get(index);
+        sheet.ensureRead();
+        return sheet;
     }
 
     /**
@@ -1235,7 +1295,9 @@ public class XSSFWorkbook extends POIXMLDocument implements Workbook, Date1904Su
         }
         @Override
         public T next() throws NoSuchElementException {
-            return it.next();
+            T sheet = it.next();
+            ((XSSFSheet)sheet).ensureRead();
+            return sheet;
         }
         /**
          * Unexpected behavior may occur if sheets are reordered after iterator
@@ -1586,6 +1648,7 @@ public class XSSFWorkbook extends POIXMLDocument implements Workbook, Date1904Su
     public void setSelectedTab(int index) {
         int idx = 0;
         for (XSSFSheet sh : sheets) {
+            sh.ensureRead();
             sh.setSelected(idx == index);
             idx++;
         }
@@ -2270,6 +2333,24 @@ public class XSSFWorkbook extends POIXMLDocument implements Workbook, Date1904Su
 
     @Beta
     public List<XSSFPivotTable> getPivotTables() {
+        // the pivot tables are registered, when the sheets are read
+        for (XSSFSheet sh : sheets) {
+            sh.ensureRead();
+        }
+        return pivotTables;
+    }
+
+    /**
+     * Adds a pivot table of a sheet, which is being read, without reading the other sheets
+     */
+    void registerPivotTable(XSSFPivotTable pivotTable) {
+        pivotTables.add(pivotTable);
+    }
+
+    /**
+     * @return the pivot tables of the sheets read so far
+     */
+    List<XSSFPivotTable> getRegisteredPivotTables() {
         return pivotTables;
     }
 
@@ -2362,6 +2443,7 @@ public class XSSFWorkbook extends POIXMLDocument implements Workbook, Date1904Su
     public XSSFTable getTable(String name) {
         if (name != null && sheets != null) {
             for (XSSFSheet sheet : sheets) {
+                sheet.ensureRead();
                 for (XSSFTable tbl : sheet.getTables()) {
                     if (name.equalsIgnoreCase(tbl.getName())) {
                         return tbl;
@@ -37,6 +37,7 @@ public class XSSFCellBorder {
     private final IndexedColorMap _indexedColorMap;
     private ThemesTable _theme;
     private final CTBorder border;
+    private Runnable _changeListener;
 
     /**
      * Creates a Cell Border from the supplied XML definition
@@ -82,6 +83,26 @@ public class XSSFCellBorder {
      */
     public void setThemesTable(ThemesTable themes) {
        this._theme = themes;
+       changed();
+    }
+
+    /**
+     * Sets the listener, which is notified when this border is changed by its setters.
+     * The styles table uses it to keep its index of the borders up-to-date.
+     *
+     * @param listener the listener or <code>null</code>
+     *
+     * @since POI 4.1.1
+     */
+    @Internal
+    public void setChangeListener(Runnable listener) {
+        _changeListener = listener;
+    }
+
+    private void changed() {
+        if (_changeListener != null) {
+            _changeListener.run();
+        }
     }
     
     /**
@@ -123,6 +144,7 @@ public class XSSFCellBorder {
      */
     public void setBorderStyle(BorderSide side, BorderStyle style) {
         getBorder(side, true).setStyle(STBorderStyle.Enum.forInt(style.ordinal() + 1));
+        changed();
     }
 
     /**
@@ -157,6 +179,7 @@ public class XSSFCellBorder {
         if (color == null) borderPr.unsetColor();
         else
             borderPr.setColor(color.getCTColor());
+        changed();
     }
 
     private CTBorderPr getBorder(BorderSide side) {
@@ -191,7 +214,13 @@ public class XSSFCellBorder {
 
 
     public int hashCode() {
-        return border.toString().hashCode();
+        // needs to be consistent with equals, i.e. based on the same properties
+        int hash = 0;
+        for (BorderSide side : BorderSide.values()) {
+            hash = 31 * hash + Objects.hashCode(getBorderColor(side));
+            hash = 31 * hash + getBorderStyle(side).hashCode();
+        }
+        return hash;
     }
 
     public boolean equals(Object o) {
@@ -35,6 +35,7 @@ public final class XSSFCellFill {
 
     private IndexedColorMap _indexedColorMap;
     private CTFill _fill;
+    private Runnable _changeListener;
 
     /**
      * Creates a CellFill from the supplied parts
@@ -75,6 +76,7 @@ public final class XSSFCellFill {
         CTPatternFill ptrn = ensureCTPatternFill();
         CTColor ctColor = ptrn.isSetBgColor() ? ptrn.getBgColor() : ptrn.addNewBgColor();
         ctColor.setIndexed(index);
+        changed();
     }
 
     /**
@@ -89,6 +91,7 @@ public final class XSSFCellFill {
         } else {
             ptrn.setBgColor(color.getCTColor());
         }
+        changed();
     }
 
     /**
@@ -113,6 +116,7 @@ public final class XSSFCellFill {
         CTPatternFill ptrn = ensureCTPatternFill();
         CTColor ctColor = ptrn.isSetFgColor() ? ptrn.getFgColor() : ptrn.addNewFgColor();
         ctColor.setIndexed(index);
+        changed();
     }
 
     /**
@@ -127,6 +131,7 @@ public final class XSSFCellFill {
         } else {
             ptrn.setFgColor(color.getCTColor());
         }
+        changed();
     }
 
     /**
@@ -147,6 +152,7 @@ public final class XSSFCellFill {
     public void setPatternType(STPatternType.Enum patternType) {
         CTPatternFill ptrn = ensureCTPatternFill();
         ptrn.setPatternType(patternType);
+        changed();
     }
 
     private CTPatternFill ensureCTPatternFill() {
@@ -167,9 +173,29 @@ public final class XSSFCellFill {
         return _fill; 
     }
 
+    /**
+     * Sets the listener, which is notified when this fill is changed by its setters.
+     * The styles table uses it to keep its index of the fills up-to-date.
+     *
+     * @param listener the listener or <code>null</code>
+     *
+     * @since POI 4.1.1
+     */
+    @Internal
+    public void setChangeListener(Runnable listener) {
+        _changeListener = listener;
+    }
+
+    private void changed() {
+        if (_changeListener != null) {
+            _changeListener.run();
+        }
+    }
+
 
     public int hashCode() {
-        return _fill.toString().hashCode();
+        // needs to be consistent with equals, i.e. based on the same properties
+        return Objects.hash(getFillBackgroundColor(), getFillForegroundColor(), getPatternType());
     }
 
     public boolean equals(Object o) {
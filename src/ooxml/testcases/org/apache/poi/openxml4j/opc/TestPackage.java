@@ -41,6 +41,7 @@ import org.apache.poi.openxml4j.opc.internal.ContentTypeManager;
 import org.apache.poi.openxml4j.opc.internal.FileHelper;
 import org.apache.poi.openxml4j.opc.internal.PackagePropertiesPart;
 import org.apache.poi.openxml4j.opc.internal.ZipHelper;
+import org.apache.poi.openxml4j.util.ZipInputStreamZipEntrySource;
 import org.apache.poi.openxml4j.util.ZipSecureFile;
 import org.apache.poi.sl.usermodel.SlideShow;
 import org.apache.poi.sl.usermodel.SlideShowFactory;
@@ -51,6 +52,7 @@ import org.apache.poi.util.POILogFactory;
 import org.apache.poi.util.POILogger;
 import org.apache.poi.util.TempFile;
 import org.apache.poi.xssf.XSSFTestDataSamples;
+import org.apache.poi.xssf.extractor.XSSFExcelExtractor;
 import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.apache.poi.xwpf.usermodel.XWPFRelation;
@@ -421,6 +423,35 @@ public final class TestPackage {
 		finp.close();
 	}
 
+    /**
+     * Large entries of packages opened from an InputStream are kept in temp files
+     */
+    @Test
+    public void openFromInputStreamWithTempFiles() throws IOException {
+        File file = XSSFTestDataSamples.getSampleFile("sample.xlsx");
+        String expected;
+        try (XSSFWorkbook wb = XSSFTestDataSamples.openSampleWorkbook("sample.xlsx")) {
+            expected = new XSSFExcelExtractor(wb).getText();
+        }
+
+        boolean[][] modes = { {false, false}, {true, false}, {false, true}, {true, true} };
+        try {
+            for (boolean[] mode : modes) {
+                ZipInputStreamZipEntrySource.setThresholdBytesForTempFiles(100);
+                ZipInputStreamZipEntrySource.setEncryptTempFiles(mode[0]);
+                ZipInputStreamZipEntrySource.setCompressTempFiles(mode[1]);
+                try (InputStream is = new FileInputStream(file);
+                     XSSFWorkbook wb = (XSSFWorkbook)WorkbookFactory.create(is)) {
+                    assertEquals(expected, new XSSFExcelExtractor(wb).getText());
+                }
+            }
+        } finally {
+            ZipInputStreamZipEntrySource.setThresholdBytesForTempFiles(-1);
+            ZipInputStreamZipEntrySource.setEncryptTempFiles(false);
+            ZipInputStreamZipEntrySource.setCompressTempFiles(false);
+        }
+    }
+
     /**
      * TODO: fix and enable
      */
@@ -0,0 +1,126 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.openxml4j.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.apache.poi.hssf.HSSFTestDataSamples;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.util.IOUtils;
+import org.apache.poi.xssf.usermodel.XSSFRelation;
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Test;
+
+public class TestZipDeflateStrategy {
+    private static final int ROWS = 5000;
+
+    @Test
+    public void levels() {
+        ZipDeflateStrategy strategy = new ZipDeflateStrategy();
+        assertEquals(Deflater.DEFAULT_COMPRESSION, strategy.getLevel(null));
+        strategy.setLevel(Deflater.BEST_SPEED);
+        strategy.setLevel(XSSFRelation.WORKSHEET.getContentType(), Deflater.NO_COMPRESSION);
+        assertEquals(Deflater.BEST_SPEED, strategy.getLevel(null));
+        assertEquals(Deflater.NO_COMPRESSION, strategy.getLevel(XSSFRelation.WORKSHEET.getContentType()));
+
+        assertFalse(strategy.isStored("image/png"));
+        strategy.setStoreCompressedMedia(true);
+        assertTrue(strategy.isStored("image/png"));
+        assertFalse(strategy.isStored(XSSFRelation.WORKSHEET.getContentType()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidBlockSize() {
+        new ZipDeflateStrategy().setBlockSize(1024);
+    }
+
+    @Test
+    public void saveWithStrategy() throws IOException {
+        byte[] png = IOUtils.toByteArray(HSSFTestDataSamples.openSampleFileStream("logoKarmokar4.png"));
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (boolean parallel : new boolean[]{ false, true }) {
+                ZipDeflateStrategy strategy = new ZipDeflateStrategy();
+                strategy.setStoreCompressedMedia(true);
+                strategy.setLevel(XSSFRelation.WORKSHEET.getContentType(), Deflater.BEST_SPEED);
+                if (parallel) {
+                    strategy.setExecutor(executor);
+                    strategy.setBlockSize(1 << 15);
+                }
+
+                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                try (XSSFWorkbook wb = new XSSFWorkbook()) {
+                    wb.getPackage().setDeflateStrategy(strategy);
+                    XSSFSheet sheet = wb.createSheet("data");
+                    for (int i = 0; i < ROWS; i++) {
+                        XSSFRow row = sheet.createRow(i);
+                        row.createCell(0).setCellValue("row " + i);
+                        row.createCell(1).setCellValue(i);
+                    }
+                    wb.addPicture(png, Workbook.PICTURE_TYPE_PNG);
+                    wb.write(bos);
+                }
+
+                // the zip can be read by the jdk - the methods are checked on the way
+                Map<String, byte[]> entries = new HashMap<>();
+                Map<String, Integer> methods = new HashMap<>();
+                try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(bos.toByteArray()))) {
+                    ZipEntry ze;
+                    while ((ze = zis.getNextEntry()) != null) {
+                        methods.put(ze.getName(), ze.getMethod());
+                        entries.put(ze.getName(), IOUtils.toByteArray(zis));
+                    }
+                }
+                assertEquals(ZipEntry.STORED, (int)methods.get("xl/media/image1.png"));
+                assertArrayEquals(png, entries.get("xl/media/image1.png"));
+                assertEquals(ZipEntry.DEFLATED, (int)methods.get("xl/worksheets/sheet1.xml"));
+                assertTrue(entries.get("xl/worksheets/sheet1.xml").length > 8 * (1 << 15));
+
+                try (XSSFWorkbook wb = new XSSFWorkbook(new ByteArrayInputStream(bos.toByteArray()))) {
+                    XSSFSheet sheet = wb.getSheetAt(0);
+                    assertEquals(ROWS - 1, sheet.getLastRowNum());
+                    for (int i = 0; i < ROWS; i++) {
+                        XSSFRow row = sheet.getRow(i);
+                        assertEquals("row " + i, row.getCell(0).getStringCellValue());
+                        assertEquals(i, (int)row.getCell(1).getNumericCellValue());
+                    }
+                    assertArrayEquals(png, wb.getAllPictures().get(0).getData());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.binary;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import org.junit.Test;
+
+public final class TestXSSFBParser {
+
+    @Test
+    public void recordsSpanningBuffers() throws IOException {
+        // records of all header sizes, some larger than the buffer of the parser
+        int[] lengths = { 0, 1, 127, 128, 16383, 16384, 70000, 3, 200000, 5 };
+        XSSFBRecordType[] types = { XSSFBRecordType.BrtCellBlank, XSSFBRecordType.BrtRowHdr };
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (XSSFBRecordWriter writer = new XSSFBRecordWriter(bos)) {
+            for (int i = 0; i < lengths.length; i++) {
+                writer.startRecord(types[i % 2]);
+                writer.write(getData(i, lengths[i]));
+                writer.endRecord();
+            }
+        }
+
+        for (final boolean copy : new boolean[]{ false, true }) {
+            final List<byte[]> records = new ArrayList<>();
+            final List<Integer> ids = new ArrayList<>();
+            new XSSFBParser(new ChunkedInputStream(bos.toByteArray())) {
+                @Override
+                public void handleRecord(int recordType, byte[] data) {
+                    ids.add(recordType);
+                    records.add(data);
+                }
+
+                @Override
+                public void handleRecord(int recordType, byte[] data, int offset, int length) {
+                    if (copy) {
+                        super.handleRecord(recordType, data, offset, length);
+                    } else {
+                        handleRecord(recordType, Arrays.copyOfRange(data, offset, offset + length));
+                    }
+                }
+            }.parse();
+
+            assertEquals(lengths.length, records.size());
+            for (int i = 0; i < lengths.length; i++) {
+                assertEquals(types[i % 2].getId(), (int)ids.get(i));
+                assertArrayEquals(getData(i, lengths[i]), records.get(i));
+            }
+        }
+
+        // only the records of the bit set are handled, the others are skipped
+        BitSet bitSet = new BitSet();
+        bitSet.set(XSSFBRecordType.BrtRowHdr.getId());
+        final List<Integer> lengthsFound = new ArrayList<>();
+        new XSSFBParser(new ChunkedInputStream(bos.toByteArray()), bitSet) {
+            @Override
+            public void handleRecord(int recordType, byte[] data) {
+                lengthsFound.add(data.length);
+            }
+        }.parse();
+        assertEquals(Arrays.asList(1, 128, 16384, 3, 5), lengthsFound);
+    }
+
+    @Test
+    public void truncatedRecord() throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (XSSFBRecordWriter writer = new XSSFBRecordWriter(bos)) {
+            writer.startRecord(XSSFBRecordType.BrtCellBlank);
+            writer.write(new byte[100]);
+            writer.endRecord();
+        }
+        byte[] truncated = Arrays.copyOf(bos.toByteArray(), bos.size() - 1);
+        try {
+            new XSSFBParser(new ByteArrayInputStream(truncated)) {
+                @Override
+                public void handleRecord(int recordType, byte[] data) {
+                    fail("the truncated record must not be handled");
+                }
+            }.parse();
+            fail("expected XSSFBParseException");
+        } catch (XSSFBParseException e) {
+            // expected
+        }
+    }
+
+    private static byte[] getData(int seed, int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte)(seed * 31 + i);
+        }
+        return data;
+    }
+
+    /**
+     * Returns the data in small chunks, like an inflating stream
+     */
+    private static final class ChunkedInputStream extends FilterInputStream {
+        ChunkedInputStream(byte[] data) {
+            super(new ByteArrayInputStream(data));
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return super.read(b, off, Math.min(len, 1000));
+        }
+    }
+}
@@ -20,14 +20,19 @@ package org.apache.poi.xssf.eventusermodel;
 import static org.apache.poi.POITestCase.assertContains;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.poi.POIDataSamples;
 import org.apache.poi.openxml4j.opc.OPCPackage;
 import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.apache.poi.ss.util.CellAddress;
 import org.apache.poi.xssf.binary.XSSFBSharedStringsTable;
 import org.apache.poi.xssf.binary.XSSFBSheetHandler;
 import org.apache.poi.xssf.binary.XSSFBStylesTable;
@@ -164,6 +169,63 @@ public class TestXSSFBReader {
         assertContains(sheets.get(0), "1/12/13");
     }
 
+    @Test
+    public void testCellValueHandler() throws Exception {
+        try (OPCPackage pkg = OPCPackage.open(_ssTests.openResourceAsStream("testVarious.xlsb"))) {
+            XSSFBReader r = new XSSFBReader(pkg);
+            final XSSFBSharedStringsTable sst = new XSSFBSharedStringsTable(pkg);
+            final Map<String, Object> values = new HashMap<>();
+            final List<Integer> rows = new ArrayList<>();
+            try (InputStream is = r.getSheetsData().next()) {
+                new XSSFBSheetHandler(is, new XSSFBSheetHandler.CellValueHandler() {
+                    @Override
+                    public void startRow(int rowNum) {
+                        rows.add(rowNum);
+                    }
+
+                    @Override
+                    public void endRow(int rowNum) {
+                        assertEquals(rows.get(rows.size() - 1), (Integer)rowNum);
+                    }
+
+                    @Override
+                    public void blankCell(int rowNum, int colNum, int styleIdx) {
+                    }
+
+                    @Override
+                    public void numericCell(int rowNum, int colNum, int styleIdx, double value) {
+                        values.put(new CellAddress(rowNum, colNum).formatAsString(), value);
+                    }
+
+                    @Override
+                    public void sharedStringCell(int rowNum, int colNum, int styleIdx, int sstIndex) {
+                        values.put(new CellAddress(rowNum, colNum).formatAsString(), sst.getItemAt(sstIndex).getString());
+                    }
+
+                    @Override
+                    public void stringCell(int rowNum, int colNum, int styleIdx, CharSequence value) {
+                        values.put(new CellAddress(rowNum, colNum).formatAsString(), value.toString());
+                    }
+
+                    @Override
+                    public void booleanCell(int rowNum, int colNum, int styleIdx, boolean value) {
+                        values.put(new CellAddress(rowNum, colNum).formatAsString(), value);
+                    }
+
+                    @Override
+                    public void errorCell(int rowNum, int colNum, int styleIdx, byte errorCode) {
+                        values.put(new CellAddress(rowNum, colNum).formatAsString(), FormulaError.forInt(errorCode));
+                    }
+                }).parse();
+            }
+            assertEquals(13d, values.get("B2"));
+            assertEquals(13.1211231321d, values.get("B3"));
+            assertEquals(1.23456789012345E15, (Double)values.get("B8"), 1);
+            assertTrue(values.containsValue("This is a string"));
+            assertTrue(rows.contains(1));
+        }
+    }
+
 
     private class TestSheetHandler implements XSSFSheetXMLHandler.SheetContentsHandler {
         private final StringBuilder sb = new StringBuilder();
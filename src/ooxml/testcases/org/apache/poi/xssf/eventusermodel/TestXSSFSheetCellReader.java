@@ -0,0 +1,162 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.eventusermodel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.Random;
+
+import org.apache.poi.POIDataSamples;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.xssf.model.SharedStringsTable;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCell;
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Test;
+
+/**
+ * Tests for {@link XSSFSheetCellReader}
+ */
+public final class TestXSSFSheetCellReader {
+
+    private static final POIDataSamples _ssTests = POIDataSamples.getSpreadSheetInstance();
+
+    @Test
+    public void sameValuesAsUsermodel() throws Exception {
+        for (String file : new String[]{ "SampleSS.xlsx", "sample.xlsx", "Formatting.xlsx", "WithVariousData.xlsx" }) {
+            compareWithUsermodel(file);
+        }
+    }
+
+    private static void compareWithUsermodel(String file) throws Exception {
+        DataFormatter formatter = new DataFormatter();
+        try (OPCPackage pkg = OPCPackage.open(_ssTests.openResourceAsStream(file));
+             XSSFWorkbook wb = new XSSFWorkbook(_ssTests.openResourceAsStream(file))) {
+            XSSFReader r = new XSSFReader(pkg);
+            SharedStringsTable sst = r.getSharedStringsTable();
+            StylesTable styles = r.getStylesTable();
+
+            XSSFReader.SheetIterator iter = (XSSFReader.SheetIterator)r.getSheetsData();
+            while (iter.hasNext()) {
+                InputStream stream = iter.next();
+                XSSFSheet sheet = wb.getSheet(iter.getSheetName());
+                int cells = 0;
+                try (XSSFSheetCellReader reader = new XSSFSheetCellReader(stream, sst, styles)) {
+                    while (reader.next()) {
+                        XSSFRow row = sheet.getRow(reader.getRowIndex());
+                        assertNotNull(file, row);
+                        XSSFCell cell = row.getCell(reader.getColumnIndex());
+                        assertNotNull(file, cell);
+                        cells++;
+
+                        String msg = file + " " + cell.getReference();
+                        assertEquals(msg, cell.getCellStyle().getIndex(), reader.getStyleIndex());
+                        assertEquals(msg, cell.getCellType() == CellType.FORMULA, reader.hasFormula());
+                        CellType type = (cell.getCellType() == CellType.FORMULA)
+                            ? cell.getCachedFormulaResultType() : cell.getCellType();
+                        assertEquals(msg, type, reader.getCellType());
+                        switch (type) {
+                            case NUMERIC:
+                                assertEquals(msg, cell.getNumericCellValue(), reader.getNumericValue(), 0);
+                                if (!reader.hasFormula()) {
+                                    assertEquals(msg, formatter.formatCellValue(cell), reader.getFormattedValue(formatter));
+                                }
+                                break;
+                            case STRING:
+                                assertEquals(msg, cell.getStringCellValue(), reader.getStringValue());
+                                break;
+                            case BOOLEAN:
+                                assertEquals(msg, cell.getBooleanCellValue(), reader.getBooleanValue());
+                                break;
+                            case ERROR:
+                                assertEquals(msg, cell.getErrorCellValue(), reader.getErrorCellValue());
+                                break;
+                            default:
+                                break;
+                        }
+                    }
+                    assertFalse(reader.next());
+                }
+                int expected = 0;
+                for (int i=sheet.getFirstRowNum(); i<=sheet.getLastRowNum(); i++) {
+                    XSSFRow row = sheet.getRow(i);
+                    expected += (row == null) ? 0 : row.getPhysicalNumberOfCells();
+                }
+                assertEquals(file, expected, cells);
+            }
+        }
+    }
+
+    @Test
+    public void sharedStringIndexes() throws Exception {
+        try (OPCPackage pkg = OPCPackage.open(_ssTests.openResourceAsStream("SampleSS.xlsx"))) {
+            XSSFReader r = new XSSFReader(pkg);
+            SharedStringsTable sst = r.getSharedStringsTable();
+            Iterator<InputStream> iter = r.getSheetsData();
+            int strings = 0;
+            try (XSSFSheetCellReader reader = new XSSFSheetCellReader(iter.next())) {
+                while (reader.next()) {
+                    if (reader.isSharedString()) {
+                        int idx = reader.getSharedStringIndex();
+                        assertTrue(idx >= 0 && idx < sst.getUniqueCount());
+                        strings++;
+                    }
+                }
+            }
+            assertTrue(strings > 0);
+        }
+    }
+
+    @Test
+    public void parseColumn() {
+        assertEquals(0, XSSFSheetCellReader.parseColumn("A1"));
+        assertEquals(25, XSSFSheetCellReader.parseColumn("Z99"));
+        assertEquals(26, XSSFSheetCellReader.parseColumn("AA1"));
+        assertEquals(16383, XSSFSheetCellReader.parseColumn("XFD1048576"));
+        assertEquals(2, XSSFSheetCellReader.parseColumn("$C$3"));
+    }
+
+    @Test
+    public void parseDouble() {
+        String[] values = {
+            "0", "-0", "1", "-17", "0.1", "0.30000000000000004", "123456789012345", "1234567890123456789",
+            "3.14159265358979", "1E-3", "1.5E+10", "-2.5e-7", "1E300", "4.9E-324", "0.000123", "100.25",
+            "42.", ".5", "9007199254740993", "1.7976931348623157E308"
+        };
+        for (String v : values) {
+            assertEquals(v, Double.parseDouble(v), XSSFSheetCellReader.parseDouble(v.toCharArray(), 0, v.length()), 0);
+        }
+
+        Random rnd = new Random(1234);
+        for (int i=0; i<10000; i++) {
+            String v = Double.toString(rnd.nextDouble() * Math.pow(10, rnd.nextInt(40) - 20));
+            assertEquals(v, Double.parseDouble(v), XSSFSheetCellReader.parseDouble(v.toCharArray(), 0, v.length()), 0);
+            v = Long.toString(rnd.nextInt()) + "." + Integer.toString(rnd.nextInt(1000000));
+            assertEquals(v, Double.parseDouble(v), XSSFSheetCellReader.parseDouble(v.toCharArray(), 0, v.length()), 0);
+        }
+    }
+}
@@ -25,6 +25,8 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -383,4 +385,23 @@ public class TestXSSFEventBasedExcelExtractor {
 		ex.close();
 
 	}
+
+	@Test
+	public void testConcurrentSheetParsing() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			for (String sampleName : new String[]{"sample.xlsx", "AverageTaxRates.xlsx", "WithTextBox.xlsx", "45431.xlsm"}) {
+				XSSFEventBasedExcelExtractor ex = getExtractor(sampleName);
+				ex.setIncludeCellComments(true);
+				String expected = ex.getText();
+				assertNotNull(expected);
+
+				ex.setExecutor(executor);
+				assertEquals(sampleName, expected, ex.getText());
+				ex.close();
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
 }
@@ -0,0 +1,223 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.ss.usermodel.RichTextString;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.XSSFTestDataSamples;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFFont;
+import org.apache.poi.xssf.usermodel.XSSFRelation;
+import org.apache.poi.xssf.usermodel.XSSFRichTextString;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Test;
+
+/**
+ * Test {@link OffHeapSharedStringsTable} and its string pool
+ */
+public final class TestOffHeapSharedStringsTable {
+
+    @Test
+    public void addItemsToMappedTable() throws IOException {
+        try (OffHeapSharedStringsTable sst = new OffHeapSharedStringsTable(true)) {
+            addItems(sst);
+        }
+    }
+
+    @Test
+    public void addItemsToDirectTable() throws IOException {
+        try (OffHeapSharedStringsTable sst = new OffHeapSharedStringsTable(false)) {
+            addItems(sst);
+        }
+    }
+
+    private static void addItems(SharedStringsTable sst) {
+        assertEquals(0, sst.addSharedStringItem(new XSSFRichTextString("Hello, World!")));
+        assertEquals(0, sst.addSharedStringItem(new XSSFRichTextString("Hello, World!")));
+        assertEquals(1, sst.addSharedStringItem(new XSSFRichTextString(" padded ")));
+
+        XSSFRichTextString rts = new XSSFRichTextString("Hello, World!");
+        XSSFFont font = new XSSFFont();
+        font.setFontName("Arial");
+        font.setBold(true);
+        rts.applyFont(0, 5, font);
+        assertEquals(2, sst.addSharedStringItem(rts));
+        assertEquals(2, sst.addSharedStringItem(rts));
+
+        assertEquals(5, sst.getCount());
+        assertEquals(3, sst.getUniqueCount());
+        assertEquals(3, sst.getSharedStringItems().size());
+
+        assertEquals("Hello, World!", sst.getItemAt(0).getString());
+        assertEquals(" padded ", sst.getItemAt(1).getString());
+        RichTextString rich = sst.getItemAt(2);
+        assertEquals("Hello, World!", rich.getString());
+        assertEquals(2, rich.numFormattingRuns());
+        assertEquals(5, rich.getIndexOfFormattingRun(1));
+    }
+
+    @Test
+    public void readWrite() throws IOException {
+        try (XSSFWorkbook ref = XSSFTestDataSamples.openSampleWorkbook("sample.xlsx");
+             OPCPackage pkg = XSSFTestDataSamples.openSamplePackage("sample.xlsx");
+             XSSFWorkbook wb1 = new XSSFWorkbook(pkg, OffHeapSharedStringsTable.factory(true))) {
+            SharedStringsTable sstRef = ref.getSharedStringSource();
+            SharedStringsTable sst1 = wb1.getSharedStringSource();
+            assertEquals(OffHeapSharedStringsTable.class, sst1.getClass());
+            assertSameItems(sstRef, sst1);
+
+            // the written table needs to be readable by the default implementation
+            try (XSSFWorkbook wb2 = XSSFTestDataSamples.writeOutAndReadBack(wb1)) {
+                SharedStringsTable sst2 = wb2.getSharedStringSource();
+                assertEquals(SharedStringsTable.class, sst2.getClass());
+                assertSameItems(sstRef, sst2);
+                assertEquals(
+                    ref.getSheetAt(0).getRow(0).getCell(0).getStringCellValue(),
+                    wb2.getSheetAt(0).getRow(0).getCell(0).getStringCellValue());
+            }
+        }
+    }
+
+    private static void assertSameItems(SharedStringsTable expected, SharedStringsTable actual) {
+        assertEquals(expected.getCount(), actual.getCount());
+        assertEquals(expected.getUniqueCount(), actual.getUniqueCount());
+        assertEquals(expected.getSharedStringItems().size(), actual.getSharedStringItems().size());
+        for (int i=0; i<expected.getSharedStringItems().size(); i++) {
+            RichTextString exp = expected.getItemAt(i);
+            RichTextString act = actual.getItemAt(i);
+            assertEquals(exp.getString(), act.getString());
+            assertEquals(exp.numFormattingRuns(), act.numFormattingRuns());
+        }
+    }
+
+    @Test
+    public void streamingWorkbook() throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (SXSSFWorkbook wb = new SXSSFWorkbook(new XSSFWorkbook(OffHeapSharedStringsTable.factory(false)), 10, false, true)) {
+            Sheet sheet = wb.createSheet();
+            for (int i=0; i<100; i++) {
+                Row row = sheet.createRow(i);
+                row.createCell(0).setCellValue("row <" + (i % 7) + "> & more");
+                row.createCell(1).setCellValue("\tindented");
+            }
+            wb.write(bos);
+            wb.dispose();
+        }
+
+        try (XSSFWorkbook wb = new XSSFWorkbook(new ByteArrayInputStream(bos.toByteArray()))) {
+            SharedStringsTable sst = wb.getSharedStringSource();
+            assertEquals(200, sst.getCount());
+            assertEquals(8, sst.getUniqueCount());
+            Sheet sheet = wb.getSheetAt(0);
+            for (int i=0; i<100; i++) {
+                assertEquals("row <" + (i % 7) + "> & more", sheet.getRow(i).getCell(0).getStringCellValue());
+                assertEquals("\tindented", sheet.getRow(i).getCell(1).getStringCellValue());
+            }
+        }
+    }
+
+    @Test
+    public void poolKeepsDuplicatesOnAppend() throws IOException {
+        try (OffHeapStringPool pool = new OffHeapStringPool(false, 16)) {
+            byte[] a = { 1, 2, 3 };
+            byte[] b = new byte[40];
+            b[39] = 42;
+
+            assertEquals(0, pool.add(a));
+            assertEquals(1, pool.append(a));
+            // larger than a segment
+            assertEquals(2, pool.add(b));
+            // the last duplicate wins as in SharedStringsTable
+            assertEquals(1, pool.add(a));
+            assertEquals(1, pool.indexOf(a));
+            assertEquals(2, pool.indexOf(b));
+            assertEquals(-1, pool.indexOf(new byte[] { 3, 2, 1 }));
+            assertEquals(3, pool.size());
+            assertEquals(42, pool.get(2)[39]);
+            assertNotEquals(-1, pool.indexOf(pool.get(1)));
+        }
+    }
+
+    @Test
+    public void poolKeepsLastDuplicateOnRehash() throws IOException {
+        try (OffHeapStringPool pool = new OffHeapStringPool(false, 1024)) {
+            byte[] a = { 1, 2, 3 };
+            assertEquals(0, pool.append(a));
+            assertEquals(1, pool.append(a));
+            for (int i=0; i<1000; i++) {
+                pool.add(Integer.toString(i).getBytes("UTF-8"));
+            }
+            assertEquals(1, pool.indexOf(a));
+            assertEquals(1002, pool.size());
+        }
+    }
+
+    @Test
+    public void readDuplicatesAndNamespaces() throws IOException {
+        String xml =
+            "<sst xmlns=\"" + XSSFRelation.NS_SPREADSHEETML + "\" xmlns:x=\"urn:poi-test\" count=\"4\" uniqueCount=\"3\">" +
+            "<si><t>dup</t></si>" +
+            "<si><r><rPr><b/></rPr><t x:foo=\"bar\" xml:space=\"preserve\">rich </t></r><r><t>text</t></r></si>" +
+            "<si><t>dup</t></si>" +
+            "<si><t>other</t></si>" +
+            "</sst>";
+        try (OffHeapSharedStringsTable sst = new OffHeapSharedStringsTable(false)) {
+            sst.readFrom(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+            assertEquals("rich text", sst.getItemAt(1).getString());
+            assertEquals(2, sst.getItemAt(1).numFormattingRuns());
+            // cached items are shared
+            assertSame(sst.getEntryAt(1), sst.getEntryAt(1));
+
+            // duplicates keep their index, but lookups return the last one
+            assertEquals("dup", sst.getItemAt(0).getString());
+            assertEquals("dup", sst.getItemAt(2).getString());
+            assertEquals(2, sst.addSharedStringItem(new XSSFRichTextString("dup")));
+
+            // the attribute prefix declared outside of the si element is written
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            sst.writeTo(bos);
+            SharedStringsTable sst2 = new SharedStringsTable();
+            sst2.readFrom(new ByteArrayInputStream(bos.toByteArray()));
+            assertEquals(4, sst2.getSharedStringItems().size());
+            assertEquals("rich text", sst2.getItemAt(1).getString());
+        }
+    }
+
+    @Test
+    public void poolGrows() throws IOException {
+        try (OffHeapStringPool pool = new OffHeapStringPool(true, 1024)) {
+            for (int i=0; i<10000; i++) {
+                assertEquals(i, pool.add(Integer.toString(i).getBytes("UTF-8")));
+            }
+            for (int i=0; i<10000; i++) {
+                assertEquals(i, pool.indexOf(Integer.toString(i).getBytes("UTF-8")));
+                assertEquals(Integer.toString(i), new String(pool.get(i), "UTF-8"));
+            }
+        }
+    }
+}
@@ -29,12 +29,18 @@ import static org.junit.Assert.fail;
 import java.io.IOException;
 import java.util.Map;
 
+import org.apache.poi.ss.usermodel.BorderStyle;
 import org.apache.poi.ss.usermodel.BuiltinFormats;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.FillPatternType;
 import org.apache.poi.xssf.XSSFTestDataSamples;
 import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFFont;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.usermodel.extensions.XSSFCellFill;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTFill;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTFont;
 
 public final class TestStylesTable {
     private static final String testFile = "Formatting.xlsx";
@@ -363,4 +369,108 @@ public final class TestStylesTable {
             assertNotNull(XSSFTestDataSamples.writeOutAndReadBack(workbook));
         }
     }
+
+    @Test
+    public void putStyleComponents() throws IOException {
+        try (XSSFWorkbook wb = new XSSFWorkbook()) {
+            StylesTable st = wb.getStylesSource();
+            long[] fillIds = new long[40];
+            long[] borderIds = new long[40];
+            for (short color = 8; color < 40; color++) {
+                XSSFCellStyle cs = wb.createCellStyle();
+                cs.setFillForegroundColor(color);
+                cs.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+                cs.setBorderTop(BorderStyle.THIN);
+                cs.setTopBorderColor(color);
+                fillIds[color] = cs.getCoreXf().getFillId();
+                borderIds[color] = cs.getCoreXf().getBorderId();
+            }
+            int numFills = st.getFills().size();
+            int numBorders = st.getBorders().size();
+
+            // equal components are reused
+            for (short color = 8; color < 40; color++) {
+                XSSFCellStyle cs = wb.createCellStyle();
+                cs.setFillForegroundColor(color);
+                cs.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+                cs.setBorderTop(BorderStyle.THIN);
+                cs.setTopBorderColor(color);
+                assertEquals(fillIds[color], cs.getCoreXf().getFillId());
+                assertEquals(borderIds[color], cs.getCoreXf().getBorderId());
+            }
+            assertEquals(numFills, st.getFills().size());
+            assertEquals(numBorders, st.getBorders().size());
+
+            // the same style is only added once
+            XSSFCellStyle cs = wb.createCellStyle();
+            assertEquals(cs.getIndex(), st.putStyle(cs));
+            assertEquals(cs.getIndex(), st.putStyle(cs));
+        }
+    }
+
+    @Test
+    public void putFontChangedAfterRegistration() throws IOException {
+        try (XSSFWorkbook wb = new XSSFWorkbook()) {
+            StylesTable st = wb.getStylesSource();
+            XSSFFont font = wb.createFont();
+            int idx = font.getIndex();
+            assertEquals(idx, st.putFont(font));
+
+            font.setBold(true);
+            font.setFontHeightInPoints((short)20);
+            int numFonts = st.getFonts().size();
+            assertEquals(idx, st.putFont(font));
+            assertEquals(numFonts, st.getFonts().size());
+
+            XSSFFont equalFont = new XSSFFont((CTFont)font.getCTFont().copy());
+            assertEquals(font, equalFont);
+            assertEquals(font.hashCode(), equalFont.hashCode());
+            assertEquals(idx, st.putFont(equalFont));
+        }
+    }
+
+    @Test
+    public void putFillChangedAfterRegistration() throws IOException {
+        try (XSSFWorkbook wb = new XSSFWorkbook()) {
+            StylesTable st = wb.getStylesSource();
+            XSSFCellStyle cs = wb.createCellStyle();
+            cs.setFillForegroundColor((short)10);
+            cs.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+            int fillId = (int)cs.getCoreXf().getFillId();
+            XSSFCellFill fill = st.getFillAt(fillId);
+
+            // change the registered fill, the index is notified by the setter
+            fill.setFillForegroundColor(12);
+
+            XSSFCellStyle cs2 = wb.createCellStyle();
+            cs2.setFillForegroundColor((short)12);
+            cs2.setFillPattern(FillPatternType.SOLID_FOREGROUND);
+            assertEquals(fillId, cs2.getCoreXf().getFillId());
+            // the changed fill has been moved to its new hash
+            assertEquals(fillId, st.putFill(new XSSFCellFill((CTFill)fill.getCTFill().copy(), null)));
+        }
+    }
+
+    @Test
+    public void putFontWithoutScanning() throws IOException {
+        final int[] equalsCalls = { 0 };
+        try (XSSFWorkbook wb = new XSSFWorkbook()) {
+            StylesTable st = wb.getStylesSource();
+            int numFonts = 2000;
+            for (int i = 0; i < numFonts; i++) {
+                XSSFFont font = new XSSFFont() {
+                    @Override
+                    public boolean equals(Object o) {
+                        equalsCalls[0]++;
+                        return super.equals(o);
+                    }
+                };
+                font.setFontHeight((short)(100 + i));
+                st.putFont(font);
+            }
+            assertEquals(numFonts + 1, st.getFonts().size());
+            // only the candidates with the same hash are compared, a miss doesn't scan the fonts
+            assertTrue(equalsCalls[0] < numFonts);
+        }
+    }
 }
@@ -0,0 +1,113 @@
+/*
+ *  ====================================================================
+ *    Licensed to the Apache Software Foundation (ASF) under one or more
+ *    contributor license agreements.  See the NOTICE file distributed with
+ *    this work for additional information regarding copyright ownership.
+ *    The ASF licenses this file to You under the Apache License, Version 2.0
+ *    (the "License"); you may not use this file except in compliance with
+ *    the License.  You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ * ====================================================================
+ */
+
+package org.apache.poi.xssf.streaming;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.util.NullOutputStream;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Test;
+
+public final class TestDirectSXSSFWorkbook {
+
+    @Test
+    public void writeSheetBySheet() throws IOException {
+        for (boolean useSharedStrings : new boolean[]{false, true}) {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            try (DirectSXSSFWorkbook wb = new DirectSXSSFWorkbook(bos, 10, useSharedStrings)) {
+                for (int i = 0; i < 3; i++) {
+                    Sheet sh = wb.createSheet("sheet" + i);
+                    sh.setColumnWidth(1, 5000);
+                    for (int j = 0; j < 1000; j++) {
+                        Row row = sh.createRow(j);
+                        row.createCell(0).setCellValue("text " + i + "/" + j);
+                        row.createCell(1).setCellValue(j);
+                    }
+                    // the merged region is written after the sheet data
+                    sh.addMergedRegion(CellRangeAddress.valueOf("D1:E2"));
+                }
+                // an empty sheet
+                wb.createSheet("empty");
+                wb.write(bos);
+            }
+
+            try (XSSFWorkbook xwb = new XSSFWorkbook(new ByteArrayInputStream(bos.toByteArray()))) {
+                assertEquals(4, xwb.getNumberOfSheets());
+                for (int i = 0; i < 3; i++) {
+                    XSSFSheet sh = xwb.getSheetAt(i);
+                    assertEquals("sheet" + i, sh.getSheetName());
+                    assertEquals(999, sh.getLastRowNum());
+                    for (int j = 0; j < 1000; j++) {
+                        Row row = sh.getRow(j);
+                        assertEquals("text " + i + "/" + j, row.getCell(0).getStringCellValue());
+                        assertEquals(j, (int) row.getCell(1).getNumericCellValue());
+                    }
+                    assertEquals(5000, sh.getColumnWidth(1));
+                    assertEquals(1, sh.getNumMergedRegions());
+                }
+                assertNull(xwb.getSheet("empty").getRow(0));
+            }
+        }
+    }
+
+    @Test
+    public void rowsOfWrittenSheet() throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (DirectSXSSFWorkbook wb = new DirectSXSSFWorkbook(bos, 1, false)) {
+            SXSSFSheet sh1 = wb.createSheet();
+            sh1.createRow(0).createCell(0).setCellValue(1);
+            sh1.flushRows();
+            SXSSFSheet sh2 = wb.createSheet();
+            sh2.createRow(0).createCell(0).setCellValue(2);
+            sh2.flushRows();
+
+            // the data of the first sheet was completed, when the second sheet was flushed
+            sh1.createRow(1).createCell(0).setCellValue(3);
+            try {
+                sh1.flushRows();
+                fail("rows of a completed sheet can't be written");
+            } catch (IllegalStateException expected) {
+                // expected
+            }
+            try {
+                wb.removeSheetAt(0);
+                fail("a completed sheet can't be removed");
+            } catch (IllegalStateException expected) {
+                // expected
+            }
+            try {
+                wb.write(new NullOutputStream());
+                fail("the workbook can only be written to the stream given on construction");
+            } catch (IllegalArgumentException expected) {
+                // expected
+            }
+        }
+    }
+}
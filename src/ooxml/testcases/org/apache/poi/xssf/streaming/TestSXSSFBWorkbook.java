@@ -0,0 +1,209 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.streaming;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.LittleEndian;
+import org.apache.poi.xssf.binary.XSSFBParseException;
+import org.apache.poi.xssf.binary.XSSFBParser;
+import org.apache.poi.xssf.binary.XSSFBRecordType;
+import org.apache.poi.xssf.binary.XSSFBSharedStringsTable;
+import org.apache.poi.xssf.binary.XSSFBSheetHandler;
+import org.apache.poi.xssf.eventusermodel.XSSFBReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler.SheetContentsHandler;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.junit.Test;
+
+public final class TestSXSSFBWorkbook {
+
+    @Test
+    public void writeValues() throws Exception {
+        String longText = new String(new char[10000]).replace('\0', 'x');
+        for (boolean useSharedStrings : new boolean[]{false, true}) {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            try (SXSSFBWorkbook wb = new SXSSFBWorkbook(10, useSharedStrings)) {
+                CellStyle dateStyle = wb.createCellStyle();
+                dateStyle.setDataFormat(wb.createDataFormat().getFormat("yyyy-mm-dd"));
+
+                Sheet sh = wb.createSheet("values");
+                Row row = sh.createRow(0);
+                row.createCell(0).setCellValue("text");
+                row.createCell(1).setCellValue(42);
+                row.createCell(2).setCellValue(-1.5);
+                row.createCell(3).setCellValue(1e12);
+                row.createCell(4).setCellValue(true);
+                row.createCell(5).setCellErrorValue(FormulaError.DIV0.getCode());
+                row.createCell(6).setCellValue(43466);
+                row.getCell(6).setCellStyle(dateStyle);
+                row.createCell(8).setCellValue(longText);
+                // the second block of 1024 columns
+                row.createCell(2000).setCellValue(-7);
+
+                // the rows are flushed a few times
+                for (int i = 1; i < 100; i++) {
+                    sh.createRow(i).createCell(0).setCellValue("row " + i);
+                }
+
+                Sheet sh2 = wb.createSheet("second");
+                sh2.createRow(5).createCell(3).setCellValue("second sheet");
+                wb.createSheet("empty");
+                wb.write(bos);
+                assertTrue(wb.dispose());
+            }
+
+            Map<String, Map<String, String>> sheets = readSheets(bos.toByteArray());
+            assertEquals(3, sheets.size());
+
+            Map<String, String> values = sheets.get("values");
+            assertEquals("text", values.get("A1"));
+            assertEquals("42", values.get("B1"));
+            assertEquals("-1.5", values.get("C1"));
+            assertEquals("1E+12", values.get("D1"));
+            assertEquals("TRUE", values.get("E1"));
+            // the sheet handler doesn't decode the error code
+            assertEquals("ERROR", values.get("F1"));
+            assertEquals("2019-01-01", values.get("G1"));
+            assertNull(values.get("H1"));
+            assertEquals(longText, values.get("I1"));
+            assertEquals("-7", values.get(CellReference.convertNumToColString(2000) + "1"));
+            for (int i = 1; i < 100; i++) {
+                assertEquals("row " + i, values.get("A" + (i + 1)));
+            }
+
+            assertEquals("second sheet", sheets.get("second").get("D6"));
+            assertTrue(sheets.get("empty").isEmpty());
+        }
+    }
+
+    @Test
+    public void writeSheetLayout() throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (SXSSFBWorkbook wb = new SXSSFBWorkbook()) {
+            Sheet sh = wb.createSheet("layout");
+            sh.setColumnWidth(1, 5000);
+            sh.addMergedRegion(CellRangeAddress.valueOf("D1:E2"));
+            sh.createRow(0).createCell(3).setCellValue("merged");
+            wb.write(bos);
+            wb.dispose();
+        }
+
+        final List<CellRangeAddress> mergedRegions = new ArrayList<>();
+        final int[] colInfo = new int[3];
+        try (OPCPackage pkg = OPCPackage.open(new ByteArrayInputStream(bos.toByteArray()))) {
+            XSSFBReader r = new XSSFBReader(pkg);
+            try (InputStream is = r.getSheetsData().next()) {
+                new XSSFBParser(is) {
+                    @Override
+                    public void handleRecord(int recordType, byte[] data) throws XSSFBParseException {
+                        if (recordType == XSSFBRecordType.BrtMergeCell.getId()) {
+                            mergedRegions.add(new CellRangeAddress(LittleEndian.getInt(data, 0),
+                                LittleEndian.getInt(data, 4), LittleEndian.getInt(data, 8), LittleEndian.getInt(data, 12)));
+                        } else if (recordType == XSSFBRecordType.BrtColInfo.getId()) {
+                            colInfo[0] = LittleEndian.getInt(data, 0);
+                            colInfo[1] = LittleEndian.getInt(data, 4);
+                            colInfo[2] = LittleEndian.getInt(data, 8);
+                        }
+                    }
+                }.parse();
+            }
+        }
+        assertEquals(1, mergedRegions.size());
+        assertEquals("D1:E2", mergedRegions.get(0).formatAsString());
+        assertEquals(1, colInfo[0]);
+        assertEquals(1, colInfo[1]);
+        assertEquals(5000, colInfo[2]);
+    }
+
+    @Test
+    public void formulasAreNotSupported() throws IOException {
+        try (SXSSFBWorkbook wb = new SXSSFBWorkbook(1)) {
+            Sheet sh = wb.createSheet();
+            Cell cell = sh.createRow(0).createCell(0);
+            cell.setCellValue(2);
+            // rejected when the formula is set, not when the row is flushed
+            try {
+                cell.setCellFormula("1+1");
+                fail("expected IllegalStateException");
+            } catch (IllegalStateException e) {
+                assertTrue(e.getMessage().contains("A1"));
+            }
+            assertEquals(CellType.NUMERIC, cell.getCellType());
+
+            sh.createRow(1);
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            wb.write(bos);
+            wb.dispose();
+        }
+    }
+
+    private static Map<String, Map<String, String>> readSheets(byte[] xlsb) throws Exception {
+        Map<String, Map<String, String>> sheets = new HashMap<>();
+        try (OPCPackage pkg = OPCPackage.open(new ByteArrayInputStream(xlsb))) {
+            XSSFBReader r = new XSSFBReader(pkg);
+            XSSFBSharedStringsTable sst = new XSSFBSharedStringsTable(pkg);
+            XSSFBReader.SheetIterator it = (XSSFBReader.SheetIterator) r.getSheetsData();
+            while (it.hasNext()) {
+                try (InputStream is = it.next()) {
+                    final Map<String, String> values = new HashMap<>();
+                    new XSSFBSheetHandler(is, r.getXSSFBStylesTable(), it.getXSSFBSheetComments(), sst,
+                        new SheetContentsHandler() {
+                            @Override
+                            public void startRow(int rowNum) {
+                            }
+
+                            @Override
+                            public void endRow(int rowNum) {
+                            }
+
+                            @Override
+                            public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+                                if (formattedValue != null && !formattedValue.isEmpty()) {
+                                    values.put(cellReference, formattedValue);
+                                }
+                            }
+                        }, new DataFormatter(), false).parse();
+                    sheets.put(it.getSheetName(), values);
+                }
+            }
+        }
+        return sheets;
+    }
+}
@@ -34,12 +34,19 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+import org.apache.commons.compress.archivers.zip.Zip64Mode;
 
 import org.apache.poi.POIDataSamples;
 import org.apache.poi.POITestCase;
 import org.apache.poi.openxml4j.opc.OPCPackage;
 import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.openxml4j.util.ZipDeflateStrategy;
 import org.apache.poi.ss.usermodel.BaseTestXWorkbook;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellType;
@@ -47,6 +54,7 @@ import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.apache.poi.ss.util.CellRangeAddress;
 import org.apache.poi.ss.util.CellReference;
 import org.apache.poi.util.NullOutputStream;
 import org.apache.poi.xssf.SXSSFITestDataProvider;
@@ -306,6 +314,99 @@ public final class TestSXSSFWorkbook extends BaseTestXWorkbook {
         wb.close();
     }
 
+    @Test
+    public void deflatedSheetdataWriter() throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (Zip64Mode zip64Mode : new Zip64Mode[]{Zip64Mode.AsNeeded, Zip64Mode.Always}) {
+                for (boolean useSharedStrings : new boolean[]{false, true}) {
+                    SXSSFWorkbook wb = new SXSSFWorkbook(null, 100, false, useSharedStrings);
+                    wb.setSheetDataExecutor(executor);
+                    wb.setZip64Mode(zip64Mode);
+
+                    final int rowNum = 10000;
+                    final int sheetNum = 3;
+                    populateData(wb, rowNum, sheetNum);
+                    SXSSFSheet sh0 = wb.getSheetAt(0);
+                    assertSame(DeflatedSheetDataWriter.class, sh0.getSheetDataWriter().getClass());
+                    // the merged region is written after the sheet data
+                    sh0.addMergedRegion(CellRangeAddress.valueOf("E1:F2"));
+
+                    XSSFWorkbook xwb = SXSSFITestDataProvider.instance.writeOutAndReadBack(wb);
+                    for (int i = 0; i < sheetNum; i++) {
+                        Sheet sh = xwb.getSheetAt(i);
+                        assertEquals("sheet" + i, sh.getSheetName());
+                        assertEquals(rowNum - 1, sh.getLastRowNum());
+                        for (int j = 0; j < rowNum; j++) {
+                            Row row = sh.getRow(j);
+                            Cell cell1 = row.getCell(0);
+                            assertEquals(new CellReference(cell1).formatAsString(), cell1.getStringCellValue());
+                            assertEquals(i, (int) row.getCell(1).getNumericCellValue());
+                            assertEquals(j, (int) row.getCell(2).getNumericCellValue());
+                        }
+                    }
+                    assertEquals(1, xwb.getSheetAt(0).getNumMergedRegions());
+
+                    assertTrue(wb.dispose());
+                    assertFalse(sh0.getSheetDataWriter().getTempFile().exists());
+                    xwb.close();
+                    wb.close();
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void parallelDeflateStrategy() throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (Zip64Mode zip64Mode : new Zip64Mode[]{Zip64Mode.AsNeeded, Zip64Mode.Always}) {
+                SXSSFWorkbook wb = new SXSSFWorkbook(100);
+                wb.setZip64Mode(zip64Mode);
+                ZipDeflateStrategy strategy = new ZipDeflateStrategy();
+                strategy.setExecutor(executor);
+                strategy.setBlockSize(1 << 15);
+                wb.getXSSFWorkbook().getPackage().setDeflateStrategy(strategy);
+
+                final int rowNum = 5000;
+                populateData(wb, rowNum, 2);
+
+                XSSFWorkbook xwb = SXSSFITestDataProvider.instance.writeOutAndReadBack(wb);
+                for (int i = 0; i < 2; i++) {
+                    Sheet sh = xwb.getSheetAt(i);
+                    assertEquals(rowNum - 1, sh.getLastRowNum());
+                    for (int j = 0; j < rowNum; j++) {
+                        Row row = sh.getRow(j);
+                        assertEquals(new CellReference(row.getCell(0)).formatAsString(), row.getCell(0).getStringCellValue());
+                        assertEquals(j, (int) row.getCell(2).getNumericCellValue());
+                    }
+                }
+
+                assertTrue(wb.dispose());
+                xwb.close();
+                wb.close();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void crc32Combine() {
+        byte[] data = "<row r=\"1\"><c r=\"A1\" t=\"n\"><v>1.0</v></c></row>".getBytes(StandardCharsets.UTF_8);
+        for (int split : new int[]{0, 1, 17, data.length}) {
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            CRC32 crc1 = new CRC32();
+            crc1.update(data, 0, split);
+            CRC32 crc2 = new CRC32();
+            crc2.update(data, split, data.length - split);
+            assertEquals(crc.getValue(), DeflatedSheetDataWriter.crc32Combine(crc1.getValue(), crc2.getValue(), data.length - split));
+        }
+    }
+
     private static void assertWorkbookDispose(SXSSFWorkbook wb)
     {
         populateData(wb, 1000, 5);
@@ -201,4 +201,14 @@ public final class TestXSSFColor {
        assertEquals(hexRgb, color.getARGBHex());
       
    }
+
+   @Test
+   public void testTintZeroHashCode() {
+       XSSFColor positive = new XSSFColor(new byte[]{1, 2, 3}, null);
+       positive.setTint(0.0);
+       XSSFColor negative = new XSSFColor(new byte[]{1, 2, 3}, null);
+       negative.setTint(-0.0);
+       assertEquals(positive, negative);
+       assertEquals(positive.hashCode(), negative.hashCode());
+   }
 }
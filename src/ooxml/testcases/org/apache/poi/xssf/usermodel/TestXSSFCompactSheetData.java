@@ -0,0 +1,226 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.xssf.usermodel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.function.Consumer;
+
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.XSSFTestDataSamples;
+import org.apache.poi.xssf.model.OffHeapSharedStringsTable;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.junit.Test;
+
+/**
+ * Test {@link XSSFCompactSheetData} against the sheets read by XMLBeans
+ */
+public final class TestXSSFCompactSheetData {
+    private static final String[] SAMPLES = {
+        "sample.xlsx", "shared_formulas.xlsx", "XSSFSheet.copyRows.xlsx", "GroupTest.xlsx",
+        "InlineStrings.xlsx", "59746_NoRowNums.xlsx", "style-alternate-content.xlsx", "57798.xlsx"
+    };
+
+    @Test
+    public void readUnchanged() throws IOException {
+        for (String sample : SAMPLES) {
+            try (XSSFWorkbook ref = XSSFTestDataSamples.openSampleWorkbook(sample);
+                 XSSFWorkbook wb = openCompact(sample)) {
+                assertEquals(sample, dump(ref), dump(wb));
+            }
+        }
+    }
+
+    @Test
+    public void writeUnchanged() throws IOException, InvalidFormatException {
+        for (String sample : SAMPLES) {
+            try (XSSFWorkbook ref = XSSFTestDataSamples.openSampleWorkbook(sample);
+                 XSSFWorkbook wb = openCompact(sample);
+                 XSSFWorkbook wb2 = writeAndReadBack(wb)) {
+                assertEquals(sample, dump(ref), dump(wb2));
+            }
+        }
+    }
+
+    @Test
+    public void rowsAreConvertedOnAccess() throws IOException {
+        try (XSSFWorkbook ref = XSSFTestDataSamples.openSampleWorkbook("sample.xlsx");
+             XSSFWorkbook wb = openCompact("sample.xlsx")) {
+            XSSFSheet sheetRef = ref.getSheetAt(0);
+            XSSFSheet sheet = wb.getSheetAt(0);
+            assertEquals(0, sheet.getCTWorksheet().getSheetData().sizeOfRowArray());
+            assertEquals(sheetRef.getFirstRowNum(), sheet.getFirstRowNum());
+            assertEquals(sheetRef.getLastRowNum(), sheet.getLastRowNum());
+            assertEquals(sheetRef.getPhysicalNumberOfRows(), sheet.getPhysicalNumberOfRows());
+
+            XSSFRow row = sheet.getRow(4);
+            assertNotNull(row);
+            assertEquals(1, sheet.getCTWorksheet().getSheetData().sizeOfRowArray());
+            assertEquals(sheetRef.getRow(4).getCell(1).getNumericCellValue(), row.getCell(1).getNumericCellValue(), 0);
+            assertEquals(sheetRef.getPhysicalNumberOfRows(), sheet.getPhysicalNumberOfRows());
+
+            // rows before and after the converted row are inserted in order
+            sheet.getRow(sheet.getLastRowNum());
+            sheet.getRow(sheet.getFirstRowNum());
+            assertEquals(3, sheet.getCTWorksheet().getSheetData().sizeOfRowArray());
+            assertNull(sheet.getRow(sheet.getLastRowNum()+1));
+
+            assertEquals(dump(ref), dump(wb));
+            assertEquals(sheetRef.getPhysicalNumberOfRows(), sheet.getCTWorksheet().getSheetData().sizeOfRowArray());
+        }
+    }
+
+    @Test
+    public void sharedFormulas() throws IOException {
+        try (XSSFWorkbook ref = XSSFTestDataSamples.openSampleWorkbook("shared_formulas.xlsx");
+             XSSFWorkbook wb = openCompact("shared_formulas.xlsx")) {
+            XSSFSheet sheetRef = ref.getSheetAt(0);
+            XSSFSheet sheet = wb.getSheetAt(0);
+            // the rows are accessed backwards, so the dependent formulas are read before the rows of their master
+            for (int i = sheetRef.getLastRowNum(); i >= 0; i--) {
+                XSSFRow rowRef = sheetRef.getRow(i);
+                if (rowRef == null) {
+                    continue;
+                }
+                for (Cell cellRef : rowRef) {
+                    if (cellRef.getCellType() == CellType.FORMULA) {
+                        Cell cell = sheet.getRow(i).getCell(cellRef.getColumnIndex());
+                        assertEquals(cellRef.getCellFormula(), cell.getCellFormula());
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void modifyAndWrite() throws IOException, InvalidFormatException {
+        Consumer<XSSFWorkbook> changes = wb -> {
+            XSSFSheet sheet = wb.getSheetAt(0);
+            sheet.getRow(5).getCell(1).setCellValue(42);
+            sheet.getRow(6).createCell(20).setCellValue("added");
+            sheet.removeRow(sheet.getRow(7));
+            sheet.createRow(3).createCell(0).setCellValue("replaced");
+            sheet.createRow(sheet.getLastRowNum()+5).createCell(2).setCellFormula("B6*2");
+        };
+        for (String sample : new String[]{ "sample.xlsx", "shared_formulas.xlsx" }) {
+            try (XSSFWorkbook ref = XSSFTestDataSamples.openSampleWorkbook(sample);
+                 XSSFWorkbook wb = openCompact(sample)) {
+                changes.accept(ref);
+                changes.accept(wb);
+                try (XSSFWorkbook ref2 = writeAndReadBack(ref);
+                     XSSFWorkbook wb2 = writeAndReadBack(wb)) {
+                    assertEquals(sample, dump(ref2), dump(wb2));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shiftRows() throws IOException, InvalidFormatException {
+        try (XSSFWorkbook ref = XSSFTestDataSamples.openSampleWorkbook("sample.xlsx");
+             XSSFWorkbook wb = openCompact("sample.xlsx")) {
+            ref.getSheetAt(0).shiftRows(5, 10, 3);
+            wb.getSheetAt(0).shiftRows(5, 10, 3);
+            assertEquals(dump(ref), dump(wb));
+            try (XSSFWorkbook wb2 = writeAndReadBack(wb)) {
+                assertEquals(dump(ref), dump(wb2));
+            }
+        }
+    }
+
+    @Test
+    public void largeSheetWithOffHeapStrings() throws IOException, InvalidFormatException {
+        final int numRows = 5000;
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (SXSSFWorkbook swb = new SXSSFWorkbook(100)) {
+            Sheet sheet = swb.createSheet();
+            for (int i = 0; i < numRows; i++) {
+                Row row = sheet.createRow(i);
+                row.createCell(0).setCellValue(" text " + i);
+                row.createCell(1).setCellValue(i * 0.1);
+                row.createCell(2).setCellValue(i);
+                row.createCell(3).setCellFormula("B" + (i + 1) + "*2");
+            }
+            swb.write(bos);
+            swb.dispose();
+        }
+
+        XSSFFactory factory = XSSFCompactSheetData.factory(OffHeapSharedStringsTable.factory(false));
+        try (XSSFWorkbook ref = new XSSFWorkbook(new ByteArrayInputStream(bos.toByteArray()));
+             XSSFWorkbook wb = new XSSFWorkbook(OPCPackage.open(new ByteArrayInputStream(bos.toByteArray())), factory)) {
+            XSSFSheet sheet = wb.getSheetAt(0);
+            assertEquals(numRows - 1, sheet.getLastRowNum());
+            assertEquals(" text 1234", sheet.getRow(1234).getCell(0).getStringCellValue());
+            assertEquals(123.4, sheet.getRow(1234).getCell(1).getNumericCellValue(), 0);
+            assertEquals(1, sheet.getCTWorksheet().getSheetData().sizeOfRowArray());
+            sheet.getRow(1234).getCell(2).setCellValue("changed");
+            ref.getSheetAt(0).getRow(1234).getCell(2).setCellValue("changed");
+
+            try (XSSFWorkbook wb2 = writeAndReadBack(wb)) {
+                assertEquals(dump(ref), dump(wb2));
+                assertTrue(wb2.getSheetAt(0).getCTWorksheet().getDimension().getRef().endsWith("D" + numRows));
+            }
+        }
+    }
+
+    private static XSSFWorkbook openCompact(String sample) throws IOException {
+        return new XSSFWorkbook(XSSFTestDataSamples.openSamplePackage(sample), XSSFCompactSheetData.factory(null));
+    }
+
+    private static XSSFWorkbook writeAndReadBack(XSSFWorkbook wb) throws IOException, InvalidFormatException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        wb.write(bos);
+        return new XSSFWorkbook(OPCPackage.open(new ByteArrayInputStream(bos.toByteArray())));
+    }
+
+    private static String dump(XSSFWorkbook wb) {
+        DataFormatter formatter = new DataFormatter();
+        StringBuilder sb = new StringBuilder();
+        for (Sheet sheet : wb) {
+            sb.append(sheet.getSheetName()).append(": ").append(sheet.getFirstRowNum()).append('-')
+              .append(sheet.getLastRowNum()).append('\n');
+            for (Row row : sheet) {
+                sb.append(row.getRowNum()).append(' ').append(row.getHeight()).append(' ')
+                  .append(((XSSFRow)row).getCTRow().getOutlineLevel()).append('\n');
+                for (Cell cell : row) {
+                    sb.append(cell.getAddress()).append(' ').append(cell.getCellType()).append(' ');
+                    if (cell.getCellStyle() != null) {
+                        sb.append(cell.getCellStyle().getIndex()).append(' ');
+                    }
+                    if (cell.getCellType() == CellType.FORMULA) {
+                        sb.append(cell.getCellFormula()).append(' ');
+                    }
+                    sb.append(formatter.formatCellValue(cell)).append('\n');
+                }
+            }
+        }
+        return sb.toString();
+    }
+}
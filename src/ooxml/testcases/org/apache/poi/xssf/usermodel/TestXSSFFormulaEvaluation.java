@@ -19,7 +19,9 @@ package org.apache.poi.xssf.usermodel;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
@@ -27,8 +29,12 @@ import java.util.HashMap;
 import java.util.Map;
 
 import org.apache.poi.hssf.HSSFTestDataSamples;
+import org.apache.poi.ss.formula.FormulaRenderer;
+import org.apache.poi.ss.formula.ptg.Ptg;
+import org.apache.poi.ss.formula.ptg.RefPtg;
 import org.apache.poi.ss.usermodel.BaseTestFormulaEvaluator;
 import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
 import org.apache.poi.ss.usermodel.CellValue;
 import org.apache.poi.ss.usermodel.FormulaEvaluator;
 import org.apache.poi.ss.usermodel.Row;
@@ -472,4 +478,54 @@ public final class TestXSSFFormulaEvaluation extends BaseTestFormulaEvaluator {
             assertEquals("wrong value A5", "another value", value.getStringCellValue());
         }
     }
+
+    @Test
+    public void cachedFormulaTokens() throws IOException {
+        try (XSSFWorkbook wb = new XSSFWorkbook()) {
+            XSSFSheet sheet = wb.createSheet("Sheet1");
+            XSSFCell cell = sheet.createRow(0).createCell(1);
+            cell.setCellFormula("A1*2");
+            XSSFEvaluationWorkbook ewb = XSSFEvaluationWorkbook.create(wb);
+
+            // the cached tokens are copied, so modifying the returned tokens doesn't affect the cache
+            Ptg[] ptgs = ewb.getFormulaTokens(new XSSFEvaluationCell(cell));
+            assertNotSame(ptgs, ewb.getFormulaTokens(new XSSFEvaluationCell(cell)));
+            ((RefPtg)ptgs[0]).setRow(5);
+            assertEquals("A1*2", FormulaRenderer.toFormulaString(ewb, ewb.getFormulaTokens(new XSSFEvaluationCell(cell))));
+
+            // changed formulas are parsed again
+            cell.setCellFormula("A1*3");
+            assertEquals("A1*3", FormulaRenderer.toFormulaString(ewb, ewb.getFormulaTokens(new XSSFEvaluationCell(cell))));
+
+            sheet.shiftRows(0, 0, 2);
+            assertEquals("A3*3", FormulaRenderer.toFormulaString(ewb, ewb.getFormulaTokens(new XSSFEvaluationCell(cell))));
+
+            XSSFSheet sheet2 = wb.createSheet("Sheet2");
+            XSSFCell cell2 = sheet2.createRow(0).createCell(0);
+            cell2.setCellFormula("Sheet1!B3");
+            assertEquals("Sheet1!B3", FormulaRenderer.toFormulaString(ewb, ewb.getFormulaTokens(new XSSFEvaluationCell(cell2))));
+            wb.setSheetName(0, "Renamed");
+            assertEquals("Renamed!B3", FormulaRenderer.toFormulaString(ewb, ewb.getFormulaTokens(new XSSFEvaluationCell(cell2))));
+        }
+    }
+
+    @Test
+    public void cachedSharedFormulaTokens() throws IOException {
+        try (XSSFWorkbook wb = XSSFTestDataSamples.openSampleWorkbook("shared_formulas.xlsx")) {
+            XSSFEvaluationWorkbook ewb = XSSFEvaluationWorkbook.create(wb);
+            int numFormulas = 0;
+            for (Row row : wb.getSheetAt(0)) {
+                for (Cell cell : row) {
+                    if (cell.getCellType() == CellType.FORMULA) {
+                        XSSFEvaluationCell evalCell = new XSSFEvaluationCell((XSSFCell)cell);
+                        // the shifted tokens of the shared formula need to match the formula of the cell
+                        assertEquals(cell.getCellFormula(), FormulaRenderer.toFormulaString(ewb, ewb.getFormulaTokens(evalCell)));
+                        assertEquals(cell.getCellFormula(), FormulaRenderer.toFormulaString(ewb, ewb.getFormulaTokens(evalCell)));
+                        numFormulas++;
+                    }
+                }
+            }
+            assertTrue(numFormulas > 0);
+        }
+    }
 }
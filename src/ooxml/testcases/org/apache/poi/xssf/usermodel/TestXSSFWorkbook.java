@@ -40,6 +40,7 @@ import java.util.zip.CRC32;
 
 import org.apache.poi.POIDataSamples;
 import org.apache.poi.hssf.HSSFTestDataSamples;
+import org.apache.poi.ooxml.POIXMLDocumentPart;
 import org.apache.poi.ooxml.POIXMLProperties;
 import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
 import org.apache.poi.openxml4j.opc.ContentTypes;
@@ -62,6 +63,7 @@ import org.apache.poi.ss.usermodel.Row.MissingCellPolicy;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.apache.poi.ss.SpreadsheetVersion;
 import org.apache.poi.ss.util.AreaReference;
 import org.apache.poi.ss.util.CellReference;
 import org.apache.poi.util.IOUtils;
@@ -1102,6 +1104,78 @@ public final class TestXSSFWorkbook extends BaseTestXWorkbook {
        wb.close();
     }
 
+    @Test
+    public void lazySheets() throws IOException, InvalidFormatException {
+        XSSFWorkbook eager = XSSFTestDataSamples.openSampleWorkbook("sample.xlsx");
+        OPCPackage pkg = OPCPackage.open(HSSFTestDataSamples.openSampleFileStream("sample.xlsx"));
+        XSSFWorkbook lazy = new XSSFWorkbook(pkg, null, true);
+        assertEquals(eager.getNumberOfSheets(), lazy.getNumberOfSheets());
+        assertEquals(eager.getSheetName(2), lazy.getSheetName(2));
+        assertEquals(3, countUnreadSheets(lazy));
+
+        // only the accessed sheet is read
+        XSSFSheet sheet = lazy.getSheetAt(0);
+        assertNotNull(sheet.getCTWorksheet());
+        assertEquals(2, countUnreadSheets(lazy));
+        assertSame(sheet, lazy.getSheet(sheet.getSheetName()));
+        sheet.getRow(0).getCell(0).setCellValue("lazy");
+
+        // the unread sheets are written unchanged
+        XSSFWorkbook wbBack = XSSFTestDataSamples.writeOutAndReadBack(lazy);
+        assertEquals("lazy", wbBack.getSheetAt(0).getRow(0).getCell(0).getStringCellValue());
+        for (int i = 1; i < eager.getNumberOfSheets(); i++) {
+            assertEquals(eager.getSheetAt(i).getCTWorksheet().xmlText(), wbBack.getSheetAt(i).getCTWorksheet().xmlText());
+        }
+        assertEquals(2, countUnreadSheets(lazy));
+
+        // iterating reads all sheets
+        for (Sheet sh : lazy) {
+            assertNotNull(((XSSFSheet)sh).getCTWorksheet());
+        }
+        assertEquals(0, countUnreadSheets(lazy));
+
+        wbBack.close();
+        lazy.close();
+        eager.close();
+    }
+
+    @Test
+    public void lazySheetsWithPivotTables() throws IOException, InvalidFormatException {
+        XSSFWorkbook wb = new XSSFWorkbook();
+        for (int i = 0; i < 2; i++) {
+            XSSFSheet sheet = wb.createSheet("data" + i);
+            XSSFRow row = sheet.createRow(0);
+            row.createCell(0).setCellValue("name");
+            row.createCell(1).setCellValue("value");
+            row = sheet.createRow(1);
+            row.createCell(0).setCellValue("a");
+            row.createCell(1).setCellValue(i);
+            sheet.createPivotTable(new AreaReference("A1:B2", SpreadsheetVersion.EXCEL2007), new CellReference("D1"));
+        }
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        wb.write(bos);
+        wb.close();
+
+        OPCPackage pkg = OPCPackage.open(new ByteArrayInputStream(bos.toByteArray()));
+        XSSFWorkbook lazy = new XSSFWorkbook(pkg, null, true);
+        // the pivot table of the read sheet doesn't cause the other sheet to be read
+        assertEquals(1, lazy.getSheetAt(0).getPivotTables().size());
+        assertEquals(1, countUnreadSheets(lazy));
+        assertEquals(2, lazy.getPivotTables().size());
+        assertEquals(0, countUnreadSheets(lazy));
+        lazy.close();
+    }
+
+    private static int countUnreadSheets(XSSFWorkbook wb) {
+        int count = 0;
+        for (POIXMLDocumentPart part : wb.getRelations()) {
+            if (part instanceof XSSFSheet && ((XSSFSheet)part).getCTWorksheet() == null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
     @SuppressWarnings("deprecation")
     @Test
     public void testRemoveSheet() throws IOException {
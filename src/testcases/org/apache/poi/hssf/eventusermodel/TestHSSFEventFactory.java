@@ -28,9 +28,12 @@ import org.apache.poi.hssf.record.BoundSheetRecord;
 import org.apache.poi.hssf.record.ContinueRecord;
 import org.apache.poi.hssf.record.DVALRecord;
 import org.apache.poi.hssf.record.DVRecord;
+import org.apache.poi.hssf.record.DimensionsRecord;
 import org.apache.poi.hssf.record.EOFRecord;
 import org.apache.poi.hssf.record.FeatHdrRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
 import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.RowRecord;
 import org.apache.poi.hssf.record.Record;
 import org.apache.poi.hssf.record.SelectionRecord;
 import org.apache.poi.hssf.record.WindowTwoRecord;
@@ -114,6 +117,33 @@ public final class TestHSSFEventFactory extends TestCase {
         factory.processWorkbookEvents(req, fs);
     }
 
+    /**
+     * The unknown records of 46137.xls are passed to the raw record filter,
+     * the CONTINUE record after the following EOF must not be attached to the
+     * last created record
+     */
+    public void testContinueAfterRawRecords() throws Exception {
+        HSSFRequest req = new HSSFRequest();
+        MockHSSFListener mockListen = new MockHSSFListener();
+        req.addListener(mockListen, DimensionsRecord.sid);
+        req.addListener(mockListen, EOFRecord.sid);
+        req.addListener(mockListen, ContinueRecord.sid);
+
+        POIFSFileSystem fs = new POIFSFileSystem(openSample("46137.xls"));
+        HSSFEventFactory factory = new HSSFEventFactory();
+        factory.processWorkbookEvents(req, fs);
+
+        Record[] recs = mockListen.getRecords();
+        int continueRecords = 0;
+        for (int i = 1; i < recs.length; i++) {
+            if (recs[i] instanceof ContinueRecord) {
+                assertTrue(recs[i - 1] instanceof EOFRecord);
+                continueRecords++;
+            }
+        }
+        assertTrue(continueRecords > 0);
+    }
+
     private static class MockHSSFListener implements HSSFListener {
         private final List<Record> records = new ArrayList<>();
 
@@ -130,6 +160,51 @@ public final class TestHSSFEventFactory extends TestCase {
         }
     }
 
+    public void testCellValueAndRawListeners() throws Exception {
+        for (String file : new String[]{ "SimpleWithSkip.xls", "ContinueRecordProblem.xls", "SampleSS.xls" }) {
+            // the records as created by the record factory
+            final List<String> expected = new ArrayList<>();
+            final int[] rowCount = { 0, 0 };
+            HSSFRequest req = new HSSFRequest();
+            req.addListener(record -> {
+                NumberRecord nr = (NumberRecord) record;
+                expected.add(nr.getRow() + "," + nr.getColumn() + "," + nr.getXFIndex() + "=" + nr.getValue());
+            }, NumberRecord.sid);
+            req.addListener(record -> {
+                LabelSSTRecord lr = (LabelSSTRecord) record;
+                expected.add(lr.getRow() + "," + lr.getColumn() + "," + lr.getXFIndex() + "=#" + lr.getSSTIndex());
+            }, LabelSSTRecord.sid);
+            req.addListener(record -> rowCount[0]++, RowRecord.sid);
+            new HSSFEventFactory().processWorkbookEvents(req, new POIFSFileSystem(openSample(file)));
+
+            final List<String> actual = new ArrayList<>();
+            req = new HSSFRequest();
+            req.addCellValueListener(new HSSFCellValueListener() {
+                @Override
+                public void processNumberCell(int row, int column, int xfIndex, double value) {
+                    actual.add(row + "," + column + "," + xfIndex + "=" + value);
+                }
+
+                @Override
+                public void processStringCell(int row, int column, int xfIndex, int sstIndex) {
+                    actual.add(row + "," + column + "," + xfIndex + "=#" + sstIndex);
+                }
+            });
+            req.addRawListener((sid, dataSize, data) -> {
+                assertEquals(RowRecord.sid, sid);
+                assertEquals(16, dataSize);
+                // the row number is the first field
+                assertTrue(data.readUShort() >= 0);
+                rowCount[1]++;
+            }, RowRecord.sid);
+            new HSSFEventFactory().processWorkbookEvents(req, new POIFSFileSystem(openSample(file)));
+
+            assertFalse(file, expected.isEmpty());
+            assertEquals(file, expected, actual);
+            assertEquals(file, rowCount[0], rowCount[1]);
+        }
+    }
+
     public void testWithDifferentWorkbookName() throws Exception {
         HSSFRequest req = new HSSFRequest();
         MockHSSFListener mockListen = new MockHSSFListener();
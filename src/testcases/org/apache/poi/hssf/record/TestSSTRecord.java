@@ -35,6 +35,7 @@ import org.apache.poi.hssf.HSSFTestDataSamples;
 import org.apache.poi.hssf.record.common.UnicodeString;
 import org.apache.poi.hssf.usermodel.HSSFSheet;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
 import org.apache.poi.util.HexRead;
 import org.apache.poi.util.LittleEndian;
 import org.apache.poi.util.LocaleUtil;
@@ -1510,6 +1511,40 @@ public final class TestSSTRecord {
         assertRecordEquals(src, dst);
     }
 
+    @Test
+    public void lazyDecoding() throws IOException {
+        byte[][] samples = {
+            concatHexDumps("BigSSTRecord", "BigSSTRecordCR"),
+            concatHexDumps("BigSSTRecord2", "BigSSTRecord2CR1", "BigSSTRecord2CR2", "BigSSTRecord2CR3",
+                "BigSSTRecord2CR4", "BigSSTRecord2CR5", "BigSSTRecord2CR6", "BigSSTRecord2CR7"),
+            HexRead.readFromString(data_50779_1),
+            HexRead.readFromString(data_50779_2)
+        };
+        for (byte[] data : samples) {
+            SSTRecord expected = new SSTRecord(TestcaseRecordInputStream.create(data));
+            byte[] expectedSerialized = expected.serialize();
+
+            SSTRecord actual = new SSTRecord(TestcaseRecordInputStream.create(data), 10);
+            assertRecordEquals(expected, actual);
+            // strings are decoded again, after they've been evicted from the cache
+            for (int k = actual.countStrings() - 1; k >= 0; k--) {
+                assertEquals(expected.getString(k), actual.getString(k));
+            }
+            assertArrayEquals(expectedSerialized, actual.serialize());
+            assertRecordEquals(expected, actual);
+        }
+
+        HSSFWorkbook wb1;
+        try (InputStream is = HSSFTestDataSamples.openSampleFileStream("duprich1.xls")) {
+            wb1 = new HSSFWorkbook(new POIFSFileSystem(is).getRoot(), false, 10);
+        }
+        assertEquals( "01/05 (Wed)", wb1.getSheetAt( 1 ).getRow( 0 ).getCell(8 ).getStringCellValue() );
+        HSSFWorkbook wb2 = HSSFTestDataSamples.writeOutAndReadBack(wb1);
+        wb1.close();
+        assertEquals( "01/05 (Wed)", wb2.getSheetAt( 1 ).getRow( 1 ).getCell(8 ).getStringCellValue() );
+        wb2.close();
+    }
+
     @Test
     public void test57456() {
         byte[] bytes = HexRead.readFromString("FC, 00, 08, 00, 00, 00, 00, 00, E1, 06, 00, 00");
@@ -18,6 +18,7 @@
 package org.apache.poi.hssf.usermodel;
 
 import static org.apache.poi.POITestCase.assertContains;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
@@ -1256,6 +1257,66 @@ public final class TestHSSFWorkbook extends BaseTestWorkbook {
         wb.close();
     }
     
+    @Test
+    public void rowAccessWindow() throws IOException {
+        final int rows = 1000;
+        byte[][] data = new byte[2][];
+        for (int window : new int[]{ -1, 100 }) {
+            try (HSSFWorkbook wb = new HSSFWorkbook()) {
+                wb.setRowAccessWindowSize(window);
+                for (int s = 0; s < 2; s++) {
+                    HSSFSheet sheet = wb.createSheet("sheet" + s);
+                    for (int i = 0; i < rows; i++) {
+                        HSSFRow row = sheet.createRow(i);
+                        row.createCell(0).setCellValue("row " + i);
+                        row.createCell(1).setCellValue(i);
+                        row.createCell(2).setCellFormula("B" + (i + 1) + "*2");
+                    }
+                }
+                HSSFSheet sheet = wb.getSheetAt(1);
+                if (window < 0) {
+                    assertEquals(rows, sheet.getPhysicalNumberOfRows());
+                    data[0] = wb.getBytes();
+                } else {
+                    assertNull(sheet.getRow(0));
+                    assertNotNull(sheet.getRow(rows - 1));
+                    // the flushed rows are counted like in SXSSF
+                    assertEquals(rows, sheet.getPhysicalNumberOfRows());
+                    assertEquals(0, sheet.getFirstRowNum());
+                    assertEquals(rows - 1, sheet.getLastRowNum());
+                    try {
+                        sheet.createRow(1);
+                        fail("flushed rows can't be created again");
+                    } catch (IllegalArgumentException e) {
+                        // expected
+                    }
+                    // the flushed blocks and the index are the same as without flushing
+                    data[1] = wb.getBytes();
+
+                    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                    wb.write(bos);
+                    try (HSSFWorkbook wbBack = new HSSFWorkbook(new ByteArrayInputStream(bos.toByteArray()))) {
+                        for (int s = 0; s < 2; s++) {
+                            HSSFSheet sheetBack = wbBack.getSheetAt(s);
+                            assertEquals(rows, sheetBack.getPhysicalNumberOfRows());
+                            for (int i = 0; i < rows; i++) {
+                                HSSFRow row = sheetBack.getRow(i);
+                                assertEquals("row " + i, row.getCell(0).getStringCellValue());
+                                assertEquals(i, (int)row.getCell(1).getNumericCellValue());
+                                assertEquals("B" + (i + 1) + "*2", row.getCell(2).getCellFormula());
+                            }
+                        }
+                    }
+
+                    // removing a sheet deletes the temp file of its flushed rows
+                    wb.removeSheetAt(0);
+                    assertEquals(1, wb.getNumberOfSheets());
+                }
+            }
+        }
+        assertArrayEquals(data[0], data[1]);
+    }
+
     @Ignore
     @Test
     @Override
@@ -19,14 +19,23 @@
 
 package org.apache.poi.poifs.nio;
 
+import static org.junit.Assert.assertArrayEquals;
+
 import junit.framework.TestCase;
 import org.apache.poi.POIDataSamples;
+import org.apache.poi.poifs.filesystem.DirectoryEntry;
+import org.apache.poi.poifs.filesystem.DocumentEntry;
+import org.apache.poi.poifs.filesystem.DocumentInputStream;
+import org.apache.poi.poifs.filesystem.Entry;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
 import org.apache.poi.util.IOUtils;
 import org.apache.poi.util.TempFile;
 
 import java.io.*;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Tests for the datasource implementations
@@ -54,6 +63,55 @@ public class TestDataSource extends TestCase
       }
    }
 
+   public void testFileMapped() throws Exception {
+      File f = data.getFile("Notes.ole2");
+
+      FileBackedDataSource ds = new FileBackedDataSource(new RandomAccessFile(f, "r").getChannel(), true, true);
+      try {
+          assertTrue(ds.isMapped());
+          checkDataSource(ds, false);
+
+          // blocks are read-only slices of the mapped file
+          ByteBuffer bs = ds.read(512, 512);
+          assertTrue(bs.isReadOnly());
+          assertEquals(512, bs.capacity());
+      } finally {
+          ds.close();
+      }
+   }
+
+   public void testPOIFSMapped() throws Exception {
+      File f = data.getFile("Notes.ole2");
+
+      Map<String,byte[]> expected = new HashMap<>();
+      try (POIFSFileSystem fs = new POIFSFileSystem(f, true)) {
+          readDocuments(fs.getRoot(), "", expected);
+      }
+      assertFalse(expected.isEmpty());
+
+      try (POIFSFileSystem fs = new POIFSFileSystem(f, true, true)) {
+          Map<String,byte[]> actual = new HashMap<>();
+          readDocuments(fs.getRoot(), "", actual);
+          assertEquals(expected.keySet(), actual.keySet());
+          for (Map.Entry<String,byte[]> me : expected.entrySet()) {
+              assertArrayEquals(me.getKey(), me.getValue(), actual.get(me.getKey()));
+          }
+      }
+   }
+
+   private static void readDocuments(DirectoryEntry dir, String path, Map<String,byte[]> documents) throws IOException {
+      for (Entry entry : dir) {
+          String name = path + "/" + entry.getName();
+          if (entry instanceof DirectoryEntry) {
+              readDocuments((DirectoryEntry)entry, name, documents);
+          } else if (entry instanceof DocumentEntry) {
+              try (InputStream is = new DocumentInputStream((DocumentEntry)entry)) {
+                  documents.put(name, IOUtils.toByteArray(is));
+              }
+          }
+      }
+   }
+
    public void testFileWritable() throws Exception {
        File temp = TempFile.createTempFile("TestDataSource", ".test");
        try {
@@ -24,6 +24,7 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
+import java.util.List;
 
 import org.apache.poi.hssf.HSSFTestDataSamples;
 import org.apache.poi.hssf.usermodel.HSSFCell;
@@ -254,6 +255,88 @@ public class TestWorkbookEvaluator {
         }
     }
 
+    /**
+     * exact lookups use the lookup index of the searched column, which needs to follow the changes
+     */
+    @Test
+    public void testExactLookupsWithIndex() throws IOException {
+        try (Workbook wb = new HSSFWorkbook()) {
+            Sheet sheet = wb.createSheet("Sheet1");
+            for (int i = 0; i < 40; i++) {
+                Row row = sheet.createRow(i);
+                if (i == 20) {
+                    row.createCell(0).setCellFormula("E1");
+                } else if (i != 34) {
+                    row.createCell(0).setCellValue(i == 38 ? "key7" : "Key" + i);
+                }
+                row.createCell(1).setCellValue(i);
+            }
+            Cell vlookup = sheet.getRow(0).createCell(5);
+            vlookup.setCellFormula("VLOOKUP(\"key7\",A1:B40,2,FALSE)");
+            Cell match = sheet.getRow(1).createCell(5);
+            match.setCellFormula("MATCH(\"KEY7\",A1:A40,0)");
+            Cell formulaLookup = sheet.getRow(2).createCell(5);
+            formulaLookup.setCellFormula("VLOOKUP(\"new\",A1:B40,2,FALSE)");
+            Cell blankLookup = sheet.getRow(3).createCell(5);
+            blankLookup.setCellFormula("MATCH(\"added\",A1:A40,0)");
+            Cell wildcardLookup = sheet.getRow(4).createCell(5);
+            wildcardLookup.setCellFormula("MATCH(\"key1?\",A1:A40,0)");
+
+            FormulaEvaluator fe = wb.getCreationHelper().createFormulaEvaluator();
+            assertEquals(7, fe.evaluate(vlookup).getNumberValue(), 0);
+            assertEquals(8, fe.evaluate(match).getNumberValue(), 0);
+            assertEquals(ErrorEval.NA.getErrorCode(), fe.evaluate(formulaLookup).getErrorValue());
+            assertEquals(ErrorEval.NA.getErrorCode(), fe.evaluate(blankLookup).getErrorValue());
+            assertEquals(11, fe.evaluate(wildcardLookup).getNumberValue(), 0);
+
+            // changed value
+            Cell cell = sheet.getRow(7).getCell(0);
+            cell.setCellValue("other");
+            fe.notifyUpdateCell(cell);
+            assertEquals(38, fe.evaluate(vlookup).getNumberValue(), 0);
+            assertEquals(39, fe.evaluate(match).getNumberValue(), 0);
+
+            // changed input of a formula in the column
+            cell = sheet.getRow(0).createCell(4);
+            cell.setCellValue("New");
+            fe.notifyUpdateCell(cell);
+            assertEquals(20, fe.evaluate(formulaLookup).getNumberValue(), 0);
+
+            // formerly blank cell
+            cell = sheet.getRow(34).createCell(0);
+            cell.setCellValue("Added");
+            fe.notifyUpdateCell(cell);
+            assertEquals(35, fe.evaluate(blankLookup).getNumberValue(), 0);
+        }
+    }
+
+
+    /**
+     * the lookup index isn't built from formula cells, which weren't evaluated yet, as they might
+     * depend on the lookup, although the lookup wouldn't read them
+     */
+    @Test
+    public void testLookupIndexSkipsUnevaluatedFormulas() throws IOException {
+        try (Workbook wb = new HSSFWorkbook()) {
+            Sheet sheet = wb.createSheet("Sheet1");
+            for (int i = 0; i < 40; i++) {
+                Row row = sheet.createRow(i);
+                if (i == 30) {
+                    row.createCell(0).setCellFormula("IFERROR(F1,0)+100");
+                } else {
+                    row.createCell(0).setCellValue(i);
+                }
+                row.createCell(1).setCellValue(i * 10);
+            }
+            Cell vlookup = sheet.getRow(0).createCell(5);
+            vlookup.setCellFormula("VLOOKUP(3,A1:B40,2,FALSE)");
+            Cell dependent = sheet.getRow(30).getCell(0);
+
+            FormulaEvaluator fe = wb.getCreationHelper().createFormulaEvaluator();
+            assertEquals(30, fe.evaluate(vlookup).getNumberValue(), 0);
+            assertEquals(130, fe.evaluate(dependent).getNumberValue(), 0);
+        }
+    }
 
     /**
      * formulas with defined names.
@@ -616,4 +699,29 @@ public class TestWorkbookEvaluator {
         
         testIFEqualsFormulaEvaluation_teardown(wb);
     }
+
+    @Test
+    public void dirtyFormulaCellsAreSortedTopologically() throws IOException {
+        try (HSSFWorkbook wb = new HSSFWorkbook()) {
+            HSSFRow row = wb.createSheet().createRow(0);
+            HSSFCell input = row.createCell(0);
+            input.setCellValue(1);
+            // diamonds: the later cells depend on the input and on the cells before them
+            String[] formulas = { "A1*2", "A1+B1", "B1+C1+A1", "A1+D1+B1", "E1+C1" };
+            for (int i = 0; i < formulas.length; i++) {
+                row.createCell(i + 1).setCellFormula(formulas[i]);
+            }
+
+            HSSFFormulaEvaluator fe = new HSSFFormulaEvaluator(wb);
+            fe.evaluateAll();
+            input.setCellValue(2);
+            fe.notifyUpdateCell(input);
+
+            List<EvaluationCell> dirty = fe._getWorkbookEvaluator().pollDirtyFormulaCells();
+            assertEquals(formulas.length, dirty.size());
+            for (int i = 0; i < formulas.length; i++) {
+                assertEquals(i + 1, dirty.get(i).getColumnIndex());
+            }
+        }
+    }
 }
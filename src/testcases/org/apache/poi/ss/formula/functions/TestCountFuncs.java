@@ -17,6 +17,8 @@
 
 package org.apache.poi.ss.formula.functions;
 
+import java.io.IOException;
+
 import org.apache.poi.hssf.HSSFTestDataSamples;
 import org.apache.poi.hssf.usermodel.HSSFCell;
 import org.apache.poi.hssf.usermodel.HSSFFormulaEvaluator;
@@ -34,6 +36,7 @@ import org.apache.poi.ss.formula.eval.ValueEval;
 import org.apache.poi.ss.formula.functions.CountUtils.I_MatchPredicate;
 import org.apache.poi.ss.usermodel.CellType;
 import org.apache.poi.ss.usermodel.CellValue;
+import org.apache.poi.ss.usermodel.FormulaError;
 import org.apache.poi.ss.usermodel.FormulaEvaluator;
 import org.apache.poi.ss.util.CellReference;
 
@@ -540,6 +543,103 @@ public final class TestCountFuncs extends TestCase {
         }
     }
 
+	/**
+	 * The equality criteria of larger ranges are answered from the grouped values,
+	 * which needs to give the same results as matching the single cells
+	 */
+	public void testGroupedCriteria() throws IOException {
+		try (HSSFWorkbook wb = new HSSFWorkbook()) {
+			HSSFSheet sheet = wb.createSheet("Sheet1");
+			Object[] values = { 1, 2.5, "1", " 2.5 ", "abc", "ABC", "", null, true, false,
+					"TRUE", -0.0, 0, "0", "a*c", FormulaError.NA };
+			for (int i = 0; i < 45; i++) {
+				HSSFRow row = sheet.createRow(i);
+				setValue(row.createCell(0), values[i % values.length]);
+				row.createCell(1).setCellValue(i);
+				row.createCell(2).setCellValue(i % 2 == 0 ? "even" : "odd");
+			}
+			Object[] criteria = { 1, "=1", 2.5, "2.5", "abc", "=ABC", "", "=", true, "false", "TRUE",
+					0, "0", "a*c", ">1", "<>abc", "#N/A", null };
+			HSSFRow criteriaRow = sheet.createRow(50);
+			HSSFRow formulaRow = sheet.createRow(51);
+			for (int i = 0; i < criteria.length; i++) {
+				setValue(criteriaRow.createCell(i), criteria[i]);
+				String ref = new CellReference(criteriaRow.getCell(i)).formatAsString();
+				formulaRow.createCell(3 * i).setCellFormula("COUNTIF(A1:A45," + ref + ")");
+				formulaRow.createCell(3 * i + 1).setCellFormula("SUMIF(A1:A45," + ref + ",B1:B45)");
+				formulaRow.createCell(3 * i + 2).setCellFormula("COUNTIFS(A1:A45," + ref + ",C1:C45,\"even\")");
+			}
+
+			HSSFFormulaEvaluator fe = new HSSFFormulaEvaluator(wb);
+			confirmGroupedCriteria(sheet, fe, criteria.length);
+
+			// the groups follow the changes of the ranges
+			HSSFCell cell = sheet.getRow(0).getCell(0);
+			cell.setCellValue("Abc");
+			fe.notifyUpdateCell(cell);
+			cell = sheet.getRow(7).getCell(0);
+			cell.setCellValue(1);
+			fe.notifyUpdateCell(cell);
+			cell = sheet.getRow(1).getCell(2);
+			cell.setCellValue("even");
+			fe.notifyUpdateCell(cell);
+			confirmGroupedCriteria(sheet, fe, criteria.length);
+		}
+	}
+
+	private static void confirmGroupedCriteria(HSSFSheet sheet, HSSFFormulaEvaluator fe, int criteriaCount) {
+		HSSFRow criteriaRow = sheet.getRow(50);
+		HSSFRow formulaRow = sheet.getRow(51);
+		for (int i = 0; i < criteriaCount; i++) {
+			I_MatchPredicate mp = Countif.createCriteriaPredicate(getValue(criteriaRow.getCell(i)), 51, 3 * i);
+			double count = 0, sum = 0, evenCount = 0;
+			for (int r = 0; mp != null && r < 45; r++) {
+				HSSFRow row = sheet.getRow(r);
+				if (mp.matches(getValue(row.getCell(0)))) {
+					count++;
+					sum += row.getCell(1).getNumericCellValue();
+					if ("even".equals(row.getCell(2).getStringCellValue())) {
+						evenCount++;
+					}
+				}
+			}
+			String msg = "criteria " + criteriaRow.getCell(i);
+			assertEquals(msg, count, fe.evaluate(formulaRow.getCell(3 * i)).getNumberValue(), 0);
+			assertEquals(msg, sum, fe.evaluate(formulaRow.getCell(3 * i + 1)).getNumberValue(), 0);
+			assertEquals(msg, evenCount, fe.evaluate(formulaRow.getCell(3 * i + 2)).getNumberValue(), 0);
+		}
+	}
+
+	private static void setValue(HSSFCell cell, Object value) {
+		if (value instanceof Number) {
+			cell.setCellValue(((Number)value).doubleValue());
+		} else if (value instanceof String) {
+			cell.setCellValue((String)value);
+		} else if (value instanceof Boolean) {
+			cell.setCellValue((Boolean)value);
+		} else if (value instanceof FormulaError) {
+			cell.setCellErrorValue((FormulaError)value);
+		}
+	}
+
+	private static ValueEval getValue(HSSFCell cell) {
+		if (cell == null) {
+			return BlankEval.instance;
+		}
+		switch (cell.getCellType()) {
+			case NUMERIC:
+				return new NumberEval(cell.getNumericCellValue());
+			case STRING:
+				return new StringEval(cell.getStringCellValue());
+			case BOOLEAN:
+				return BoolEval.valueOf(cell.getBooleanCellValue());
+			case ERROR:
+				return ErrorEval.valueOf(cell.getErrorCellValue());
+			default:
+				return BlankEval.instance;
+		}
+	}
+
 	public void testCountBlankFromSpreadsheet() {
 		testCountFunctionFromSpreadsheet("countblankExamples.xls", 1, 3, 4, "countblank");
 	}
@@ -19,9 +19,12 @@ package org.apache.poi.ss.usermodel;
 
 import java.io.IOException;
 import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.poi.ss.ITestDataProvider;
 import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.formula.BaseFormulaEvaluator;
 import org.apache.poi.ss.util.CellRangeAddressList;
 import org.junit.Test;
 
@@ -729,4 +732,94 @@ public abstract class BaseTestFormulaEvaluator {
 
         wb.close();
     }
+
+    @Test
+    public void evaluateDirtyFormulaCells() throws IOException {
+        try (Workbook wb = _testDataProvider.createWorkbook()) {
+            Sheet sheet1 = wb.createSheet("Sheet1");
+            Sheet sheet2 = wb.createSheet("Sheet2");
+            Name name = wb.createName();
+            name.setNameName("input");
+            name.setRefersToFormula("Sheet1!$A$1");
+
+            Row row = sheet1.createRow(0);
+            Cell input = row.createCell(0);
+            input.setCellValue(1);
+            row.createCell(1).setCellValue(10);
+            row.createCell(2).setCellFormula("A1*2");
+            row.createCell(3).setCellFormula("C1+1");
+            row.createCell(4).setCellFormula("SUM(A1:C1)");
+            row.createCell(5).setCellFormula("B1+1");
+            sheet2.createRow(0).createCell(0).setCellFormula("Sheet1!D1*input");
+
+            BaseFormulaEvaluator fe = (BaseFormulaEvaluator)wb.getCreationHelper().createFormulaEvaluator();
+            fe.evaluateAll();
+            assertEquals(0, fe.evaluateDirtyFormulaCells());
+            assertEquals(3, sheet1.getRow(0).getCell(3).getNumericCellValue(), 0);
+            assertEquals(3, sheet2.getRow(0).getCell(0).getNumericCellValue(), 0);
+
+            input.setCellValue(2);
+            fe.notifyUpdateCell(input);
+            // F1 doesn't depend on A1
+            assertEquals(4, fe.evaluateDirtyFormulaCells());
+            assertEquals(4, row.getCell(2).getNumericCellValue(), 0);
+            assertEquals(5, row.getCell(3).getNumericCellValue(), 0);
+            assertEquals(16, row.getCell(4).getNumericCellValue(), 0);
+            assertEquals(11, row.getCell(5).getNumericCellValue(), 0);
+            assertEquals(10, sheet2.getRow(0).getCell(0).getNumericCellValue(), 0);
+            assertEquals(0, fe.evaluateDirtyFormulaCells());
+
+            // changed formulas are recalculated with their dependents
+            row.getCell(2).setCellFormula("A1*3");
+            fe.notifySetFormula(row.getCell(2));
+            row.getCell(1).setCellValue(20);
+            fe.notifyUpdateCell(row.getCell(1));
+            assertEquals(5, fe.evaluateDirtyFormulaCells());
+            assertEquals(7, row.getCell(3).getNumericCellValue(), 0);
+            assertEquals(28, row.getCell(4).getNumericCellValue(), 0);
+            assertEquals(21, row.getCell(5).getNumericCellValue(), 0);
+            assertEquals(14, sheet2.getRow(0).getCell(0).getNumericCellValue(), 0);
+        }
+    }
+
+    @Test
+    public void evaluateAllFormulaCellsConcurrently() throws Exception {
+        try (Workbook wb = _testDataProvider.createWorkbook()) {
+            Sheet sheet1 = wb.createSheet("Sheet1");
+            Sheet sheet2 = wb.createSheet("Sheet2");
+            Name name = wb.createName();
+            name.setNameName("factor");
+            name.setRefersToFormula("Sheet2!$A$1");
+            sheet2.createRow(0).createCell(0).setCellValue(3);
+
+            // stay within the row window of SXSSF
+            for (int i = 0; i < 90; i++) {
+                Row row = sheet1.createRow(i);
+                row.createCell(0).setCellValue(i);
+                row.createCell(1).setCellFormula("A" + (i+1) + "*2");
+                row.createCell(2).setCellFormula("B" + (i+1) + "+1");
+                row.createCell(3).setCellFormula("C" + (i+1) + "*factor");
+                // refers to the previous row - all cells of column E are dependent
+                row.createCell(4).setCellFormula(i == 0 ? "A1" : "E" + i + "+A" + (i+1));
+            }
+            sheet2.getRow(0).createCell(1).setCellFormula("SUM(Sheet1!A1:A90)");
+
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            try {
+                BaseFormulaEvaluator.evaluateAllFormulaCells(wb, executor);
+            } finally {
+                executor.shutdown();
+            }
+
+            for (int i = 0; i < 90; i++) {
+                Row row = sheet1.getRow(i);
+                assertEquals(i*2, row.getCell(1).getNumericCellValue(), 0);
+                assertEquals(i*2+1, row.getCell(2).getNumericCellValue(), 0);
+                assertEquals((i*2+1)*3, row.getCell(3).getNumericCellValue(), 0);
+                assertEquals(i*(i+1)/2, row.getCell(4).getNumericCellValue(), 0);
+                assertEquals(CellType.FORMULA, row.getCell(4).getCellType());
+            }
+            assertEquals(89*90/2, sheet2.getRow(0).getCell(1).getNumericCellValue(), 0);
+        }
+    }
 }
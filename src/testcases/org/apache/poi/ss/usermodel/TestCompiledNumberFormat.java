@@ -0,0 +1,211 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.ss.usermodel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.util.LocaleUtil;
+import org.junit.After;
+import org.junit.Test;
+
+public class TestCompiledNumberFormat {
+    private static final String[] NUMBER_FORMATS = {
+        "General", "general", "@", "0", "0.00", "#,##0", "#,##0.00", "#.##", ".##", "#", "0.0##",
+        "0%", "0.00%", "#,##0.0%", "$#,##0.00", "$#,##0_);($#,##0)", "#,##0.00 €", "[$€-407] #,##0.00",
+        "0.0 \"kg\"", "\"Total: \"0", "_-* #,##0.00_-", "0000", "00.000", "-0.0", "#,##0;[Red]-#,##0",
+        "0.00E+00", "# ?/?", "#,##0,", "[<100]0.0", "0;-0;\"zero\"", "[$$-409]#,##0"
+    };
+
+    private static final double[] NUMBERS = {
+        0, -0.0, 1, -1, 0.5, 1.005, -1.005, 0.145, 0.125, 2.675, 12.3456, 1234.5678, -1234.5678,
+        999.995, 1234567.891, 0.001, -0.001, 0.0004, 1E10, 12345678901.5, 1E11, 123456789012.0,
+        -4.56789E15, 1.23456789E-5, 1E-11, -3.3E-20, 9.999999999, 1/3.0, 2/3.0, 1E20
+    };
+
+    private static final String[] DATE_FORMATS = {
+        "m/d/yy", "d-mmm-yy", "d-mmm", "mmm-yy", "h:mm AM/PM", "h:mm:ss AM/PM", "h:mm", "h:mm:ss",
+        "m/d/yy h:mm", "yyyy-mm-dd", "dd.mm.yyyy", "dddd, mmmm dd, yyyy", "ddd d mmm yyyy", "mm:ss",
+        "yyyy\\-mm\\-dd hh:mm:ss", "mm\"/\"dd\"/\"yyyy", "m/d/yyyy;@", "[$-409]mmmm d, yyyy", "hh:mm a/p",
+        "[h]:mm:ss", "mm:ss.0", "mmmmm", "yyyy-mm-dd hh:mm:ss AM/PM", "[$-F800]dddd, mmmm dd, yyyy"
+    };
+
+    private static final double[] DATES = {
+        0, 1, 59, 60, 61, 0.5, 0.999999, 1.9999999, 25569.25, 36526.75, 42000.123456, 43555.0416666667,
+        43555.0833333333, 43555.1, 2958465.99999
+    };
+
+    @After
+    public void resetTimeZone() {
+        LocaleUtil.resetUserTimeZone();
+    }
+
+    @Test
+    public void sameAsJavaTextFormats() throws IOException {
+        // the minus and percent signs of the last locales are expanded with bidi marks
+        for (Locale locale : new Locale[]{ Locale.US, Locale.GERMANY,
+                new Locale("ar", "EG"), new Locale("he", "IL"), new Locale("fa", "IR") }) {
+            for (boolean emulateCSV : new boolean[]{ false, true }) {
+                for (String format : NUMBER_FORMATS) {
+                    assertSameText(locale, emulateCSV, format, NUMBERS, false);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void datesSameAsJavaTextFormats() throws IOException {
+        for (String tz : new String[]{ "UTC", "GMT+02:00", "Europe/Berlin" }) {
+            LocaleUtil.setUserTimeZone(TimeZone.getTimeZone(tz));
+            for (Locale locale : new Locale[]{ Locale.US, Locale.GERMANY }) {
+                for (String format : DATE_FORMATS) {
+                    assertSameText(locale, false, format, DATES, false);
+                    assertSameText(locale, false, format, DATES, true);
+                }
+            }
+        }
+    }
+
+    private static void assertSameText(Locale locale, boolean emulateCSV, String format, double[] values,
+            boolean date1904) throws IOException {
+        DataFormatter compiled = new DataFormatter(locale, emulateCSV);
+        DataFormatter legacy = new DataFormatter(locale, emulateCSV);
+        legacy.setUseCompiledFormats(false);
+
+        try (HSSFWorkbook wb = new HSSFWorkbook()) {
+            CellStyle style = wb.createCellStyle();
+            style.setDataFormat(wb.createDataFormat().getFormat(format));
+            Cell cell = wb.createSheet().createRow(0).createCell(0);
+            cell.setCellStyle(style);
+
+            for (double value : values) {
+                for (double v : new double[]{ value, -value }) {
+                    String message = format + " / " + locale + " / " + v;
+                    assertEquals(message, legacy.formatRawCellContents(v, -1, format, date1904),
+                        compiled.formatRawCellContents(v, -1, format, date1904));
+                    if (!date1904) {
+                        cell.setCellValue(v);
+                        assertEquals(message, legacy.formatCellValue(cell), compiled.formatCellValue(cell));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void invalidDatesInBetween() {
+        // the format of the invalid date isn't cached, so the next valid date creates
+        // the java.text format, which is then used for the invalid dates as well
+        LocaleUtil.setUserTimeZone(TimeZone.getTimeZone("UTC"));
+        String format = "yyyy-mm-dd hh:mm:ss";
+        double[][] orders = { { -77.81375, 1000.5, -77.81375 }, { 1000.5, -77.81375, 1000.5 } };
+        for (double[] values : orders) {
+            DataFormatter compiled = new DataFormatter(Locale.US);
+            DataFormatter legacy = new DataFormatter(Locale.US);
+            legacy.setUseCompiledFormats(false);
+            for (double v : values) {
+                assertEquals(format + " / " + v, legacy.formatRawCellContents(v, -1, format),
+                    compiled.formatRawCellContents(v, -1, format));
+            }
+        }
+
+        DataFormatter formatter = new DataFormatter(Locale.US);
+        assertEquals("-77.81375", formatter.formatRawCellContents(-77.81375, -1, format));
+        assertEquals("1902-09-26 12:00:00", formatter.formatRawCellContents(1000.5, -1, format));
+        assertEquals("1969-12-31 23:59:59", formatter.formatRawCellContents(-77.81375, -1, format));
+    }
+
+    @Test
+    public void supportedFormats() {
+        assertNotNull(CompiledNumberFormat.getInstance("General", Locale.US));
+        assertNotNull(CompiledNumberFormat.getInstance("#,##0.00", Locale.US));
+        assertNotNull(CompiledNumberFormat.getInstance("0.0%", Locale.US));
+        assertNotNull(CompiledNumberFormat.getInstance("[$€-407] #,##0.00", Locale.GERMANY));
+        assertTrue(CompiledNumberFormat.getInstance("dd.mm.yyyy hh:mm", Locale.GERMANY).isDateFormat());
+        assertFalse(CompiledNumberFormat.getInstance("0.00", Locale.GERMANY).isDateFormat());
+        assertSame(CompiledNumberFormat.getInstance("0.00", Locale.US), CompiledNumberFormat.getInstance("0.00", Locale.US));
+
+        // multiple sections, conditions, colors, fractions, scientific and elapsed formats aren't compiled
+        assertNull(CompiledNumberFormat.getInstance("#,##0;-#,##0", Locale.US));
+        assertNull(CompiledNumberFormat.getInstance("[>100]0;0.0", Locale.US));
+        assertNull(CompiledNumberFormat.getInstance("[Red]0.00", Locale.US));
+        assertNull(CompiledNumberFormat.getInstance("# ?/?", Locale.US));
+        assertNull(CompiledNumberFormat.getInstance("0.00E+00", Locale.US));
+        assertNull(CompiledNumberFormat.getInstance("[h]:mm:ss", Locale.US));
+    }
+
+    @Test
+    public void format() {
+        StringBuilder sb = new StringBuilder();
+        CompiledNumberFormat.getInstance("#,##0.00", Locale.US).format(1234.565, false, sb);
+        sb.append(' ');
+        CompiledNumberFormat.getInstance("#,##0.00", Locale.GERMANY).format(-1234.565, false, sb);
+        sb.append(' ');
+        CompiledNumberFormat.getInstance("0%", Locale.US).format(0.255, false, sb);
+        sb.append(' ');
+        CompiledNumberFormat.getInstance("General", Locale.US).format(123456789012.0, false, sb);
+        sb.append(' ');
+        CompiledNumberFormat.getInstance("yyyy-mm-dd hh:mm", Locale.US).format(43555.75, false, sb);
+        sb.append(' ');
+        CompiledNumberFormat.getInstance("yyyy-mm-dd", Locale.US).format(0, true, sb);
+        assertEquals("1,234.57 -1.234,57 26% 1.23457E+11 2019-03-31 18:00 1904-01-01", sb.toString());
+    }
+
+    @Test
+    public void sharedByThreads() throws Exception {
+        final CompiledNumberFormat number = CompiledNumberFormat.getInstance("#,##0.00", Locale.US);
+        final CompiledNumberFormat date = CompiledNumberFormat.getInstance("dddd, mmmm d, yyyy", Locale.US);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit(() -> {
+                    StringBuilder sb = new StringBuilder();
+                    for (int i = 0; i < 10000; i++) {
+                        sb.setLength(0);
+                        number.format(i + 0.125, false, sb);
+                        assertEquals(String.format(Locale.US, "%,.2f", i + 0.125), sb.toString());
+                        sb.setLength(0);
+                        date.format(43555, false, sb);
+                        assertEquals("Sunday, March 31, 2019", sb.toString());
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
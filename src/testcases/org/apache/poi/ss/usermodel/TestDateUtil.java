@@ -18,10 +18,15 @@
 package org.apache.poi.ss.usermodel;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.Locale;
 import java.util.TimeZone;
 
 import org.apache.poi.util.LocaleUtil;
@@ -123,4 +128,91 @@ public class TestDateUtil {
         // Cell show "２０１６年１２月８日"
         assertTrue(DateUtil.isADateFormat(178, "[DBNum3][$-804]yyyy\"\u5e74\"m\"\u6708\"d\"\u65e5\";@"));
     }
+
+    @Test
+    public void isADateFormatCached() {
+        // the cached results don't depend on the format index
+        assertTrue(DateUtil.isADateFormat(200, "dd.mm.yyyy"));
+        assertTrue(DateUtil.isADateFormat(201, "dd.mm.yyyy"));
+        assertFalse(DateUtil.isADateFormat(200, "0.00"));
+        assertFalse(DateUtil.isADateFormat(201, "0.00"));
+        // but the internal date formats are dates regardless of the format string
+        assertTrue(DateUtil.isADateFormat(14, "0.00"));
+        assertFalse(DateUtil.isADateFormat(200, "0.00"));
+    }
+
+    @Test
+    public void getLocalDateTime() {
+        assertNull(DateUtil.getLocalDateTime(-1));
+        assertEquals(LocalDateTime.of(1899, 12, 31, 0, 0), DateUtil.getLocalDateTime(0));
+        assertEquals(LocalDateTime.of(1900, 1, 1, 12, 0), DateUtil.getLocalDateTime(1.5));
+        assertEquals(LocalDateTime.of(1900, 2, 28, 0, 0), DateUtil.getLocalDateTime(59));
+        // Excel's 2/29/1900 becomes 3/1/1900
+        assertEquals(LocalDateTime.of(1900, 3, 1, 0, 0), DateUtil.getLocalDateTime(60));
+        assertEquals(LocalDateTime.of(1900, 3, 1, 0, 0), DateUtil.getLocalDateTime(61));
+        assertEquals(LocalDateTime.of(2019, 3, 31, 2, 30), DateUtil.getLocalDateTime(43555.1041666667));
+        assertEquals(LocalDateTime.of(1904, 1, 1, 0, 0), DateUtil.getLocalDateTime(0, true));
+        assertEquals(LocalDateTime.of(2019, 3, 31, 0, 0), DateUtil.getLocalDateTime(42093, true));
+
+        // milliseconds and rounding to seconds
+        double value = 43555 + 1.4996 / DateUtil.SECONDS_PER_DAY;
+        assertEquals(LocalDateTime.of(2019, 3, 31, 0, 0, 1, 500000000), DateUtil.getLocalDateTime(value));
+        assertEquals(LocalDateTime.of(2019, 3, 31, 0, 0, 2), DateUtil.getLocalDateTime(value, false, true));
+        assertEquals(LocalDateTime.of(2019, 4, 1, 0, 0), DateUtil.getLocalDateTime(43555.9999999999));
+    }
+
+    @Test
+    public void getExcelDateLocal() {
+        assertEquals(-1, DateUtil.getExcelDate(LocalDate.of(1899, 12, 30)), 0);
+        assertEquals(1, DateUtil.getExcelDate(LocalDate.of(1900, 1, 1)), 0);
+        assertEquals(61, DateUtil.getExcelDate(LocalDate.of(1900, 3, 1)), 0);
+        assertEquals(43555.5, DateUtil.getExcelDate(LocalDateTime.of(2019, 3, 31, 12, 0)), 0);
+        assertEquals(0, DateUtil.getExcelDate(LocalDate.of(1904, 1, 1), true), 0);
+        assertEquals(-1, DateUtil.getExcelDate(LocalDate.of(1903, 12, 31), true), 0);
+        assertEquals(42093, DateUtil.getExcelDate(LocalDate.of(2019, 3, 31), true), 0);
+
+        for (double value : new double[]{ 1, 59.25, 61, 25569.125, 43555.1041666667, 2958465.5 }) {
+            for (boolean use1904windowing : new boolean[]{ false, true }) {
+                LocalDateTime local = DateUtil.getLocalDateTime(value, use1904windowing);
+                assertEquals(value, DateUtil.getExcelDate(local, use1904windowing), 1E-9);
+            }
+        }
+    }
+
+    @Test
+    public void conversionsWithoutCalendar() {
+        try {
+            for (String tz : new String[]{ "UTC", "GMT+05:30", "Europe/Berlin", "America/New_York" }) {
+                LocaleUtil.setUserTimeZone(TimeZone.getTimeZone(tz));
+                for (double value : new double[]{ 0, 1.5, 60, 61, 25569.125, 43555.1041666667, 43555.5, 2958465.99999 }) {
+                    for (boolean use1904windowing : new boolean[]{ false, true }) {
+                        for (boolean roundSeconds : new boolean[]{ false, true }) {
+                            // the same dates as by calendars
+                            Calendar calendar = DateUtil.getJavaCalendar(value, use1904windowing, null, roundSeconds);
+                            Date date = DateUtil.getJavaDate(value, use1904windowing, null, roundSeconds);
+                            assertEquals(tz + " " + value, calendar.getTime(), date);
+                            assertEquals(tz + " " + value, DateUtil.getExcelDate(calendar, use1904windowing),
+                                DateUtil.getExcelDate(date, use1904windowing), 0);
+                        }
+                    }
+                }
+            }
+
+            // the fixed offset of a custom time zone doesn't have to be the offset of its id
+            TimeZone custom = TimeZone.getTimeZone("UTC");
+            custom.setRawOffset(3600000);
+            Calendar calendar = LocaleUtil.getLocaleCalendar(custom);
+            calendar.clear();
+            calendar.set(2019, 2, 31, 12, 0);
+            assertEquals(calendar.getTime(), DateUtil.getJavaDate(43555.5, false, custom));
+
+            // the year of the buddhist calendar is off by 543 years
+            LocaleUtil.setUserTimeZone(LocaleUtil.TIMEZONE_UTC);
+            LocaleUtil.setUserLocale(new Locale("th", "TH"));
+            assertEquals(DateUtil.getJavaCalendar(43555.5, false).getTime(), DateUtil.getJavaDate(43555.5, false));
+        } finally {
+            LocaleUtil.resetUserTimeZone();
+            LocaleUtil.resetUserLocale();
+        }
+    }
 }
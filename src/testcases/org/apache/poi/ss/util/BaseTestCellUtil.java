@@ -75,6 +75,35 @@ public abstract class BaseTestCellUtil {
         wb.close();
     }
     
+    @Test
+    public void setCellStylePropertyAfterStylesChanged() throws IOException {
+        try (Workbook wb = _testDataProvider.createWorkbook()) {
+            Row r = wb.createSheet().createRow(0);
+
+            CellUtil.setCellStyleProperty(r.createCell(0), CellUtil.BORDER_BOTTOM, BorderStyle.THIN);
+            CellStyle thin = r.getCell(0).getCellStyle();
+
+            // styles added by other means are indexed on the next lookup
+            Cell c = r.createCell(1);
+            CellStyle dashed = wb.createCellStyle();
+            dashed.cloneStyleFrom(c.getCellStyle());
+            dashed.setBorderBottom(BorderStyle.DASHED);
+            int styCnt = wb.getNumCellStyles();
+            CellUtil.setCellStyleProperty(c, CellUtil.BORDER_BOTTOM, BorderStyle.DASHED);
+            assertEquals(styCnt, wb.getNumCellStyles());
+            assertEquals(dashed, r.getCell(1).getCellStyle());
+
+            // a changed style isn't returned for its former properties
+            thin.setBorderBottom(BorderStyle.DOUBLE);
+            CellUtil.setCellStyleProperty(r.createCell(2), CellUtil.BORDER_BOTTOM, BorderStyle.THIN);
+            assertEquals(styCnt + 1, wb.getNumCellStyles());
+            assertEquals(BorderStyle.THIN, r.getCell(2).getCellStyle().getBorderBottom());
+            CellUtil.setCellStyleProperty(r.createCell(3), CellUtil.BORDER_BOTTOM, BorderStyle.DOUBLE);
+            assertEquals(styCnt + 1, wb.getNumCellStyles());
+            assertEquals(thin, r.getCell(3).getCellStyle());
+        }
+    }
+
     @Test(expected=RuntimeException.class)
     public void setCellStylePropertyWithInvalidValue() throws IOException {
         try (Workbook wb = _testDataProvider.createWorkbook()) {
@@ -397,4 +426,40 @@ public abstract class BaseTestCellUtil {
         assertEquals(num1, num2);
         wb1.close();
     }
+
+    @Test
+    public void setCellStylePropertiesReusesStyles() throws IOException {
+        try (Workbook wb = _testDataProvider.createWorkbook()) {
+            Sheet s = wb.createSheet();
+            int styCnt = wb.getNumCellStyles();
+            for (int i = 0; i < 100; i++) {
+                Row r = s.createRow(i);
+                for (int j = 0; j < 10; j++) {
+                    Cell c = r.createCell(j);
+                    CellUtil.setCellStyleProperty(c, CellUtil.BORDER_TOP, BorderStyle.THIN);
+                    CellUtil.setCellStyleProperty(c, CellUtil.ROTATION, (short)j);
+                }
+            }
+            // one style per rotation
+            assertEquals(styCnt + 10, wb.getNumCellStyles());
+            for (int j = 0; j < 10; j++) {
+                assertEquals(s.getRow(0).getCell(j).getCellStyle().getIndex(), s.getRow(99).getCell(j).getCellStyle().getIndex());
+            }
+
+            // a style changed after it was used by CellUtil isn't taken for the old properties
+            CellStyle changed = s.getRow(0).getCell(1).getCellStyle();
+            changed.setRotation((short)42);
+            Cell c = s.createRow(100).createCell(1);
+            CellUtil.setCellStyleProperty(c, CellUtil.BORDER_TOP, BorderStyle.THIN);
+            CellUtil.setCellStyleProperty(c, CellUtil.ROTATION, (short)1);
+            assertEquals(1, c.getCellStyle().getRotation());
+            assertNotEquals(changed.getIndex(), c.getCellStyle().getIndex());
+
+            // ... but for the new ones
+            c = s.getRow(100).createCell(2);
+            CellUtil.setCellStyleProperty(c, CellUtil.BORDER_TOP, BorderStyle.THIN);
+            CellUtil.setCellStyleProperty(c, CellUtil.ROTATION, (short)42);
+            assertEquals(changed.getIndex(), c.getCellStyle().getIndex());
+        }
+    }
 }
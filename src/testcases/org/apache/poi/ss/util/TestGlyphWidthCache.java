@@ -0,0 +1,78 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.ss.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.font.FontRenderContext;
+import java.awt.font.TextAttribute;
+import java.awt.font.TextLayout;
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.text.AttributedString;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.junit.Test;
+
+public final class TestGlyphWidthCache {
+    private static final FontRenderContext FRC = new FontRenderContext(null, true, true);
+
+    @Test
+    public void widthsMatchTextLayout() throws IOException {
+        String[] texts = { "", "0", "Hello World", "  leading spaces", "trailing spaces  ",
+            "1234567890.55", "TRUE", "Grüße à été", "WWWWWWWWiiiiiiii" };
+        try (Workbook wb = new HSSFWorkbook()) {
+            for (int variant = 0; variant < 4; variant++) {
+                Font font = wb.createFont();
+                font.setFontName("Arial");
+                font.setFontHeightInPoints((short)(10 + variant));
+                font.setBold((variant & 1) != 0);
+                font.setItalic((variant & 2) != 0);
+                font.setUnderline(variant == 3 ? Font.U_SINGLE : Font.U_NONE);
+
+                GlyphWidthCache cache = GlyphWidthCache.getInstance(font, '0', FRC);
+                for (String text : texts) {
+                    assertEquals(text, getLayoutWidth(font, text + '0'), cache.getWidth(text), 0.01);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void complexText() throws IOException {
+        try (Workbook wb = new HSSFWorkbook()) {
+            GlyphWidthCache cache = GlyphWidthCache.getInstance(wb.getFontAt(0), '0', FRC);
+            // Arabic requires shaping and surrogate pairs aren't cached
+            assertEquals(-1, cache.getWidth("مرحبا"), 0);
+            assertEquals(-1, cache.getWidth("a😀b"), 0);
+        }
+    }
+
+    private static double getLayoutWidth(Font font, String text) {
+        AttributedString str = new AttributedString(text);
+        str.addAttribute(TextAttribute.FAMILY, font.getFontName());
+        str.addAttribute(TextAttribute.SIZE, (float)font.getFontHeightInPoints());
+        if (font.getBold()) str.addAttribute(TextAttribute.WEIGHT, TextAttribute.WEIGHT_BOLD);
+        if (font.getItalic()) str.addAttribute(TextAttribute.POSTURE, TextAttribute.POSTURE_OBLIQUE);
+        if (font.getUnderline() == Font.U_SINGLE) str.addAttribute(TextAttribute.UNDERLINE, TextAttribute.UNDERLINE_ON);
+        Rectangle2D bounds = new TextLayout(str.getIterator(), FRC).getBounds();
+        return bounds.getX() + bounds.getWidth();
+    }
+}
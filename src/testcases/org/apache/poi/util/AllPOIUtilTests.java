@@ -31,6 +31,7 @@ import org.junit.runners.Suite;
     , TestHexDump.class
     , TestIntegerField.class
     , TestIntList.class
+    , TestIntSortedMap.class
     , TestLittleEndian.class
     , TestLongField.class
     , TestPOILogFactory.class
@@ -0,0 +1,224 @@
+/* ====================================================================
+   Licensed to the Apache Software Foundation (ASF) under one or more
+   contributor license agreements.  See the NOTICE file distributed with
+   this work for additional information regarding copyright ownership.
+   The ASF licenses this file to You under the Apache License, Version 2.0
+   (the "License"); you may not use this file except in compliance with
+   the License.  You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+==================================================================== */
+
+package org.apache.poi.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+/**
+ * Class to test IntSortedMap
+ */
+public final class TestIntSortedMap {
+    @Test
+    public void testPutGetRemove() {
+        IntSortedMap<String> map = new IntSortedMap<>();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(5));
+
+        assertNull(map.put(5, "five"));
+        assertNull(map.put(1, "one"));
+        assertNull(map.put(9, "nine"));
+        assertEquals("five", map.put(5, "FIVE"));
+
+        assertEquals(3, map.size());
+        assertEquals("one", map.get(1));
+        assertEquals("FIVE", map.get(5));
+        assertEquals("nine", map.get(9));
+        assertTrue(map.containsKey(9));
+        assertFalse(map.containsKey(8));
+        assertEquals(1, map.firstKey());
+        assertEquals(9, map.lastKey());
+
+        assertEquals("FIVE", map.remove(5));
+        assertNull(map.remove(5));
+        assertEquals(2, map.size());
+        assertEquals(1, map.keyAt(0));
+        assertEquals(9, map.keyAt(1));
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        try {
+            map.firstKey();
+            fail("empty map has no first key");
+        } catch (NoSuchElementException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testHeadSize() {
+        IntSortedMap<String> map = new IntSortedMap<>();
+        map.put(2, "a");
+        map.put(4, "b");
+        map.put(6, "c");
+        assertEquals(0, map.headSize(0));
+        assertEquals(0, map.headSize(2));
+        assertEquals(1, map.headSize(3));
+        assertEquals(1, map.headSize(4));
+        assertEquals(3, map.headSize(7));
+    }
+
+    @Test
+    public void testValuesAndSubValues() {
+        IntSortedMap<Integer> map = new IntSortedMap<>();
+        for (int i=20; i>=0; i-=2) {
+            map.put(i, i);
+        }
+        List<Integer> values = map.values();
+        assertEquals(11, values.size());
+        int expected = 0;
+        for (Integer v : values) {
+            assertEquals(expected, v.intValue());
+            expected += 2;
+        }
+
+        List<Integer> sub = map.subValues(3, 9);
+        assertEquals(3, sub.size());
+        assertEquals(4, sub.get(0).intValue());
+        assertEquals(8, sub.get(2).intValue());
+
+        assertTrue(map.subValues(30, 40).isEmpty());
+    }
+
+    @Test
+    public void testIteratorRemove() {
+        IntSortedMap<Integer> map = new IntSortedMap<>();
+        for (int i=0; i<10; i++) {
+            map.put(i, i);
+        }
+        for (Iterator<Integer> iter = map.values().iterator(); iter.hasNext(); ) {
+            if (iter.next() % 2 == 1) {
+                iter.remove();
+            }
+        }
+        assertEquals(5, map.size());
+        for (int i=0; i<5; i++) {
+            assertEquals(i*2, map.keyAt(i));
+        }
+
+        Iterator<Integer> iter = map.values().iterator();
+        iter.next();
+        map.put(100, 100);
+        try {
+            iter.next();
+            fail("map was modified outside of the iterator");
+        } catch (ConcurrentModificationException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testRandomAgainstTreeMap() {
+        Random rnd = new Random(4711);
+        IntSortedMap<Integer> map = new IntSortedMap<>();
+        TreeMap<Integer,Integer> ref = new TreeMap<>();
+        for (int i=0; i<5000; i++) {
+            int key = rnd.nextInt(500);
+            if (rnd.nextInt(3) == 0) {
+                assertEquals(ref.remove(key), map.remove(key));
+            } else {
+                assertEquals(ref.put(key, i), map.put(key, i));
+            }
+        }
+        assertEquals(ref.size(), map.size());
+        assertEquals(new ArrayList<>(ref.values()), map.values());
+        assertEquals(ref.headMap(250).size(), map.headSize(250));
+    }
+
+    @Test
+    public void testDescendingInsert() {
+        // the row count of an .xlsx sheet - linear shifting would take minutes here
+        final int count = 1 << 20;
+        IntSortedMap<Integer> map = new IntSortedMap<>();
+        for (int i=count-1; i>=0; i--) {
+            assertNull(map.put(i*2, i));
+        }
+        assertEquals(count, map.size());
+        assertEquals(0, map.firstKey());
+        assertEquals((count-1)*2, map.lastKey());
+        assertEquals(count/2, map.headSize(count));
+        assertEquals(count/2 + 1, map.headSize(count+1));
+        assertEquals(count-1, map.valueAt(count-1).intValue());
+        assertEquals(12345*2, map.keyAt(12345));
+
+        int expected = 0;
+        for (Integer v : map.values()) {
+            assertEquals(expected++, v.intValue());
+        }
+        assertEquals(count, expected);
+
+        // fill the gaps in the middle, which splits the chunks
+        for (int i=count/2; i>count/4; i--) {
+            assertNull(map.put(i*2+1, -i));
+        }
+        assertEquals(count + count/4, map.size());
+        assertEquals(-(count/4+1), map.get(count/2+3).intValue());
+        assertEquals(count/2 + count/4, map.headSize(count+1));
+        assertEquals(count/2 + count/4 + 1, map.headSize(count+2));
+    }
+
+    @Test
+    public void testRandomAgainstTreeMapMultipleChunks() {
+        Random rnd = new Random(815);
+        IntSortedMap<Integer> map = new IntSortedMap<>();
+        TreeMap<Integer,Integer> ref = new TreeMap<>();
+        for (int i=0; i<100000; i++) {
+            int key = rnd.nextInt(20000);
+            if (rnd.nextInt(3) == 0) {
+                assertEquals(ref.remove(key), map.remove(key));
+            } else {
+                assertEquals(ref.put(key, i), map.put(key, i));
+            }
+        }
+        assertEquals(ref.size(), map.size());
+        assertEquals(new ArrayList<>(ref.values()), map.values());
+        assertEquals(new ArrayList<>(ref.subMap(5000, 15000).values()), map.subValues(5000, 15000));
+        assertEquals(ref.headMap(12345).size(), map.headSize(12345));
+        assertEquals(ref.firstKey().intValue(), map.firstKey());
+        assertEquals(ref.lastKey().intValue(), map.lastKey());
+
+        // remove most entries via the iterator, which merges the sparse chunks
+        Iterator<Integer> iter = map.values().iterator();
+        for (Iterator<Integer> refIter = ref.values().iterator(); refIter.hasNext(); ) {
+            assertEquals(refIter.next(), iter.next());
+            if (rnd.nextInt(10) != 0) {
+                refIter.remove();
+                iter.remove();
+            }
+        }
+        assertFalse(iter.hasNext());
+        assertEquals(new ArrayList<>(ref.values()), map.values());
+        int idx = 0;
+        for (Integer key : ref.keySet()) {
+            assertEquals(key.intValue(), map.keyAt(idx++));
+        }
+    }
+}